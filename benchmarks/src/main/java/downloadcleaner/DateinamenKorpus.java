@@ -0,0 +1,182 @@
+package downloadcleaner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Erzeugt reproduzierbare Dateinamen und Konfigurationen für die Benchmarks.
+ *
+ * Alle Daten werden aus einem festen Startwert (Seed) erzeugt, damit zwei
+ * Benchmark-Läufe auf verschiedenen Versionen exakt dieselben Eingaben sehen.
+ */
+public final class DateinamenKorpus {
+
+    /**
+     * Zusammensetzung der erzeugten Dateinamen.
+     */
+    public enum Profil {
+        /** Typischer Download-Ordner: bekannte, unbekannte, lange, Unicode- und Mehrpunkt-Namen gemischt. */
+        GEMISCHT,
+        /** Überwiegend Endungen, die in keiner Kategorie vorkommen (Fallback "Sonstiges"). */
+        UNBEKANNT,
+        /** Sehr lange Dateinamen (150–250 Zeichen). */
+        LANG,
+        /** Namen mit Umlauten, CJK-Zeichen und Emoji. */
+        UNICODE,
+        /** Namen mit mehreren Punkten, z. B. "backup.2024-01-01.tar.gz". */
+        MEHRPUNKT
+    }
+
+    /** Fester Seed für reproduzierbare Korpora. */
+    static final long SEED = 0x5EEDL;
+
+    private static final String[] BEKANNT = {
+            ".png", ".jpg", ".JPG", ".jpeg", ".gif", ".webp",
+            ".pdf", ".PDF", ".docx", ".txt", ".xlsx", ".md",
+            ".zip", ".7z", ".tar", ".gz", ".iso", ".vhdx",
+            ".exe", ".msi", ".jar"
+    };
+
+    private static final String[] UNBEKANNT = {
+            ".crdownload", ".part", ".tmp", ".torrent", ".bin", ".dat",
+            ".json", ".xml", ".csv", ".html", ".mp4", ".mkv", ".mp3",
+            ".flac", ".epub", ".apk", ".deb", ".rpm", ".ics", ".vcf",
+            ".x1", ".abc123", ""
+    };
+
+    private static final String[] MEHRTEILIG = {
+            ".tar.gz", ".tar.bz2", ".tar.xz", ".TAR.GZ", ".min.js", ".user.js",
+            ".backup.zip", ".part1.rar", ".v2.1.pdf"
+    };
+
+    private static final String[] STAEMME = {
+            "Rechnung", "IMG_", "Screenshot ", "setup", "report", "Bewerbung",
+            "scan", "download", "foto", "invoice_2024", "Präsentation", "data"
+    };
+
+    private static final String[] UNICODE = {
+            "Überweisung_März", "Größenänderung", "报告_最终版", "写真", "📷 Urlaub",
+            "Ångström", "résumé", "Привет", "ﾃｽﾄ", "ß-Straße"
+    };
+
+    private DateinamenKorpus() {
+    }
+
+    /**
+     * Erzeugt anzahl Dateinamen nach dem angegebenen Profil.
+     *
+     * @param profil Zusammensetzung des Korpus.
+     * @param anzahl Anzahl der Namen.
+     * @return Array mit Dateinamen.
+     */
+    static String[] erzeuge(Profil profil, int anzahl) {
+        Random r = new Random(SEED ^ profil.ordinal());
+        String[] namen = new String[anzahl];
+        for (int i = 0; i < anzahl; i++) {
+            namen[i] = switch (profil) {
+                case GEMISCHT -> gemischt(r, i);
+                case UNBEKANNT -> stamm(r, i) + (r.nextInt(10) < 8 ? waehle(r, UNBEKANNT) : waehle(r, BEKANNT));
+                case LANG -> lang(r, i);
+                case UNICODE -> waehle(r, UNICODE) + "_" + i + waehle(r, r.nextBoolean() ? BEKANNT : UNBEKANNT);
+                case MEHRPUNKT -> stamm(r, i) + "." + (2000 + r.nextInt(25)) + "-" + r.nextInt(12) + waehle(r, MEHRTEILIG);
+            };
+        }
+        return namen;
+    }
+
+    /**
+     * Mischung ähnlich einem echten Download-Ordner:
+     * 45 % bekannt, 30 % unbekannt, 10 % mehrteilig, 10 % Unicode, 5 % lang.
+     */
+    private static String gemischt(Random r, int i) {
+        int p = r.nextInt(100);
+        if (p < 45) {
+            return stamm(r, i) + waehle(r, BEKANNT);
+        } else if (p < 75) {
+            return stamm(r, i) + waehle(r, UNBEKANNT);
+        } else if (p < 85) {
+            return stamm(r, i) + waehle(r, MEHRTEILIG);
+        } else if (p < 95) {
+            return waehle(r, UNICODE) + " (" + i + ")" + waehle(r, BEKANNT);
+        }
+        return lang(r, i);
+    }
+
+    private static String lang(Random r, int i) {
+        int laenge = 150 + r.nextInt(100);
+        StringBuilder sb = new StringBuilder(laenge + 8);
+        while (sb.length() < laenge) {
+            sb.append(waehle(r, STAEMME)).append('-');
+        }
+        sb.setLength(laenge);
+        sb.append(i);
+        sb.append(r.nextBoolean() ? waehle(r, BEKANNT) : waehle(r, UNBEKANNT));
+        return sb.toString();
+    }
+
+    private static String stamm(Random r, int i) {
+        return waehle(r, STAEMME) + i;
+    }
+
+    private static String waehle(Random r, String[] werte) {
+        return werte[r.nextInt(werte.length)];
+    }
+
+    /**
+     * Liefert die Standardkonfiguration im config.txt-Format.
+     *
+     * @return Konfigurationstext.
+     */
+    static String standardKonfiguration() {
+        return "# Kategorie=Endungen, durch Komma getrennt\n"
+                + "Bilder=.png,.jpg,.jpeg,.gif,.bmp,.webp\n"
+                + "Dokumente=.pdf,.doc,.docx,.txt,.ppt,.pptx,.xls,.xlsx,.odt,.md\n"
+                + "Archive=.zip,.rar,.7z,.tar,.gz,.iso,.img,.dmg,.vhd,.vhdx\n"
+                + "Installer=.exe,.msi\n"
+                + "Java=.jar,.class,.java\n"
+                + "Sonstiges=\n";
+    }
+
+    /**
+     * Erzeugt eine große Konfiguration mit rund 200 Endungen in 20 Kategorien,
+     * darunter mehrteilige Endungen und Überschneidungen zwischen Kategorien.
+     *
+     * @return Konfigurationstext.
+     */
+    static String grosseKonfiguration() {
+        Random r = new Random(SEED);
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# Generierte Konfiguration für Benchmarks\n");
+        sb.append(standardKonfiguration().replace("Sonstiges=\n", ""));
+        List<String> vergeben = new ArrayList<>();
+        for (int k = 0; k < 15; k++) {
+            sb.append("Kategorie").append(k).append('=');
+            for (int e = 0; e < 12; e++) {
+                String ext;
+                if (e == 0 && k % 3 == 0) {
+                    ext = ".tar." + (char) ('a' + k);
+                } else if (e == 1 && !vergeben.isEmpty() && k % 4 == 0) {
+                    // bewusste Überschneidung mit einer früheren Kategorie
+                    ext = vergeben.get(r.nextInt(vergeben.size()));
+                } else {
+                    ext = "." + zufallsEndung(r);
+                }
+                vergeben.add(ext);
+                sb.append(e == 0 ? "" : ",").append(ext);
+            }
+            sb.append('\n');
+        }
+        sb.append("Sonstiges=\n");
+        return sb.toString();
+    }
+
+    private static String zufallsEndung(Random r) {
+        int laenge = 2 + r.nextInt(4);
+        char[] c = new char[laenge];
+        for (int i = 0; i < laenge; i++) {
+            c[i] = (char) ('a' + r.nextInt(26));
+        }
+        return new String(c);
+    }
+}
@@ -0,0 +1,568 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Misst ganze Läufe auf echten Ordnern: Analyse, Trockenlauf, Sortierung und Undo.
+ *
+ * Die JMH-Benchmarks messen einzelne Methoden ohne Dateizugriff. Hier dagegen legt
+ * OrdnerGenerator einen Ordner mit 1.000 bis 1.000.000 Dateien an, und die
+ * SortierEngine arbeitet ihn wie im Alltag ab. Pro Ablageort (tmpfs und Platte) und
+ * Dateianzahl läuft jede Wiederholung so:
+ *
+ *   analyse-kalt  ohne Scan-Index (Ordner komplett auflisten)
+ *   analyse-index zweite Analyse, Ergebnis aus .downloadcleaner.idx
+ *   trockenlauf   Sortierplan schreiben
+ *   sortieren     alles verschieben (mit log.txt und Undo-Journal)
+ *   undo          den Lauf rückgängig machen
+ *
+ * Danach werden die eigenen Dateien des Programms und neu angelegte leere
+ * Kategorie-Ordner entfernt; der Ordner ist wieder im Ausgangszustand.
+ *
+ * Gemessen werden Wandzeit, Dateien pro Sekunde und der Höchststand des Heaps
+ * (Summe der Spitzenwerte aller Heap-Bereiche, vor jedem Vorgang zurückgesetzt).
+ * Vom Median der Wiederholungen wird berichtet. Zusätzlich läuft eine Sortierung
+ * mit eingeschalteter Messung (siehe Messung); aus ihr stammen die Summen der
+ * Phasen mit Systemaufrufen (auflisten, ordner, verschieben, protokoll). Dieser
+ * Lauf geht nicht in die Zeiten ein.
+ *
+ * Ergebnisse lassen sich als Baseline speichern (--baseline) und später mit
+ * --pruefe vergleichen: Weniger Dateien pro Sekunde oder mehr Heap als die
+ * Toleranz erlaubt gilt als Regression, das Programm endet dann mit Exit-Code 1.
+ *
+ * Aufruf (nach mvn package):
+ *   java -cp benchmarks/target/benchmarks.jar downloadcleaner.DurchsatzBenchmark --help
+ */
+public final class DurchsatzBenchmark {
+
+    private static final String HILFE = String.join("\n",
+            "Aufruf: java -cp benchmarks/target/benchmarks.jar downloadcleaner.DurchsatzBenchmark [Optionen]",
+            "",
+            "  --dateien N,N,...     Dateien pro Ordner (Standard 1000,10000,100000; höchstens 1000000)",
+            "  --ziele tmpfs,platte  Ablageorte (Standard beide)",
+            "  --tmpfs DIR           Ordner auf tmpfs (Standard /dev/shm)",
+            "  --platte DIR          Ordner auf der Platte (Standard target/durchsatz)",
+            "  --profil NAME         Dateinamen: gemischt, unbekannt, lang, unicode, mehrpunkt (Standard gemischt)",
+            "  --groessen MIN-MAX    Dateigrößen, log-gleichverteilt (Standard 0-16M)",
+            "  --ordner N            vorhandene Kategorie-Ordner (Standard 3)",
+            "  --kollisionen P       % der Dateien mit gleichnamiger Datei im Zielordner (Standard 1)",
+            "  --konfiguration K     standard oder gross (rund 200 Endungen) (Standard standard)",
+            "  --wiederholungen N    gemessene Wiederholungen (Standard 3)",
+            "  --aufwaermen N        ungemessene Wiederholungen vorab (Standard 1)",
+            "  --baseline DATEI      Ergebnisse als Baseline speichern",
+            "  --pruefe DATEI        mit Baseline vergleichen, Exit-Code 1 bei Regression",
+            "  --toleranz P          erlaubte Abweichung in % (Standard 15)",
+            "  --behalten            erzeugte Ordner nicht löschen");
+
+    /** Obergrenze für --dateien. */
+    static final int MAX_DATEIEN = 1_000_000;
+
+    /** Heap-Unterschiede darunter gelten nie als Regression (Rauschen durch GC-Zeitpunkte). */
+    private static final long HEAP_RAUSCHEN = 8L << 20;
+
+    private static final String[] VORGAENGE = {"analyse-kalt", "analyse-index", "trockenlauf", "sortieren", "undo"};
+
+    /** Phasen der Messung, die im Wesentlichen aus Systemaufrufen bestehen. */
+    private static final String[] PHASEN = {"auflisten", "ordner", "verschieben", "protokoll"};
+
+    private static final Pattern PHASE_JSON =
+            Pattern.compile("\"(\\w+)\": \\{\"anzahl\": (\\d+), \"summeNs\": (\\d+)");
+
+    // Einstellungen
+    private final List<Integer> anzahlen = new ArrayList<>(List.of(1_000, 10_000, 100_000));
+    private final Map<String, Path> ziele = new LinkedHashMap<>();
+    private DateinamenKorpus.Profil profil = DateinamenKorpus.Profil.GEMISCHT;
+    private long minGroesse = 0;
+    private long maxGroesse = 16L << 20;
+    private int vorhandeneOrdner = 3;
+    private int kollisionProzent = 1;
+    private String konfigurationName = "standard";
+    private int wiederholungen = 3;
+    private int aufwaermen = 1;
+    private Path baseline;
+    private Path pruefe;
+    private double toleranz = 15;
+    private boolean behalten;
+
+    private SortierKonfiguration konfiguration;
+
+    /**
+     * Messwerte eines Vorgangs (Median über die Wiederholungen).
+     */
+    static final class Messwert {
+        final String ziel;
+        final int anzahl;
+        final String vorgang;
+        final double dateienProSek;
+        final long wandzeitMs;
+        final long heapBytes;
+        /** Summen der Phasen in ms, nur bei "sortieren"; sonst leer. */
+        final long[] phasenMs;
+
+        Messwert(String ziel, int anzahl, String vorgang, double dateienProSek, long wandzeitMs, long heapBytes,
+                 long[] phasenMs) {
+            this.ziel = ziel;
+            this.anzahl = anzahl;
+            this.vorgang = vorgang;
+            this.dateienProSek = dateienProSek;
+            this.wandzeitMs = wandzeitMs;
+            this.heapBytes = heapBytes;
+            this.phasenMs = phasenMs;
+        }
+
+        String schluessel() {
+            return ziel + " " + anzahl + " " + vorgang;
+        }
+    }
+
+    private DurchsatzBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        DurchsatzBenchmark b = new DurchsatzBenchmark();
+        String fehler = b.leseArgumente(args);
+        if (fehler != null) {
+            System.err.println(fehler);
+            System.err.println(HILFE);
+            System.exit(fehler.isEmpty() ? 0 : 2);
+        }
+        System.exit(b.laufe());
+    }
+
+    /**
+     * @return null = weiter, "" = Hilfe ausgegeben, sonst Fehlermeldung.
+     */
+    private String leseArgumente(String[] args) {
+        String zieleText = "tmpfs,platte";
+        Path tmpfs = Paths.get("/dev/shm");
+        Path platte = Paths.get("target", "durchsatz");
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (a.equals("--help") || a.equals("-h")) {
+                    return "";
+                }
+                if (a.equals("--behalten")) {
+                    behalten = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    return "Wert fehlt für " + a;
+                }
+                String w = args[++i];
+                switch (a) {
+                    case "--dateien" -> {
+                        anzahlen.clear();
+                        for (String teil : w.split(",")) {
+                            int n = Integer.parseInt(teil.trim());
+                            if (n < 1 || n > MAX_DATEIEN) {
+                                return "--dateien muss zwischen 1 und " + MAX_DATEIEN + " liegen";
+                            }
+                            anzahlen.add(n);
+                        }
+                    }
+                    case "--ziele" -> zieleText = w;
+                    case "--tmpfs" -> tmpfs = Paths.get(w);
+                    case "--platte" -> platte = Paths.get(w);
+                    case "--profil" -> profil = DateinamenKorpus.Profil.valueOf(w.trim().toUpperCase(Locale.ROOT));
+                    case "--groessen" -> {
+                        int strich = w.indexOf('-');
+                        if (strich < 0) {
+                            minGroesse = maxGroesse = Regelwerk.leseGroesse(w);
+                        } else {
+                            minGroesse = Regelwerk.leseGroesse(w.substring(0, strich));
+                            maxGroesse = Regelwerk.leseGroesse(w.substring(strich + 1));
+                        }
+                    }
+                    case "--ordner" -> vorhandeneOrdner = Integer.parseInt(w.trim());
+                    case "--kollisionen" -> kollisionProzent = Integer.parseInt(w.trim());
+                    case "--konfiguration" -> konfigurationName = w.trim().toLowerCase(Locale.ROOT);
+                    case "--wiederholungen" -> wiederholungen = Math.max(1, Integer.parseInt(w.trim()));
+                    case "--aufwaermen" -> aufwaermen = Math.max(0, Integer.parseInt(w.trim()));
+                    case "--baseline" -> baseline = Paths.get(w);
+                    case "--pruefe" -> pruefe = Paths.get(w);
+                    case "--toleranz" -> toleranz = Double.parseDouble(w.trim());
+                    default -> {
+                        return "Unbekannte Option: " + a;
+                    }
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return "Ungültiger Wert: " + e.getMessage();
+        }
+
+        for (String ziel : zieleText.split(",")) {
+            switch (ziel.trim()) {
+                case "tmpfs" -> ziele.put("tmpfs", tmpfs);
+                case "platte" -> ziele.put("platte", platte);
+                default -> {
+                    return "Unbekanntes Ziel: " + ziel + " (tmpfs oder platte)";
+                }
+            }
+        }
+        if (!konfigurationName.equals("standard") && !konfigurationName.equals("gross")) {
+            return "--konfiguration muss standard oder gross sein";
+        }
+        return null;
+    }
+
+    private int laufe() throws IOException {
+        konfiguration = konfigurationName.equals("gross")
+                ? SortierKonfiguration.von(KlassifizierungBenchmark.ladeKonfiguration(
+                        DateinamenKorpus.grosseKonfiguration()))
+                : SortierKonfiguration.standard();
+        OrdnerGenerator generator = new OrdnerGenerator(profil, minGroesse, maxGroesse, vorhandeneOrdner,
+                kollisionProzent);
+
+        System.out.println("Durchsatz-Benchmark: " + parameter());
+        System.out.println("Java " + Runtime.version() + ", max. Heap "
+                + DuplikatSuche.formatiereGroesse(Runtime.getRuntime().maxMemory()));
+        System.out.printf("%-7s %9s %-14s %12s %10s %10s%n", "Ziel", "Dateien", "Vorgang", "Dateien/s",
+                "Wandzeit", "Heap");
+
+        List<Messwert> ergebnisse = new ArrayList<>();
+        try (SortierEngine engine = new SortierEngine(Runnable::run)) {
+            for (Map.Entry<String, Path> ziel : ziele.entrySet()) {
+                Path basis = ziel.getValue();
+                if (!Files.isDirectory(basis)) {
+                    if (ziel.getKey().equals("tmpfs")) {
+                        System.out.println("tmpfs übersprungen: " + basis + " gibt es nicht.");
+                        continue;
+                    }
+                    Files.createDirectories(basis);
+                }
+                String typ = Files.getFileStore(basis).type();
+                if (ziel.getKey().equals("platte") && typ.equals("tmpfs")) {
+                    System.out.println("Hinweis: " + basis + " liegt auf tmpfs, nicht auf einer Platte.");
+                }
+                for (int anzahl : anzahlen) {
+                    Path ordner = Files.createTempDirectory(basis, "dc-durchsatz-");
+                    try {
+                        long start = System.nanoTime();
+                        OrdnerGenerator.Ordner o = generator.erzeuge(ordner, anzahl, konfiguration);
+                        System.out.println("  " + ziel.getKey() + " (" + typ + "): " + anzahl + " Dateien, "
+                                + DuplikatSuche.formatiereGroesse(o.bytes) + ", " + o.kollisionen
+                                + " Kollisionen, erzeugt in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+                        ergebnisse.addAll(miss(engine, ziel.getKey(), o));
+                    } finally {
+                        if (behalten) {
+                            System.out.println("  Ordner behalten: " + ordner);
+                        } else {
+                            loesche(ordner);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (baseline != null) {
+            schreibeBaseline(baseline, ergebnisse);
+            System.out.println("Baseline geschrieben: " + baseline.toAbsolutePath());
+        }
+        if (pruefe != null) {
+            return vergleiche(pruefe, ergebnisse) ? 0 : 1;
+        }
+        return 0;
+    }
+
+    private String parameter() {
+        return "profil=" + profil.name().toLowerCase(Locale.ROOT)
+                + " groessen=" + minGroesse + "-" + maxGroesse
+                + " ordner=" + vorhandeneOrdner
+                + " kollisionen=" + kollisionProzent
+                + " konfiguration=" + konfigurationName;
+    }
+
+    // ------------------------------------------------------------------ Messen
+
+    private List<Messwert> miss(SortierEngine engine, String ziel, OrdnerGenerator.Ordner o) throws IOException {
+        long[][] zeiten = new long[VORGAENGE.length][wiederholungen];
+        long[][] heap = new long[VORGAENGE.length][wiederholungen];
+        long[][] dateien = new long[VORGAENGE.length][wiederholungen];
+
+        for (int w = -aufwaermen; w < wiederholungen; w++) {
+            long[] t = new long[VORGAENGE.length];
+            long[] h = new long[VORGAENGE.length];
+            long[] n = new long[VORGAENGE.length];
+            einmal(engine, o, t, h, n);
+            if (w >= 0) {
+                for (int v = 0; v < VORGAENGE.length; v++) {
+                    zeiten[v][w] = t[v];
+                    heap[v][w] = h[v];
+                    dateien[v][w] = n[v];
+                }
+            }
+        }
+        long[] phasen = phasenlauf(engine, o);
+
+        List<Messwert> werte = new ArrayList<>();
+        for (int v = 0; v < VORGAENGE.length; v++) {
+            long ns = Math.max(1, median(zeiten[v]));
+            double proSek = median(dateien[v]) * 1e9 / ns;
+            Messwert m = new Messwert(ziel, o.dateien, VORGAENGE[v], proSek, ns / 1_000_000, median(heap[v]),
+                    VORGAENGE[v].equals("sortieren") ? phasen : new long[0]);
+            System.out.printf(Locale.ROOT, "%-7s %9d %-14s %12.0f %7d ms %7.1f MB%s%n", ziel, o.dateien, m.vorgang,
+                    m.dateienProSek, m.wandzeitMs, m.heapBytes / 1048576.0, phasenText(m.phasenMs));
+            werte.add(m);
+        }
+        return werte;
+    }
+
+    /**
+     * Eine Wiederholung aller Vorgänge; danach ist der Ordner wieder im Ausgangszustand.
+     */
+    private void einmal(SortierEngine engine, OrdnerGenerator.Ordner o, long[] zeit, long[] heap, long[] dateien)
+            throws IOException {
+        Path ordner = o.pfad;
+
+        vorbereiten();
+        long start = System.nanoTime();
+        SortierEngine.Analyse kalt = SortierEngine.ergebnis(engine.analysiere(ordner, konfiguration));
+        ende(0, start, kalt.dateien, zeit, heap, dateien);
+        if (kalt.ausIndex) {
+            throw new IllegalStateException("Erste Analyse kam aus dem Scan-Index");
+        }
+
+        vorbereiten();
+        start = System.nanoTime();
+        SortierEngine.Analyse warm = SortierEngine.ergebnis(engine.analysiere(ordner, konfiguration));
+        ende(1, start, warm.dateien, zeit, heap, dateien);
+
+        vorbereiten();
+        start = System.nanoTime();
+        SortierEngine.Plan plan = SortierEngine.ergebnis(engine.plane(ordner, konfiguration));
+        ende(2, start, plan.dateien, zeit, heap, dateien);
+
+        vorbereiten();
+        start = System.nanoTime();
+        SortierEngine.Sortierlauf lauf = SortierEngine.ergebnis(engine.sortiere(ordner, konfiguration));
+        ende(3, start, lauf.verschoben, zeit, heap, dateien);
+
+        vorbereiten();
+        start = System.nanoTime();
+        SortierEngine.Rueckgaengig undo = SortierEngine.ergebnis(engine.macheRueckgaengig(ordner, lauf.laufId));
+        ende(4, start, undo.zurueck, zeit, heap, dateien);
+
+        if (lauf.verschoben != o.dateien || lauf.fehler != 0 || undo.zurueck != lauf.verschoben) {
+            System.out.println("  Warnung: " + o.dateien + " Dateien, " + lauf.verschoben + " verschoben, "
+                    + lauf.fehler + " Fehler, " + undo.zurueck + " zurück");
+        }
+        aufraeumen(o);
+    }
+
+    /**
+     * Sortierung mit eingeschalteter Messung; liefert die Phasensummen in ms.
+     */
+    private long[] phasenlauf(SortierEngine engine, OrdnerGenerator.Ordner o) throws IOException {
+        Path ordner = o.pfad;
+        PrintStream konsole = System.out;
+        System.setProperty(Messung.PROPERTY, "an");
+        SortierEngine.Sortierlauf lauf;
+        try {
+            // Messung gibt am Ende eine Tabelle aus, die hier nicht gebraucht wird.
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            lauf = SortierEngine.ergebnis(engine.sortiere(ordner, konfiguration));
+        } finally {
+            System.setOut(konsole);
+            System.clearProperty(Messung.PROPERTY);
+        }
+        long[] ms = new long[PHASEN.length];
+        Path json = ordner.resolve(Messung.DATEINAME);
+        if (Files.exists(json)) {
+            Matcher m = PHASE_JSON.matcher(Files.readString(json, StandardCharsets.UTF_8));
+            while (m.find()) {
+                int p = Arrays.asList(PHASEN).indexOf(m.group(1));
+                if (p >= 0) {
+                    ms[p] = Long.parseLong(m.group(3)) / 1_000_000;
+                }
+            }
+        }
+        SortierEngine.ergebnis(engine.macheRueckgaengig(ordner, lauf.laufId));
+        aufraeumen(o);
+        return ms;
+    }
+
+    private static String phasenText(long[] phasenMs) {
+        if (phasenMs.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("  (");
+        for (int p = 0; p < PHASEN.length; p++) {
+            sb.append(p == 0 ? "" : ", ").append(PHASEN[p]).append(' ').append(phasenMs[p]).append(" ms");
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Räumt Müll vorheriger Vorgänge ab und setzt die Heap-Spitzenwerte zurück.
+     */
+    private static void vorbereiten() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static void ende(int vorgang, long startNs, long anzahl, long[] zeit, long[] heap, long[] dateien) {
+        zeit[vorgang] = System.nanoTime() - startNs;
+        dateien[vorgang] = anzahl;
+        long spitze = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                spitze += pool.getPeakUsage().getUsed();
+            }
+        }
+        heap[vorgang] = spitze;
+    }
+
+    private static long median(long[] werte) {
+        long[] s = werte.clone();
+        Arrays.sort(s);
+        return s[s.length / 2];
+    }
+
+    /**
+     * Entfernt die eigenen Dateien des Programms (Journal, log.txt, Index, Plan, ...)
+     * und leere Kategorie-Ordner, die erst die Sortierung angelegt hat.
+     */
+    private static void aufraeumen(OrdnerGenerator.Ordner o) throws IOException {
+        Path ordner = o.pfad;
+        for (String name : List.of("log.txt", UndoJournal.DATEINAME, ScanIndex.DATEINAME, SortierPlan.DATEINAME,
+                Messung.DATEINAME)) {
+            Files.deleteIfExists(ordner.resolve(name));
+        }
+        loesche(ordner.resolve(LogArchiv.ORDNER));
+        List<Path> leer = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(ordner, Files::isDirectory)) {
+            for (Path p : ds) {
+                if (!o.unterordner.contains(p.getFileName().toString())) {
+                    leer.add(p);
+                }
+            }
+        }
+        for (Path p : leer) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(p)) {
+                if (!ds.iterator().hasNext()) {
+                    Files.delete(p);
+                }
+            }
+        }
+    }
+
+    private static void loesche(Path pfad) throws IOException {
+        if (!Files.exists(pfad)) {
+            return;
+        }
+        try (Stream<Path> alle = Files.walk(pfad)) {
+            for (Path p : (Iterable<Path>) alle.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ Baseline
+
+    private void schreibeBaseline(Path datei, List<Messwert> werte) throws IOException {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# DownloadCleaner Durchsatz-Baseline, ")
+                .append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append('\n');
+        sb.append("# Java ").append(Runtime.version()).append(", ").append(System.getProperty("os.name"))
+                .append(' ').append(System.getProperty("os.version")).append(", ")
+                .append(Runtime.getRuntime().availableProcessors()).append(" CPUs\n");
+        sb.append("parameter ").append(parameter()).append('\n');
+        sb.append("# ziel dateien vorgang dateien/s wandzeit-ms heap-bytes [");
+        sb.append(String.join("-ms ", PHASEN)).append("-ms]\n");
+        for (Messwert m : werte) {
+            sb.append(m.schluessel()).append(' ')
+                    .append(String.format(Locale.ROOT, "%.1f", m.dateienProSek)).append(' ')
+                    .append(m.wandzeitMs).append(' ').append(m.heapBytes);
+            for (long p : m.phasenMs) {
+                sb.append(' ').append(p);
+            }
+            sb.append('\n');
+        }
+        Path eltern = datei.toAbsolutePath().getParent();
+        if (eltern != null) {
+            Files.createDirectories(eltern);
+        }
+        Files.writeString(datei, sb, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Vergleicht die Messwerte mit einer Baseline.
+     *
+     * @return true, wenn keine Regression gefunden wurde.
+     */
+    private boolean vergleiche(Path datei, List<Messwert> werte) throws IOException {
+        Map<String, String[]> alt = new LinkedHashMap<>();
+        for (String zeile : Files.readAllLines(datei, StandardCharsets.UTF_8)) {
+            zeile = zeile.trim();
+            if (zeile.isEmpty() || zeile.startsWith("#")) {
+                continue;
+            }
+            if (zeile.startsWith("parameter ")) {
+                String p = zeile.substring("parameter ".length());
+                if (!p.equals(parameter())) {
+                    System.out.println("Hinweis: Baseline mit anderen Parametern erstellt (" + p + ")");
+                }
+                continue;
+            }
+            String[] t = zeile.split("\\s+");
+            if (t.length >= 6) {
+                alt.put(t[0] + " " + t[1] + " " + t[2], t);
+            }
+        }
+
+        System.out.println("Vergleich mit " + datei + " (Toleranz " + toleranz + " %):");
+        int regressionen = 0;
+        int verglichen = 0;
+        for (Messwert m : werte) {
+            String[] t = alt.get(m.schluessel());
+            if (t == null) {
+                continue;
+            }
+            verglichen++;
+            double altProSek = Double.parseDouble(t[3]);
+            long altHeap = Long.parseLong(t[5]);
+            double durchsatz = altProSek > 0 ? (m.dateienProSek - altProSek) * 100 / altProSek : 0;
+            double speicher = altHeap > 0 ? (m.heapBytes - altHeap) * 100.0 / altHeap : 0;
+            boolean langsamer = durchsatz < -toleranz;
+            boolean mehrHeap = speicher > toleranz && m.heapBytes - altHeap > HEAP_RAUSCHEN;
+            String status = langsamer || mehrHeap ? "REGRESSION" : "ok";
+            if (langsamer || mehrHeap) {
+                regressionen++;
+            }
+            System.out.printf(Locale.ROOT, "  %-10s %-28s Dateien/s %+6.1f %%  Heap %+6.1f %%%n", status,
+                    m.schluessel(), durchsatz, speicher);
+        }
+        if (verglichen == 0) {
+            System.out.println("  Keine gemeinsamen Messungen gefunden.");
+        }
+        System.out.println(regressionen == 0 ? "Keine Regression." : regressionen + " Regression(en).");
+        return regressionen == 0;
+    }
+}
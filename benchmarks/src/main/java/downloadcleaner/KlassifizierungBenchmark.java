@@ -0,0 +1,70 @@
+package downloadcleaner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Misst KategorieKonfiguration.bestimmeKategorie() – einmal pro Dateiname.
+ *
+ * Jeder Aufruf klassifiziert den nächsten Namen aus einem vorab erzeugten Korpus,
+ * sodass "gc.alloc.rate.norm" (mit -prof gc) direkt die Allokation pro Datei zeigt.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KlassifizierungBenchmark {
+
+    /** Anzahl Namen pro Korpus (Zweierpotenz für billiges Weiterschalten). */
+    static final int KORPUS_GROESSE = 1 << 14;
+
+    @Param({"GEMISCHT", "UNBEKANNT", "LANG", "UNICODE", "MEHRPUNKT"})
+    public DateinamenKorpus.Profil profil;
+
+    @Param({"STANDARD", "GROSS"})
+    public String konfig;
+
+    private DownloadCleaner.KategorieKonfiguration kategorien;
+    private String[] namen;
+    private int position;
+
+    @Setup
+    public void vorbereiten() throws IOException {
+        kategorien = ladeKonfiguration("GROSS".equals(konfig)
+                ? DateinamenKorpus.grosseKonfiguration()
+                : DateinamenKorpus.standardKonfiguration());
+        namen = DateinamenKorpus.erzeuge(profil, KORPUS_GROESSE);
+    }
+
+    @Benchmark
+    public String bestimmeKategorie() {
+        String name = namen[position++ & (KORPUS_GROESSE - 1)];
+        return kategorien.bestimmeKategorie(name);
+    }
+
+    /**
+     * Baut eine Konfiguration aus Text auf, ohne Dateizugriff und ohne Konsolenausgabe.
+     */
+    static DownloadCleaner.KategorieKonfiguration ladeKonfiguration(String text) throws IOException {
+        DownloadCleaner.KategorieKonfiguration k = DownloadCleaner.KategorieKonfiguration.ladeStandardNur();
+        k.leseKonfiguration(new BufferedReader(new StringReader(text)));
+        k.baueIndex();
+        return k;
+    }
+}
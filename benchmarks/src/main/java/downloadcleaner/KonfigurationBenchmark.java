@@ -0,0 +1,48 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Misst das Einlesen einer config.txt (Parsen der Zeilen und Aufbau des Endungs-Index).
+ *
+ * Der Text liegt bereits im Speicher, gemessen wird also nur die Verarbeitung,
+ * nicht der Dateizugriff.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KonfigurationBenchmark {
+
+    @Param({"STANDARD", "GROSS"})
+    public String konfig;
+
+    private String text;
+
+    @Setup
+    public void vorbereiten() {
+        text = "GROSS".equals(konfig)
+                ? DateinamenKorpus.grosseKonfiguration()
+                : DateinamenKorpus.standardKonfiguration();
+    }
+
+    @Benchmark
+    public DownloadCleaner.KategorieKonfiguration ladeAusDatei() throws IOException {
+        return KlassifizierungBenchmark.ladeKonfiguration(text);
+    }
+}
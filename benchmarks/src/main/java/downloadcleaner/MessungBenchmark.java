@@ -0,0 +1,73 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Misst, was die Messung (siehe Messung) an der Klassifizierung einer Datei kostet.
+ *
+ * - ohneMessung: nur bestimmeKategorie, als Vergleichswert.
+ * - messungAus:  mit start()/ende() bei ausgeschalteter Messung; sollte sich von
+ *                ohneMessung nicht unterscheiden und nichts allokieren (-prof gc).
+ * - messungAn:   mit eingeschalteter Messung (Uhr lesen, Histogramm, JFR-Ereignis).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessungBenchmark {
+
+    private DownloadCleaner.KategorieKonfiguration kategorien;
+    private String[] namen;
+    private Messung aus;
+    private Messung an;
+    private int position;
+
+    @Setup
+    public void vorbereiten() throws IOException {
+        kategorien = KlassifizierungBenchmark.ladeKonfiguration(DateinamenKorpus.grosseKonfiguration());
+        namen = DateinamenKorpus.erzeuge(DateinamenKorpus.Profil.GEMISCHT, KlassifizierungBenchmark.KORPUS_GROESSE);
+        aus = Messung.AUS;
+        System.setProperty(Messung.PROPERTY, "an");
+        an = Messung.ausSystemProperty();
+        System.clearProperty(Messung.PROPERTY);
+    }
+
+    private String naechsterName() {
+        return namen[position++ & (KlassifizierungBenchmark.KORPUS_GROESSE - 1)];
+    }
+
+    @Benchmark
+    public String ohneMessung() {
+        return kategorien.bestimmeKategorie(naechsterName());
+    }
+
+    @Benchmark
+    public String messungAus() {
+        Messung.Messpunkt m = aus.start(Messung.Phase.KLASSIFIZIEREN);
+        String kategorie = kategorien.bestimmeKategorie(naechsterName());
+        aus.ende(m, null, 0);
+        return kategorie;
+    }
+
+    @Benchmark
+    public String messungAn() {
+        Messung.Messpunkt m = an.start(Messung.Phase.KLASSIFIZIEREN);
+        String kategorie = kategorien.bestimmeKategorie(naechsterName());
+        an.ende(m, null, 0);
+        return kategorie;
+    }
+}
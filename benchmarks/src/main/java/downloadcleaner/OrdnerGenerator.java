@@ -0,0 +1,179 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Legt reproduzierbare Download-Ordner für den DurchsatzBenchmark an.
+ *
+ * Aus denselben Parametern entsteht immer derselbe Ordner (bei gleicher Locale, siehe ersatz()):
+ * - Dateinamen aus DateinamenKorpus (Profil = Mischung der Endungen).
+ * - Größen logarithmisch gleichverteilt zwischen minGroesse und maxGroesse, d. h.
+ *   ungefähr gleich viele Dateien mit 1 KB, 10 KB und 100 KB. Die Dateien sind
+ *   "sparse" (nur Nullen, ohne belegte Blöcke); da innerhalb eines Dateisystems
+ *   nur umbenannt wird, spielt der Inhalt für die Messung keine Rolle.
+ * - Änderungszeiten innerhalb eines Jahres vor dem 1.1.2025.
+ * - Die ersten vorhandeneOrdner Kategorien existieren schon als Unterordner. Ein
+ *   Anteil von kollisionProzent der Dateien, die dort hinein sortiert würden, liegt
+ *   dort bereits unter gleichem Namen (Namensgleichheit, siehe ZielNamen).
+ */
+public final class OrdnerGenerator {
+
+    /** Größte Länge eines Dateinamens in Bytes (ext4, tmpfs, NTFS). */
+    private static final int MAX_NAME_BYTES = 255;
+
+    /** Bei längeren Namen keine Kollision anlegen, " (2)" passt sonst nicht mehr dazu. */
+    private static final int MAX_KOLLISION_BYTES = 240;
+
+    private static final long BEZUG_MS = 1_735_689_600_000L; // 2025-01-01T00:00:00Z
+    private static final long JAHR_MS = 365L * 24 * 60 * 60 * 1000;
+
+    final DateinamenKorpus.Profil profil;
+    final long minGroesse;
+    final long maxGroesse;
+    final int vorhandeneOrdner;
+    final int kollisionProzent;
+
+    /**
+     * @param profil           Mischung der Dateinamen und Endungen.
+     * @param minGroesse       kleinste Dateigröße in Bytes.
+     * @param maxGroesse       größte Dateigröße in Bytes.
+     * @param vorhandeneOrdner Anzahl Kategorie-Ordner, die es schon gibt.
+     * @param kollisionProzent Anteil (0–100) der Dateien mit gleichnamiger Datei im Zielordner.
+     */
+    OrdnerGenerator(DateinamenKorpus.Profil profil, long minGroesse, long maxGroesse,
+                    int vorhandeneOrdner, int kollisionProzent) {
+        if (minGroesse < 0 || maxGroesse < minGroesse) {
+            throw new IllegalArgumentException("Ungültiger Größenbereich: " + minGroesse + "-" + maxGroesse);
+        }
+        if (kollisionProzent < 0 || kollisionProzent > 100) {
+            throw new IllegalArgumentException("Kollisionen müssen zwischen 0 und 100 % liegen");
+        }
+        this.profil = profil;
+        this.minGroesse = minGroesse;
+        this.maxGroesse = maxGroesse;
+        this.vorhandeneOrdner = Math.max(0, vorhandeneOrdner);
+        this.kollisionProzent = kollisionProzent;
+    }
+
+    /**
+     * Ergebnis einer Erzeugung.
+     */
+    static final class Ordner {
+        final Path pfad;
+        /** Dateien auf oberster Ebene (werden sortiert). */
+        final int dateien;
+        final long bytes;
+        /** Dateien, die schon in Kategorie-Ordnern lagen. */
+        final int kollisionen;
+        /** Namen der vorab angelegten Kategorie-Ordner. */
+        final Set<String> unterordner;
+
+        Ordner(Path pfad, int dateien, long bytes, int kollisionen, Set<String> unterordner) {
+            this.pfad = pfad;
+            this.dateien = dateien;
+            this.bytes = bytes;
+            this.kollisionen = kollisionen;
+            this.unterordner = unterordner;
+        }
+    }
+
+    /**
+     * Füllt einen leeren Ordner mit anzahl Dateien.
+     *
+     * @param ordner        vorhandener, leerer Ordner.
+     * @param anzahl        Anzahl Dateien auf oberster Ebene.
+     * @param konfiguration bestimmt, welche Datei in welchen Kategorie-Ordner gehört.
+     * @return Beschreibung des erzeugten Ordners.
+     * @throws IOException wenn eine Datei nicht angelegt werden kann.
+     */
+    Ordner erzeuge(Path ordner, int anzahl, SortierKonfiguration konfiguration) throws IOException {
+        Random r = new Random(DateinamenKorpus.SEED ^ anzahl);
+        String[] namen = DateinamenKorpus.erzeuge(profil, anzahl);
+
+        Set<String> unterordner = new LinkedHashSet<>();
+        List<String> kategorien = konfiguration.kategorien();
+        for (int i = 0; i < vorhandeneOrdner && i < kategorien.size(); i++) {
+            unterordner.add(kategorien.get(i));
+            Files.createDirectories(ordner.resolve(kategorien.get(i)));
+        }
+
+        long bytes = 0;
+        int kollisionen = 0;
+        for (int i = 0; i < anzahl; i++) {
+            String name = ersatz(ordner, kuerze(namen[i], i), i);
+            long groesse = groesse(r);
+            FileTime zeit = FileTime.fromMillis(BEZUG_MS - (long) (r.nextDouble() * JAHR_MS));
+            lege(ordner.resolve(name), groesse, zeit);
+            bytes += groesse;
+
+            if (kollisionProzent > 0 && r.nextInt(100) < kollisionProzent
+                    && name.getBytes(StandardCharsets.UTF_8).length <= MAX_KOLLISION_BYTES) {
+                String kategorie = konfiguration.kategorie(name);
+                if (unterordner.contains(kategorie)) {
+                    lege(ordner.resolve(kategorie).resolve(name), groesse, zeit);
+                    kollisionen++;
+                }
+            }
+        }
+        return new Ordner(ordner, anzahl, bytes, kollisionen, Set.copyOf(unterordner));
+    }
+
+    /**
+     * Log-gleichverteilte Größe zwischen minGroesse und maxGroesse.
+     */
+    private long groesse(Random r) {
+        if (minGroesse == maxGroesse) {
+            return minGroesse;
+        }
+        double a = Math.log(minGroesse + 1.0);
+        double b = Math.log(maxGroesse + 1.0);
+        long g = (long) Math.exp(a + r.nextDouble() * (b - a)) - 1;
+        return Math.max(minGroesse, Math.min(maxGroesse, g));
+    }
+
+    private static void lege(Path datei, long groesse, FileTime zeit) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(datei.toFile(), "rw")) {
+            f.setLength(groesse);
+        }
+        Files.setLastModifiedTime(datei, zeit);
+    }
+
+    /**
+     * Lange Namen aus dem Korpus können (mit Umlauten) mehr als 255 Bytes haben;
+     * sie werden durch einen kurzen, weiterhin eindeutigen Namen mit derselben Endung ersetzt.
+     */
+    private static String kuerze(String name, int i) {
+        if (name.getBytes(StandardCharsets.UTF_8).length <= MAX_NAME_BYTES) {
+            return name;
+        }
+        return "lang-" + i + endung(name);
+    }
+
+    /**
+     * Ohne UTF-8-Locale (z. B. LANG=C) lassen sich Umlaute und CJK-Zeichen nicht als
+     * Dateiname darstellen; dann wird ein ASCII-Name mit derselben Endung benutzt.
+     */
+    private static String ersatz(Path ordner, String name, int i) {
+        try {
+            ordner.resolve(name);
+            return name;
+        } catch (InvalidPathException e) {
+            return "datei-" + i + endung(name);
+        }
+    }
+
+    private static String endung(String name) {
+        int punkt = name.lastIndexOf('.');
+        return punkt > 0 ? name.substring(punkt) : "";
+    }
+}
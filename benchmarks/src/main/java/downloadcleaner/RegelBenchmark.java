@@ -0,0 +1,117 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Vergleicht die Regeln aus config.txt (siehe Regelwerk) mit einer einfachen linearen
+ * Prüfung und mit der reinen Endungs-Zuordnung.
+ *
+ * - nurEndungen: Konfiguration ohne Regeln, als Untergrenze.
+ * - linear:      jede Regel nacheinander mit java.util.regex (Matcher.find), die
+ *                erste passende gewinnt, sonst der Endungs-Index. So würde man es
+ *                ohne Regelwerk schreiben.
+ * - kompiliert:  dieselben Regeln über KategorieKonfiguration.bestimmeKategorie(),
+ *                also Endungsmasken plus ein gemeinsamer Automat für alle Muster.
+ *
+ * Die Regeln prüfen nur Namen (Größe und Alter sind einfache Vergleiche und
+ * brauchen Dateiattribute).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegelBenchmark {
+
+    /** Bedingung und Ziel je Regel; name= wird als Glob, regex= direkt übernommen. */
+    private static final String[][] REGELN = {
+            {"name=*invoice*.pdf", "Rechnungen"},
+            {"name=Rechnung*.pdf", "Rechnungen"},
+            {"name=Screenshot*", "Screenshots"},
+            {"name=IMG_*.jp*g", "Fotos"},
+            {"regex=^scan\\d+", "Scans"},
+            {"name=*.part[0-9].rar", "Archive/Teile"},
+            {"regex=setup.*\\.(exe|msi)$", "Installer"},
+            {"regex=bewerbung", "Bewerbungen"},
+            {"regex=report\\d+\\.(pdf|docx)$", "Berichte"},
+            {"name=*.tar.*", "Archive/Tar"},
+            {"regex=\\(\\d+\\)", "Kopien"},
+            {"name=download*.tmp", "Temp"},
+            {"regex=^data\\d{3,}\\.", "Daten"},
+            {"name=*.min.js", "Web"},
+            {"name=*präsentation*", "Präsentationen"},
+            {"regex=_2024", "2024"},
+    };
+
+    @Param({"1", "4", "16"})
+    public int anzahl;
+
+    @Param({"GEMISCHT", "LANG"})
+    public DateinamenKorpus.Profil profil;
+
+    private DownloadCleaner.KategorieKonfiguration ohneRegeln;
+    private DownloadCleaner.KategorieKonfiguration mitRegeln;
+    private Pattern[] muster;
+    private String[] ziele;
+    private String[] namen;
+    private int position;
+
+    @Setup
+    public void vorbereiten() throws IOException {
+        StringBuilder text = new StringBuilder(DateinamenKorpus.standardKonfiguration());
+        muster = new Pattern[anzahl];
+        ziele = new String[anzahl];
+        for (int i = 0; i < anzahl; i++) {
+            String bedingung = REGELN[i][0];
+            String wert = bedingung.substring(bedingung.indexOf('=') + 1);
+            String regex = bedingung.startsWith("name=") ? NamensAutomat.ausGlob(wert) : wert;
+            muster[i] = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            ziele[i] = REGELN[i][1];
+            text.append('\n').append(Regelwerk.PRAEFIX).append(' ').append(bedingung)
+                    .append(" -> ").append(REGELN[i][1]);
+        }
+        ohneRegeln = KlassifizierungBenchmark.ladeKonfiguration(DateinamenKorpus.standardKonfiguration());
+        mitRegeln = KlassifizierungBenchmark.ladeKonfiguration(text.toString());
+        namen = DateinamenKorpus.erzeuge(profil, KlassifizierungBenchmark.KORPUS_GROESSE);
+    }
+
+    private String naechsterName() {
+        return namen[position++ & (KlassifizierungBenchmark.KORPUS_GROESSE - 1)];
+    }
+
+    @Benchmark
+    public String nurEndungen() {
+        return ohneRegeln.bestimmeKategorie(naechsterName());
+    }
+
+    @Benchmark
+    public String linear() {
+        String name = naechsterName();
+        for (int i = 0; i < muster.length; i++) {
+            if (muster[i].matcher(name).find()) {
+                return ziele[i];
+            }
+        }
+        return ohneRegeln.bestimmeKategorie(name);
+    }
+
+    @Benchmark
+    public String kompiliert() {
+        return mitRegeln.bestimmeKategorie(naechsterName());
+    }
+}
@@ -0,0 +1,109 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Misst das Zählen je Kategorie mit realistisch verteilten Kategorien.
+ *
+ * - erhoehe:            Zählen über den Namen (HashMap-Zugriff pro Datei).
+ * - erhoeheId:          Zählen über die Kategorie-Id (nur long[]).
+ * - klassifiziereUndZaehle: bestimmeKategorieId() plus zaehle(), also der Weg einer
+ *                       Datei bei der Analyse ohne Top-Listen.
+ * - gestreift:          GestreifterZaehler mit 4 Threads gleichzeitig.
+ *
+ * Die Kategorien werden vorab aus dem gemischten Korpus bestimmt, damit bei den
+ * ersten beiden Messungen nur das Zählen gemessen wird. Mit "-prof gc" zeigt
+ * gc.alloc.rate.norm überall ≈ 0 B/op: pro gezählter Datei wird kein Objekt angelegt.
+ * (Beim Namen nur, weil die Ids klein genug für den Integer-Cache sind; dafür kostet
+ * dort der HashMap-Zugriff.)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZaehlerBenchmark {
+
+    private static final int MASKE = KlassifizierungBenchmark.KORPUS_GROESSE - 1;
+
+    private DownloadCleaner.KategorieKonfiguration kategorien;
+    private String[] namen;
+    private String[] kategorieJeDatei;
+    private int[] idJeDatei;
+    private DownloadCleaner.KategorieZaehler zaehler;
+    private int position;
+
+    /**
+     * Gemeinsamer Zähler aller Threads für gestreift().
+     */
+    @State(Scope.Benchmark)
+    public static class Gemeinsam {
+        GestreifterZaehler zaehler;
+
+        @Setup(Level.Iteration)
+        public void neuerZaehler() throws IOException {
+            zaehler = new GestreifterZaehler(
+                    KlassifizierungBenchmark.ladeKonfiguration(DateinamenKorpus.grosseKonfiguration()));
+        }
+    }
+
+    @Setup
+    public void vorbereiten() throws IOException {
+        kategorien = KlassifizierungBenchmark.ladeKonfiguration(DateinamenKorpus.grosseKonfiguration());
+        namen = DateinamenKorpus.erzeuge(DateinamenKorpus.Profil.GEMISCHT,
+                KlassifizierungBenchmark.KORPUS_GROESSE);
+        kategorieJeDatei = new String[namen.length];
+        idJeDatei = new int[namen.length];
+        for (int i = 0; i < namen.length; i++) {
+            idJeDatei[i] = kategorien.bestimmeKategorieId(namen[i]);
+            kategorieJeDatei[i] = kategorien.kategorieName(idJeDatei[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void neuerZaehler() {
+        zaehler = new DownloadCleaner.KategorieZaehler(kategorien);
+    }
+
+    @Benchmark
+    public DownloadCleaner.KategorieZaehler erhoehe() {
+        zaehler.erhoehe(kategorieJeDatei[position++ & MASKE]);
+        return zaehler;
+    }
+
+    @Benchmark
+    public DownloadCleaner.KategorieZaehler erhoeheId() {
+        zaehler.erhoehe(idJeDatei[position++ & MASKE]);
+        return zaehler;
+    }
+
+    @Benchmark
+    public DownloadCleaner.KategorieZaehler klassifiziereUndZaehle() {
+        int i = position++ & MASKE;
+        zaehler.zaehle(kategorien.bestimmeKategorieId(namen[i]), i);
+        return zaehler;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public GestreifterZaehler gestreift(Gemeinsam gemeinsam) {
+        int i = position++ & MASKE;
+        gemeinsam.zaehler.zaehle(idJeDatei[i], i);
+        return gemeinsam.zaehler;
+    }
+}
@@ -0,0 +1,326 @@
+package downloadcleaner;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gibt die Kennzahlen einer Analyse (KategorieZaehler mit KategorieStatistik je
+ * Kategorie) aus: ausführlich in der Konsole und auf Wunsch maschinenlesbar als
+ * analyse.json und/oder analyse.csv im Arbeitsordner.
+ *
+ * Die Dateiformate werden mit -Ddownloadcleaner.bericht=json, =csv oder =json,csv
+ * eingeschaltet. Beide Dateien werden bei jeder Analyse überschrieben.
+ *
+ * analyse.csv hat ein festes "langes" Format (eine Kennzahl pro Zeile), damit
+ * Überwachungs- und Tabellenprogramme es ohne Kenntnis der Kategorien einlesen können:
+ *   kategorie,metrik,von,bis,wert,pfad
+ * metrik ist anzahl, bytes, groesse (von/bis in Bytes), alter (von/bis in Tagen,
+ * bis leer = offen), groesste bzw. aelteste (von = Rang, wert = Bytes bzw.
+ * Änderungszeit in ms, pfad = Datei).
+ */
+final class AnalyseBericht {
+
+    /**
+     * Name der System-Property für die Dateiformate.
+     */
+    static final String PROPERTY = "downloadcleaner.bericht";
+
+    static final String JSON_DATEI = "analyse.json";
+    static final String CSV_DATEI = "analyse.csv";
+
+    /**
+     * So viele Einträge der Top-Listen erscheinen in der Konsole.
+     */
+    private static final int KONSOLE_TOP = 3;
+
+    private static final String[] EINHEITEN = {"B", "KB", "MB", "GB", "TB", "PB", "EB"};
+
+    private AnalyseBericht() {
+    }
+
+    /**
+     * Gibt Größe, Alter und die größten/ältesten Dateien je Kategorie in der Konsole aus.
+     *
+     * @param ordner  analysierter Ordner (Pfade werden relativ dazu angezeigt).
+     * @param zaehler Ergebnis der Analyse.
+     */
+    static void drucke(Path ordner, DownloadCleaner.KategorieZaehler zaehler) {
+        if (zaehler.statistiken().isEmpty()) {
+            return;
+        }
+        System.out.println("Größe und Alter pro Kategorie:");
+        for (Map.Entry<String, KategorieStatistik> e : zaehler.statistiken().entrySet()) {
+            KategorieStatistik st = e.getValue();
+            System.out.println("  " + e.getKey() + ": " + st.anzahl + " Dateien, "
+                    + DuplikatSuche.formatiereGroesse(st.bytes));
+
+            StringBuilder zeile = new StringBuilder("    Größe:   ");
+            for (int i = 0; i < st.groessen.length; i++) {
+                if (st.groessen[i] > 0) {
+                    zeile.append(groessenKlasseText(i)).append(": ").append(st.groessen[i]).append("  ");
+                }
+            }
+            System.out.println(zeile.toString().stripTrailing());
+
+            zeile = new StringBuilder("    Alter:   ");
+            for (int i = 0; i < st.alter.length; i++) {
+                if (st.alter[i] > 0) {
+                    zeile.append(altersKlasseText(i)).append(": ").append(st.alter[i]).append("  ");
+                }
+            }
+            System.out.println(zeile.toString().stripTrailing());
+
+            List<KategorieStatistik.Eintrag> groesste = st.groesste();
+            zeile = new StringBuilder("    Größte:  ");
+            for (int i = 0; i < Math.min(KONSOLE_TOP, groesste.size()); i++) {
+                KategorieStatistik.Eintrag d = groesste.get(i);
+                zeile.append(i > 0 ? ", " : "").append(relativ(ordner, d.pfad))
+                        .append(" (").append(DuplikatSuche.formatiereGroesse(d.groesse)).append(')');
+            }
+            System.out.println(zeile);
+
+            List<KategorieStatistik.Eintrag> aelteste = st.aelteste();
+            zeile = new StringBuilder("    Älteste: ");
+            for (int i = 0; i < Math.min(KONSOLE_TOP, aelteste.size()); i++) {
+                KategorieStatistik.Eintrag d = aelteste.get(i);
+                zeile.append(i > 0 ? ", " : "").append(relativ(ordner, d.pfad))
+                        .append(" (").append(datum(d.geaendertMs)).append(')');
+            }
+            System.out.println(zeile);
+        }
+    }
+
+    /**
+     * Schreibt analyse.json und/oder analyse.csv, wenn per System-Property gewünscht.
+     * Schreibfehler werden gemeldet, brechen die Analyse aber nicht ab.
+     *
+     * @param ordner  analysierter Ordner (Ziel der Dateien).
+     * @param zaehler Ergebnis der Analyse.
+     */
+    static void schreibeDateien(Path ordner, DownloadCleaner.KategorieZaehler zaehler) {
+        String formate = System.getProperty(PROPERTY, "").toLowerCase();
+        try {
+            if (formate.contains("json")) {
+                Path datei = ordner.resolve(JSON_DATEI);
+                schreibeJson(datei, ordner, zaehler);
+                System.out.println("Bericht (JSON): " + datei.toAbsolutePath());
+            }
+            if (formate.contains("csv")) {
+                Path datei = ordner.resolve(CSV_DATEI);
+                schreibeCsv(datei, zaehler);
+                System.out.println("Bericht (CSV):  " + datei.toAbsolutePath());
+            }
+        } catch (IOException e) {
+            System.out.println("Bericht konnte nicht geschrieben werden: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Schreibt den Bericht als JSON-Objekt.
+     *
+     * @param datei   Zieldatei.
+     * @param ordner  analysierter Ordner.
+     * @param zaehler Ergebnis der Analyse.
+     * @throws IOException bei Schreibfehlern.
+     */
+    static void schreibeJson(Path datei, Path ordner, DownloadCleaner.KategorieZaehler zaehler) throws IOException {
+        long dateien = 0;
+        long bytes = 0;
+        for (KategorieStatistik st : zaehler.statistiken().values()) {
+            dateien += st.anzahl;
+            bytes += st.bytes;
+        }
+
+        try (BufferedWriter out = Files.newBufferedWriter(datei, StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"ordner\": " + text(ordner.toAbsolutePath().toString()) + ",\n");
+            out.write("  \"erstellt\": \"" + Instant.now() + "\",\n");
+            out.write("  \"dateien\": " + dateien + ",\n");
+            out.write("  \"bytes\": " + bytes + ",\n");
+            out.write("  \"kategorien\": {");
+            boolean ersteKategorie = true;
+            for (Map.Entry<String, KategorieStatistik> e : zaehler.statistiken().entrySet()) {
+                KategorieStatistik st = e.getValue();
+                out.write(ersteKategorie ? "\n" : ",\n");
+                ersteKategorie = false;
+                out.write("    " + text(e.getKey()) + ": {\n");
+                out.write("      \"anzahl\": " + st.anzahl + ",\n");
+                out.write("      \"bytes\": " + st.bytes + ",\n");
+
+                out.write("      \"groessen\": [");
+                String trenner = "";
+                for (int i = 0; i < st.groessen.length; i++) {
+                    if (st.groessen[i] > 0) {
+                        out.write(trenner + "{\"von\": " + KategorieStatistik.groessenUntergrenze(i)
+                                + ", \"bis\": " + groessenObergrenze(i) + ", \"anzahl\": " + st.groessen[i] + "}");
+                        trenner = ", ";
+                    }
+                }
+                out.write("],\n");
+
+                out.write("      \"alterTage\": [");
+                trenner = "";
+                for (int i = 0; i < st.alter.length; i++) {
+                    if (st.alter[i] > 0) {
+                        Integer bis = altersObergrenze(i);
+                        out.write(trenner + "{\"von\": " + altersUntergrenze(i) + ", \"bis\": "
+                                + (bis == null ? "null" : bis) + ", \"anzahl\": " + st.alter[i] + "}");
+                        trenner = ", ";
+                    }
+                }
+                out.write("],\n");
+
+                out.write("      \"groesste\": ");
+                schreibeEintraege(out, st.groesste());
+                out.write(",\n      \"aelteste\": ");
+                schreibeEintraege(out, st.aelteste());
+                out.write("\n    }");
+            }
+            out.write(ersteKategorie ? "}\n" : "\n  }\n");
+            out.write("}\n");
+        }
+    }
+
+    private static void schreibeEintraege(BufferedWriter out, List<KategorieStatistik.Eintrag> eintraege)
+            throws IOException {
+        out.write("[");
+        for (int i = 0; i < eintraege.size(); i++) {
+            KategorieStatistik.Eintrag d = eintraege.get(i);
+            out.write((i > 0 ? "," : "") + "\n        {\"pfad\": " + text(d.pfad) + ", \"bytes\": " + d.groesse
+                    + ", \"geaendert\": \"" + Instant.ofEpochMilli(d.geaendertMs) + "\"}");
+        }
+        out.write(eintraege.isEmpty() ? "]" : "\n      ]");
+    }
+
+    /**
+     * Schreibt den Bericht im langen CSV-Format (siehe Klassenbeschreibung).
+     *
+     * @param datei   Zieldatei.
+     * @param zaehler Ergebnis der Analyse.
+     * @throws IOException bei Schreibfehlern.
+     */
+    static void schreibeCsv(Path datei, DownloadCleaner.KategorieZaehler zaehler) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(datei, StandardCharsets.UTF_8)) {
+            out.write("kategorie,metrik,von,bis,wert,pfad\n");
+            for (Map.Entry<String, KategorieStatistik> e : zaehler.statistiken().entrySet()) {
+                String k = csv(e.getKey());
+                KategorieStatistik st = e.getValue();
+                out.write(k + ",anzahl,,," + st.anzahl + ",\n");
+                out.write(k + ",bytes,,," + st.bytes + ",\n");
+                for (int i = 0; i < st.groessen.length; i++) {
+                    if (st.groessen[i] > 0) {
+                        out.write(k + ",groesse," + KategorieStatistik.groessenUntergrenze(i) + ","
+                                + groessenObergrenze(i) + "," + st.groessen[i] + ",\n");
+                    }
+                }
+                for (int i = 0; i < st.alter.length; i++) {
+                    if (st.alter[i] > 0) {
+                        Integer bis = altersObergrenze(i);
+                        out.write(k + ",alter," + altersUntergrenze(i) + "," + (bis == null ? "" : bis)
+                                + "," + st.alter[i] + ",\n");
+                    }
+                }
+                List<KategorieStatistik.Eintrag> groesste = st.groesste();
+                for (int i = 0; i < groesste.size(); i++) {
+                    out.write(k + ",groesste," + (i + 1) + ",," + groesste.get(i).groesse + ","
+                            + csv(groesste.get(i).pfad) + "\n");
+                }
+                List<KategorieStatistik.Eintrag> aelteste = st.aelteste();
+                for (int i = 0; i < aelteste.size(); i++) {
+                    out.write(k + ",aelteste," + (i + 1) + ",," + aelteste.get(i).geaendertMs + ","
+                            + csv(aelteste.get(i).pfad) + "\n");
+                }
+            }
+        }
+    }
+
+    private static long groessenObergrenze(int klasse) {
+        return klasse >= KategorieStatistik.GROESSEN_KLASSEN - 1
+                ? Long.MAX_VALUE : KategorieStatistik.groessenUntergrenze(klasse + 1);
+    }
+
+    private static int altersUntergrenze(int klasse) {
+        return klasse == 0 ? 0 : KategorieStatistik.ALTER_GRENZEN_TAGE[klasse - 1];
+    }
+
+    private static Integer altersObergrenze(int klasse) {
+        return klasse < KategorieStatistik.ALTER_GRENZEN_TAGE.length ? KategorieStatistik.ALTER_GRENZEN_TAGE[klasse] : null;
+    }
+
+    private static String groessenKlasseText(int klasse) {
+        if (klasse == 0) {
+            return "leer";
+        }
+        return kurzeGroesse(KategorieStatistik.groessenUntergrenze(klasse)) + "–"
+                + kurzeGroesse(groessenObergrenze(klasse));
+    }
+
+    private static String altersKlasseText(int klasse) {
+        Integer bis = altersObergrenze(klasse);
+        if (klasse == 0) {
+            return "< 1 Tag";
+        }
+        return bis == null ? "> " + altersUntergrenze(klasse) + " Tage"
+                : altersUntergrenze(klasse) + "–" + bis + " Tage";
+    }
+
+    /**
+     * Zweierpotenzen kurz und ohne Nachkommastellen: 1024 → "1 KB", 4096 → "4 KB".
+     */
+    private static String kurzeGroesse(long bytes) {
+        int i = 0;
+        while (bytes >= 1024 && bytes % 1024 == 0 && i < EINHEITEN.length - 1) {
+            bytes /= 1024;
+            i++;
+        }
+        return bytes + " " + EINHEITEN[i];
+    }
+
+    private static String datum(long ms) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(ms), ZoneId.systemDefault()).toString();
+    }
+
+    private static String relativ(Path ordner, String pfad) {
+        try {
+            return ordner.relativize(Path.of(pfad)).toString();
+        } catch (IllegalArgumentException e) {
+            return pfad;
+        }
+    }
+
+    /**
+     * JSON-String mit Anführungszeichen und den nötigen Escapes.
+     */
+    private static String text(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * CSV-Feld; in Anführungszeichen, wenn es Komma, Anführungszeichen oder Zeilenumbruch enthält.
+     */
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,323 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Verschiebt Dateien in ihren Zielordner, auch wenn dieser auf einem anderen
+ * Dateisystem liegt (z. B. Archive/ als symbolischer Link auf eine zweite Platte).
+ *
+ * Liegt das Ziel auf demselben Dateisystem, ist ein Verschieben nur ein Umbenennen
+ * (Files.move). Sonst würde Files.move intern kopieren und löschen: ohne Fortschritt,
+ * ohne Fortsetzung und mit einer halb geschriebenen Zieldatei bei einem Abbruch.
+ * Deshalb kopiert DateiUmzug in diesem Fall selbst:
+ * - Kopiert wird mit FileChannel.transferTo in Blöcken zu BLOCK_GROESSE. Das
+ *   Betriebssystem kann die Daten dabei direkt zwischen den Dateien übertragen,
+ *   ohne sie in den Java-Heap zu holen.
+ * - Geschrieben wird in eine versteckte Teildatei neben dem Ziel
+ *   (".name.<größe>-<änderungszeit>.dcpart"). Nach jedem Block wird sie mit force()
+ *   festgeschrieben. Erst die vollständige Kopie wird in einem Schritt auf den
+ *   richtigen Namen umbenannt; danach wird die Quelle gelöscht.
+ * - Nach einem Abbruch liegt die Quelle noch an ihrem Platz. Beim nächsten Lauf wird
+ *   die Teildatei wiedererkannt (Größe und Änderungszeit der Quelle stecken im Namen)
+ *   und die Kopie ab dem letzten vollständigen Block fortgesetzt.
+ * - Dateien ab GROSS_AB Bytes laufen in einer eigenen Warteschlange mit einem eigenen
+ *   Thread. Die übrigen Dateien werden währenddessen weiter sortiert. Für große
+ *   Dateien wird etwa jede Sekunde der Fortschritt mit Bytes pro Sekunde gemeldet.
+ *
+ * Mit einer Drossel (siehe Drossel) werden Umbenennungen und Kopien gebremst. Dann
+ * laufen alle Kopien über Dateisystemgrenzen – auch kleine – im eigenen Thread,
+ * damit Umbenennungen nie auf eine Kopie warten; kopiert wird in kleinen Schritten,
+ * vor denen jeweils auf den Bytes-Eimer gewartet wird.
+ *
+ * Eine Bewegung gilt erst als erledigt, wenn die Datei am Ziel liegt. Dann wird der
+ * übergebene Erledigt-Rückruf aufgerufen (Ausgabe, Undo-Journal) – bei großen
+ * Dateien aus dem eigenen Thread. abschliessen() wartet auf alle großen Dateien.
+ *
+ * Fehler im eigenen Thread, Fortschritt und Zusammenfassung gehen an den
+ * SortierBeobachter (fehler() bzw. meldung()), nicht auf die Konsole.
+ */
+final class DateiUmzug implements AutoCloseable {
+
+    /**
+     * Ab dieser Größe werden Kopien über Dateisystemgrenzen im Hintergrund ausgeführt.
+     */
+    static final long GROSS_AB = 64L * 1024 * 1024;
+
+    /**
+     * Größe eines Kopierblocks; nach jedem Block wird die Teildatei festgeschrieben.
+     */
+    static final long BLOCK_GROESSE = 64L * 1024 * 1024;
+
+    /**
+     * Endung der Teildateien unvollständiger Kopien.
+     */
+    static final String TEIL_ENDUNG = ".dcpart";
+
+    private static final long FORTSCHRITT_NS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Wird aufgerufen, sobald eine Datei an ihrem endgültigen Ziel liegt.
+     */
+    @FunctionalInterface
+    interface Erledigt {
+        void fertig(Path ziel) throws IOException;
+    }
+
+    private final Path downloadDir;
+    private final ZielNamen zielNamen;
+    private final Drossel drossel;
+    private final SortierBeobachter beobachter;
+    private final FileStore quellSpeicher;
+    private final Map<Path, Boolean> fremderSpeicher = new ConcurrentHashMap<>();
+    private final ExecutorService grosseDateien =
+            Executors.newSingleThreadExecutor(Thread.ofPlatform().name("umzug-gross").factory());
+
+    private final AtomicInteger kopierteDateien = new AtomicInteger();
+    private final AtomicLong kopierteBytes = new AtomicLong();
+    private final AtomicLong kopierdauerNs = new AtomicLong();
+    private final AtomicInteger fehlgeschlagen = new AtomicInteger();
+
+    /**
+     * @param downloadDir Ordner, aus dem verschoben wird.
+     * @param zielNamen   Namensvergabe bei Namensgleichheit oder null (Ziel ersetzen).
+     * @param drossel     Grenzen für Operationen und Bytes oder null (ungebremst).
+     * @param beobachter  erhält Fehler im Hintergrund sowie Fortschritt und Zusammenfassung der Kopien.
+     * @throws IOException wenn das Dateisystem des Ordners nicht bestimmt werden kann.
+     */
+    DateiUmzug(Path downloadDir, ZielNamen zielNamen, Drossel drossel, SortierBeobachter beobachter)
+            throws IOException {
+        this.downloadDir = downloadDir;
+        this.zielNamen = zielNamen;
+        this.drossel = drossel;
+        this.beobachter = beobachter;
+        this.quellSpeicher = Files.getFileStore(downloadDir);
+    }
+
+    /**
+     * Verschiebt eine Datei. Auf demselben Dateisystem und bei kleinen Dateien ist die
+     * Bewegung bei Rückkehr abgeschlossen; große Dateien (mit Drossel: alle Dateien) auf
+     * ein anderes Dateisystem werden in die Warteschlange gestellt. Fehler dort gehen an
+     * beobachter.fehler().
+     *
+     * @param quelle   zu verschiebende Datei.
+     * @param ziel     gewünschtes Ziel.
+     * @param erledigt Rückruf mit dem tatsächlichen Ziel.
+     * @throws IOException wenn eine sofort ausgeführte Bewegung fehlschlägt.
+     */
+    void verschiebe(Path quelle, Path ziel, Erledigt erledigt) throws IOException {
+        if (!aufFremdemSpeicher(ziel.getParent())) {
+            if (drossel != null) {
+                drossel.warteAufOperation(Drossel.Spur.UMBENENNEN);
+            }
+            long start = System.nanoTime();
+            Path tatsaechlich;
+            if (zielNamen != null) {
+                tatsaechlich = zielNamen.verschiebe(quelle, ziel);
+            } else {
+                Files.move(quelle, ziel, StandardCopyOption.REPLACE_EXISTING);
+                tatsaechlich = ziel;
+            }
+            long dauer = System.nanoTime() - start;
+            erledigt.fertig(tatsaechlich);
+            if (drossel != null) {
+                drossel.erledigt(Drossel.Spur.UMBENENNEN, 0);
+                drossel.gemessen(Drossel.Spur.UMBENENNEN, dauer);
+            }
+            return;
+        }
+
+        BasicFileAttributes attrs = Files.readAttributes(quelle, BasicFileAttributes.class);
+        boolean gross = attrs.size() >= GROSS_AB;
+        if (!gross && drossel == null) {
+            kopiere(quelle, attrs, ziel, erledigt, false);
+            return;
+        }
+        grosseDateien.submit(() -> {
+            try {
+                kopiere(quelle, attrs, ziel, erledigt, gross);
+            } catch (IOException e) {
+                fehlgeschlagen.incrementAndGet();
+                beobachter.fehler(quelle, e);
+            }
+        });
+    }
+
+    private boolean aufFremdemSpeicher(Path ordner) throws IOException {
+        Boolean fremd = fremderSpeicher.get(ordner);
+        if (fremd == null) {
+            fremd = !Files.getFileStore(ordner).equals(quellSpeicher);
+            fremderSpeicher.put(ordner, fremd);
+        }
+        return fremd;
+    }
+
+    /**
+     * Kopiert über die Teildatei, benennt sie um und löscht die Quelle.
+     */
+    private void kopiere(Path quelle, BasicFileAttributes attrs, Path ziel, Erledigt erledigt,
+                         boolean fortschritt) throws IOException {
+        long groesse = attrs.size();
+        String name = ziel.getFileName().toString();
+        Path teil = ziel.resolveSibling("." + name + "." + groesse + "-"
+                + attrs.lastModifiedTime().toMillis() + TEIL_ENDUNG);
+
+        if (drossel != null) {
+            drossel.warteAufOperation(Drossel.Spur.KOPIEREN);
+        }
+        long start = System.nanoTime();
+        long kopiert;
+        try (FileChannel ein = FileChannel.open(quelle, StandardOpenOption.READ);
+             FileChannel aus = FileChannel.open(teil, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+            // Nur vollständige Blöcke sind sicher festgeschrieben
+            long position = Math.min(aus.size() / BLOCK_GROESSE * BLOCK_GROESSE, groesse);
+            if (position > 0) {
+                beobachter.meldung(downloadDir, "Setze Kopie von " + name + " fort ab "
+                        + DuplikatSuche.formatiereGroesse(position) + ".");
+            }
+            entferneAlteTeildateien(ziel, teil);
+            aus.truncate(position);
+            aus.position(position);
+            long startPosition = position;
+
+            long letzteMeldung = start;
+            while (position < groesse) {
+                long blockEnde = Math.min(position + BLOCK_GROESSE, groesse);
+                while (position < blockEnde) {
+                    long schritt = blockEnde - position;
+                    long schrittStart = 0;
+                    if (drossel != null) {
+                        schritt = Math.min(schritt, drossel.kopierSchritt());
+                        drossel.warteAufBytes(schritt);
+                        schrittStart = System.nanoTime();
+                    }
+                    long n = ein.transferTo(position, schritt, aus);
+                    if (n <= 0) {
+                        throw new IOException("Quelldatei wurde während des Kopierens verkürzt");
+                    }
+                    position += n;
+                    if (drossel != null) {
+                        drossel.gemessen(Drossel.Spur.KOPIEREN, System.nanoTime() - schrittStart);
+                    }
+                }
+                aus.force(false);
+
+                long jetzt = System.nanoTime();
+                if (fortschritt && jetzt - letzteMeldung >= FORTSCHRITT_NS) {
+                    letzteMeldung = jetzt;
+                    beobachter.meldung(downloadDir, "  " + name + ": " + DuplikatSuche.formatiereGroesse(position)
+                            + " von " + DuplikatSuche.formatiereGroesse(groesse) + " ("
+                            + proSekunde(position - startPosition, jetzt - start) + ")");
+                }
+            }
+            aus.force(true);
+            kopiert = position - startPosition;
+        }
+        Files.setLastModifiedTime(teil, attrs.lastModifiedTime());
+
+        Path tatsaechlich;
+        if (zielNamen != null) {
+            // Umbenennen im selben Ordner, ohne eine vorhandene Datei zu ersetzen
+            tatsaechlich = zielNamen.vergebe(ziel, z -> Files.move(teil, z));
+        } else {
+            Files.move(teil, ziel, StandardCopyOption.ATOMIC_MOVE);
+            tatsaechlich = ziel;
+        }
+        Files.delete(quelle);
+
+        long dauer = System.nanoTime() - start;
+        kopierteDateien.incrementAndGet();
+        kopierteBytes.addAndGet(kopiert);
+        kopierdauerNs.addAndGet(dauer);
+        if (drossel != null) {
+            drossel.erledigt(Drossel.Spur.KOPIEREN, kopiert);
+        }
+        if (fortschritt) {
+            beobachter.meldung(downloadDir, "  " + name + ": fertig, " + DuplikatSuche.formatiereGroesse(kopiert)
+                    + " in " + TimeUnit.NANOSECONDS.toMillis(dauer) + " ms (" + proSekunde(kopiert, dauer) + ")");
+        }
+        erledigt.fertig(tatsaechlich);
+    }
+
+    /**
+     * Löscht Teildateien zum selben Zielnamen, die zu einer anderen Version der
+     * Quelle gehören (andere Größe oder Änderungszeit) und nie fortgesetzt würden.
+     *
+     * Verglichen wird der ganze Name ".name.größe-zeit.dcpart". Ein bloßes Präfix
+     * würde beim Ziel "foo" auch die Teildatei von "foo.tar" treffen, die vielleicht
+     * gerade im Hintergrund kopiert wird.
+     */
+    private static void entferneAlteTeildateien(Path ziel, Path aktuelleTeildatei) throws IOException {
+        Pattern muster = Pattern.compile("\\." + Pattern.quote(ziel.getFileName().toString())
+                + "\\.\\d+--?\\d+" + Pattern.quote(TEIL_ENDUNG));
+        try (DirectoryStream<Path> alte = Files.newDirectoryStream(ziel.getParent(),
+                p -> muster.matcher(p.getFileName().toString()).matches())) {
+            for (Path p : alte) {
+                if (!p.equals(aktuelleTeildatei)) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    private static String proSekunde(long bytes, long ns) {
+        if (ns <= 0) {
+            return "-";
+        }
+        return DuplikatSuche.formatiereGroesse((long) (bytes * 1e9 / ns)) + "/s";
+    }
+
+    /**
+     * Wartet, bis alle großen Dateien fertig sind, und meldet eine Zusammenfassung der
+     * Kopien über Dateisystemgrenzen (falls es welche gab).
+     */
+    void abschliessen() {
+        grosseDateien.shutdown();
+        try {
+            while (!grosseDateien.awaitTermination(1, TimeUnit.MINUTES)) {
+                beobachter.meldung(downloadDir, "Warte auf laufende Kopien großer Dateien ...");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (kopierteDateien.get() > 0) {
+            beobachter.meldung(downloadDir, "Auf anderes Dateisystem kopiert: " + kopierteDateien.get() + " Dateien, "
+                    + DuplikatSuche.formatiereGroesse(kopierteBytes.get()) + " ("
+                    + proSekunde(kopierteBytes.get(), kopierdauerNs.get()) + ").");
+        }
+    }
+
+    /**
+     * @return Anzahl der Dateien, deren Kopie im Hintergrund fehlgeschlagen ist
+     *         (vollständig erst nach abschliessen()).
+     */
+    int fehlgeschlagen() {
+        return fehlgeschlagen.get();
+    }
+
+    /**
+     * Wie abschliessen(); für try-with-resources, falls der Lauf vorher abbricht.
+     */
+    @Override
+    public void close() {
+        if (!grosseDateien.isTerminated()) {
+            abschliessen();
+        }
+    }
+}
@@ -0,0 +1,1668 @@
+package downloadcleaner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DownloadCleaner
+ * ---------------
+ * Konsolenprogramm, das einen gewählten Ordner (typischerweise den Download-Ordner)
+ * analysiert und Dateien nach Typ in Unterordner sortiert.
+ *
+ * Geeignet als Schulungsprojekt zum Üben von:
+ * - Arbeiten mit java.nio.file (Path, Files, DirectoryStream)
+ * - Konsolenein- und -ausgabe (Scanner, System.out)
+ * - Kontrollstrukturen (if, switch, Schleifen)
+ * - Einfacher Objektorientierung (innere Hilfsklassen)
+ * - Konfiguration über Textdatei (config.txt)
+ * - Logging und einfachem Undo-Mechanismus
+ *
+ * Erweiterungen:
+ * - Trockenlauf-Modus (Dry-Run): speichert als Sortierplan, was verschoben würde;
+ *   der Plan kann später ohne neuen Scan ausgeführt werden (SortierPlan)
+ * - Konfigurierbare Kategorien über config.txt im gewählten Ordner
+ * - Log-Datei log.txt mit Zeitstempeln aller Verschiebe-Aktionen; ältere Teile werden
+ *   rotiert, komprimiert und über einen Index durchsuchbar gehalten (LogArchiv)
+ * - Undo-light: letzte Sortierung anhand undo_last_sort.txt teilweise rückgängig machen
+ * - Parallele Sortierung mit mehreren virtuellen Threads (VerschiebePipeline)
+ * - Rekursive Analyse ganzer Ordnerbäume mit einem ForkJoinPool (RekursiveAnalyse)
+ * - Nicht-interaktiver Betrieb für viele Ordner mit Exit-Code (Kommandozeile)
+ *
+ * Analyse, Sortierplan, Sortierung und Undo selbst stecken in der SortierEngine;
+ * das Menü fragt nur ab und gibt die Ergebnisse aus.
+ */
+public class DownloadCleaner {
+
+    /**
+     * Ein globaler Scanner zum Einlesen von Benutzereingaben über die Konsole.
+     */
+    private static final Scanner SCANNER = new Scanner(System.in);
+
+    /**
+     * Format für Zeitstempel im Log.
+     * Beispiel: 2025-11-21 02:30:45
+     */
+    static final DateTimeFormatter LOG_TS_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Kategorie-Konfiguration (Standardwerte + optionale config.txt).
+     * Wird nach Auswahl des Arbeitsordners geladen.
+     */
+    private static SortierKonfiguration KONFIGURATION;
+
+    /**
+     * Führt die Vorgänge des Menüs aus; ein KonsolenBeobachter gibt jede Datei aus.
+     */
+    private static final SortierEngine ENGINE = new SortierEngine();
+
+    /**
+     * Konsolenausgabe für die Engine und die Menüpunkte, die (noch) ohne Engine arbeiten.
+     */
+    private static final SortierBeobachter KONSOLE = new KonsolenBeobachter(true);
+
+    static {
+        ENGINE.beobachte(KONSOLE);
+    }
+
+    /**
+     * Einstiegspunkt des Programms.
+     * Ablauf:
+     * 1. Begrüßung ausgeben.
+     * 2. Standard-Download-Ordner vorschlagen und Benutzerfrage.
+     * 3. Kategorie-Konfiguration laden (inkl. config.txt, falls vorhanden).
+     * 4. Menüschleife anzeigen, bis Benutzer das Programm beendet.
+     *
+     * Mit Argumenten (z. B. "sort ~/Downloads") läuft das Programm ohne Menü, siehe
+     * Kommandozeile; der Exit-Code zeigt dann an, ob alle Ordner erfolgreich waren.
+     *
+     * @param args leer = Menü, sonst Befehl, Optionen und Ordner.
+     */
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            int exitCode = Kommandozeile.starte(args);
+            LogArchiv.abwarten(); // rotierte log.txt noch fertig komprimieren
+            System.exit(exitCode);
+        }
+
+        System.out.println("===========================================");
+        System.out.println("    DownloadCleaner – Schulungsprojekt");
+        System.out.println("===========================================\n");
+
+        // Standard-Download-Ordner ermitteln (z. B. C:\Users\<Name>\Downloads)
+        Path downloadDir = vorschlagDownloadOrdner();
+        // Benutzer entscheiden lassen, ob dieser Ordner genutzt werden soll
+        downloadDir = frageNachDownloadOrdner(downloadDir);
+
+        if (downloadDir == null) {
+            System.out.println("Programm wird beendet.");
+            return;
+        }
+
+        // Kategorien aus config.txt (falls vorhanden) oder Standard laden
+        KONFIGURATION = SortierKonfiguration.laden(downloadDir, true);
+        KONFIGURATION.warnungen().forEach(System.out::println);
+
+        // Hauptmenü-Schleife
+        boolean running = true;
+        while (running) {
+            System.out.println();
+            System.out.println("Hauptmenü");
+            System.out.println("---------");
+            System.out.println("1) Ordner analysieren");
+            System.out.println("2) Dateien nach Typ sortieren (normal)");
+            System.out.println("3) Trockenlauf: Sortierplan erstellen, keine Dateien verschieben");
+            System.out.println("4) Sortierung rückgängig machen (Undo-Journal, auch ältere Läufe)");
+            System.out.println("5) Dateien nach Typ sortieren (parallel, z. B. für Netzlaufwerke)");
+            System.out.println("6) Ordner rekursiv analysieren (inkl. Unterordner)");
+            System.out.println("7) Ordner überwachen und neue Dateien automatisch sortieren");
+            System.out.println("8) Duplikate suchen (gleicher Inhalt, inkl. Unterordner)");
+            System.out.println("9) Gespeicherten Sortierplan ausführen (aus Trockenlauf)");
+            System.out.println("10) Log durchsuchen (Verlauf einer Datei, Bewegungen eines Tages)");
+            System.out.println("0) Beenden");
+            System.out.print("Ihre Wahl: ");
+
+            String choice = SCANNER.nextLine().trim();
+
+            switch (choice) {
+                case "1":
+                    analysiereOrdner(downloadDir);
+                    break;
+                case "2":
+                    sortiereOrdner(downloadDir, false);
+                    break;
+                case "3":
+                    sortiereOrdner(downloadDir, true);
+                    break;
+                case "4":
+                    rueckgaengigMachen(downloadDir);
+                    break;
+                case "5":
+                    sortiereOrdnerParallel(downloadDir);
+                    break;
+                case "6":
+                    analysiereOrdnerRekursiv(downloadDir);
+                    break;
+                case "7":
+                    ueberwacheOrdner(downloadDir);
+                    break;
+                case "8":
+                    sucheDuplikate(downloadDir);
+                    break;
+                case "9":
+                    wendePlanAn(downloadDir);
+                    break;
+                case "10":
+                    durchsucheLog(downloadDir);
+                    break;
+                case "0":
+                    running = false;
+                    ENGINE.close();
+                    System.out.println("Auf Wiedersehen!");
+                    break;
+                default:
+                    System.out.println("Ungültige Eingabe. Bitte eine Zahl von 0 bis 10 wählen.");
+            }
+        }
+    }
+
+    /**
+     * Liefert einen Vorschlag für den Download-Ordner des aktuellen Benutzers.
+     * Verwendet System-Property "user.home" und hängt "Downloads" an.
+     *
+     * @return Pfad zum vorgeschlagenen Download-Ordner.
+     */
+    private static Path vorschlagDownloadOrdner() {
+        String userHome = System.getProperty("user.home");
+        return Paths.get(userHome, "Downloads");
+    }
+
+    /**
+     * Fragt den Benutzer, welcher Ordner verwendet werden soll.
+     *
+     * Regeln:
+     * - Leere Eingabe: vorgeschlagenen Ordner verwenden.
+     * - Eingabe "q" (oder "Q"): Programmabbruch, Methode liefert null.
+     * - Andere Eingabe: als Pfad interpretieren.
+     *
+     * Existenz und Verzeichnis-Eigenschaft werden geprüft. Bei ungültigem Pfad
+     * wird eine Fehlermeldung ausgegeben und null zurückgegeben.
+     *
+     * @param vorgeschlagen vorgeschlagener Ordner (z. B. Download-Ordner).
+     * @return vom Benutzer gewählter Ordner oder null bei Abbruch/Fehler.
+     */
+    private static Path frageNachDownloadOrdner(Path vorgeschlagen) {
+        System.out.println("Vorgeschlagener Download-Ordner: " + vorgeschlagen.toAbsolutePath());
+        System.out.println("[Enter] = Vorschlag nutzen");
+        System.out.println("Pfad eingeben = anderen Ordner wählen");
+        System.out.println("'q' = Programm abbrechen");
+        System.out.print("Ihre Eingabe: ");
+
+        String input = SCANNER.nextLine().trim();
+
+        Path chosen;
+        if (input.isEmpty()) {
+            chosen = vorgeschlagen;
+        } else if (input.equalsIgnoreCase("q")) {
+            return null;
+        } else {
+            chosen = Paths.get(input);
+        }
+
+        if (!Files.exists(chosen) || !Files.isDirectory(chosen)) {
+            System.out.println("Fehler: Der Ordner existiert nicht oder ist kein Verzeichnis.");
+            return null;
+        }
+
+        System.out.println("Verwende Ordner: " + chosen.toAbsolutePath());
+        return chosen;
+    }
+
+    /**
+     * Analysiert den angegebenen Ordner:
+     * - zählt, wie viele Dateien in jede Kategorie fallen,
+     * - gibt das Ergebnis in der Konsole aus.
+     *
+     * Es werden nur Dateien auf der obersten Ebene betrachtet, keine Unterordner.
+     *
+     * @param downloadDir zu analysierender Ordner.
+     */
+    private static void analysiereOrdner(Path downloadDir) {
+        System.out.println("\nAnalysiere Ordner: " + downloadDir.toAbsolutePath());
+
+        SortierEngine.Analyse analyse;
+        try {
+            analyse = SortierEngine.ergebnis(ENGINE.analysiere(downloadDir, sortierKonfiguration()));
+        } catch (IOException e) {
+            System.out.println("Fehler beim Lesen des Ordners: " + e.getMessage());
+            return;
+        }
+
+        analyse.zaehler.druckeErgebnis();
+        AnalyseBericht.drucke(downloadDir, analyse.zaehler);
+        AnalyseBericht.schreibeDateien(downloadDir, analyse.zaehler);
+        System.out.println(analyse.scan.herkunft());
+    }
+
+    /**
+     * Standardwert für die maximale Tiefe der rekursiven Analyse.
+     */
+    private static final int STANDARD_MAX_TIEFE = 32;
+
+    /**
+     * Analysiert den Ordner einschließlich aller Unterordner.
+     *
+     * Die Arbeit wird über RekursiveAnalyse auf mehrere Threads verteilt.
+     * Maximale Tiefe und das Verfolgen symbolischer Links werden abgefragt.
+     *
+     * @param downloadDir Startordner der Analyse.
+     */
+    private static void analysiereOrdnerRekursiv(Path downloadDir) {
+        int maxTiefe = frageZahl("Maximale Tiefe", STANDARD_MAX_TIEFE);
+        System.out.print("Symbolischen Links folgen? (j/N): ");
+        boolean linksFolgen = SCANNER.nextLine().trim().equalsIgnoreCase("j");
+
+        System.out.println("\nAnalysiere Ordner rekursiv: " + downloadDir.toAbsolutePath());
+
+        RekursiveAnalyse analyse = new RekursiveAnalyse(konfiguration(), maxTiefe, linksFolgen);
+        long start = System.nanoTime();
+        KategorieZaehler zaehler = analyse.analysiere(downloadDir, Runtime.getRuntime().availableProcessors());
+        long dauerMs = (System.nanoTime() - start) / 1_000_000;
+
+        zaehler.druckeErgebnis();
+        AnalyseBericht.drucke(downloadDir, zaehler);
+        AnalyseBericht.schreibeDateien(downloadDir, zaehler);
+        System.out.println("Ordner gelesen: " + analyse.anzahlVerzeichnisse()
+                + ", übersprungen: " + analyse.anzahlUebersprungen()
+                + ", Dauer: " + dauerMs + " ms");
+    }
+
+    /**
+     * Sucht Dateien mit identischem Inhalt im Ordner und seinen Unterordnern und zeigt,
+     * wie viel Platz pro Kategorie frei würde (siehe DuplikatSuche). Es wird nichts
+     * gelöscht oder verschoben.
+     *
+     * @param downloadDir zu durchsuchender Ordner.
+     */
+    private static void sucheDuplikate(Path downloadDir) {
+        System.out.println("\nSuche Duplikate in: " + downloadDir.toAbsolutePath());
+        new DuplikatSuche(downloadDir, konfiguration(), STANDARD_MAX_TIEFE,
+                Runtime.getRuntime().availableProcessors()).sucheUndBerichte();
+    }
+
+    /**
+     * Fragt eine ganze Zahl ab. Leere oder ungültige Eingabe liefert den Standardwert.
+     *
+     * @param frage    Text der Frage (ohne Doppelpunkt).
+     * @param standard Wert bei leerer oder ungültiger Eingabe.
+     * @return eingegebene Zahl oder Standardwert.
+     */
+    private static int frageZahl(String frage, int standard) {
+        System.out.print(frage + " [Enter = " + standard + "]: ");
+        String input = SCANNER.nextLine().trim();
+        if (input.isEmpty()) {
+            return standard;
+        }
+        try {
+            return Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Ungültige Zahl, verwende " + standard + ".");
+            return standard;
+        }
+    }
+
+    /**
+     * Sortiert alle Dateien im angegebenen Ordner nach Kategorie in Unterordner.
+     *
+     * Verhalten:
+     * - Wenn dryRun = true:
+     *   - Es werden keine Dateien verschoben.
+     *   - Es werden keine Log- oder Undo-Dateien geschrieben.
+     *   - Was verschoben würde, steht danach im Sortierplan (sortierplan.txt); auf der
+     *     Konsole erscheint nur eine Zusammenfassung pro Kategorie. Der Plan kann mit
+     *     wendePlanAn() ausgeführt werden.
+     * - Wenn dryRun = false:
+     *   - Dateien werden physisch in Kategorie-Unterordner verschoben.
+     *   - Jede Bewegung wird in log.txt festgehalten (mit Zeitstempel).
+     *   - Der Lauf wird als neue Generation an undo_journal.bin angehängt.
+     *   - Duplikate und Namensgleichheit: siehe Sortierung.sortiere.
+     *   - Mit -Ddownloadcleaner.drossel.* wird gebremst (siehe Drossel); am Ende
+     *     steht der erreichte Durchsatz.
+     *
+     * @param downloadDir zu sortierender Ordner.
+     * @param dryRun      true = nur Simulation, false = echte Sortierung.
+     */
+    private static void sortiereOrdner(Path downloadDir, boolean dryRun) {
+        System.out.println();
+        if (dryRun) {
+            System.out.println("Trockenlauf: Es werden KEINE Dateien verschoben.");
+        }
+        System.out.println("Sortiere Dateien in: " + downloadDir.toAbsolutePath());
+
+        Path logFile = downloadDir.resolve("log.txt");
+        Path undoFile = downloadDir.resolve(UndoJournal.DATEINAME);
+
+        // Trockenlauf: nur der Plan wird geschrieben, keine Datei verschoben
+        if (dryRun) {
+            try {
+                SortierEngine.Plan plan = SortierEngine.ergebnis(ENGINE.plane(downloadDir, sortierKonfiguration()));
+                for (SortierEngine.Kategorie ziel : plan.ziele) {
+                    System.out.printf("  %-20s %6d Dateien  %10s%n", ziel.name + ":", ziel.dateien,
+                            DuplikatSuche.formatiereGroesse(ziel.bytes));
+                }
+                System.out.println("Würden verschoben: " + plan.dateien + " Dateien ("
+                        + DuplikatSuche.formatiereGroesse(plan.bytes) + ")");
+                System.out.println(plan.scan.herkunft());
+                System.out.println("Sortierplan: " + plan.datei.toAbsolutePath()
+                        + " (ausführen mit Menüpunkt 9)");
+            } catch (IOException e) {
+                System.out.println("Fehler beim Trockenlauf: " + e.getMessage());
+            }
+
+            System.out.println("Trockenlauf abgeschlossen. Keine Dateien verschoben.");
+            return;
+        }
+
+        // Normaler Modus: Sortierung mit Logging und Undo-Protokoll (siehe Sortierung)
+        try {
+            SortierEngine.Sortierlauf lauf =
+                    SortierEngine.ergebnis(ENGINE.sortiere(downloadDir, sortierKonfiguration()));
+            System.out.println("Dateien verschoben: " + lauf.verschoben + ", Fehler: " + lauf.fehler
+                    + " (Undo-Lauf #" + lauf.laufId + ", " + lauf.dauerMs + " ms)");
+            for (SortierEngine.Kategorie k : lauf.kategorien) {
+                System.out.println("  " + k);
+            }
+            druckeKontingente(lauf);
+            lauf.drosselBericht.forEach(System.out::println);
+        } catch (IOException e) {
+            System.out.println("Fehler beim Sortieren: " + e.getMessage());
+        }
+
+        System.out.println("Sortierung abgeschlossen.");
+        System.out.println("Log-Datei:   " + logFile.toAbsolutePath());
+        System.out.println("Undo-Datei:  " + undoFile.toAbsolutePath());
+    }
+
+    /**
+     * Führt den Sortierplan des letzten Trockenlaufs aus (siehe SortierPlan).
+     *
+     * Es wird weder der Ordner gelesen noch klassifiziert. Dateien, die seit dem Plan
+     * verschwunden sind oder eine andere Größe bzw. Änderungszeit haben, bleiben liegen.
+     *
+     * @param downloadDir Arbeitsordner mit sortierplan.txt.
+     */
+    private static void wendePlanAn(Path downloadDir) {
+        Path planDatei = downloadDir.resolve(SortierPlan.DATEINAME);
+        System.out.println();
+        if (!Files.exists(planDatei)) {
+            System.out.println("Kein Sortierplan vorhanden. Bitte zuerst einen Trockenlauf (3) machen.");
+            return;
+        }
+        try {
+            SortierPlan plan = SortierPlan.lese(planDatei);
+            String erstellt = LocalDateTime.ofInstant(Instant.ofEpochMilli(plan.erstelltMs), ZoneId.systemDefault())
+                    .format(LOG_TS_FORMAT);
+            System.out.println("Sortierplan vom " + erstellt + ": " + plan.eintraege.size() + " Dateien.");
+            if (plan.konfiguration != sortierKonfiguration().fingerabdruck()) {
+                System.out.println("Hinweis: config.txt hat sich seit dem Plan geändert; es gilt der Plan.");
+            }
+            System.out.print("Jetzt ausführen? (j/n): ");
+            if (!SCANNER.nextLine().trim().equalsIgnoreCase("j")) {
+                System.out.println("Abgebrochen.");
+                return;
+            }
+
+            SortierEngine.Sortierlauf ergebnis = SortierEngine.ergebnis(ENGINE.wendePlanAn(downloadDir,
+                    sortierKonfiguration(), plan, Drossel.ausSystemProperty(downloadDir, KONSOLE)));
+            System.out.println("Plan ausgeführt: " + ergebnis.verschoben + " verschoben, "
+                    + ergebnis.uebersprungen + " übersprungen (fehlt oder geändert), "
+                    + ergebnis.fehler + " Fehler (Undo-Lauf #" + ergebnis.laufId + ").");
+            druckeKontingente(ergebnis);
+            ergebnis.drosselBericht.forEach(System.out::println);
+        } catch (IOException e) {
+            System.out.println("Fehler beim Ausführen des Plans: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Höchstens so viele Treffer werden bei der Log-Suche ausgegeben.
+     */
+    private static final int LOG_ANZEIGE_TREFFER = 200;
+
+    /**
+     * Sucht im Log nach dem Verlauf einer Datei oder nach allen Bewegungen eines Tages.
+     *
+     * Durchsucht werden log.txt und die rotierten, komprimierten Segmente in
+     * log-archiv/ (siehe LogArchiv); dank des Index werden nur die Läufe entpackt, die
+     * einen Treffer enthalten können.
+     *
+     * @param downloadDir Arbeitsordner mit log.txt.
+     */
+    private static void durchsucheLog(Path downloadDir) {
+        System.out.println();
+        System.out.print("Dateiname oder Datum (JJJJ-MM-TT): ");
+        String eingabe = SCANNER.nextLine().trim();
+        if (eingabe.isEmpty()) {
+            return;
+        }
+        String dateiname = null;
+        LocalDate tag = null;
+        try {
+            tag = LocalDate.parse(eingabe);
+        } catch (DateTimeParseException e) {
+            dateiname = eingabe;
+        }
+
+        try {
+            long start = System.nanoTime();
+            LogArchiv.Suchergebnis ergebnis = LogArchiv.suche(downloadDir, dateiname, tag);
+            long ms = (System.nanoTime() - start) / 1_000_000;
+
+            List<LogArchiv.Treffer> treffer = ergebnis.treffer;
+            for (int i = 0; i < Math.min(treffer.size(), LOG_ANZEIGE_TREFFER); i++) {
+                LogArchiv.Treffer t = treffer.get(i);
+                System.out.println("  " + t.zeit + "  " + t.quelle + " -> " + t.ziel
+                        + "  (Lauf #" + t.laufId + ", " + t.segment + ")");
+            }
+            if (treffer.size() > LOG_ANZEIGE_TREFFER) {
+                System.out.println("  ... und " + (treffer.size() - LOG_ANZEIGE_TREFFER) + " weitere");
+            }
+            System.out.println(treffer.size() + " Treffer in " + ms + " ms (" + ergebnis.entpackt + " von "
+                    + ergebnis.laeufeImIndex + " archivierten Läufen entpackt).");
+        } catch (IOException e) {
+            System.out.println("Fehler beim Durchsuchen des Logs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Dateien, die das Programm selbst im Arbeitsordner anlegt bzw. liest.
+     * Sie werden beim Sortieren nicht mit verschoben, sonst würde z. B. das Undo-Protokoll
+     * während des Laufs nach Dokumente/ wandern und wäre für Undo-light nicht mehr auffindbar.
+     */
+    private static final Set<String> EIGENE_DATEIEN = Set.of("log.txt", "undo_last_sort.txt", "config.txt",
+            UndoJournal.DATEINAME, UndoJournal.DATEINAME + ".tmp", ScanIndex.DATEINAME,
+            AnalyseBericht.JSON_DATEI, AnalyseBericht.CSV_DATEI, Messung.DATEINAME, SortierPlan.DATEINAME);
+
+    /**
+     * Prüft, ob ein Eintrag eine der eigenen Programmdateien ist.
+     *
+     * @param entry Pfad eines Eintrags im Arbeitsordner.
+     * @return true, wenn der Eintrag nicht sortiert werden soll.
+     */
+    static boolean istEigeneDatei(Path entry) {
+        return EIGENE_DATEIEN.contains(entry.getFileName().toString());
+    }
+
+    /**
+     * Standardanzahl gleichzeitiger Verschiebungen im parallelen Modus.
+     */
+    private static final int STANDARD_VERSCHIEBER = 16;
+
+    /**
+     * Sortiert wie sortiereOrdner(downloadDir, false), verschiebt aber mehrere Dateien
+     * gleichzeitig. Die Anzahl der Verschieber wird beim Benutzer abgefragt.
+     *
+     * Sortierung und Kontingente laufen zusammen über ENGINE unter der Sperre des
+     * Ordners, also nie gleichzeitig mit einem anderen Vorgang der Engine.
+     *
+     * @param downloadDir zu sortierender Ordner.
+     */
+    private static void sortiereOrdnerParallel(Path downloadDir) {
+        int anzahl = frageZahl("Anzahl gleichzeitiger Verschiebungen", STANDARD_VERSCHIEBER);
+        KategorieKonfiguration kategorien = konfiguration();
+
+        Kontingent.Ergebnis k;
+        try {
+            k = SortierEngine.ergebnis(ENGINE.fuehreAus(downloadDir, SortierEngine.Vorgang.SORTIERUNG, () -> {
+                new VerschiebePipeline(kategorien, anzahl, KONSOLE).sortiere(downloadDir);
+
+                // Kontingente wie nach der normalen Sortierung (dort übernimmt das die SortierEngine)
+                List<Kontingent> kontingente = kategorien.kontingente();
+                if (kontingente.isEmpty()) {
+                    return null;
+                }
+                return Kontingent.setzeDurch(downloadDir, kontingente, KONSOLE,
+                        Drossel.ausSystemProperty(downloadDir, KONSOLE));
+            }));
+        } catch (IOException e) {
+            System.out.println("Fehler beim Durchsetzen der Kontingente: " + e.getMessage());
+            return;
+        }
+        if (k != null) {
+            druckeKontingente(k.verschoben, k.bytes, k.laufId, k.zeilen);
+        }
+    }
+
+    /**
+     * Gibt aus, was nach dem Sortieren wegen der Kontingente verschoben wurde
+     * (siehe Kontingent). Ohne Kontingente in config.txt wird nichts ausgegeben.
+     *
+     * @param lauf Ergebnis der Sortierung.
+     */
+    private static void druckeKontingente(SortierEngine.Sortierlauf lauf) {
+        if (sortierKonfiguration().anzahlKontingente() > 0) {
+            druckeKontingente(lauf.kontingentVerschoben, lauf.kontingentBytes, lauf.kontingentLaufId,
+                    lauf.kontingentZeilen);
+        }
+    }
+
+    private static void druckeKontingente(int verschoben, long bytes, long laufId, List<String> zeilen) {
+        if (laufId < 0) {
+            System.out.println("Kontingente eingehalten.");
+            return;
+        }
+        System.out.println("Kontingente: " + verschoben + " Dateien verschoben ("
+                + DuplikatSuche.formatiereGroesse(bytes) + ") (Undo-Lauf #" + laufId + ").");
+        zeilen.forEach(System.out::println);
+    }
+
+    /**
+     * Anzahl der Läufe, die in der Übersicht des Undo-Journals angezeigt werden.
+     */
+    private static final int UNDO_ANZEIGE_LAEUFE = 20;
+
+    /**
+     * Startet den Dauerbetrieb (siehe Ueberwachung) in einem eigenen Thread und
+     * wartet, bis der Benutzer Enter drückt.
+     *
+     * Die Ruhezeit wird abgefragt: So lange muss eine neue Datei unverändert sein,
+     * bevor sie verschoben wird.
+     *
+     * @param downloadDir zu überwachender Ordner.
+     */
+    private static void ueberwacheOrdner(Path downloadDir) {
+        int ruhezeitMs = frageZahl("Ruhezeit in Millisekunden", (int) Ueberwachung.STANDARD_RUHEZEIT_MS);
+
+        Ueberwachung ueberwachung = new Ueberwachung(konfiguration(), ruhezeitMs, KONSOLE, ENGINE);
+        Thread thread = Thread.ofPlatform().name("ueberwachung")
+                .start(() -> ueberwachung.ueberwache(downloadDir));
+
+        System.out.println("Überwache " + downloadDir.toAbsolutePath() + " – [Enter] beendet die Überwachung.");
+        if (SCANNER.hasNextLine()) {
+            SCANNER.nextLine();
+        }
+        ueberwachung.stoppe();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Macht eine Sortierung aus dem Undo-Journal (undo_journal.bin) rückgängig.
+     *
+     * Ablauf:
+     * 1. Die gespeicherten Läufe werden aufgelistet (neueste zuerst).
+     * 2. Der Benutzer wählt einen Lauf (Enter = letzter Lauf) oder kompaktiert das
+     *    Journal, d. h. nur die neuesten Läufe bleiben erhalten.
+     * 3. Rückgängig gemacht wird der ganze Lauf, nur eine Kategorie oder nur eine
+     *    einzelne Datei. Kategorie und Datei werden über die Indizes im Fuß des Laufs
+     *    gefunden, ohne andere Läufe zu lesen.
+     *
+     * Die Bewegungen spielt UndoWiedergabe parallel und in umgekehrter Reihenfolge
+     * zurück. Fehlende Dateien werden übersprungen und nur gezählt.
+     *
+     * Gibt es noch kein Journal, aber eine alte undo_last_sort.txt, wird diese wie
+     * bisher verwendet.
+     *
+     * @param downloadDir Arbeitsordner, in dem sich undo_journal.bin befindet.
+     */
+    private static void rueckgaengigMachen(Path downloadDir) {
+        Path journal = downloadDir.resolve(UndoJournal.DATEINAME);
+        if (!Files.exists(journal)) {
+            rueckgaengigMachenAusTextdatei(downloadDir);
+            return;
+        }
+
+        List<UndoJournal.Lauf> laeufe;
+        try {
+            laeufe = UndoJournal.laeufe(journal);
+        } catch (IOException e) {
+            System.out.println("Fehler beim Lesen des Undo-Journals: " + e.getMessage());
+            return;
+        }
+        if (laeufe.isEmpty()) {
+            System.out.println("Das Undo-Journal enthält keine Sortierläufe.");
+            return;
+        }
+
+        System.out.println();
+        System.out.println("Gespeicherte Sortierläufe (" + laeufe.size() + ", neueste zuerst):");
+        for (int i = 0; i < Math.min(laeufe.size(), UNDO_ANZEIGE_LAEUFE); i++) {
+            UndoJournal.Lauf lauf = laeufe.get(i);
+            String zeit = LocalDateTime.ofInstant(Instant.ofEpochMilli(lauf.startMs), ZoneId.systemDefault())
+                    .format(LOG_TS_FORMAT);
+            System.out.printf("  #%-4d %s  %6d Dateien  %s%n", lauf.id, zeit, lauf.anzahl, lauf.kategorien.keySet());
+        }
+
+        System.out.print("Lauf-Nr. [Enter = #" + laeufe.get(0).id + ", k = alte Läufe kompaktieren, q = abbrechen]: ");
+        String eingabe = SCANNER.nextLine().trim();
+        if (eingabe.equalsIgnoreCase("q")) {
+            return;
+        }
+        if (eingabe.equalsIgnoreCase("k")) {
+            int behalten = frageZahl("Wie viele der neuesten Läufe behalten", 5);
+            try {
+                int entfernt = UndoJournal.kompaktiere(journal, behalten);
+                System.out.println("Undo-Journal kompaktiert. Entfernte Läufe: " + entfernt);
+            } catch (IOException e) {
+                System.out.println("Fehler beim Kompaktieren: " + e.getMessage());
+            }
+            return;
+        }
+
+        UndoJournal.Lauf gewaehlt = null;
+        if (eingabe.isEmpty()) {
+            gewaehlt = laeufe.get(0);
+        } else {
+            try {
+                long id = Long.parseLong(eingabe.startsWith("#") ? eingabe.substring(1) : eingabe);
+                for (UndoJournal.Lauf lauf : laeufe) {
+                    if (lauf.id == id) {
+                        gewaehlt = lauf;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // wird unten gemeldet
+            }
+        }
+        if (gewaehlt == null) {
+            System.out.println("Unbekannter Lauf: " + eingabe);
+            return;
+        }
+
+        System.out.print("Umfang [Enter = ganzer Lauf, k = eine Kategorie, d = eine Datei]: ");
+        String umfang = SCANNER.nextLine().trim();
+        String kategorie = null;
+        String dateiname = null;
+        if (umfang.equalsIgnoreCase("k")) {
+            System.out.print("Kategorie " + gewaehlt.kategorien.keySet() + ": ");
+            kategorie = SCANNER.nextLine().trim();
+        } else if (umfang.equalsIgnoreCase("d")) {
+            System.out.print("Ursprünglicher Dateiname: ");
+            dateiname = SCANNER.nextLine().trim();
+        }
+
+        System.out.println("Mache Lauf #" + gewaehlt.id + " rückgängig.");
+        SortierEngine.Rueckgaengig r;
+        try {
+            r = SortierEngine.ergebnis(ENGINE.macheRueckgaengig(downloadDir, gewaehlt.id, kategorie, dateiname,
+                    STANDARD_VERSCHIEBER));
+        } catch (IOException e) {
+            System.out.println("Fehler beim Lesen des Undo-Journals: " + e.getMessage());
+            return;
+        }
+        if (r.eintraege == 0) {
+            System.out.println("Keine passenden Einträge in Lauf #" + gewaehlt.id + ".");
+            return;
+        }
+
+        r.fehlermeldungen.forEach(System.out::println);
+        if (r.fehler > r.fehlermeldungen.size()) {
+            System.out.println("... und " + (r.fehler - r.fehlermeldungen.size()) + " weitere Fehler.");
+        }
+        System.out.println("Undo abgeschlossen in " + r.dauerMs + " ms (" + r.eintraege + " Einträge, "
+                + r.verschieber + " Verschieber, " + r.ketten + " unabhängige Ketten).");
+        System.out.printf("  %-31s %d%n", "Zurückverschoben:", r.zurueck);
+        System.out.printf("  %-31s %d%n", "Übersprungen (nicht gefunden):", r.fehlend);
+        System.out.printf("  %-31s %d%n", "Fehler:", r.fehler);
+    }
+
+    /**
+     * Macht die letzte Sortierung anhand der alten Textdatei undo_last_sort.txt
+     * rückgängig (Stand vor dem Undo-Journal).
+     *
+     * Format pro Zeile:
+     *   relativerZielPfad|relativerQuellPfad
+     *
+     * Dabei ist:
+     * - relativerZielPfad: wohin die Datei beim Sortieren verschoben wurde.
+     * - relativerQuellPfad: wo sie ursprünglich lag.
+     *
+     * @param downloadDir Arbeitsordner, in dem sich undo_last_sort.txt befindet.
+     */
+    private static void rueckgaengigMachenAusTextdatei(Path downloadDir) {
+        Path undoFile = downloadDir.resolve("undo_last_sort.txt");
+        if (!Files.exists(undoFile)) {
+            System.out.println("Kein Undo-Journal gefunden: " + downloadDir.resolve(UndoJournal.DATEINAME).toAbsolutePath());
+            System.out.println("Es wurde vermutlich noch keine Sortierung durchgeführt.");
+            return;
+        }
+
+        System.out.println("Versuche, die letzte Sortierung rückgängig zu machen.");
+        System.out.println("Quelle der Informationen: " + undoFile.toAbsolutePath());
+
+        List<UndoJournal.Eintrag> eintraege = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(undoFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || !line.contains("|")) {
+                    continue;
+                }
+
+                String[] parts = line.split("\\|", 2);
+                if (parts.length != 2) {
+                    continue;
+                }
+
+                // Ziel = wohin wir beim Sortieren verschoben haben, Quelle = ursprünglicher Ort
+                eintraege.add(new UndoJournal.Eintrag(parts[0].trim(), parts[1].trim()));
+            }
+        } catch (IOException e) {
+            System.out.println("Fehler beim Lesen der Undo-Datei: " + e.getMessage());
+            return;
+        }
+
+        Collections.reverse(eintraege); // neueste Bewegung zuerst zurückspielen
+        new UndoWiedergabe(downloadDir, STANDARD_VERSCHIEBER).spieleZurueck(eintraege);
+        System.out.println("Hinweis: Dieser einfache Undo-Mechanismus deckt nur die letzte Sortierung ab.");
+    }
+
+    /**
+     * Liefert die aktuelle Kategorie-Konfiguration (lädt bei Bedarf die Standardwerte).
+     *
+     * @return aktuelle KategorieKonfiguration.
+     */
+    private static KategorieKonfiguration konfiguration() {
+        return sortierKonfiguration().kategorieKonfiguration();
+    }
+
+    /**
+     * Liefert die aktuelle Konfiguration für die SortierEngine.
+     *
+     * @return aktuelle SortierKonfiguration.
+     */
+    private static SortierKonfiguration sortierKonfiguration() {
+        if (KONFIGURATION == null) {
+            // Fallback, sollte im Normalfall nicht vorkommen
+            KONFIGURATION = SortierKonfiguration.standard();
+        }
+        return KONFIGURATION;
+    }
+
+    /**
+     * Merkt sich, welche Kategorie-Unterordner in einem Lauf bereits angelegt wurden.
+     *
+     * Files.createDirectories prüft bei jedem Aufruf erneut das Dateisystem, auch wenn
+     * der Ordner längst existiert. Beim Sortieren wird es deshalb nur beim ersten
+     * Treffer einer Kategorie aufgerufen; danach liefert die Map den fertigen Pfad.
+     *
+     * Thread-sicher, damit auch die parallele Sortierung sie nutzen kann. Legen zwei
+     * Threads gleichzeitig denselben Ordner an, schadet das nicht.
+     */
+    static class KategorieOrdner {
+        private final Path basisOrdner;
+        private final Map<String, Path> angelegt = new ConcurrentHashMap<>();
+
+        /**
+         * @param basisOrdner Ordner, unter dem die Kategorie-Unterordner liegen.
+         */
+        KategorieOrdner(Path basisOrdner) {
+            this.basisOrdner = basisOrdner;
+        }
+
+        /**
+         * Liefert den Zielordner einer Kategorie und legt ihn beim ersten Aufruf an.
+         *
+         * @param kategorie Kategoriename.
+         * @return Pfad des (vorhandenen) Zielordners.
+         * @throws IOException wenn der Ordner nicht angelegt werden kann.
+         */
+        Path zielOrdner(String kategorie) throws IOException {
+            Path ordner = angelegt.get(kategorie);
+            if (ordner == null) {
+                ordner = Files.createDirectories(basisOrdner.resolve(kategorie));
+                angelegt.put(kategorie, ordner);
+            }
+            return ordner;
+        }
+    }
+
+    /**
+     * Hilfsklasse, die zählt, wie viele Dateien in jede Kategorie fallen.
+     *
+     * Jede Kategorie hat eine feste Nummer (Id, siehe KategorieKonfiguration.kategorieName()).
+     * Anzahl und Bytes stehen in einfachen long[]-Arrays mit der Id als Index; zaehle()
+     * und erhoehe(int) legen deshalb pro Datei kein Objekt an. Über erfasse() kommen
+     * Größe, Alter und die Top-Listen dazu (KategorieStatistik, siehe AnalyseBericht).
+     *
+     * Wird der Zähler mit einer Konfiguration angelegt, stehen deren Kategorien in
+     * Konfigurationsreihenfolge vorn; unbekannte Namen (z. B. beim Zusammenführen von
+     * Ordnern mit verschiedener config.txt) bekommen dahinter eine neue Id.
+     * Für mehrere Threads gibt es GestreifterZaehler.
+     *
+     * Paketsichtbar, damit das Benchmark-Modul (benchmarks/) direkt darauf zugreifen kann.
+     */
+    static class KategorieZaehler {
+        /**
+         * Kategorienamen, Index = Id.
+         */
+        private String[] namen = new String[0];
+
+        /**
+         * Umkehrung von namen, nur für die Methoden mit Namen.
+         */
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        private long[] anzahl = new long[0];
+        private long[] bytes = new long[0];
+
+        /**
+         * Kennzahlen je Id; nur über erfasse() angelegt, sonst null.
+         */
+        private KategorieStatistik[] details = new KategorieStatistik[0];
+
+        /**
+         * Bezugszeitpunkt für das Alter der Dateien.
+         */
+        private final long jetztMs = System.currentTimeMillis();
+
+        /**
+         * Leerer Zähler; Kategorien werden in der Reihenfolge ihres ersten Auftretens angelegt.
+         */
+        KategorieZaehler() {
+        }
+
+        /**
+         * Zähler mit den Ids der Konfiguration, damit erhoehe(int), zaehle() und
+         * erfasse(int, ...) direkt die Ergebnisse von bestimmeKategorieId() nehmen.
+         *
+         * @param kategorien Konfiguration, deren Ids gelten.
+         */
+        KategorieZaehler(KategorieKonfiguration kategorien) {
+            for (int id = 0; id < kategorien.anzahlKategorien(); id++) {
+                id(kategorien.kategorieName(id));
+            }
+        }
+
+        /**
+         * Erhöht den Zähler für die angegebene Kategorie um 1.
+         * Fehlt die Kategorie, wird sie mit dem Wert 1 neu angelegt.
+         *
+         * @param kategorie Kategoriename.
+         */
+        void erhoehe(String kategorie) {
+            anzahl[id(kategorie)]++;
+        }
+
+        /**
+         * Erhöht den Zähler für die Kategorie mit dieser Id um 1.
+         *
+         * @param id Kategorie-Id der Konfiguration, mit der der Zähler angelegt wurde.
+         */
+        void erhoehe(int id) {
+            anzahl[id]++;
+        }
+
+        /**
+         * Zählt eine Datei mit ihrer Größe, ohne weitere Kennzahlen.
+         *
+         * @param id      Kategorie-Id.
+         * @param groesse Größe in Bytes.
+         */
+        void zaehle(int id, long groesse) {
+            anzahl[id]++;
+            bytes[id] += groesse;
+        }
+
+        /**
+         * Zählt eine Datei und erfasst zusätzlich Größe, Alter und Top-Listen.
+         *
+         * @param kategorie   Kategoriename.
+         * @param datei       Pfad der Datei.
+         * @param groesse     Größe in Bytes.
+         * @param geaendertMs Änderungszeit in Millisekunden.
+         */
+        void erfasse(String kategorie, Path datei, long groesse, long geaendertMs) {
+            erfasse(id(kategorie), datei, groesse, geaendertMs);
+        }
+
+        /**
+         * Wie erfasse(String, ...), aber mit der Kategorie-Id.
+         */
+        void erfasse(int id, Path datei, long groesse, long geaendertMs) {
+            zaehle(id, groesse);
+            if (details[id] == null) {
+                details[id] = new KategorieStatistik();
+            }
+            details[id].erfasse(datei, groesse, geaendertMs, jetztMs);
+        }
+
+        /**
+         * Liefert die Id zu einem Namen und legt sie bei Bedarf an.
+         */
+        private int id(String kategorie) {
+            Integer id = ids.get(kategorie);
+            if (id != null) {
+                return id;
+            }
+            int n = namen.length;
+            namen = Arrays.copyOf(namen, n + 1);
+            anzahl = Arrays.copyOf(anzahl, n + 1);
+            bytes = Arrays.copyOf(bytes, n + 1);
+            details = Arrays.copyOf(details, n + 1);
+            namen[n] = kategorie;
+            ids.put(kategorie, n);
+            return n;
+        }
+
+        /**
+         * Addiert Anzahl und Bytes für eine Id, z. B. aus einem GestreifterZaehler.
+         */
+        void addiere(int id, long anzahl, long bytes) {
+            this.anzahl[id] += anzahl;
+            this.bytes[id] += bytes;
+        }
+
+        /**
+         * Addiert alle Zählerstände eines anderen Zählers zu diesem.
+         * Wird genutzt, um Teilergebnisse paralleler Aufgaben zusammenzuführen.
+         * Zugeordnet wird über den Namen, die Ids der beiden Zähler dürfen verschieden sein.
+         *
+         * @param andere Zähler, dessen Werte übernommen werden.
+         */
+        void uebernehme(KategorieZaehler andere) {
+            for (int i = 0; i < andere.namen.length; i++) {
+                if (andere.anzahl[i] == 0 && andere.details[i] == null) {
+                    continue;
+                }
+                // Gleiche Konfiguration: gleiche Id, kein Nachschlagen nötig
+                int id = i < namen.length && namen[i].equals(andere.namen[i]) ? i : id(andere.namen[i]);
+                if (andere.details[i] != null) {
+                    if (details[id] == null) {
+                        details[id] = new KategorieStatistik();
+                    }
+                    // KategorieStatistik zählt Anzahl und Bytes selbst mit
+                    details[id].uebernehme(andere.details[i]);
+                }
+                addiere(id, andere.anzahl[i], andere.bytes[i]);
+            }
+        }
+
+        /**
+         * @return Kennzahlen je Kategorie in Id-Reihenfolge (= Konfigurationsreihenfolge),
+         *         nur Kategorien mit mindestens einer Datei. Wurde nur gezählt, enthalten
+         *         die Einträge nur Anzahl und Bytes.
+         */
+        Map<String, KategorieStatistik> statistiken() {
+            Map<String, KategorieStatistik> werte = new LinkedHashMap<>();
+            for (int id = 0; id < namen.length; id++) {
+                if (anzahl[id] == 0) {
+                    continue;
+                }
+                KategorieStatistik st = details[id];
+                if (st == null) {
+                    st = new KategorieStatistik();
+                    st.anzahl = anzahl[id];
+                    st.bytes = bytes[id];
+                }
+                werte.put(namen[id], st);
+            }
+            return Collections.unmodifiableMap(werte);
+        }
+
+        /**
+         * Gibt alle gezählten Kategorienamen und Werte in der Konsole aus.
+         * Wenn keine Dateien gezählt wurden, wird ein entsprechender Hinweis ausgegeben.
+         */
+        void druckeErgebnis() {
+            System.out.println("Ergebnis:");
+            boolean leer = true;
+            for (int id = 0; id < namen.length; id++) {
+                if (anzahl[id] > 0) {
+                    System.out.printf("  %s: %d (%s)%n", namen[id], anzahl[id],
+                            DuplikatSuche.formatiereGroesse(bytes[id]));
+                    leer = false;
+                }
+            }
+            if (leer) {
+                System.out.println("  (keine Dateien gefunden)");
+            }
+        }
+    }
+
+    /**
+     * Verwaltet die Zuordnung von Dateiendungen zu Kategorien.
+     *
+     * Quellen:
+     * - Standardkategorien im Code (Bilder, Dokumente, Archive, Installer, Java, Sonstiges).
+     * - Optional: Konfigurationsdatei config.txt im Arbeitsordner.
+     *
+     * Format der config.txt:
+     *   KategorieName=.ext1,.ext2,.ext3
+     *
+     * Beispiel:
+     *   Bilder=.png,.jpg,.jpeg
+     *   Dokumente=.pdf,.doc,.docx,.txt
+     *
+     * Paketsichtbar, damit das Benchmark-Modul (benchmarks/) direkt darauf zugreifen kann.
+     */
+    static class KategorieKonfiguration {
+        /**
+         * Map von Kategorienamen auf Arrays von Dateiendungen.
+         * Endungen werden in Kleinschreibung und inklusive Punkt gespeichert (z. B. ".png").
+         */
+        private final Map<String, String[]> kategorien = new LinkedHashMap<>();
+
+        /**
+         * Vorab aufgebauter Suchindex über alle Endungen.
+         * Wird nach jedem Laden neu erzeugt, damit bestimmeKategorie() nicht
+         * bei jeder Datei alle Kategorien und Endungen durchlaufen muss.
+         */
+        private EndungsIndex index;
+
+        /**
+         * Fingerabdruck über alle Kategorien und Endungen (siehe fingerabdruck()).
+         */
+        private long fingerabdruck;
+
+        /**
+         * Optionale Erkennung am Dateiinhalt für Dateien ohne passende Endung
+         * (null = ausgeschaltet, siehe InhaltsErkennung).
+         */
+        private final InhaltsErkennung inhalt = InhaltsErkennung.ausSystemProperty();
+
+        /**
+         * Zeilen "regel: ..." aus config.txt in ihrer Reihenfolge (siehe Regelwerk).
+         */
+        private final List<String> regelZeilen = new ArrayList<>();
+
+        /**
+         * Aus regelZeilen übersetzte Regeln; werden vor den Endungen geprüft.
+         */
+        private Regelwerk regeln = Regelwerk.LEER;
+
+        /**
+         * Zeilen "kontingent: ..." aus config.txt (siehe Kontingent).
+         */
+        private final List<String> kontingentZeilen = new ArrayList<>();
+
+        /**
+         * Aus kontingentZeilen gelesene Obergrenzen für Kategorie-Ordner.
+         */
+        private List<Kontingent> kontingente = List.of();
+
+        /**
+         * Fehler beim Lesen von config.txt (null = keiner); landet in warnungen.
+         */
+        private String ladeFehler;
+
+        /**
+         * Ungültige Regeln und Kontingente usw., vergeben in baueIndex(). Ausgegeben
+         * werden sie von Menü und Kommandozeile, nicht beim Laden.
+         */
+        private List<String> warnungen = List.of();
+
+        /**
+         * Alle Kategorien mit fester Nummer (Id), vergeben in baueIndex(): zuerst die
+         * Kategorien der Konfiguration in ihrer Reihenfolge, danach Ziele von Regeln,
+         * die keine eigene Kategorie sind (z. B. "Archive/Large"). Die Id ist der Index
+         * in diesem Array; Zähler können damit einfache long[] verwenden (siehe
+         * KategorieZaehler, GestreifterZaehler).
+         */
+        private String[] kategorieNamen;
+
+        /**
+         * Umkehrung von kategorieNamen.
+         */
+        private Map<String, Integer> kategorieIds;
+
+        /**
+         * Kategorie-Id je Regel (Index = Nummer der Regel im Regelwerk).
+         */
+        private int[] regelKategorie;
+
+        private int sonstigesId;
+
+        /**
+         * Konstruktor lädt automatisch die Standardkonfiguration.
+         */
+        private KategorieKonfiguration() {
+            ladeStandard();
+            baueIndex();
+        }
+
+        /**
+         * Liefert eine Konfiguration, die nur die im Code hinterlegten Standardkategorien enthält.
+         *
+         * @return neue KategorieKonfiguration mit Standardwerten.
+         */
+        public static KategorieKonfiguration ladeStandardNur() {
+            return new KategorieKonfiguration();
+        }
+
+        /**
+         * Lädt eine KategorieKonfiguration auf Basis von Standardwerten und optionaler config.txt.
+         *
+         * Verhalten:
+         * - Zuerst werden Standardkategorien gesetzt.
+         * - Wenn config.txt existiert, überschreibt sie die Standardkonfiguration vollständig.
+         * - Die Kategorie "Sonstiges" wird ggf. ergänzt, falls sie fehlt.
+         *
+         * @param basisOrdner Ordner, in dem nach config.txt gesucht wird.
+         * @return vollständig initialisierte KategorieKonfiguration.
+         */
+        public static KategorieKonfiguration laden(Path basisOrdner) {
+            return laden(basisOrdner, true);
+        }
+
+        /**
+         * Wie laden(basisOrdner), gibt aber nur auf Wunsch aus, woher die Kategorien
+         * stammen. Die Kommandozeile lädt so für jeden Ordner seine eigene config.txt,
+         * ohne dass sich bei vielen Ordnern die Meldungen stapeln.
+         *
+         * @param basisOrdner Ordner, in dem nach config.txt gesucht wird.
+         * @param melden      true = Herkunft der Kategorien ausgeben.
+         * @return vollständig initialisierte KategorieKonfiguration.
+         */
+        static KategorieKonfiguration laden(Path basisOrdner, boolean melden) {
+            KategorieKonfiguration konfig = new KategorieKonfiguration();
+            Path configFile = basisOrdner.resolve("config.txt");
+
+            if (Files.exists(configFile)) {
+                if (melden) {
+                    System.out.println("Lade Kategorien aus Konfigurationsdatei: " + configFile.toAbsolutePath());
+                }
+                konfig.ladeAusDatei(configFile, melden);
+            } else if (melden) {
+                System.out.println("Keine config.txt im Ordner gefunden. Verwende Standard-Kategorien.");
+            }
+
+            if (!konfig.kategorien.containsKey("Sonstiges")) {
+                konfig.kategorien.put("Sonstiges", new String[0]);
+            }
+
+            konfig.baueIndex();
+            return konfig;
+        }
+
+        /**
+         * Initialisiert Standardkategorien und dazugehörige Dateiendungen.
+         * Wird verwendet, wenn keine Konfigurationsdatei vorhanden ist oder gelesen werden konnte.
+         */
+        private void ladeStandard() {
+            kategorien.clear();
+            regelZeilen.clear();
+            kontingentZeilen.clear();
+            kategorien.put("Bilder", new String[]{
+                    ".png", ".jpg", ".jpeg", ".gif", ".bmp", ".webp"
+            });
+            kategorien.put("Dokumente", new String[]{
+                    ".pdf", ".doc", ".docx", ".txt",
+                    ".ppt", ".pptx",
+                    ".xls", ".xlsx",
+                    ".odt", ".md"
+            });
+            kategorien.put("Archive", new String[]{
+                    ".zip", ".rar", ".7z", ".tar", ".gz",
+                    ".iso", ".img", ".dmg", ".vhd", ".vhdx"
+            });
+            kategorien.put("Installer", new String[]{
+                    ".exe", ".msi"
+            });
+            kategorien.put("Java", new String[]{
+                    ".jar"
+            });
+            kategorien.put("Sonstiges", new String[0]);
+        }
+
+        /**
+         * Liest eine Konfigurationsdatei im Format:
+         *   Kategorie=ext1,ext2,ext3
+         *   regel: Bedingungen -> Ziel      (siehe Regelwerk)
+         *   kontingent: Kategorie max=5GB   (siehe Kontingent)
+         *
+         * Hinweise:
+         * - Zeilen, die mit '#' beginnen, werden als Kommentar ignoriert.
+         * - Leerzeilen werden ignoriert.
+         * - Dateiendungen werden getrimmt, in Kleinschreibung konvertiert und erhalten bei Bedarf einen führenden Punkt.
+         * - Bei IO-Problemen wird wieder auf Standardkonfiguration gewechselt; der Fehler
+         *   steht danach in warnungen().
+         *
+         * @param configFile Pfad zur Konfigurationsdatei.
+         * @param melden     true = geladene Kategorien ausgeben.
+         */
+        private void ladeAusDatei(Path configFile, boolean melden) {
+            try (BufferedReader reader = Files.newBufferedReader(configFile, StandardCharsets.UTF_8)) {
+                leseKonfiguration(reader);
+                if (melden) {
+                    System.out.println("Konfiguration geladen. Kategorien: " + kategorien.keySet()
+                            + (regelZeilen.isEmpty() ? "" : ", Regeln: " + regelZeilen.size())
+                            + (kontingentZeilen.isEmpty() ? "" : ", Kontingente: " + kontingentZeilen.size()));
+                }
+            } catch (IOException e) {
+                ladeStandard();
+                ladeFehler = "Konnte config.txt nicht lesen. Verwende Standard-Kategorien. Ursache: "
+                        + e.getMessage();
+            }
+        }
+
+        /**
+         * Liest die Kategorie-Zeilen aus einem bereits geöffneten Reader.
+         * Ausgelagert aus ladeAusDatei(), damit das reine Parsen ohne Dateizugriff
+         * und ohne Konsolenausgabe gemessen werden kann (siehe Benchmark-Modul).
+         *
+         * @param reader Quelle der Konfigurationszeilen.
+         * @throws IOException bei Lesefehlern.
+         */
+        void leseKonfiguration(BufferedReader reader) throws IOException {
+            kategorien.clear(); // Konfig überschreibt Standard vollständig
+            regelZeilen.clear();
+            kontingentZeilen.clear();
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                // Regeln enthalten selbst '=' und werden daher vorher abgezweigt
+                if (line.regionMatches(true, 0, Regelwerk.PRAEFIX, 0, Regelwerk.PRAEFIX.length())) {
+                    regelZeilen.add(line);
+                    continue;
+                }
+                if (line.regionMatches(true, 0, Kontingent.PRAEFIX, 0, Kontingent.PRAEFIX.length())) {
+                    kontingentZeilen.add(line);
+                    continue;
+                }
+
+                int eqIndex = line.indexOf('=');
+                if (eqIndex <= 0) {
+                    // keine gültige "Kategorie=..."-Zeile
+                    continue;
+                }
+
+                String katName = line.substring(0, eqIndex).trim();
+                String extPart = line.substring(eqIndex + 1).trim();
+                if (katName.isEmpty() || extPart.isEmpty()) {
+                    continue;
+                }
+
+                String[] extsRaw = extPart.split(",");
+                for (int i = 0; i < extsRaw.length; i++) {
+                    String ext = extsRaw[i].trim().toLowerCase();
+                    if (!ext.isEmpty() && !ext.startsWith(".")) {
+                        ext = "." + ext;
+                    }
+                    extsRaw[i] = ext;
+                }
+
+                kategorien.put(katName, extsRaw);
+            }
+        }
+
+        /**
+         * Baut den Endungs-Index aus der aktuellen Kategorie-Map auf.
+         *
+         * Die Kategorien werden in ihrer Reihenfolge aus der Map nummeriert
+         * ("Sonstiges" wird wie bisher übersprungen). Kommt dieselbe Endung in
+         * mehreren Kategorien vor, behält der Index die erste Kategorie.
+         *
+         * Außerdem werden die Regeln und Kontingente übersetzt; ungültige werden
+         * übersprungen und in warnungen() vermerkt. Kontingente gehen nicht in den Fingerabdruck ein,
+         * da sie die Zuordnung der Dateien nicht ändern.
+         */
+        void baueIndex() {
+            List<String> namen = new ArrayList<>(kategorien.keySet());
+            if (!kategorien.containsKey("Sonstiges")) {
+                namen.add("Sonstiges");
+            }
+            Map<String, Integer> ids = new HashMap<>();
+
+            EndungsIndex neu = new EndungsIndex();
+            for (int id = 0; id < namen.size(); id++) {
+                ids.put(namen.get(id), id);
+                String[] endungen = kategorien.get(namen.get(id));
+                if ("Sonstiges".equals(namen.get(id)) || endungen == null) {
+                    continue;
+                }
+                for (String ext : endungen) {
+                    if (ext != null && !ext.isEmpty()) {
+                        neu.fuegeHinzu(ext, id);
+                    }
+                }
+            }
+            index = neu;
+
+            List<String> hinweise = new ArrayList<>();
+            if (ladeFehler != null) {
+                hinweise.add(ladeFehler);
+            }
+            List<String> fehler = new ArrayList<>();
+            regeln = Regelwerk.kompiliere(regelZeilen, fehler);
+            for (String f : fehler) {
+                hinweise.add("Ungültige Regel in config.txt: " + f);
+            }
+            fehler.clear();
+            kontingente = Kontingent.kompiliere(kontingentZeilen, fehler);
+            for (String f : fehler) {
+                hinweise.add("Ungültiges Kontingent in config.txt: " + f);
+            }
+            warnungen = List.copyOf(hinweise);
+            regelKategorie = new int[regeln.anzahl()];
+            for (int r = 0; r < regelKategorie.length; r++) {
+                Integer id = ids.get(regeln.ziel(r));
+                if (id == null) {
+                    id = namen.size();
+                    namen.add(regeln.ziel(r));
+                    ids.put(regeln.ziel(r), id);
+                }
+                regelKategorie[r] = id;
+            }
+            kategorieNamen = namen.toArray(new String[0]);
+            kategorieIds = ids;
+            sonstigesId = ids.get("Sonstiges");
+
+            // FNV-1a über Namen und Endungen in Konfigurationsreihenfolge
+            long h = 0xcbf29ce484222325L;
+            for (Map.Entry<String, String[]> entry : kategorien.entrySet()) {
+                h = (h ^ entry.getKey().hashCode()) * 0x100000001b3L;
+                for (String ext : entry.getValue() == null ? new String[0] : entry.getValue()) {
+                    h = (h ^ String.valueOf(ext).hashCode()) * 0x100000001b3L;
+                }
+                h = (h ^ '|') * 0x100000001b3L;
+            }
+            h = regeln.fingerabdruck(h);
+            fingerabdruck = inhalt != null ? ~h : h;
+        }
+
+        /**
+         * Liefert einen Fingerabdruck der Konfiguration. Ändert sich eine Kategorie oder
+         * Endung, ändert sich auch der Wert; gespeicherte Zuordnungen (z. B. im
+         * ScanIndex) werden dann verworfen.
+         *
+         * @return 64-Bit-Fingerabdruck.
+         */
+        long fingerabdruck() {
+            return fingerabdruck;
+        }
+
+        /**
+         * @return true, wenn eine Regel das Alter prüft. Die Kategorie einer Datei kann
+         *         sich dann mit der Zeit ändern, auch wenn die Datei gleich bleibt.
+         */
+        boolean zeitabhaengig() {
+            return regeln.zeitabhaengig();
+        }
+
+        /**
+         * @return true, wenn die Kategorie nur vom Dateinamen abhängt: keine Regel mit
+         *         Größe oder Alter und keine InhaltsErkennung.
+         */
+        boolean nurNachName() {
+            return !regeln.brauchtAttribute() && inhalt == null;
+        }
+
+        /**
+         * @return Kontingente aus config.txt (leer, wenn keine angegeben sind).
+         */
+        List<Kontingent> kontingente() {
+            return kontingente;
+        }
+
+        /**
+         * @return Hinweise aus dem Laden von config.txt (leer, wenn alles gültig ist).
+         */
+        List<String> warnungen() {
+            return warnungen;
+        }
+
+        /**
+         * Liefert eine unabhängige Kopie (für SortierKonfiguration).
+         *
+         * Index, Regeln, Kontingente und Ids werden in baueIndex() jedes Mal neu
+         * angelegt und danach nicht mehr verändert; sie können geteilt werden. Kopiert
+         * werden nur die Kategorie-Map und die Zeilen aus config.txt.
+         *
+         * @return Konfiguration mit denselben Kategorien, Regeln und Kontingenten.
+         */
+        KategorieKonfiguration kopie() {
+            KategorieKonfiguration k = new KategorieKonfiguration();
+            k.kategorien.clear();
+            for (Map.Entry<String, String[]> entry : kategorien.entrySet()) {
+                k.kategorien.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().clone());
+            }
+            k.regelZeilen.addAll(regelZeilen);
+            k.kontingentZeilen.addAll(kontingentZeilen);
+            k.index = index;
+            k.regeln = regeln;
+            k.kontingente = kontingente;
+            k.ladeFehler = ladeFehler;
+            k.warnungen = warnungen;
+            k.kategorieNamen = kategorieNamen;
+            k.kategorieIds = kategorieIds;
+            k.regelKategorie = regelKategorie;
+            k.sonstigesId = sonstigesId;
+            k.fingerabdruck = fingerabdruck;
+            return k;
+        }
+
+        /**
+         * @return Anzahl der Kategorie-Ids (Kategorien plus zusätzliche Regel-Ziele).
+         */
+        int anzahlKategorien() {
+            return kategorieNamen.length;
+        }
+
+        /**
+         * @param id Kategorie-Id (0 bis anzahlKategorien() - 1).
+         * @return Name der Kategorie bzw. Ziel der Regel.
+         */
+        String kategorieName(int id) {
+            return kategorieNamen[id];
+        }
+
+        /**
+         * @param name Kategoriename oder Ziel einer Regel.
+         * @return Id oder -1, wenn es den Namen in dieser Konfiguration nicht gibt.
+         */
+        int kategorieId(String name) {
+            Integer id = kategorieIds.get(name);
+            return id != null ? id : -1;
+        }
+
+        /**
+         * Bestimmt anhand des Dateinamens die passende Kategorie.
+         *
+         * Vorgehen:
+         * - Zuerst die Regeln aus config.txt, soweit sie nur den Namen prüfen
+         *   (Regeln mit Größe oder Alter brauchen bestimmeKategorie(Path, ...)).
+         * - Dateiname wird von hinten Zeichen für Zeichen (ohne Groß-/Kleinschreibung)
+         *   durch den Endungs-Index geführt.
+         * - Passen mehrere Endungen, gewinnt die längste: "x.tar.gz" landet bei
+         *   ".tar.gz", auch wenn ".gz" in einer früheren Kategorie steht. Steht
+         *   dieselbe Endung in mehreren Kategorien, gewinnt die, die in der
+         *   Konfiguration zuerst steht (wie bei der früheren linearen Suche).
+         * - Ohne Treffer: "Sonstiges" als Fallback.
+         *
+         * Mehrteilige Endungen wie ".tar.gz" werden dabei automatisch mitgeprüft,
+         * da der Index alle konfigurierten Endungen auf einem Pfad abbildet.
+         *
+         * Die Id-Variante legt dabei kein Objekt an.
+         *
+         * @param fileName Dateiname inkl. Endung.
+         * @return Kategorie-Id (siehe kategorieName()), ohne Treffer die von "Sonstiges".
+         */
+        int bestimmeKategorieId(String fileName) {
+            int regel = regeln.sucheNachName(fileName);
+            if (regel >= 0) {
+                return regelKategorie[regel];
+            }
+            int id = index.suche(fileName);
+            // Fallback, wenn keine Kategorie passt
+            return id >= 0 ? id : sonstigesId;
+        }
+
+        /**
+         * Wie bestimmeKategorieId(String), liefert aber den Namen.
+         *
+         * @param fileName Dateiname inkl. Endung.
+         * @return Kategoriename oder "Sonstiges".
+         */
+        public String bestimmeKategorie(String fileName) {
+            return kategorieNamen[bestimmeKategorieId(fileName)];
+        }
+
+        /**
+         * Wie bestimmeKategorie(String), prüft aber alle Regeln (auch Größe und Alter)
+         * und bei "Sonstiges" zusätzlich den Dateiinhalt, falls die InhaltsErkennung
+         * eingeschaltet ist. Das Ergebnis der Erkennung wird nur übernommen, wenn es
+         * die Kategorie auch in der Konfiguration gibt.
+         *
+         * @param datei Pfad der Datei.
+         * @param attrs bereits gelesene Attribute oder null (werden dann bei Bedarf gelesen).
+         * @return Kategoriename, Ziel einer Regel oder "Sonstiges".
+         */
+        String bestimmeKategorie(Path datei, BasicFileAttributes attrs) {
+            return kategorieNamen[bestimmeKategorieId(datei, attrs)];
+        }
+
+        /**
+         * Wie bestimmeKategorie(Path, BasicFileAttributes), liefert aber die Id.
+         *
+         * @param datei Pfad der Datei.
+         * @param attrs bereits gelesene Attribute oder null.
+         * @return Kategorie-Id.
+         */
+        int bestimmeKategorieId(Path datei, BasicFileAttributes attrs) {
+            String fileName = datei.getFileName().toString();
+            if (regeln.anzahl() > 0) {
+                if (attrs == null && regeln.brauchtAttribute()) {
+                    try {
+                        attrs = Files.readAttributes(datei, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        // Regeln mit Größe oder Alter passen dann nicht
+                    }
+                }
+                int regel = regeln.suche(fileName, attrs,
+                        regeln.zeitabhaengig() ? System.currentTimeMillis() : 0);
+                if (regel >= 0) {
+                    return regelKategorie[regel];
+                }
+            }
+            int id = index.suche(fileName);
+            if (id >= 0 || inhalt == null) {
+                return id >= 0 ? id : sonstigesId;
+            }
+            String erkannt = inhalt.erkenne(datei, attrs);
+            return erkannt != null && kategorien.containsKey(erkannt) ? kategorieIds.get(erkannt) : sonstigesId;
+        }
+    }
+
+    /**
+     * Suchindex für Dateiendungen als "umgedrehter" Präfixbaum (Trie).
+     *
+     * Jede Endung wird rückwärts eingefügt, aus ".tar.gz" wird also der Pfad
+     * z-g-.-r-a-t-. im Baum. Ein Dateiname wird ebenfalls von hinten gelesen,
+     * sodass nach höchstens so vielen Schritten wie die längste Endung Zeichen
+     * hat feststeht, welche Endungen passen.
+     *
+     * Die Suche vergleicht Zeichen mit Character.toLowerCase und legt keine
+     * neuen Strings an.
+     */
+    private static class EndungsIndex {
+        /**
+         * Wurzel des Baums (entspricht der leeren Endung).
+         */
+        private final Knoten wurzel = new Knoten();
+
+        /**
+         * Ein Knoten im Baum. Die Kinder werden in zwei parallelen Arrays gehalten,
+         * da pro Knoten meist nur wenige verschiedene Zeichen folgen.
+         */
+        private static class Knoten {
+            private char[] zeichen = new char[0];
+            private Knoten[] kinder = new Knoten[0];
+            /** Id der ersten Kategorie, die genau hier endet, sonst -1. */
+            private int kategorie = -1;
+
+            Knoten kind(char c) {
+                char[] z = zeichen;
+                for (int i = 0; i < z.length; i++) {
+                    if (z[i] == c) {
+                        return kinder[i];
+                    }
+                }
+                return null;
+            }
+
+            Knoten kindAnlegen(char c) {
+                Knoten k = kind(c);
+                if (k != null) {
+                    return k;
+                }
+                k = new Knoten();
+                int n = zeichen.length;
+                zeichen = Arrays.copyOf(zeichen, n + 1);
+                kinder = Arrays.copyOf(kinder, n + 1);
+                zeichen[n] = c;
+                kinder[n] = k;
+                return k;
+            }
+        }
+
+        /**
+         * Fügt eine Endung für die angegebene Kategorie ein.
+         * Ist die Endung bereits einer früheren Kategorie zugeordnet, bleibt diese bestehen.
+         * Kategorien müssen in Konfigurationsreihenfolge eingefügt werden; die
+         * kleinere Id hat bei gleicher Endung Vorrang.
+         *
+         * @param ext      Endung, z. B. ".tar.gz".
+         * @param katIndex Kategorie-Id.
+         */
+        void fuegeHinzu(String ext, int katIndex) {
+            Knoten k = wurzel;
+            for (int i = ext.length() - 1; i >= 0; i--) {
+                k = k.kindAnlegen(Character.toLowerCase(ext.charAt(i)));
+            }
+            if (k.kategorie < 0) {
+                k.kategorie = katIndex;
+            }
+        }
+
+        /**
+         * Sucht die Kategorie zu einem Dateinamen.
+         *
+         * @param fileName Dateiname inkl. Endung.
+         * @return Id der Kategorie mit der längsten passenden Endung oder -1.
+         */
+        int suche(String fileName) {
+            Knoten k = wurzel;
+            int treffer = -1;
+            for (int i = fileName.length() - 1; i >= 0; i--) {
+                k = k.kind(Character.toLowerCase(fileName.charAt(i)));
+                if (k == null) {
+                    break;
+                }
+                if (k.kategorie >= 0) {
+                    // tiefer im Baum = längere Endung
+                    treffer = k.kategorie;
+                }
+            }
+            return treffer;
+        }
+    }
+}
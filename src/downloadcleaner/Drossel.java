@@ -0,0 +1,361 @@
+package downloadcleaner;
+
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bremst das Verschieben, damit ein Sortierlauf auf einem gemeinsam genutzten
+ * Dateiserver die Platte nicht für alle anderen blockiert.
+ *
+ * Eingestellt wird über System-Properties (Menü) oder pro Aufruf über die
+ * Kommandozeile (--max-ops, --max-rate, --max-latency):
+ *
+ *   -Ddownloadcleaner.drossel.ops=200       höchstens 200 Verschiebungen pro Sekunde
+ *   -Ddownloadcleaner.drossel.bytes=50MB    höchstens 50 MB/s kopieren
+ *   -Ddownloadcleaner.drossel.latenz=20     ab 20 ms Latenz zurücknehmen
+ *
+ * Aufbau:
+ * - Zwei Token-Eimer: einer für Operationen pro Sekunde (jede Datei kostet ein
+ *   Token), einer für Bytes pro Sekunde. Ein Eimer fasst den Vorrat von 100 ms; ist
+ *   er leer, wartet der Aufrufer, bis genug nachgelaufen ist. Wer mehr nimmt, als da
+ *   ist, macht Schulden – die nächsten Aufrufer warten entsprechend länger.
+ * - Zwei Spuren: Umbenennungen auf demselben Dateisystem bewegen keine Daten und
+ *   warten nur auf den Operationen-Eimer. Kopien auf ein anderes Dateisystem laufen
+ *   in DateiUmzug in einem eigenen Thread und warten zusätzlich auf den Bytes-Eimer.
+ *   So steht eine schnelle Umbenennung nie hinter einer großen Kopie an.
+ * - Rückstau: Jede Spur misst die Dauer ihrer Operationen (Kopien je Schritt von
+ *   höchstens 1 MB). Liegt der gleitende Mittelwert über der Schwelle, wird der Anteil
+ *   der Zeit, in der die Spur arbeiten darf, halbiert (bis 1/64); liegt er darunter,
+ *   steigt der Anteil langsam wieder (+0.1 alle 250 ms). Nach jeder Operation wird
+ *   entsprechend pausiert.
+ *
+ * Eine Drossel kann von mehreren Ordnern gleichzeitig benutzt werden; die Grenzen
+ * gelten dann für alle zusammen. bericht() liefert am Ende, was erreicht wurde; die
+ * SortierEngine legt ihn in den Sortierlauf.
+ */
+final class Drossel {
+
+    static final String OPS_PROPERTY = "downloadcleaner.drossel.ops";
+    static final String BYTES_PROPERTY = "downloadcleaner.drossel.bytes";
+    static final String LATENZ_PROPERTY = "downloadcleaner.drossel.latenz";
+
+    /**
+     * Der Vorrat eines Eimers reicht für diese Zeit.
+     */
+    private static final long VORRAT_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Größter und kleinster Kopierschritt bei gedrosselten Kopien.
+     */
+    private static final long MAX_SCHRITT = 1024 * 1024;
+    private static final long MIN_SCHRITT = 64 * 1024;
+
+    private static final double MIN_ANTEIL = 1.0 / 64;
+    private static final double ANTEIL_SCHRITT = 0.1;
+    private static final long ANPASSUNG_NS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long MAX_PAUSE_NS = TimeUnit.SECONDS.toNanos(2);
+
+    /**
+     * Art der Operation.
+     */
+    enum Spur {
+        UMBENENNEN("Umbenennungen"),
+        KOPIEREN("Kopien");
+
+        final String bezeichnung;
+
+        Spur(String bezeichnung) {
+            this.bezeichnung = bezeichnung;
+        }
+    }
+
+    private final long opsProSekunde;
+    private final long bytesProSekunde;
+    private final long schwelleNs;
+    private final Eimer operationen;
+    private final Eimer bytes;
+    private final SpurZustand[] spuren = {new SpurZustand(), new SpurZustand()};
+
+    /**
+     * @param opsProSekunde   Verschiebungen pro Sekunde, 0 = unbegrenzt.
+     * @param bytesProSekunde kopierte Bytes pro Sekunde, 0 = unbegrenzt.
+     * @param latenzMs        Schwelle für den Rückstau in ms, 0 = kein Rückstau.
+     */
+    Drossel(long opsProSekunde, long bytesProSekunde, long latenzMs) {
+        if (opsProSekunde < 0 || bytesProSekunde < 0 || latenzMs < 0) {
+            throw new IllegalArgumentException("Grenzen dürfen nicht negativ sein");
+        }
+        this.opsProSekunde = opsProSekunde;
+        this.bytesProSekunde = bytesProSekunde;
+        this.schwelleNs = TimeUnit.MILLISECONDS.toNanos(latenzMs);
+        this.operationen = opsProSekunde > 0 ? new Eimer(opsProSekunde, 1) : null;
+        this.bytes = bytesProSekunde > 0 ? new Eimer(bytesProSekunde, MIN_SCHRITT) : null;
+    }
+
+    /**
+     * Liest die Grenzen aus den System-Properties. Ungültige Werte werden dem
+     * Beobachter gemeldet und gelten als "ohne Grenze".
+     *
+     * @param ordner     Arbeitsordner für die Meldung (null = mehrere Ordner).
+     * @param beobachter erhält ungültige Werte (meldung()).
+     * @return Drossel oder null, wenn keine Grenze gesetzt ist.
+     */
+    static Drossel ausSystemProperty(Path ordner, SortierBeobachter beobachter) {
+        return ausSystemProperty(-1, -1, -1, ordner, beobachter);
+    }
+
+    /**
+     * Wie ausSystemProperty(ordner, beobachter), einzelne Werte können aber
+     * vorgegeben werden (z. B. von der Kommandozeile).
+     *
+     * @param ops        Operationen pro Sekunde oder -1 = aus der System-Property.
+     * @param rate       Bytes pro Sekunde oder -1 = aus der System-Property.
+     * @param latenz     Schwelle in ms oder -1 = aus der System-Property.
+     * @param ordner     Arbeitsordner für die Meldung (null = mehrere Ordner).
+     * @param beobachter erhält ungültige Werte (meldung()).
+     * @return Drossel oder null, wenn keine Grenze gesetzt ist.
+     */
+    static Drossel ausSystemProperty(long ops, long rate, long latenz, Path ordner, SortierBeobachter beobachter) {
+        ops = ops >= 0 ? ops : leseProperty(OPS_PROPERTY, ordner, beobachter);
+        rate = rate >= 0 ? rate : leseProperty(BYTES_PROPERTY, ordner, beobachter);
+        latenz = latenz >= 0 ? latenz : leseProperty(LATENZ_PROPERTY, ordner, beobachter);
+        if (ops == 0 && rate == 0 && latenz == 0) {
+            return null;
+        }
+        return new Drossel(ops, rate, latenz);
+    }
+
+    private static long leseProperty(String property, Path ordner, SortierBeobachter beobachter) {
+        String wert = System.getProperty(property);
+        if (wert == null || wert.isBlank()) {
+            return 0;
+        }
+        try {
+            long zahl = property.equals(BYTES_PROPERTY) ? Regelwerk.leseGroesse(wert) : Long.parseLong(wert.trim());
+            if (zahl >= 0) {
+                return zahl;
+            }
+        } catch (IllegalArgumentException e) {
+            // unten gemeldet
+        }
+        beobachter.meldung(ordner, "Ungültiger Wert für " + property + ": '" + wert + "', ohne Grenze.");
+        return 0;
+    }
+
+    /**
+     * @return Größe eines Kopierschritts: etwa ein Zehntel der Bytes pro Sekunde,
+     *         zwischen 64 KB und 1 MB.
+     */
+    long kopierSchritt() {
+        if (bytesProSekunde == 0) {
+            return MAX_SCHRITT;
+        }
+        return Math.max(MIN_SCHRITT, Math.min(MAX_SCHRITT, bytesProSekunde / 10));
+    }
+
+    /**
+     * Wartet, bis eine weitere Verschiebung erlaubt ist.
+     *
+     * @param spur Spur der Operation.
+     * @throws InterruptedIOException wenn der Thread beim Warten unterbrochen wird.
+     */
+    void warteAufOperation(Spur spur) throws InterruptedIOException {
+        if (operationen != null) {
+            spuren[spur.ordinal()].gewartetNs(schlafe(operationen.nimm(1)));
+        }
+    }
+
+    /**
+     * Wartet, bis so viele Bytes kopiert werden dürfen (nur Spur KOPIEREN).
+     *
+     * @param anzahl Bytes des nächsten Schritts.
+     * @throws InterruptedIOException wenn der Thread beim Warten unterbrochen wird.
+     */
+    void warteAufBytes(long anzahl) throws InterruptedIOException {
+        if (bytes != null) {
+            spuren[Spur.KOPIEREN.ordinal()].gewartetNs(schlafe(bytes.nimm(anzahl)));
+        }
+    }
+
+    /**
+     * Meldet die Dauer einer Operation (bzw. eines Kopierschritts) und pausiert, wenn
+     * der Rückstau greift.
+     *
+     * @param spur    Spur der Operation.
+     * @param dauerNs gemessene Dauer.
+     * @throws InterruptedIOException wenn der Thread beim Warten unterbrochen wird.
+     */
+    void gemessen(Spur spur, long dauerNs) throws InterruptedIOException {
+        SpurZustand z = spuren[spur.ordinal()];
+        long pause = z.messe(dauerNs, schwelleNs);
+        z.pausiertNs(schlafe(pause));
+    }
+
+    /**
+     * Zählt eine fertige Verschiebung für den Bericht.
+     *
+     * @param spur    Spur der Operation.
+     * @param anzahl  bewegte Bytes (bei Umbenennungen 0).
+     */
+    void erledigt(Spur spur, long anzahl) {
+        spuren[spur.ordinal()].erledigt(anzahl);
+    }
+
+    /**
+     * @return die eingestellten Grenzen als Text, z. B. "200 Operationen/s, 50.0 MB/s".
+     */
+    String beschreibung() {
+        StringBuilder b = new StringBuilder();
+        if (opsProSekunde > 0) {
+            b.append(opsProSekunde).append(" Operationen/s");
+        }
+        if (bytesProSekunde > 0) {
+            b.append(b.length() > 0 ? ", " : "").append(DuplikatSuche.formatiereGroesse(bytesProSekunde)).append("/s");
+        }
+        if (schwelleNs > 0) {
+            b.append(b.length() > 0 ? ", " : "").append("Rückstau ab ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(schwelleNs)).append(" ms");
+        }
+        return b.toString();
+    }
+
+    /**
+     * Erreichte Werte je Spur, ohne sie auszugeben.
+     *
+     * @return Überschrift und eine Zeile je benutzter Spur.
+     */
+    List<String> bericht() {
+        List<String> zeilen = new ArrayList<>();
+        zeilen.add("Drosselung (" + beschreibung() + "):");
+        for (Spur spur : Spur.values()) {
+            SpurZustand z = spuren[spur.ordinal()];
+            synchronized (z) {
+                if (z.operationen == 0) {
+                    continue;
+                }
+                double sekunden = Math.max(1, z.letzteNs - z.ersteNs) / 1e9;
+                String durchsatz = String.format("%.1f/s", z.operationen / sekunden);
+                if (spur == Spur.KOPIEREN) {
+                    durchsatz += ", " + DuplikatSuche.formatiereGroesse((long) (z.bytes / sekunden)) + "/s";
+                }
+                zeilen.add(String.format("  %-14s %d in %.1f s (%s), gewartet %d ms, Rückstau %d ms"
+                                + " (Mittel %.1f ms, kleinster Anteil %.0f %%)",
+                        spur.bezeichnung + ":", z.operationen, sekunden, durchsatz,
+                        TimeUnit.NANOSECONDS.toMillis(z.gewartetNs), TimeUnit.NANOSECONDS.toMillis(z.pausiertNs),
+                        z.messungen == 0 ? 0 : z.dauerSummeNs / 1e6 / z.messungen, z.kleinsterAnteil * 100));
+            }
+        }
+        return zeilen;
+    }
+
+    /**
+     * Schläft die angegebene Zeit.
+     *
+     * @return tatsächlich gewartete Zeit in ns.
+     */
+    private static long schlafe(long ns) throws InterruptedIOException {
+        if (ns <= 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try {
+            TimeUnit.NANOSECONDS.sleep(ns);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Sortierung unterbrochen");
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Token-Eimer mit fester Rate.
+     */
+    private static final class Eimer {
+        private final double proNs;
+        private final double kapazitaet;
+        private double vorrat;
+        private long zuletztNs = System.nanoTime();
+
+        Eimer(long proSekunde, long mindestens) {
+            this.proNs = proSekunde / 1e9;
+            this.kapazitaet = Math.max(mindestens, proSekunde * (VORRAT_NS / 1e9));
+            this.vorrat = kapazitaet;
+        }
+
+        /**
+         * Nimmt Token und liefert, wie lange der Aufrufer warten muss, bis sie
+         * nachgelaufen sind.
+         */
+        synchronized long nimm(long anzahl) {
+            long jetzt = System.nanoTime();
+            vorrat = Math.min(kapazitaet, vorrat + (jetzt - zuletztNs) * proNs);
+            zuletztNs = jetzt;
+            vorrat -= anzahl;
+            return vorrat >= 0 ? 0 : (long) (-vorrat / proNs);
+        }
+    }
+
+    /**
+     * Messwerte und Rückstau einer Spur.
+     */
+    private static final class SpurZustand {
+        long operationen;
+        long bytes;
+        long ersteNs;
+        long letzteNs;
+        long gewartetNs;
+        long pausiertNs;
+        long messungen;
+        long dauerSummeNs;
+
+        /** Anteil der Zeit, in der die Spur arbeiten darf (1 = kein Rückstau). */
+        double anteil = 1;
+        double kleinsterAnteil = 1;
+        double mittelNs;
+        long angepasstNs;
+
+        synchronized void erledigt(long anzahl) {
+            long jetzt = System.nanoTime();
+            if (operationen++ == 0) {
+                ersteNs = jetzt;
+            }
+            letzteNs = jetzt;
+            bytes += anzahl;
+        }
+
+        synchronized void gewartetNs(long ns) {
+            gewartetNs += ns;
+        }
+
+        synchronized void pausiertNs(long ns) {
+            pausiertNs += ns;
+        }
+
+        /**
+         * Nimmt eine Dauer auf und liefert die Pause danach.
+         */
+        synchronized long messe(long dauerNs, long schwelleNs) {
+            messungen++;
+            dauerSummeNs += dauerNs;
+            if (schwelleNs == 0) {
+                return 0;
+            }
+            mittelNs = mittelNs == 0 ? dauerNs : 0.8 * mittelNs + 0.2 * dauerNs;
+            long jetzt = System.nanoTime();
+            if (jetzt - angepasstNs >= ANPASSUNG_NS) {
+                angepasstNs = jetzt;
+                if (mittelNs > schwelleNs) {
+                    anteil = Math.max(MIN_ANTEIL, anteil / 2);
+                    kleinsterAnteil = Math.min(kleinsterAnteil, anteil);
+                } else {
+                    anteil = Math.min(1, anteil + ANTEIL_SCHRITT);
+                }
+            }
+            // Arbeitet die Spur nur den Anteil a der Zeit, folgt auf d Arbeit d * (1/a - 1) Pause
+            return anteil >= 1 ? 0 : Math.min(MAX_PAUSE_NS, (long) (dauerNs * (1 / anteil - 1)));
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Findet Dateien mit identischem Inhalt im Arbeitsordner (einschließlich Unterordner).
+ *
+ * Die Suche läuft in drei Stufen, jede Stufe liest nur noch die Kandidaten der
+ * vorherigen:
+ * 1. Gruppieren nach Größe (aus den Attributen des Scans, ohne eine Datei zu öffnen).
+ *    Eine Datei mit eindeutiger Größe kann kein Duplikat sein.
+ * 2. Prüfsumme (CRC32C) über die ersten und letzten TEIL_GROESSE Bytes. Die meisten
+ *    gleich großen, aber verschiedenen Dateien unterscheiden sich schon hier.
+ * 3. SHA-256 über den ganzen Inhalt, nur für Dateien, die auch in Stufe 2 noch
+ *    übereinstimmen.
+ *
+ * Stufe 2 und 3 laufen parallel auf so vielen Threads, wie Prozessoren vorhanden sind.
+ * Gelesen wird über FileChannel in einen direkten Puffer pro Thread. Damit nicht
+ * mehrere sehr große Dateien gleichzeitig gelesen werden, begrenzt ein Semaphor die
+ * Summe der Bytes, die gerade gehasht werden (MAX_BYTES_IN_ARBEIT).
+ *
+ * Harte Links (gleicher fileKey) belegen keinen zusätzlichen Platz und werden nur
+ * einmal gezählt. Leere Dateien und Teildateien unvollständiger Kopien (siehe
+ * DateiUmzug) werden ignoriert.
+ *
+ * Außerdem stellt die Klasse die Duplikat-Prüfung beim Sortieren bereit
+ * (zielBeimSortieren), eingeschaltet mit -Ddownloadcleaner.duplikate=an.
+ */
+final class DuplikatSuche {
+
+    /**
+     * Name der System-Property für die Duplikat-Prüfung beim Sortieren.
+     */
+    static final String PROPERTY = "downloadcleaner.duplikate";
+
+    /**
+     * Unterordner, in den beim Sortieren erkannte Duplikate verschoben werden.
+     */
+    static final String DUPLIKAT_ORDNER = "Duplikate";
+
+    /**
+     * Anzahl Bytes am Anfang und am Ende einer Datei für Stufe 2.
+     */
+    static final int TEIL_GROESSE = 4096;
+
+    /**
+     * Obergrenze für die Summe der Dateigrößen, die gleichzeitig gehasht werden.
+     */
+    static final long MAX_BYTES_IN_ARBEIT = 256L * 1024 * 1024;
+
+    private static final int BLOCK_GROESSE = 1024 * 1024;
+
+    /**
+     * Höchstens so viele Gruppen werden einzeln angezeigt.
+     */
+    private static final int MAX_ANGEZEIGTE_GRUPPEN = 20;
+
+    private static final Lesepuffer PUFFER = new Lesepuffer(BLOCK_GROESSE);
+
+    /**
+     * Eine Datei, die als Duplikat in Frage kommt.
+     */
+    static final class Datei {
+        final Path pfad;
+        final long groesse;
+        final long geaendertMs;
+
+        Datei(Path pfad, long groesse, long geaendertMs) {
+            this.pfad = pfad;
+            this.groesse = groesse;
+            this.geaendertMs = geaendertMs;
+        }
+    }
+
+    private final Path downloadDir;
+    private final DownloadCleaner.KategorieKonfiguration kategorien;
+    private final int maxTiefe;
+    private final int anzahlThreads;
+
+    /** Semaphor-Einheiten sind KiB, damit auch große Budgets in ein int passen. */
+    private final Semaphore budget = new Semaphore((int) (MAX_BYTES_IN_ARBEIT / 1024));
+    private final AtomicLong gelesenBytes = new AtomicLong();
+
+    private int anzahlDateien;
+    private int harteLinks;
+    private int nachGroesse;
+    private int nachTeilen;
+
+    /**
+     * @param downloadDir   zu durchsuchender Ordner.
+     * @param kategorien    Kategorie-Konfiguration (für den Bericht pro Kategorie).
+     * @param maxTiefe      maximale Tiefe der Unterordner.
+     * @param anzahlThreads Anzahl Threads für Stufe 2 und 3 (mindestens 1).
+     */
+    DuplikatSuche(Path downloadDir, DownloadCleaner.KategorieKonfiguration kategorien,
+                  int maxTiefe, int anzahlThreads) {
+        this.downloadDir = downloadDir;
+        this.kategorien = kategorien;
+        this.maxTiefe = maxTiefe;
+        this.anzahlThreads = Math.max(1, anzahlThreads);
+    }
+
+    /**
+     * Führt alle drei Stufen aus.
+     *
+     * @return Gruppen identischer Dateien (jeweils mindestens zwei), älteste Datei zuerst.
+     * @throws IOException wenn der Ordner nicht gelesen werden kann.
+     */
+    List<List<Datei>> suche() throws IOException {
+        // Stufe 1: nach Größe
+        Map<Long, List<Datei>> nachGroesseMap = new HashMap<>();
+        Set<Object> gesehen = new HashSet<>();
+        Files.walkFileTree(downloadDir, EnumSet.noneOf(FileVisitOption.class), maxTiefe,
+                new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path datei, BasicFileAttributes attrs) {
+                        if (!attrs.isRegularFile() || attrs.size() == 0
+                                || datei.getFileName().toString().endsWith(DateiUmzug.TEIL_ENDUNG)
+                                || (datei.getParent().equals(downloadDir) && DownloadCleaner.istEigeneDatei(datei))) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        anzahlDateien++;
+                        if (attrs.fileKey() != null && !gesehen.add(attrs.fileKey())) {
+                            harteLinks++;
+                            return FileVisitResult.CONTINUE;
+                        }
+                        nachGroesseMap.computeIfAbsent(attrs.size(), g -> new ArrayList<>())
+                                .add(new Datei(datei, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path datei, IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+        List<List<Datei>> gruppen = mehrfach(nachGroesseMap.values());
+        nachGroesse = zaehle(gruppen);
+
+        try (ExecutorService pool = Executors.newFixedThreadPool(anzahlThreads)) {
+            // Stufe 2: Anfang und Ende
+            gruppen = verfeinere(pool, gruppen, DuplikatSuche::teilPruefsumme);
+            nachTeilen = zaehle(gruppen);
+
+            // Stufe 3: ganzer Inhalt
+            gruppen = verfeinere(pool, gruppen, this::vollerHash);
+        }
+
+        for (List<Datei> g : gruppen) {
+            g.sort(Comparator.comparingLong((Datei d) -> d.geaendertMs).thenComparing(d -> d.pfad));
+        }
+        gruppen.sort(Comparator.comparingLong((List<Datei> g) -> freigebbar(g)).reversed());
+        return gruppen;
+    }
+
+    /**
+     * Berechnet für jede Datei aller Gruppen parallel einen Schlüssel und teilt die
+     * Gruppen danach weiter auf. Nicht lesbare Dateien fallen heraus.
+     */
+    private static List<List<Datei>> verfeinere(ExecutorService pool, List<List<Datei>> gruppen,
+                                               HashFunktion funktion) throws IOException {
+        List<List<Future<String>>> ergebnisse = new ArrayList<>(gruppen.size());
+        for (List<Datei> g : gruppen) {
+            List<Future<String>> f = new ArrayList<>(g.size());
+            for (Datei d : g) {
+                f.add(pool.submit(() -> {
+                    try {
+                        return funktion.berechne(d);
+                    } catch (IOException e) {
+                        return null;
+                    }
+                }));
+            }
+            ergebnisse.add(f);
+        }
+
+        List<List<Datei>> neu = new ArrayList<>();
+        for (int i = 0; i < gruppen.size(); i++) {
+            Map<String, List<Datei>> unterteilt = new HashMap<>();
+            for (int j = 0; j < gruppen.get(i).size(); j++) {
+                String schluessel = warte(ergebnisse.get(i).get(j));
+                if (schluessel != null) {
+                    unterteilt.computeIfAbsent(schluessel, s -> new ArrayList<>()).add(gruppen.get(i).get(j));
+                }
+            }
+            neu.addAll(mehrfach(unterteilt.values()));
+        }
+        return neu;
+    }
+
+    @FunctionalInterface
+    private interface HashFunktion {
+        String berechne(Datei datei) throws IOException;
+    }
+
+    private static String warte(Future<String> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Duplikatsuche unterbrochen");
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private static List<List<Datei>> mehrfach(Iterable<List<Datei>> gruppen) {
+        List<List<Datei>> ergebnis = new ArrayList<>();
+        for (List<Datei> g : gruppen) {
+            if (g.size() > 1) {
+                ergebnis.add(g);
+            }
+        }
+        return ergebnis;
+    }
+
+    private static int zaehle(List<List<Datei>> gruppen) {
+        int n = 0;
+        for (List<Datei> g : gruppen) {
+            n += g.size();
+        }
+        return n;
+    }
+
+    /**
+     * Stufe 2: CRC32C über Anfang und Ende (bei kleinen Dateien über alles).
+     */
+    private static String teilPruefsumme(Datei d) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel kanal = FileChannel.open(d.pfad, StandardOpenOption.READ)) {
+            crc.update(PUFFER.lies(kanal, 0, (int) Math.min(d.groesse, TEIL_GROESSE)));
+            long ende = Math.max(TEIL_GROESSE, d.groesse - TEIL_GROESSE);
+            if (ende < d.groesse) {
+                crc.update(PUFFER.lies(kanal, ende, (int) (d.groesse - ende)));
+            }
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Stufe 3: SHA-256 über den ganzen Inhalt, blockweise gelesen.
+     */
+    private String vollerHash(Datei d) throws IOException {
+        int kib = (int) Math.min((d.groesse + 1023) / 1024, MAX_BYTES_IN_ARBEIT / 1024);
+        budget.acquireUninterruptibly(kib);
+        try (FileChannel kanal = FileChannel.open(d.pfad, StandardOpenOption.READ)) {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            long position = 0;
+            while (true) {
+                ByteBuffer puffer = PUFFER.lies(kanal, position, BLOCK_GROESSE);
+                if (!puffer.hasRemaining()) {
+                    break;
+                }
+                position += puffer.remaining();
+                sha.update(puffer);
+            }
+            gelesenBytes.addAndGet(position);
+            // Datei hat sich während der Suche verändert: nicht als Duplikat melden
+            if (position != d.groesse) {
+                return null;
+            }
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 nicht verfügbar", e);
+        } finally {
+            budget.release(kib);
+        }
+    }
+
+    /**
+     * Platz, der frei würde, wenn nur die erste Datei der Gruppe bliebe.
+     */
+    private static long freigebbar(List<Datei> gruppe) {
+        return gruppe.get(0).groesse * (gruppe.size() - 1);
+    }
+
+    /**
+     * Sucht und gibt den Bericht aus: Stufen, größte Gruppen und freigebbarer Platz
+     * pro Kategorie.
+     */
+    void sucheUndBerichte() {
+        long start = System.nanoTime();
+        List<List<Datei>> gruppen;
+        try {
+            gruppen = suche();
+        } catch (IOException e) {
+            System.out.println("Fehler bei der Duplikatsuche: " + e.getMessage());
+            return;
+        }
+        long ms = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("\nDuplikatsuche abgeschlossen in " + ms + " ms (" + anzahlThreads + " Threads).");
+        System.out.printf("  %-31s %d%n", "Dateien:", anzahlDateien);
+        System.out.printf("  %-31s %d%n", "Harte Links (ignoriert):", harteLinks);
+        System.out.printf("  %-31s %d%n", "Kandidaten nach Größe:", nachGroesse);
+        System.out.printf("  %-31s %d%n", "Kandidaten nach Anfang/Ende:", nachTeilen);
+        System.out.printf("  %-31s %s%n", "Vollständig gelesen:", formatiereGroesse(gelesenBytes.get()));
+
+        if (gruppen.isEmpty()) {
+            System.out.println("Keine Duplikate gefunden.");
+            return;
+        }
+
+        System.out.println("\nGrößte Duplikat-Gruppen (die älteste Datei gilt als Original):");
+        for (int i = 0; i < Math.min(gruppen.size(), MAX_ANGEZEIGTE_GRUPPEN); i++) {
+            List<Datei> g = gruppen.get(i);
+            System.out.println(g.size() + " × " + formatiereGroesse(g.get(0).groesse)
+                    + " (" + formatiereGroesse(freigebbar(g)) + " freigebbar)");
+            System.out.println("    Original: " + downloadDir.relativize(g.get(0).pfad));
+            for (Datei d : g.subList(1, g.size())) {
+                System.out.println("    Kopie:    " + downloadDir.relativize(d.pfad));
+            }
+        }
+        if (gruppen.size() > MAX_ANGEZEIGTE_GRUPPEN) {
+            System.out.println("... und " + (gruppen.size() - MAX_ANGEZEIGTE_GRUPPEN) + " weitere Gruppen.");
+        }
+
+        // Freigebbarer Platz pro Kategorie der Kopien
+        DownloadCleaner.KategorieZaehler proKategorie = new DownloadCleaner.KategorieZaehler(kategorien);
+        long gesamt = 0;
+        int kopien = 0;
+        for (List<Datei> g : gruppen) {
+            for (Datei d : g.subList(1, g.size())) {
+                proKategorie.zaehle(kategorien.bestimmeKategorieId(d.pfad, null), d.groesse);
+                gesamt += d.groesse;
+                kopien++;
+            }
+        }
+        // in Konfigurationsreihenfolge
+        System.out.println("\nFreigebbarer Platz pro Kategorie:");
+        for (Map.Entry<String, KategorieStatistik> e : proKategorie.statistiken().entrySet()) {
+            System.out.printf("  %-20s %6d Kopien  %12s%n", e.getKey() + ":", e.getValue().anzahl,
+                    formatiereGroesse(e.getValue().bytes));
+        }
+        System.out.printf("  %-20s %6d Kopien  %12s%n", "Gesamt:", kopien, formatiereGroesse(gesamt));
+    }
+
+    /**
+     * Formatiert eine Byte-Anzahl lesbar (B, KB, MB, GB; Basis 1024).
+     *
+     * @param bytes Anzahl Bytes.
+     * @return z. B. "12,3 MB".
+     */
+    static String formatiereGroesse(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String[] einheiten = {"KB", "MB", "GB", "TB"};
+        double wert = bytes;
+        int i = -1;
+        while (wert >= 1024 && i < einheiten.length - 1) {
+            wert /= 1024;
+            i++;
+        }
+        return String.format("%.1f %s", wert, einheiten[i]);
+    }
+
+    /**
+     * Prüft, ob die Duplikat-Prüfung beim Sortieren eingeschaltet ist.
+     *
+     * @return true bei -Ddownloadcleaner.duplikate=an.
+     */
+    static boolean beimSortieren() {
+        String wert = System.getProperty(PROPERTY, "aus").trim().toLowerCase();
+        return wert.equals("an") || wert.equals("true");
+    }
+
+    /**
+     * Bestimmt beim Sortieren das Ziel einer Datei, wenn am eigentlichen Ziel schon
+     * eine Datei gleichen Namens liegt.
+     *
+     * Ist deren Inhalt identisch, wird die neue Datei nicht darüber verschoben
+     * (das würde nur eine Kopie ersetzen), sondern in den Ordner Duplikate/. Dort
+     * kann sie geprüft und gelöscht werden; über das Undo-Journal lässt sich auch
+     * diese Bewegung rückgängig machen. Liegt in Duplikate/ schon eine gleichnamige
+     * Datei, wird " (2)", " (3)" … an den Namen gehängt.
+     *
+     * @param quelle          zu sortierende Datei.
+     * @param ziel            eigentliches Ziel im Kategorie-Ordner.
+     * @param kategorieOrdner Zielordner-Cache des Laufs.
+     * @return ziel, wenn dort nichts oder etwas anderes liegt, sonst ein Pfad in Duplikate/.
+     * @throws IOException wenn der Vergleich oder das Anlegen von Duplikate/ fehlschlägt.
+     */
+    static Path zielBeimSortieren(Path quelle, Path ziel, DownloadCleaner.KategorieOrdner kategorieOrdner)
+            throws IOException {
+        if (!Files.exists(ziel) || Files.mismatch(quelle, ziel) != -1) {
+            return ziel;
+        }
+        Path ordner = kategorieOrdner.zielOrdner(DUPLIKAT_ORDNER);
+        return freierName(ordner, quelle.getFileName().toString());
+    }
+
+    private static Path freierName(Path ordner, String name) {
+        Path kandidat = ordner.resolve(name);
+        for (int n = 2; Files.exists(kandidat); n++) {
+            kandidat = ordner.resolve(ZielNamen.nummerierterName(name, n));
+        }
+        return kandidat;
+    }
+}
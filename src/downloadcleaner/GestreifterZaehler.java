@@ -0,0 +1,115 @@
+package downloadcleaner;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Anzahl und Bytes je Kategorie-Id für mehrere Threads gleichzeitig.
+ *
+ * Würden alle Threads dieselben zwei Zähler pro Kategorie erhöhen, stünden sie
+ * ständig um dieselbe Cache-Zeile an. Deshalb gibt es (wie bei LongAdder) mehrere
+ * Streifen: Jeder Thread zählt in "seinem" Streifen, erst beim Auslesen werden die
+ * Streifen addiert. Anders als ein LongAdder pro Kategorie liegen hier alle Zähler
+ * in einem einzigen AtomicLongArray:
+ *
+ *   Streifen 0: anzahl(0) bytes(0) anzahl(1) bytes(1) ... | Abstand
+ *   Streifen 1: anzahl(0) bytes(0) ...                    | Abstand
+ *
+ * Der Abstand von 128 Byte sorgt dafür, dass zwei Streifen nie in derselben
+ * Cache-Zeile liegen. zaehle() legt kein Objekt an.
+ *
+ * Gelesen wird erst, wenn alle Threads fertig sind (uebertrageIn); Zwischenstände
+ * während des Zählens sind nur ungefähr.
+ */
+final class GestreifterZaehler {
+
+    /**
+     * Abstand zwischen zwei Streifen in long-Werten (16 * 8 = 128 Byte).
+     */
+    private static final int ABSTAND = 16;
+
+    private final int anzahlKategorien;
+    private final int breite;
+    private final int maske;
+    private final AtomicLongArray zellen;
+
+    /**
+     * @param anzahlKategorien Anzahl der Ids (siehe KategorieKonfiguration.anzahlKategorien()).
+     * @param streifen         gewünschte Anzahl Streifen, wird auf eine Zweierpotenz aufgerundet.
+     */
+    GestreifterZaehler(int anzahlKategorien, int streifen) {
+        this.anzahlKategorien = anzahlKategorien;
+        this.breite = 2 * anzahlKategorien + ABSTAND;
+        int n = Integer.highestOneBit(Math.max(1, streifen));
+        if (n < streifen) {
+            n <<= 1;
+        }
+        this.maske = n - 1;
+        this.zellen = new AtomicLongArray(n * breite);
+    }
+
+    /**
+     * Zähler für die Kategorien dieser Konfiguration, ein Streifen pro Prozessor.
+     *
+     * @param kategorien Konfiguration, deren Ids gezählt werden.
+     */
+    GestreifterZaehler(DownloadCleaner.KategorieKonfiguration kategorien) {
+        this(kategorien.anzahlKategorien(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Zählt eine Datei.
+     *
+     * @param id      Kategorie-Id.
+     * @param groesse Größe in Bytes.
+     */
+    void zaehle(int id, long groesse) {
+        int i = streifen() * breite + 2 * id;
+        zellen.getAndIncrement(i);
+        zellen.getAndAdd(i + 1, groesse);
+    }
+
+    /**
+     * Streifen des aufrufenden Threads. Die Thread-Id wird gemischt, weil
+     * aufeinanderfolgende Ids sonst nur die unteren Bits unterscheiden.
+     */
+    private int streifen() {
+        long h = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & maske;
+    }
+
+    /**
+     * @param id Kategorie-Id.
+     * @return Summe der Anzahl über alle Streifen.
+     */
+    long anzahl(int id) {
+        return summe(2 * id);
+    }
+
+    /**
+     * @param id Kategorie-Id.
+     * @return Summe der Bytes über alle Streifen.
+     */
+    long bytes(int id) {
+        return summe(2 * id + 1);
+    }
+
+    private long summe(int versatz) {
+        long s = 0;
+        for (int basis = 0; basis < zellen.length(); basis += breite) {
+            s += zellen.get(basis + versatz);
+        }
+        return s;
+    }
+
+    /**
+     * Addiert alle Summen zu einem KategorieZaehler, der mit derselben
+     * Konfiguration angelegt wurde.
+     *
+     * @param ziel Zähler für die Ausgabe.
+     */
+    void uebertrageIn(DownloadCleaner.KategorieZaehler ziel) {
+        for (int id = 0; id < anzahlKategorien; id++) {
+            ziel.addiere(id, anzahl(id), bytes(id));
+        }
+    }
+}
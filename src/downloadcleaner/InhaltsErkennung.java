@@ -0,0 +1,201 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Erkennt den Dateityp am Inhalt ("Magic Bytes") statt an der Endung.
+ *
+ * Wird nur für Dateien benutzt, die der Endungs-Index nicht zuordnen kann (z. B.
+ * "download", "file.bin" oder eine falsche Endung). Dabei gilt:
+ * - Es werden höchstens KOPF_GROESSE Bytes vom Dateianfang gelesen, nie die ganze
+ *   Datei. Nur die ISO-Kennung liegt weiter hinten; dafür werden – wenn sonst nichts
+ *   passt – gezielt 5 Bytes an ihrer Position gelesen.
+ * - Gelesen wird über einen FileChannel in einen direkten ByteBuffer, den jeder
+ *   Thread wiederverwendet (ThreadLocal).
+ * - Ergebnisse werden nach (fileKey, Größe, Änderungszeit) zwischengespeichert.
+ *   Eine unveränderte Datei wird bei einem erneuten Scan also nicht noch einmal
+ *   gelesen, auch nicht, wenn sie inzwischen verschoben wurde.
+ *
+ * Eingeschaltet wird die Erkennung mit -Ddownloadcleaner.inhalt=an.
+ */
+final class InhaltsErkennung {
+
+    /**
+     * Name der System-Property zum Einschalten.
+     */
+    static final String PROPERTY = "downloadcleaner.inhalt";
+
+    /**
+     * Höchstens so viele Bytes werden vom Dateianfang gelesen.
+     */
+    static final int KOPF_GROESSE = 4096;
+
+    /**
+     * Größe des Caches, ab der er geleert wird (einfache Obergrenze für den Speicher).
+     */
+    private static final int MAX_CACHE = 100_000;
+
+    /**
+     * Markiert im Cache "kein bekannter Inhalt".
+     */
+    private static final String UNBEKANNT = "";
+
+    /**
+     * Eine Signatur: Bytefolge an fester Position, zugehörige Kategorie.
+     */
+    private static final class Signatur {
+        final int position;
+        final byte[] bytes;
+        final String kategorie;
+
+        Signatur(int position, String kategorie, int... bytes) {
+            this.position = position;
+            this.kategorie = kategorie;
+            this.bytes = new byte[bytes.length];
+            for (int i = 0; i < bytes.length; i++) {
+                this.bytes[i] = (byte) bytes[i];
+            }
+        }
+    }
+
+    private static final Signatur ZIP = new Signatur(0, "Archive", 'P', 'K', 3, 4);
+
+    /**
+     * Signaturtabelle; die erste passende gewinnt.
+     */
+    private static final Signatur[] SIGNATUREN = {
+            new Signatur(0, "Bilder", 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A),
+            new Signatur(0, "Bilder", 0xFF, 0xD8, 0xFF),                       // JPEG
+            new Signatur(0, "Bilder", 'G', 'I', 'F', '8'),
+            new Signatur(8, "Bilder", 'W', 'E', 'B', 'P'),                     // RIFF....WEBP
+            new Signatur(0, "Dokumente", '%', 'P', 'D', 'F', '-'),
+            ZIP,                                                               // genauer: siehe zipKategorie
+            new Signatur(0, "Archive", '7', 'z', 0xBC, 0xAF, 0x27, 0x1C),
+            new Signatur(0, "Archive", 'R', 'a', 'r', '!', 0x1A, 0x07),
+            new Signatur(0, "Archive", 0x1F, 0x8B, 0x08),                      // gzip (deflate)
+            new Signatur(257, "Archive", 'u', 's', 't', 'a', 'r'),             // tar
+            new Signatur(0, "Archive", 'v', 'h', 'd', 'x', 'f', 'i', 'l', 'e'),
+            new Signatur(0x8001, "Archive", 'C', 'D', '0', '0', '1'),          // ISO 9660
+            new Signatur(0, "Installer", 'M', 'Z'),                            // PE (.exe)
+            // OLE-Verbunddatei: MSI, aber auch alte Office-Dateien (.doc/.xls) nutzen dieses Format
+            new Signatur(0, "Installer", 0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1),
+            new Signatur(0, "Java", 0xCA, 0xFE, 0xBA, 0xBE),                   // .class
+    };
+
+    private static final byte[] META_INF = "META-INF/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OFFICE_OPEN_XML = "[Content_Types].xml".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OPEN_DOCUMENT = "mimetypeapplication/vnd.oasis".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Lesepuffer PUFFER = new Lesepuffer(KOPF_GROESSE);
+
+    /**
+     * Cache-Schlüssel: dieselbe Datei mit unveränderter Größe und Änderungszeit.
+     */
+    private record Schluessel(Object datei, long groesse, long geaendertMs) {
+    }
+
+    private final Map<Schluessel, String> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Liefert eine Erkennung, wenn sie per System-Property eingeschaltet ist.
+     *
+     * @return neue InhaltsErkennung oder null (ausgeschaltet).
+     */
+    static InhaltsErkennung ausSystemProperty() {
+        String wert = System.getProperty(PROPERTY, "aus").trim().toLowerCase();
+        return wert.equals("an") || wert.equals("true") ? new InhaltsErkennung() : null;
+    }
+
+    /**
+     * Bestimmt die Kategorie anhand des Dateiinhalts.
+     *
+     * @param datei zu prüfende Datei.
+     * @param attrs bereits gelesene Attribute oder null (dann werden sie hier gelesen).
+     * @return Kategoriename oder null, wenn keine Signatur passt oder die Datei nicht
+     *         gelesen werden kann.
+     */
+    String erkenne(Path datei, BasicFileAttributes attrs) {
+        try {
+            if (attrs == null) {
+                attrs = Files.readAttributes(datei, BasicFileAttributes.class);
+            }
+            Object id = attrs.fileKey() != null ? attrs.fileKey() : datei.toAbsolutePath();
+            Schluessel schluessel = new Schluessel(id, attrs.size(), attrs.lastModifiedTime().toMillis());
+
+            String kategorie = cache.get(schluessel);
+            if (kategorie == null) {
+                kategorie = liesUndVergleiche(datei, attrs.size());
+                if (cache.size() >= MAX_CACHE) {
+                    cache.clear();
+                }
+                cache.put(schluessel, kategorie);
+            }
+            return kategorie.isEmpty() ? null : kategorie;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String liesUndVergleiche(Path datei, long groesse) throws IOException {
+        try (FileChannel kanal = FileChannel.open(datei, StandardOpenOption.READ)) {
+            ByteBuffer puffer = PUFFER.lies(kanal, 0, KOPF_GROESSE);
+            for (Signatur s : SIGNATUREN) {
+                if (s.position + s.bytes.length <= puffer.limit() && passt(puffer, s.position, s.bytes)) {
+                    return s == ZIP ? zipKategorie(puffer) : s.kategorie;
+                }
+            }
+
+            // Signaturen hinter dem Kopf (ISO): nur genau diese Bytes lesen
+            for (Signatur s : SIGNATUREN) {
+                if (s.position + s.bytes.length > KOPF_GROESSE && s.position + s.bytes.length <= groesse) {
+                    puffer = PUFFER.lies(kanal, s.position, s.bytes.length);
+                    if (puffer.limit() == s.bytes.length && passt(puffer, 0, s.bytes)) {
+                        return s.kategorie;
+                    }
+                }
+            }
+        }
+        return UNBEKANNT;
+    }
+
+    private static boolean passt(ByteBuffer puffer, int position, byte[] erwartet) {
+        for (int i = 0; i < erwartet.length; i++) {
+            if (puffer.get(position + i) != erwartet[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ZIP ist auch das Format von .jar, .docx/.xlsx und .odt. Der Name des ersten
+     * Eintrags steht ab Byte 30 im Kopf und verrät meist, worum es sich handelt.
+     */
+    private static String zipKategorie(ByteBuffer kopf) {
+        if (enthaelt(kopf, META_INF)) {
+            return "Java";
+        }
+        if (enthaelt(kopf, OFFICE_OPEN_XML) || enthaelt(kopf, OPEN_DOCUMENT)) {
+            return "Dokumente";
+        }
+        return ZIP.kategorie;
+    }
+
+    private static boolean enthaelt(ByteBuffer puffer, byte[] muster) {
+        for (int i = 0; i + muster.length <= puffer.limit(); i++) {
+            if (passt(puffer, i, muster)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,182 @@
+package downloadcleaner;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kennzahlen einer Kategorie, die in einem Durchlauf Datei für Datei gesammelt werden.
+ *
+ * Der Speicherbedarf ist fest und hängt nicht von der Anzahl der Dateien ab:
+ * - Anzahl und Gesamtgröße als long,
+ * - ein Größen-Histogramm mit Klassen in Viererschritten (< 4 B, < 16 B, … < 1 KB,
+ *   < 4 KB, …), also logarithmisch,
+ * - ein Alters-Histogramm (Alter = jetzt − Änderungszeit) mit festen Klassen von
+ *   "unter 1 Tag" bis "über 2 Jahre",
+ * - die TOP_N größten und ältesten Dateien. Dafür gibt es je einen Heap mit höchstens
+ *   TOP_N Einträgen, dessen Wurzel der "schwächste" behaltene Eintrag ist. Eine neue
+ *   Datei wird nur aufgenommen, wenn sie ihn schlägt; erst dann wird ihr Pfad als
+ *   String gespeichert.
+ *
+ * Zwei Statistiken derselben Kategorie lassen sich zusammenführen (uebernehme), z. B.
+ * die Teilergebnisse der rekursiven Analyse.
+ */
+final class KategorieStatistik {
+
+    /**
+     * Anzahl der größten bzw. ältesten Dateien, die behalten werden.
+     */
+    static final int TOP_N = 10;
+
+    /**
+     * Anzahl der Größenklassen: Klasse 0 = leere Datei, Klasse i = [4^(i-1), 4^i).
+     */
+    static final int GROESSEN_KLASSEN = 33;
+
+    /**
+     * Obergrenzen der Altersklassen in Tagen; die letzte Klasse ist nach oben offen.
+     */
+    static final int[] ALTER_GRENZEN_TAGE = {1, 7, 30, 90, 365, 730};
+
+    private static final long TAG_MS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Eine Datei in einer der Top-Listen.
+     */
+    static final class Eintrag {
+        final String pfad;
+        final long groesse;
+        final long geaendertMs;
+
+        Eintrag(String pfad, long groesse, long geaendertMs) {
+            this.pfad = pfad;
+            this.groesse = groesse;
+            this.geaendertMs = geaendertMs;
+        }
+    }
+
+    private static final Comparator<Eintrag> KLEINSTE_ZUERST = Comparator.comparingLong(e -> e.groesse);
+    private static final Comparator<Eintrag> NEUESTE_ZUERST =
+            Comparator.comparingLong((Eintrag e) -> e.geaendertMs).reversed();
+
+    long anzahl;
+    long bytes;
+    final long[] groessen = new long[GROESSEN_KLASSEN];
+    final long[] alter = new long[ALTER_GRENZEN_TAGE.length + 1];
+
+    private final PriorityQueue<Eintrag> groesste = new PriorityQueue<>(TOP_N + 1, KLEINSTE_ZUERST);
+    private final PriorityQueue<Eintrag> aelteste = new PriorityQueue<>(TOP_N + 1, NEUESTE_ZUERST);
+
+    /**
+     * Erfasst eine Datei.
+     *
+     * @param datei       Pfad (wird nur für die Top-Listen gespeichert).
+     * @param groesse     Größe in Bytes.
+     * @param geaendertMs Änderungszeit in Millisekunden.
+     * @param jetztMs     Bezugszeitpunkt für das Alter.
+     */
+    void erfasse(Path datei, long groesse, long geaendertMs, long jetztMs) {
+        anzahl++;
+        bytes += groesse;
+        groessen[groessenKlasse(groesse)]++;
+        alter[altersKlasse(jetztMs - geaendertMs)]++;
+
+        if (groesste.size() < TOP_N || groesse > groesste.peek().groesse) {
+            nimmAuf(groesste, new Eintrag(datei.toString(), groesse, geaendertMs));
+        }
+        if (aelteste.size() < TOP_N || geaendertMs < aelteste.peek().geaendertMs) {
+            nimmAuf(aelteste, new Eintrag(datei.toString(), groesse, geaendertMs));
+        }
+    }
+
+    private static void nimmAuf(PriorityQueue<Eintrag> heap, Eintrag e) {
+        heap.add(e);
+        if (heap.size() > TOP_N) {
+            heap.poll();
+        }
+    }
+
+    /**
+     * Addiert die Werte einer anderen Statistik derselben Kategorie.
+     *
+     * @param andere zu übernehmende Statistik.
+     */
+    void uebernehme(KategorieStatistik andere) {
+        anzahl += andere.anzahl;
+        bytes += andere.bytes;
+        for (int i = 0; i < groessen.length; i++) {
+            groessen[i] += andere.groessen[i];
+        }
+        for (int i = 0; i < alter.length; i++) {
+            alter[i] += andere.alter[i];
+        }
+        for (Eintrag e : andere.groesste) {
+            if (groesste.size() < TOP_N || e.groesse > groesste.peek().groesse) {
+                nimmAuf(groesste, e);
+            }
+        }
+        for (Eintrag e : andere.aelteste) {
+            if (aelteste.size() < TOP_N || e.geaendertMs < aelteste.peek().geaendertMs) {
+                nimmAuf(aelteste, e);
+            }
+        }
+    }
+
+    /**
+     * @return die größten Dateien, größte zuerst.
+     */
+    List<Eintrag> groesste() {
+        List<Eintrag> liste = new ArrayList<>(groesste);
+        liste.sort(KLEINSTE_ZUERST.reversed());
+        return liste;
+    }
+
+    /**
+     * @return die ältesten Dateien, älteste zuerst.
+     */
+    List<Eintrag> aelteste() {
+        List<Eintrag> liste = new ArrayList<>(aelteste);
+        liste.sort(NEUESTE_ZUERST.reversed());
+        return liste;
+    }
+
+    /**
+     * Größenklasse einer Datei: 0 für leere Dateien, sonst i mit 4^(i-1) <= groesse < 4^i.
+     *
+     * @param groesse Größe in Bytes.
+     * @return Klassenindex.
+     */
+    static int groessenKlasse(long groesse) {
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(0, groesse));
+        return (bits + 1) / 2;
+    }
+
+    /**
+     * Untergrenze einer Größenklasse in Bytes (0 für Klasse 0).
+     *
+     * @param klasse Klassenindex.
+     * @return kleinste Größe der Klasse.
+     */
+    static long groessenUntergrenze(int klasse) {
+        return klasse == 0 ? 0 : 1L << (2 * (klasse - 1));
+    }
+
+    /**
+     * Altersklasse für ein Alter in Millisekunden (Zeitstempel in der Zukunft zählen
+     * als "unter 1 Tag").
+     *
+     * @param alterMs Alter in Millisekunden.
+     * @return Klassenindex.
+     */
+    static int altersKlasse(long alterMs) {
+        long tage = Math.max(0, alterMs) / TAG_MS;
+        int i = 0;
+        while (i < ALTER_GRENZEN_TAGE.length && tage >= ALTER_GRENZEN_TAGE[i]) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,569 @@
+package downloadcleaner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Nicht-interaktiver Betrieb: ein Befehl für beliebig viele Ordner, z. B. aus einem
+ * Skript oder einem geplanten Task.
+ *
+ *   java downloadcleaner.DownloadCleaner sort --workers 4 ~/Downloads /mnt/nas/eingang
+ *
+ * Befehle: analyze, sort, dry-run, apply, undo, history (siehe HILFE).
+ *
+ * Ablauf:
+ * - Analyse, Plan, Sortierung und Undo laufen über die SortierEngine, hier im
+ *   Thread des jeweiligen Ordners (Executor Runnable::run). Ausgaben pro Datei
+ *   kommen über einen KonsolenBeobachter.
+ * - Jeder Ordner lädt seine eigene config.txt (SortierKonfiguration.laden); die
+ *   Konfiguration des Menüs wird nicht benutzt.
+ * - Die Ordner laufen gleichzeitig in einem festen Pool mit --workers Threads. Das ist
+ *   das gemeinsame Budget: Gibt es weniger Ordner als Worker, bekommt jeder Ordner
+ *   für die rekursive Analyse und das Undo entsprechend mehr Threads, insgesamt aber
+ *   nie mehr als --workers. Sortiert wird innerhalb eines Ordners nacheinander.
+ * - dry-run schreibt pro Ordner einen Sortierplan, apply führt ihn später ohne
+ *   neuen Scan aus (siehe SortierPlan). Dateien, die sich seitdem geändert haben,
+ *   werden übersprungen und gezählt, gelten aber nicht als Fehler.
+ * - sort und apply lassen sich mit --max-ops, --max-rate und --max-latency bremsen
+ *   (siehe Drossel). Die Grenzen gelten für alle Ordner des Aufrufs zusammen; in der
+ *   Zusammenfassung steht der erreichte Durchsatz.
+ * - history sucht in log.txt und den rotierten Segmenten (siehe LogArchiv) nach dem
+ *   Verlauf einer Datei (--file) oder den Bewegungen eines Tages (--date).
+ * - Pro fertigem Ordner erscheint eine Zeile "[ok]" bzw. "[FEHLER]", am Ende eine
+ *   gemeinsame Zusammenfassung.
+ *
+ * Rückgabewerte (Exit-Code):
+ * - 0 = alle Ordner ohne Fehler,
+ * - 1 = mindestens ein Ordner fehlgeschlagen oder mit Dateifehlern,
+ * - 2 = ungültiger Aufruf (unbekannter Befehl oder Schalter, keine Ordner).
+ */
+final class Kommandozeile {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FEHLER = 1;
+    static final int EXIT_AUFRUF = 2;
+
+    private static final String HILFE = String.join(System.lineSeparator(),
+            "Aufruf: DownloadCleaner <befehl> [optionen] <ordner>...",
+            "",
+            "Befehle:",
+            "  analyze   Dateien pro Kategorie zählen (Größe, Alter)",
+            "  sort      Dateien in Kategorie-Unterordner verschieben",
+            "  dry-run   Sortierplan schreiben (sortierplan.txt), nichts verschieben",
+            "  apply     Sortierplan ausführen, ohne den Ordner neu zu lesen",
+            "  undo      letzten Sortierlauf (oder --run) rückgängig machen",
+            "  history   Log durchsuchen (--file und/oder --date), auch rotierte Segmente",
+            "",
+            "Optionen:",
+            "  --workers N        gleichzeitige Threads insgesamt (Standard: Anzahl Kerne)",
+            "  --recursive        analyze: Unterordner einbeziehen",
+            "  --max-depth N      analyze: maximale Tiefe mit --recursive (Standard: 32)",
+            "  --run ID           undo: Lauf-Nummer aus dem Undo-Journal",
+            "  --plan DATEI       dry-run/apply: Plandatei statt <ordner>/sortierplan.txt",
+            "                     (nur mit genau einem Ordner)",
+            "  --file NAME        history: Bewegungen dieser Datei (Name ohne Ordner)",
+            "  --date JJJJ-MM-TT  history: Bewegungen an diesem Tag",
+            "  --max-ops N        sort/apply: höchstens N Verschiebungen pro Sekunde",
+            "  --max-rate GROESSE sort/apply: höchstens so viele Bytes pro Sekunde kopieren (z. B. 50MB)",
+            "  --max-latency MS   sort/apply: bremsen, wenn eine Verschiebung länger dauert",
+            "  --roots-from DATEI weitere Ordner, einer pro Zeile ('-' = Standardeingabe)",
+            "  --quiet            nur die Zusammenfassung ausgeben",
+            "  --verbose          zusätzlich eine Zeile pro Datei",
+            "  --help             diese Hilfe",
+            "",
+            "Exit-Code: 0 = ok, 1 = Fehler in mindestens einem Ordner, 2 = ungültiger Aufruf");
+
+    private static final int STANDARD_MAX_TIEFE = 32;
+
+    /**
+     * Ausgabemenge.
+     */
+    private static final int LEISE = 0;
+    private static final int NORMAL = 1;
+    private static final int AUSFUEHRLICH = 2;
+
+    private String befehl;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private boolean rekursiv;
+    private int maxTiefe = STANDARD_MAX_TIEFE;
+    private long laufId = -1;
+    private int ausgabe = NORMAL;
+    private Path planDatei;
+    private String suchName;
+    private LocalDate suchTag;
+    /** Grenzen der Drossel, -1 = aus der System-Property. */
+    private long maxOps = -1;
+    private long maxRate = -1;
+    private long maxLatenz = -1;
+    /** Gemeinsame Drossel aller Ordner (sort/apply) oder null. */
+    private Drossel drossel;
+    /** Engine ohne eigenen Pool: die Ordner-Threads führen die Vorgänge selbst aus. */
+    private final SortierEngine engine = new SortierEngine(Runnable::run);
+    private final Set<Path> ordner = new LinkedHashSet<>();
+
+    /**
+     * Threads, die ein einzelner Ordner nutzen darf (Anteil am Budget).
+     */
+    private int anteil = 1;
+
+    private Kommandozeile() {
+    }
+
+    /**
+     * Ergebnis eines Ordners.
+     */
+    private static final class OrdnerErgebnis {
+        final Path ordner;
+        boolean ok = true;
+        /** Einzeilige Beschreibung für die Ausgabe. */
+        String meldung = "";
+        /** Verschobene, zurückverschobene bzw. (dry-run) zu verschiebende Dateien. */
+        long dateien;
+        /** Dateien, die nicht bearbeitet werden konnten. */
+        long fehler;
+        /** apply: Dateien, die seit dem Plan fehlen oder sich geändert haben. */
+        long veraendert;
+        /**
+         * Hinweise zu config.txt, dazu history: gefundene Bewegungen, sort/apply: Kontingente;
+         * werden nach der Statuszeile ausgegeben.
+         */
+        final List<String> zeilen = new ArrayList<>();
+        /** Zähler der Analyse bzw. des Trockenlaufs (sonst null). */
+        DownloadCleaner.KategorieZaehler zaehler;
+
+        OrdnerErgebnis(Path ordner) {
+            this.ordner = ordner;
+        }
+
+        OrdnerErgebnis fehlgeschlagen(String grund) {
+            ok = false;
+            meldung = grund;
+            return this;
+        }
+    }
+
+    /**
+     * Führt einen Befehl aus.
+     *
+     * @param args Kommandozeilenargumente (Befehl, Optionen, Ordner).
+     * @return Exit-Code (EXIT_OK, EXIT_FEHLER oder EXIT_AUFRUF).
+     */
+    static int starte(String[] args) {
+        Kommandozeile k = new Kommandozeile();
+        String problem;
+        try {
+            problem = k.leseArgumente(args);
+        } catch (IOException e) {
+            problem = "Ordnerliste konnte nicht gelesen werden: " + e.getMessage();
+        }
+        if (problem != null) {
+            if (!problem.isEmpty()) {
+                System.out.println(problem);
+                System.out.println();
+            }
+            System.out.println(HILFE);
+            return problem.isEmpty() ? EXIT_OK : EXIT_AUFRUF;
+        }
+        return k.fuehreAus();
+    }
+
+    /**
+     * Wertet die Argumente aus.
+     *
+     * @return null = alles gültig, "" = Hilfe angefordert, sonst Fehlermeldung.
+     */
+    private String leseArgumente(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (a.equals("--help") || a.equals("-h")) {
+                return "";
+            }
+            if (a.equals("--recursive")) {
+                rekursiv = true;
+            } else if (a.equals("--quiet")) {
+                ausgabe = LEISE;
+            } else if (a.equals("--verbose")) {
+                ausgabe = AUSFUEHRLICH;
+            } else if (a.equals("--workers") || a.equals("--max-depth") || a.equals("--run")
+                    || a.equals("--roots-from") || a.equals("--plan") || a.equals("--file")
+                    || a.equals("--date") || a.equals("--max-ops") || a.equals("--max-rate")
+                    || a.equals("--max-latency")) {
+                if (i + 1 >= args.length) {
+                    return "Wert fehlt für " + a;
+                }
+                String wert = args[++i];
+                if (a.equals("--roots-from")) {
+                    leseOrdnerliste(wert);
+                    continue;
+                }
+                if (a.equals("--plan")) {
+                    planDatei = Paths.get(wert).toAbsolutePath();
+                    continue;
+                }
+                if (a.equals("--file")) {
+                    suchName = wert;
+                    continue;
+                }
+                if (a.equals("--date")) {
+                    try {
+                        suchTag = LocalDate.parse(wert);
+                    } catch (DateTimeParseException e) {
+                        return "Kein Datum (JJJJ-MM-TT) für --date: " + wert;
+                    }
+                    continue;
+                }
+                if (a.equals("--max-rate")) {
+                    try {
+                        maxRate = Regelwerk.leseGroesse(wert);
+                    } catch (IllegalArgumentException e) {
+                        return "Keine Größe für --max-rate: " + wert;
+                    }
+                    continue;
+                }
+                long zahl;
+                try {
+                    zahl = Long.parseLong(wert);
+                } catch (NumberFormatException e) {
+                    return "Keine Zahl für " + a + ": " + wert;
+                }
+                if (a.equals("--workers")) {
+                    if (zahl < 1 || zahl > 1024) {
+                        return "--workers muss zwischen 1 und 1024 liegen";
+                    }
+                    workers = (int) zahl;
+                } else if (a.equals("--max-depth")) {
+                    maxTiefe = (int) Math.max(0, Math.min(zahl, Integer.MAX_VALUE));
+                } else if (a.equals("--max-ops") || a.equals("--max-latency")) {
+                    if (zahl < 0) {
+                        return a + " darf nicht negativ sein";
+                    }
+                    if (a.equals("--max-ops")) {
+                        maxOps = zahl;
+                    } else {
+                        maxLatenz = zahl;
+                    }
+                } else {
+                    laufId = zahl;
+                }
+            } else if (a.startsWith("--")) {
+                return "Unbekannte Option: " + a;
+            } else if (befehl == null) {
+                if (!Set.of("analyze", "sort", "dry-run", "apply", "undo", "history").contains(a)) {
+                    return "Unbekannter Befehl: " + a;
+                }
+                befehl = a;
+            } else {
+                fuegeOrdnerHinzu(a);
+            }
+        }
+        if (befehl == null) {
+            return "Kein Befehl angegeben.";
+        }
+        if (ordner.isEmpty()) {
+            return "Keine Ordner angegeben.";
+        }
+        if (planDatei != null && ordner.size() != 1) {
+            return "--plan geht nur mit genau einem Ordner.";
+        }
+        if (befehl.equals("history") && suchName == null && suchTag == null) {
+            return "history braucht --file oder --date.";
+        }
+        SortierBeobachter konsole = new KonsolenBeobachter(ausgabe == AUSFUEHRLICH);
+        if (befehl.equals("sort") || befehl.equals("apply")) {
+            drossel = Drossel.ausSystemProperty(maxOps, maxRate, maxLatenz, null, konsole);
+        }
+        engine.beobachte(konsole);
+        return null;
+    }
+
+    /**
+     * Liest Ordner aus einer Datei oder von der Standardeingabe. Leerzeilen und Zeilen
+     * mit '#' am Anfang werden übersprungen.
+     */
+    private void leseOrdnerliste(String quelle) throws IOException {
+        try (BufferedReader reader = quelle.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(quelle), StandardCharsets.UTF_8)) {
+            String zeile;
+            while ((zeile = reader.readLine()) != null) {
+                zeile = zeile.trim();
+                if (!zeile.isEmpty() && !zeile.startsWith("#")) {
+                    fuegeOrdnerHinzu(zeile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Nimmt einen Ordner auf. Derselbe Ordner unter zwei Schreibweisen (oder über einen
+     * Link) wird nur einmal bearbeitet, sonst würden zwei Worker ihn gleichzeitig sortieren.
+     */
+    private void fuegeOrdnerHinzu(String pfad) {
+        Path p = Paths.get(pfad).toAbsolutePath().normalize();
+        try {
+            p = p.toRealPath();
+        } catch (IOException e) {
+            // fehlt oder nicht erreichbar: wird beim Bearbeiten als Fehler gemeldet
+        }
+        ordner.add(p);
+    }
+
+    /**
+     * Bearbeitet alle Ordner im Pool und gibt die Zusammenfassung aus.
+     */
+    private int fuehreAus() {
+        int threads = Math.min(workers, ordner.size());
+        anteil = Math.max(1, workers / threads);
+        long start = System.nanoTime();
+
+        List<OrdnerErgebnis> ergebnisse = new ArrayList<>(ordner.size());
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("ordner-", 1).factory());
+        try {
+            CompletionService<OrdnerErgebnis> fertig = new ExecutorCompletionService<>(pool);
+            for (Path p : ordner) {
+                fertig.submit(() -> bearbeite(p));
+            }
+            // Ergebnisse in der Reihenfolge ausgeben, in der die Ordner fertig werden
+            for (int i = 0; i < ordner.size(); i++) {
+                OrdnerErgebnis e = fertig.take().get();
+                ergebnisse.add(e);
+                if (ausgabe >= NORMAL || !e.ok) {
+                    System.out.println((e.ok ? "[ok] " : "[FEHLER] ") + e.ordner + ": " + e.meldung);
+                }
+                if (ausgabe >= NORMAL) {
+                    e.zeilen.forEach(System.out::println);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Abgebrochen.");
+            return EXIT_FEHLER;
+        } catch (ExecutionException e) {
+            // bearbeite() fängt alle Fehler selbst ab; das hier wäre ein Programmfehler
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        return druckeZusammenfassung(ergebnisse, threads, ms);
+    }
+
+    /**
+     * Bearbeitet einen Ordner. Läuft in einem Worker-Thread und wirft nie.
+     */
+    private OrdnerErgebnis bearbeite(Path p) {
+        OrdnerErgebnis e = new OrdnerErgebnis(p);
+        if (!Files.isDirectory(p)) {
+            return e.fehlgeschlagen("kein Ordner oder nicht erreichbar");
+        }
+        try {
+            // Jeder Ordner mit seiner eigenen config.txt
+            SortierKonfiguration kategorien = SortierKonfiguration.laden(p, ausgabe == AUSFUEHRLICH);
+            e.zeilen.addAll(kategorien.warnungen());
+            if (befehl.equals("analyze")) {
+                analysiere(p, kategorien, e);
+            } else if (befehl.equals("dry-run")) {
+                trockenlauf(p, kategorien, e);
+            } else if (befehl.equals("apply")) {
+                wendePlanAn(p, kategorien, e);
+            } else if (befehl.equals("history")) {
+                durchsucheLog(p, e);
+            } else if (befehl.equals("sort")) {
+                SortierEngine.Sortierlauf s = SortierEngine.ergebnis(engine.sortiere(p, kategorien, drossel));
+                e.meldung = s.verschoben + " verschoben, " + s.fehler + " Fehler (Undo-Lauf #" + s.laufId + ")";
+                uebernehme(s, e);
+            } else {
+                macheRueckgaengig(p, e);
+            }
+            if (e.fehler > 0) {
+                e.ok = false;
+            }
+        } catch (IOException | RuntimeException ex) {
+            e.fehlgeschlagen(ex.getClass().getSimpleName() + ": " + ex.getMessage());
+        }
+        return e;
+    }
+
+    private void analysiere(Path p, SortierKonfiguration kategorien, OrdnerErgebnis e) throws IOException {
+        DownloadCleaner.KategorieZaehler zaehler;
+        if (rekursiv) {
+            zaehler = new RekursiveAnalyse(kategorien.kategorieKonfiguration(), maxTiefe, false).analysiere(p, anteil);
+        } else {
+            zaehler = SortierEngine.ergebnis(engine.analysiere(p, kategorien)).zaehler;
+        }
+        AnalyseBericht.schreibeDateien(p, zaehler);
+
+        long bytes = 0;
+        for (KategorieStatistik st : zaehler.statistiken().values()) {
+            e.dateien += st.anzahl;
+            bytes += st.bytes;
+        }
+        e.zaehler = zaehler;
+        e.meldung = e.dateien + " Dateien, " + DuplikatSuche.formatiereGroesse(bytes)
+                + " in " + zaehler.statistiken().size() + " Kategorien";
+    }
+
+    private void trockenlauf(Path p, SortierKonfiguration kategorien, OrdnerErgebnis e) throws IOException {
+        SortierEngine.Plan ergebnis = SortierEngine.ergebnis(engine.plane(p, kategorien, planDatei));
+        SortierPlan plan = ergebnis.plan;
+        Path datei = ergebnis.datei;
+
+        DownloadCleaner.KategorieZaehler zaehler =
+                new DownloadCleaner.KategorieZaehler(kategorien.kategorieKonfiguration());
+        for (SortierPlan.Eintrag eintrag : plan.eintraege) {
+            zaehler.erhoehe(eintrag.ziel);
+            if (ausgabe == AUSFUEHRLICH) {
+                System.out.println("[DRY] Würde verschieben: " + eintrag.name + " -> " + eintrag.ziel);
+            }
+        }
+        e.dateien = plan.eintraege.size();
+        e.zaehler = zaehler;
+        e.meldung = e.dateien + " Dateien würden verschoben, Plan: " + datei;
+    }
+
+    private void wendePlanAn(Path p, SortierKonfiguration kategorien, OrdnerErgebnis e) throws IOException {
+        Path datei = planDatei != null ? planDatei : p.resolve(SortierPlan.DATEINAME);
+        if (!Files.exists(datei)) {
+            e.fehlgeschlagen("kein Sortierplan (" + datei + "), zuerst dry-run");
+            return;
+        }
+        SortierEngine.Sortierlauf s = SortierEngine.ergebnis(engine.wendePlanAn(p, kategorien, datei, drossel));
+        e.veraendert = s.uebersprungen;
+        e.meldung = s.verschoben + " verschoben, " + s.uebersprungen + " übersprungen (fehlt oder geändert), "
+                + s.fehler + " Fehler (Undo-Lauf #" + s.laufId + ")";
+        uebernehme(s, e);
+    }
+
+    /**
+     * Zähler von sort und apply, einschließlich der Kontingente (siehe Kontingent).
+     */
+    private static void uebernehme(SortierEngine.Sortierlauf s, OrdnerErgebnis e) {
+        e.dateien = s.verschoben;
+        e.fehler = s.fehler;
+        if (s.kontingentLaufId >= 0) {
+            e.meldung += "; Kontingente: " + s.kontingentVerschoben + " verschoben (Undo-Lauf #"
+                    + s.kontingentLaufId + ")";
+            e.zeilen.addAll(s.kontingentZeilen);
+        }
+    }
+
+    private void durchsucheLog(Path p, OrdnerErgebnis e) throws IOException {
+        long start = System.nanoTime();
+        LogArchiv.Suchergebnis s = LogArchiv.suche(p, suchName, suchTag);
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        for (LogArchiv.Treffer t : s.treffer) {
+            e.zeilen.add("  " + t.zeit + "  " + t.quelle + " -> " + t.ziel + "  (Lauf #" + t.laufId
+                    + ", " + t.segment + ")");
+        }
+        e.dateien = s.treffer.size();
+        e.meldung = s.treffer.size() + " Treffer in " + ms + " ms (" + s.entpackt + " von "
+                + s.laeufeImIndex + " archivierten Läufen entpackt)";
+    }
+
+    private void macheRueckgaengig(Path p, OrdnerErgebnis e) throws IOException {
+        SortierEngine.Rueckgaengig r;
+        try {
+            r = SortierEngine.ergebnis(engine.macheRueckgaengig(p, laufId, null, null, anteil));
+        } catch (NoSuchFileException ex) {
+            e.fehlgeschlagen(ex.getReason());
+            return;
+        }
+        r.fehlermeldungen.forEach(System.out::println);
+        if (r.fehler > r.fehlermeldungen.size()) {
+            System.out.println("... und " + (r.fehler - r.fehlermeldungen.size()) + " weitere Fehler.");
+        }
+        e.dateien = r.zurueck;
+        e.fehler = r.fehler;
+        e.meldung = "Lauf #" + r.laufId + ": " + r.zurueck + " zurückverschoben, "
+                + r.fehlend + " nicht gefunden, " + r.fehler + " Fehler";
+    }
+
+    /**
+     * Gibt die gemeinsame Zusammenfassung aus und bestimmt den Exit-Code.
+     */
+    private int druckeZusammenfassung(List<OrdnerErgebnis> ergebnisse, int threads, long ms) {
+        long dateien = 0;
+        long fehler = 0;
+        long veraendert = 0;
+        List<OrdnerErgebnis> fehlgeschlagen = new ArrayList<>();
+        DownloadCleaner.KategorieZaehler gesamt = new DownloadCleaner.KategorieZaehler();
+        boolean mitZaehler = false;
+        for (OrdnerErgebnis e : ergebnisse) {
+            dateien += e.dateien;
+            fehler += e.fehler;
+            veraendert += e.veraendert;
+            if (!e.ok) {
+                fehlgeschlagen.add(e);
+            }
+            if (e.zaehler != null) {
+                gesamt.uebernehme(e.zaehler);
+                mitZaehler = true;
+            }
+        }
+
+        String dateienText;
+        if (befehl.equals("analyze")) {
+            dateienText = "Dateien gezählt:";
+        } else if (befehl.equals("dry-run")) {
+            dateienText = "Würden verschoben:";
+        } else if (befehl.equals("sort") || befehl.equals("apply")) {
+            dateienText = "Verschoben:";
+        } else if (befehl.equals("history")) {
+            dateienText = "Treffer:";
+        } else {
+            dateienText = "Zurückverschoben:";
+        }
+
+        System.out.println();
+        System.out.println("Zusammenfassung " + befehl + ": " + ergebnisse.size() + " Ordner, "
+                + threads + " gleichzeitig (Budget " + workers + " Threads), " + ms + " ms");
+        System.out.printf("  %-20s %d%n", "Ordner ok:", ergebnisse.size() - fehlgeschlagen.size());
+        System.out.printf("  %-20s %d%n", "Ordner mit Fehlern:", fehlgeschlagen.size());
+        System.out.printf("  %-20s %d%n", dateienText, dateien);
+        if (!befehl.equals("analyze") && !befehl.equals("dry-run") && !befehl.equals("history")) {
+            System.out.printf("  %-20s %d%n", "Dateifehler:", fehler);
+        }
+        if (befehl.equals("apply")) {
+            System.out.printf("  %-20s %d%n", "Seit Plan geändert:", veraendert);
+        }
+        if (drossel != null) {
+            // eine Drossel für alle Ordner: der Bericht gilt für den ganzen Aufruf
+            drossel.bericht().forEach(System.out::println);
+        }
+        if (mitZaehler) {
+            for (Map.Entry<String, KategorieStatistik> entry : gesamt.statistiken().entrySet()) {
+                KategorieStatistik st = entry.getValue();
+                System.out.printf("    %-18s %d%s%n", entry.getKey() + ":", st.anzahl,
+                        befehl.equals("analyze") ? " (" + DuplikatSuche.formatiereGroesse(st.bytes) + ")" : "");
+            }
+        }
+        if (!fehlgeschlagen.isEmpty()) {
+            System.out.println("Ordner mit Fehlern:");
+            for (OrdnerErgebnis e : fehlgeschlagen) {
+                System.out.println("  " + e.ordner + ": " + e.meldung);
+            }
+            return EXIT_FEHLER;
+        }
+        return EXIT_OK;
+    }
+}
@@ -0,0 +1,47 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Gibt die Meldungen der SortierEngine auf der Konsole aus, so wie es Menü und
+ * Kommandozeile früher selbst getan haben.
+ *
+ * Fehler und Hinweise (meldung) erscheinen immer; eine Zeile pro verschobener oder
+ * übersprungener Datei nur im ausführlichen Modus.
+ */
+final class KonsolenBeobachter implements SortierBeobachter {
+
+    private final boolean ausfuehrlich;
+
+    /**
+     * @param ausfuehrlich true = eine Zeile pro Datei.
+     */
+    KonsolenBeobachter(boolean ausfuehrlich) {
+        this.ausfuehrlich = ausfuehrlich;
+    }
+
+    @Override
+    public void verschoben(Path quelle, Path ziel, long groesse) {
+        if (ausfuehrlich) {
+            System.out.println("Verschoben: " + quelle.getFileName() + " -> " + ziel.getParent().getFileName());
+        }
+    }
+
+    @Override
+    public void uebersprungen(Path datei, String grund) {
+        if (ausfuehrlich) {
+            System.out.println("Übersprungen: " + datei.getFileName() + " (" + grund + ")");
+        }
+    }
+
+    @Override
+    public void fehler(Path datei, IOException fehler) {
+        System.out.println("Konnte Datei nicht verschieben: " + datei.getFileName() + " (" + fehler.getMessage() + ")");
+    }
+
+    @Override
+    public void meldung(Path ordner, String text) {
+        System.out.println(text);
+    }
+}
@@ -0,0 +1,338 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Obergrenze für einen Kategorie-Ordner (Kontingent), z. B. damit Installer/ und
+ * Archive/ nicht endlos wachsen.
+ *
+ * In config.txt:
+ *
+ *   kontingent: Installer max=5GB
+ *   kontingent: Archive dateien=1000 max=20GB -> Papierkorb
+ *
+ * - max=GROESSE   höchstens so viele Bytes (Einheiten wie bei Regeln, Basis 1024)
+ * - dateien=N     höchstens so viele Dateien
+ * - -> ZIEL       wohin verdrängte Dateien kommen (Standard: Alt)
+ *
+ * Nach dem Sortieren (setzeDurch) werden aus jedem Ordner über seinem Kontingent
+ * die am längsten nicht geänderten Dateien nach ZIEL verschoben, bis Größe und
+ * Anzahl wieder darunter liegen. Vorhandene Dateien im Ziel werden nie ersetzt
+ * (siehe ZielNamen). Die Verschiebungen sind ein eigener Lauf in log.txt und im
+ * Undo-Journal und lassen sich wie eine Sortierung rückgängig machen.
+ *
+ * Die Kandidaten werden in einem Durchgang durch den Ordner bestimmt, ohne die
+ * ganze Liste zu sortieren: Ein PriorityQueue hält höchstens MAX_KANDIDATEN der
+ * ältesten Dateien (die Wurzel ist die neueste darunter und wird verdrängt, sobald
+ * eine ältere kommt). Nebenbei werden Anzahl und Größe aller Dateien gezählt. Nur
+ * die Kandidaten werden danach nach Alter geordnet. Reichen sie nicht, um unter das
+ * Kontingent zu kommen, folgt ein weiterer Durchgang.
+ */
+final class Kontingent {
+
+    /**
+     * Präfix der Zeilen in config.txt.
+     */
+    static final String PRAEFIX = "kontingent:";
+
+    /**
+     * Ziel, wenn die Zeile keines angibt.
+     */
+    static final String STANDARD_ZIEL = "Alt";
+
+    /**
+     * Höchstens so viele Kandidaten pro Durchgang (begrenzt den Speicher auch bei
+     * Ordnern mit Hunderttausenden Dateien).
+     */
+    static final int MAX_KANDIDATEN = 50_000;
+
+    final String kategorie;
+    /** Höchstgröße in Bytes, Long.MAX_VALUE = keine Grenze. */
+    final long maxBytes;
+    /** Höchstzahl an Dateien, Long.MAX_VALUE = keine Grenze. */
+    final long maxDateien;
+    final String ziel;
+
+    private Kontingent(String kategorie, long maxBytes, long maxDateien, String ziel) {
+        this.kategorie = kategorie;
+        this.maxBytes = maxBytes;
+        this.maxDateien = maxDateien;
+        this.ziel = ziel;
+    }
+
+    /**
+     * Liest eine Zeile "kontingent: Kategorie max=... dateien=... [-> Ziel]".
+     *
+     * @param zeile Zeile aus config.txt (mit oder ohne Präfix).
+     * @return das Kontingent.
+     * @throws IllegalArgumentException bei ungültiger Zeile.
+     */
+    static Kontingent parse(String zeile) {
+        String text = zeile.trim();
+        if (text.regionMatches(true, 0, PRAEFIX, 0, PRAEFIX.length())) {
+            text = text.substring(PRAEFIX.length()).trim();
+        }
+        String ziel = STANDARD_ZIEL;
+        int pfeil = text.lastIndexOf("->");
+        if (pfeil >= 0) {
+            ziel = Regelwerk.pruefeZiel(text.substring(pfeil + 2).trim());
+            text = text.substring(0, pfeil);
+        }
+        List<String> teile = Regelwerk.zerlege(text);
+        if (teile.isEmpty()) {
+            throw new IllegalArgumentException("Kategorie fehlt");
+        }
+        String kategorie = Regelwerk.pruefeZiel(teile.get(0));
+        if (kategorie.equals(ziel)) {
+            throw new IllegalArgumentException("Ziel darf nicht die Kategorie selbst sein");
+        }
+
+        long maxBytes = Long.MAX_VALUE;
+        long maxDateien = Long.MAX_VALUE;
+        for (String teil : teile.subList(1, teile.size())) {
+            int gleich = teil.indexOf('=');
+            String schluessel = gleich > 0 ? teil.substring(0, gleich).toLowerCase(Locale.ROOT) : teil;
+            String wert = gleich > 0 ? teil.substring(gleich + 1) : "";
+            if (schluessel.equals("max")) {
+                maxBytes = Regelwerk.leseGroesse(wert);
+            } else if (schluessel.equals("dateien")) {
+                try {
+                    maxDateien = Long.parseLong(wert.trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Keine Zahl für dateien: '" + wert + "'");
+                }
+                if (maxDateien < 0) {
+                    throw new IllegalArgumentException("dateien darf nicht negativ sein");
+                }
+            } else {
+                throw new IllegalArgumentException("Unbekannte Angabe '" + teil + "'");
+            }
+        }
+        if (maxBytes == Long.MAX_VALUE && maxDateien == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("max= oder dateien= fehlt");
+        }
+        return new Kontingent(kategorie, maxBytes, maxDateien, ziel);
+    }
+
+    /**
+     * Liest alle Kontingent-Zeilen; ungültige werden in fehler gemeldet und ausgelassen.
+     *
+     * @param zeilen Zeilen aus config.txt.
+     * @param fehler nimmt Meldungen zu ungültigen Zeilen auf.
+     * @return gültige Kontingente in ihrer Reihenfolge.
+     */
+    static List<Kontingent> kompiliere(List<String> zeilen, List<String> fehler) {
+        List<Kontingent> ergebnis = new ArrayList<>();
+        for (String zeile : zeilen) {
+            try {
+                ergebnis.add(parse(zeile));
+            } catch (IllegalArgumentException e) {
+                fehler.add(e.getMessage() + ": " + zeile);
+            }
+        }
+        return ergebnis;
+    }
+
+    /**
+     * @return z. B. "Installer: höchstens 5.0 GB, 1000 Dateien -> Alt".
+     */
+    String beschreibung() {
+        StringBuilder b = new StringBuilder(kategorie).append(": höchstens ");
+        if (maxBytes != Long.MAX_VALUE) {
+            b.append(DuplikatSuche.formatiereGroesse(maxBytes));
+        }
+        if (maxDateien != Long.MAX_VALUE) {
+            b.append(maxBytes != Long.MAX_VALUE ? ", " : "").append(maxDateien).append(" Dateien");
+        }
+        return b.append(" -> ").append(ziel).toString();
+    }
+
+    /**
+     * Ergebnis von setzeDurch().
+     */
+    static final class Ergebnis {
+        /** Verschobene Dateien über alle Kategorien. */
+        int verschoben;
+        long bytes;
+        int fehler;
+        /** Nummer des Laufs im Undo-Journal, -1 = nichts verschoben. */
+        long laufId = -1;
+        /** Eine Zeile pro Kategorie über dem Kontingent. */
+        final List<String> zeilen = new ArrayList<>();
+    }
+
+    /**
+     * Eine Datei, die verdrängt werden könnte.
+     */
+    private static final class Kandidat {
+        final String name;
+        final long groesse;
+        final long geaendertMs;
+
+        Kandidat(String name, long groesse, long geaendertMs) {
+            this.name = name;
+            this.groesse = groesse;
+            this.geaendertMs = geaendertMs;
+        }
+    }
+
+    /** Älteste zuerst; bei gleicher Zeit nach Namen, damit die Auswahl feststeht. */
+    private static final Comparator<Kandidat> AELTESTE_ZUERST =
+            Comparator.comparingLong((Kandidat k) -> k.geaendertMs).thenComparing(k -> k.name);
+
+    /**
+     * Ergebnis eines Durchgangs durch einen Kategorie-Ordner.
+     */
+    private static final class Auswahl {
+        long anzahl;
+        long bytes;
+        /** Zu verdrängende Dateien, älteste zuerst. */
+        List<Kandidat> raeumen = new ArrayList<>();
+        /** true = die Kandidaten haben nicht gereicht, nach dem Verschieben erneut prüfen. */
+        boolean unvollstaendig;
+    }
+
+    /**
+     * Setzt alle Kontingente durch. Ordner, die es nicht gibt oder die unter ihrem
+     * Kontingent liegen, werden nur gelesen; ist nichts zu tun, entsteht auch kein Lauf.
+     *
+     * @param downloadDir  Arbeitsordner.
+     * @param kontingente  Kontingente aus der Konfiguration.
+     * @param beobachter   erhält jede Verschiebung und jeden Fehler.
+     * @param drossel      Grenzen für das Verschieben oder null.
+     * @return Zähler, Lauf-Nummer und eine Zeile pro betroffener Kategorie.
+     * @throws IOException wenn ein Ordner nicht gelesen oder log.txt bzw. das
+     *                     Undo-Journal nicht geschrieben werden kann.
+     */
+    static Ergebnis setzeDurch(Path downloadDir, List<Kontingent> kontingente, SortierBeobachter beobachter,
+                               Drossel drossel) throws IOException {
+        Ergebnis ergebnis = new Ergebnis();
+        ProtokollSchreiber protokoll = null;
+        try {
+            for (Kontingent k : kontingente) {
+                Path ordner = downloadDir.resolve(k.kategorie);
+                if (!Files.isDirectory(ordner)) {
+                    continue;
+                }
+                int vorher = ergebnis.verschoben;
+                long bytesVorher = ergebnis.bytes;
+                Auswahl a;
+                do {
+                    a = k.waehle(ordner);
+                    if (a.raeumen.isEmpty()) {
+                        break;
+                    }
+                    if (protokoll == null) {
+                        protokoll = ProtokollSchreiber.ausSystemProperty(downloadDir.resolve("log.txt"),
+                                downloadDir.resolve(UndoJournal.DATEINAME), beobachter);
+                    }
+                    int fehlerVorher = ergebnis.fehler;
+                    k.raeume(downloadDir, ordner, a.raeumen, protokoll, beobachter, drossel, ergebnis);
+                    // Bei Fehlern nicht endlos dieselben Dateien erneut versuchen
+                    if (ergebnis.fehler > fehlerVorher) {
+                        break;
+                    }
+                } while (a.unvollstaendig);
+
+                if (ergebnis.verschoben > vorher || !a.raeumen.isEmpty()) {
+                    ergebnis.zeilen.add("  " + k.beschreibung() + ": " + (ergebnis.verschoben - vorher)
+                            + " Dateien verschoben (" + DuplikatSuche.formatiereGroesse(ergebnis.bytes - bytesVorher)
+                            + ")");
+                }
+            }
+            if (protokoll != null) {
+                protokoll.beende(true);
+                ergebnis.laufId = protokoll.laufId();
+            }
+        } finally {
+            if (protokoll != null) {
+                protokoll.close();
+            }
+        }
+        return ergebnis;
+    }
+
+    /**
+     * Liest den Ordner einmal und bestimmt, welche Dateien (älteste zuerst) weg müssen.
+     */
+    private Auswahl waehle(Path ordner) throws IOException {
+        Auswahl a = new Auswahl();
+        // Wurzel = neueste der bisher ältesten Dateien
+        PriorityQueue<Kandidat> aelteste = new PriorityQueue<>(AELTESTE_ZUERST.reversed());
+        OrdnerScanner.scanne(ordner, false, (entry, attrs) -> {
+            if (!attrs.isRegularFile()) {
+                return;
+            }
+            String name = entry.getFileName().toString();
+            if (name.endsWith(DateiUmzug.TEIL_ENDUNG)) {
+                return; // unvollständige Kopie, gehört DateiUmzug
+            }
+            a.anzahl++;
+            a.bytes += attrs.size();
+            long geaendert = attrs.lastModifiedTime().toMillis();
+            if (aelteste.size() < MAX_KANDIDATEN) {
+                aelteste.add(new Kandidat(name, attrs.size(), geaendert));
+            } else if (geaendert < aelteste.peek().geaendertMs) {
+                aelteste.poll();
+                aelteste.add(new Kandidat(name, attrs.size(), geaendert));
+            }
+        });
+
+        long anzahl = a.anzahl;
+        long bytes = a.bytes;
+        if (anzahl <= maxDateien && bytes <= maxBytes) {
+            return a;
+        }
+        Kandidat[] sortiert = aelteste.toArray(new Kandidat[0]);
+        Arrays.sort(sortiert, AELTESTE_ZUERST);
+        for (Kandidat c : sortiert) {
+            if (anzahl <= maxDateien && bytes <= maxBytes) {
+                break;
+            }
+            a.raeumen.add(c);
+            anzahl--;
+            bytes -= c.groesse;
+        }
+        a.unvollstaendig = anzahl > maxDateien || bytes > maxBytes;
+        return a;
+    }
+
+    /**
+     * Verschiebt die ausgewählten Dateien nach ziel.
+     */
+    private void raeume(Path downloadDir, Path ordner, List<Kandidat> raeumen, ProtokollSchreiber protokoll,
+                        SortierBeobachter beobachter, Drossel drossel, Ergebnis ergebnis) throws IOException {
+        Path zielOrdner = downloadDir.resolve(ziel);
+        Files.createDirectories(zielOrdner);
+        // eigener Umzug pro Durchgang: abschliessen() wartet auf Kopien im Hintergrund,
+        // bevor der Ordner erneut gelesen wird
+        try (DateiUmzug umzug = new DateiUmzug(downloadDir, new ZielNamen(), drossel, beobachter)) {
+            for (Kandidat c : raeumen) {
+                Path quelle = ordner.resolve(c.name);
+                try {
+                    umzug.verschiebe(quelle, zielOrdner.resolve(c.name), z -> {
+                        protokoll.bewegung(downloadDir.relativize(quelle), downloadDir.relativize(z));
+                        synchronized (ergebnis) {
+                            ergebnis.verschoben++;
+                            ergebnis.bytes += c.groesse;
+                        }
+                        beobachter.verschoben(quelle, z, c.groesse);
+                    });
+                } catch (IOException e) {
+                    ergebnis.fehler++;
+                    beobachter.fehler(quelle, e);
+                }
+            }
+            umzug.abschliessen();
+            ergebnis.fehler += umzug.fehlgeschlagen();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Direkter Puffer je Thread zum Lesen von Dateiausschnitten (InhaltsErkennung,
+ * DuplikatSuche).
+ *
+ * Jeder Thread bekommt beim ersten Lesen einen eigenen Puffer fester Größe und
+ * benutzt ihn danach immer wieder; so wird pro Datei nichts angelegt. Der Inhalt
+ * gilt nur bis zum nächsten lies() desselben Threads.
+ */
+final class Lesepuffer {
+
+    private final int groesse;
+    private final ThreadLocal<ByteBuffer> puffer;
+
+    /**
+     * @param groesse Größe des Puffers in Bytes (höchstens so viel liest ein lies()).
+     */
+    Lesepuffer(int groesse) {
+        this.groesse = groesse;
+        this.puffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(groesse));
+    }
+
+    /**
+     * Liest höchstens anzahl Bytes ab position in den Puffer (weniger am Dateiende).
+     *
+     * @param kanal    geöffnete Datei.
+     * @param position Startposition in der Datei.
+     * @param anzahl   gewünschte Anzahl Bytes (höchstens die Puffergröße).
+     * @return der Puffer des Threads, bereit zum Lesen (limit = gelesene Bytes).
+     * @throws IOException wenn die Datei nicht gelesen werden kann.
+     */
+    ByteBuffer lies(FileChannel kanal, long position, int anzahl) throws IOException {
+        ByteBuffer p = puffer.get();
+        p.clear().limit(Math.min(anzahl, groesse));
+        while (p.hasRemaining()) {
+            if (kanal.read(p, position + p.position()) < 0) {
+                break;
+            }
+        }
+        return p.flip();
+    }
+}
@@ -0,0 +1,800 @@
+package downloadcleaner;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rotiert log.txt in Segmente, komprimiert sie und führt einen kleinen Index, damit
+ * der Verlauf einer Datei oder alle Bewegungen eines Tages schnell gefunden werden.
+ *
+ * log.txt bleibt die aktive Datei, an die ProtokollSchreiber wie bisher anhängt. Nach
+ * jedem Lauf wird geprüft, ob sie zu groß geworden ist oder zu viele Läufe enthält;
+ * dann wandert sie als nächstes Segment in den Ordner log-archiv/:
+ *
+ *   log-archiv/log-000001.txt.gz   abgeschlossenes, komprimiertes Segment
+ *   log-archiv/log-000002.txt      gerade rotiert, noch nicht komprimiert
+ *   log-archiv/log-index.bin       Index über alle komprimierten Segmente
+ *
+ * Komprimiert wird in einem eigenen Thread. Jeder Lauf (ab "=== Sortierung gestartet")
+ * wird dabei ein eigener gzip-Abschnitt; die .gz-Datei bleibt trotzdem mit zcat oder
+ * gunzip ganz normal lesbar. Der Index enthält pro Lauf:
+ *   Lauf-Id, Start- und Endzeit, Position und Länge des gzip-Abschnitts und die
+ *   sortierten Hashes der Dateinamen (Quelle und Ziel).
+ * Eine Suche entpackt deshalb nur die Läufe, die die Datei bzw. den Tag enthalten
+ * können, statt alle Segmente.
+ *
+ * Der Index wird nur angehängt, ein Block pro Segment (Magic, Länge, Prüfsumme). Ein
+ * unvollständiger letzter Block (Absturz) wird ignoriert und beim nächsten Anhängen
+ * abgeschnitten. Bleibt ein Segment unkomprimiert liegen (Programm beendet, bevor der
+ * Thread fertig war), wird es bei der nächsten Rotation nachgeholt; bis dahin liest
+ * die Suche es wie log.txt vollständig.
+ *
+ * Grenzen (System-Properties):
+ * - downloadcleaner.log.groesse: Segmentgröße, z. B. 512k oder 4m; 0 = nicht nach
+ *   Größe rotieren (Standard 1 MB).
+ * - downloadcleaner.log.laeufe: Läufe pro Segment; 0 = nicht nach Anzahl (Standard).
+ */
+final class LogArchiv {
+
+    /**
+     * Unterordner des Arbeitsordners mit den Segmenten und dem Index.
+     */
+    static final String ORDNER = "log-archiv";
+
+    static final String INDEX_DATEI = "log-index.bin";
+
+    static final String GROESSE_PROPERTY = "downloadcleaner.log.groesse";
+    static final String LAEUFE_PROPERTY = "downloadcleaner.log.laeufe";
+
+    static final long STANDARD_GROESSE = 1L << 20;
+
+    private static final int BLOCK_MAGIC = 0x44434C49; // "DCLI"
+    private static final int PUFFER = 64 * 1024;
+
+    private static final String START = "=== Sortierung gestartet: ";
+    private static final String LAUF_NR = "(Undo-Lauf #";
+    private static final String MOVE = " MOVE ";
+    private static final String PFEIL = " -> ";
+    private static final int ZEITSTEMPEL_LAENGE = 19; // yyyy-MM-dd HH:mm:ss
+
+    /**
+     * Schützt das Verschieben von log.txt (Segmentnummern) ...
+     */
+    private static final Object ROTATION = new Object();
+
+    /**
+     * ... und das Komprimieren samt Anhängen an den Index.
+     */
+    private static final Object KOMPRIMIERUNG = new Object();
+
+    private static final List<Thread> HINTERGRUND = new ArrayList<>();
+
+    private LogArchiv() {
+    }
+
+    /**
+     * Eine gefundene Bewegung.
+     */
+    static final class Treffer {
+        /** Zeitstempel wie im Log ("2025-11-21 02:30:45"). */
+        final String zeit;
+        final String quelle;
+        final String ziel;
+        /** Undo-Lauf der Bewegung (0 bei alten Log-Einträgen ohne Lauf-Nummer). */
+        final long laufId;
+        /** Datei, in der die Zeile steht (z. B. "log-000003.txt.gz" oder "log.txt"). */
+        final String segment;
+
+        Treffer(String zeit, String quelle, String ziel, long laufId, String segment) {
+            this.zeit = zeit;
+            this.quelle = quelle;
+            this.ziel = ziel;
+            this.laufId = laufId;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * Ergebnis einer Suche.
+     */
+    static final class Suchergebnis {
+        final List<Treffer> treffer;
+        /** Läufe im Index. */
+        final int laeufeImIndex;
+        /** Davon tatsächlich entpackte Läufe. */
+        final int entpackt;
+        /** Vollständig gelesene, nicht indizierte Dateien (log.txt, offene Segmente). */
+        final int ungepackt;
+
+        Suchergebnis(List<Treffer> treffer, int laeufeImIndex, int entpackt, int ungepackt) {
+            this.treffer = treffer;
+            this.laeufeImIndex = laeufeImIndex;
+            this.entpackt = entpackt;
+            this.ungepackt = ungepackt;
+        }
+    }
+
+    /**
+     * Ein Lauf im Index.
+     */
+    private static final class IndexLauf {
+        final long id;
+        final long startMs;
+        final long endeMs;
+        /** Position und Länge des gzip-Abschnitts im Segment. */
+        final long position;
+        final int laenge;
+        /** Sortierte Hashes der Dateinamen (String.hashCode wie im Undo-Journal). */
+        final int[] hashes;
+
+        IndexLauf(long id, long startMs, long endeMs, long position, int laenge, int[] hashes) {
+            this.id = id;
+            this.startMs = startMs;
+            this.endeMs = endeMs;
+            this.position = position;
+            this.laenge = laenge;
+            this.hashes = hashes;
+        }
+    }
+
+    /**
+     * Gelesener Index: Läufe nach Segment und das Ende des letzten gültigen Blocks.
+     */
+    private static final class Index {
+        final Map<Integer, List<IndexLauf>> segmente = new TreeMap<>();
+        long gueltigBis;
+    }
+
+    // ------------------------------------------------------------------
+    // Rotation und Komprimierung
+    // ------------------------------------------------------------------
+
+    /**
+     * Verschiebt log.txt ins Archiv, wenn eine der Grenzen erreicht ist, und startet
+     * das Komprimieren im Hintergrund. Wird nach jedem Lauf von ProtokollSchreiber
+     * aufgerufen, wenn log.txt geschlossen ist.
+     *
+     * Ungültige Grenzen und ein Fehler beim Komprimieren werden dem Beobachter
+     * gemeldet (meldung(); beim Komprimieren aus dem Hintergrund-Thread).
+     *
+     * @param logFile    aktive Log-Datei (log.txt im Arbeitsordner).
+     * @param beobachter erhält Hinweise.
+     * @throws IOException wenn log.txt nicht verschoben werden kann.
+     */
+    static void rotiereBeiBedarf(Path logFile, SortierBeobachter beobachter) throws IOException {
+        Path ordner = logFile.getParent();
+        long maxGroesse = grenze(GROESSE_PROPERTY, STANDARD_GROESSE, ordner, beobachter);
+        long maxLaeufe = grenze(LAEUFE_PROPERTY, 0, ordner, beobachter);
+        if (maxGroesse <= 0 && maxLaeufe <= 0) {
+            return;
+        }
+        Path archiv = logFile.toAbsolutePath().getParent().resolve(ORDNER);
+        synchronized (ROTATION) {
+            long groesse;
+            try {
+                groesse = Files.size(logFile);
+            } catch (NoSuchFileException e) {
+                return;
+            }
+            boolean voll = groesse > 0 && maxGroesse > 0 && groesse >= maxGroesse;
+            if (!voll && groesse > 0 && maxLaeufe > 0) {
+                voll = zaehleLaeufe(logFile) >= maxLaeufe;
+            }
+            if (!voll) {
+                return;
+            }
+            Files.createDirectories(archiv);
+            int nummer = hoechsteSegmentNummer(archiv) + 1;
+            Files.move(logFile, archiv.resolve(segmentName(nummer, false)), StandardCopyOption.ATOMIC_MOVE);
+        }
+        komprimiereImHintergrund(archiv, ordner, beobachter);
+    }
+
+    /**
+     * Wartet, bis alle Komprimier-Threads fertig sind (vor System.exit aufrufen).
+     */
+    static void abwarten() {
+        List<Thread> threads;
+        synchronized (HINTERGRUND) {
+            threads = new ArrayList<>(HINTERGRUND);
+            HINTERGRUND.clear();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void komprimiereImHintergrund(Path archiv, Path ordner, SortierBeobachter beobachter) {
+        Thread t = Thread.ofPlatform().name("log-archiv").start(() -> {
+            try {
+                komprimiereOffene(archiv);
+            } catch (IOException e) {
+                beobachter.meldung(ordner, "Log-Segment konnte nicht komprimiert werden: " + e.getMessage());
+            }
+        });
+        synchronized (HINTERGRUND) {
+            HINTERGRUND.removeIf(th -> !th.isAlive());
+            HINTERGRUND.add(t);
+        }
+    }
+
+    /**
+     * Komprimiert alle noch offenen Segmente im Archiv, das älteste zuerst.
+     *
+     * Reihenfolge je Segment: .gz.tmp schreiben, in .gz umbenennen, Indexblock
+     * anhängen, Rohdatei löschen. Bricht das irgendwo ab, wird es beim nächsten Mal
+     * wiederholt; ein Segment, das schon im Index steht, wird nur noch gelöscht.
+     */
+    static void komprimiereOffene(Path archiv) throws IOException {
+        synchronized (KOMPRIMIERUNG) {
+            Path indexDatei = archiv.resolve(INDEX_DATEI);
+            Index index = leseIndex(indexDatei);
+            for (Map.Entry<Integer, Path> offen : offeneSegmente(archiv).entrySet()) {
+                int nummer = offen.getKey();
+                Path gz = archiv.resolve(segmentName(nummer, true));
+                if (index.segmente.containsKey(nummer) && Files.exists(gz)) {
+                    Files.delete(offen.getValue());
+                    continue;
+                }
+                Path tmp = archiv.resolve(segmentName(nummer, true) + ".tmp");
+                List<IndexLauf> laeufe = komprimiere(offen.getValue(), tmp);
+                Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                haengeAn(indexDatei, index, nummer, laeufe);
+                index.segmente.put(nummer, laeufe);
+                Files.delete(offen.getValue());
+            }
+        }
+    }
+
+    /**
+     * Liest ein Rohsegment zeilenweise und schreibt jeden Lauf als eigenen gzip-Abschnitt.
+     *
+     * @return die Läufe des Segments mit Position und Länge ihres Abschnitts.
+     */
+    private static List<IndexLauf> komprimiere(Path roh, Path ziel) throws IOException {
+        List<IndexLauf> laeufe = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(roh);
+             ZaehlenderStrom aus = new ZaehlenderStrom(Files.newOutputStream(ziel))) {
+            LaufSammler lauf = null;
+            ZeilenLeser leser = new ZeilenLeser(in);
+            ZeitCache zeiten = new ZeitCache(ZoneId.systemDefault());
+            while (leser.naechste()) {
+                String text = new String(leser.zeile, 0, leser.laenge, StandardCharsets.UTF_8).stripTrailing();
+                if (lauf == null || text.startsWith(START)) {
+                    if (lauf != null) {
+                        laeufe.add(lauf.beende(aus));
+                    }
+                    lauf = new LaufSammler(aus, text.startsWith(START) ? laufNummer(text) : 0);
+                }
+                lauf.zeile(leser.zeile, leser.laenge, text, zeiten);
+            }
+            if (lauf != null) {
+                laeufe.add(lauf.beende(aus));
+            }
+        }
+        return laeufe;
+    }
+
+    /**
+     * Sammelt einen Lauf beim Komprimieren: schreibt seinen gzip-Abschnitt und merkt
+     * sich Zeiten und Namens-Hashes.
+     */
+    private static final class LaufSammler {
+        private final long id;
+        private final long position;
+        private final GZIPOutputStream gzip;
+        private long startMs = Long.MIN_VALUE;
+        private long endeMs = Long.MIN_VALUE;
+        private int[] hashes = new int[64];
+        private int anzahlHashes;
+
+        LaufSammler(ZaehlenderStrom aus, long id) throws IOException {
+            this.id = id;
+            this.position = aus.position;
+            this.gzip = new GZIPOutputStream(new NichtSchliessend(aus), PUFFER);
+        }
+
+        void zeile(byte[] daten, int laenge, String text, ZeitCache zeiten) throws IOException {
+            gzip.write(daten, 0, laenge);
+            long ms = zeiten.zeitVon(text.startsWith(START) ? text.substring(START.length()) : text);
+            if (ms != Long.MIN_VALUE) {
+                startMs = startMs == Long.MIN_VALUE ? ms : Math.min(startMs, ms);
+                endeMs = Math.max(endeMs, ms);
+            }
+            String[] bewegung = bewegung(text);
+            if (bewegung != null) {
+                merke(UndoJournal.dateiname(bewegung[0]).hashCode());
+                merke(UndoJournal.dateiname(bewegung[1]).hashCode());
+            }
+        }
+
+        private void merke(int hash) {
+            if (anzahlHashes == hashes.length) {
+                hashes = Arrays.copyOf(hashes, anzahlHashes * 2);
+            }
+            hashes[anzahlHashes++] = hash;
+        }
+
+        IndexLauf beende(ZaehlenderStrom aus) throws IOException {
+            gzip.close(); // schreibt den Abschluss des Abschnitts, die Datei bleibt offen
+            int[] sortiert = Arrays.stream(hashes, 0, anzahlHashes).sorted().distinct().toArray();
+            // Ohne lesbare Zeit passt der Lauf zu jedem Tag
+            long start = startMs == Long.MIN_VALUE ? Long.MIN_VALUE : startMs;
+            long ende = endeMs == Long.MIN_VALUE ? Long.MAX_VALUE : endeMs;
+            return new IndexLauf(id, start, ende, position, Math.toIntExact(aus.position - position), sortiert);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Suche
+    // ------------------------------------------------------------------
+
+    /**
+     * Sucht Bewegungen im Archiv und in log.txt, die älteste zuerst.
+     *
+     * Mindestens eines der beiden Kriterien muss gesetzt sein; sind beide gesetzt,
+     * müssen beide passen.
+     *
+     * @param ordner    Arbeitsordner (mit log.txt und log-archiv/).
+     * @param dateiname Dateiname als Quelle oder Ziel einer Bewegung (ohne Ordner,
+     *                  Groß-/Kleinschreibung zählt), oder null.
+     * @param tag       Tag der Bewegung (lokale Zeit), oder null.
+     * @return Treffer und Angaben dazu, wie viel gelesen werden musste.
+     * @throws IOException bei Lesefehlern.
+     */
+    static Suchergebnis suche(Path ordner, String dateiname, LocalDate tag) throws IOException {
+        if (dateiname == null && tag == null) {
+            throw new IllegalArgumentException("Dateiname oder Tag angeben");
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        long tagStart = tag == null ? 0 : tag.atStartOfDay(zone).toInstant().toEpochMilli();
+        long tagEnde = tag == null ? 0 : tag.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        String tagText = tag == null ? null : tag.toString(); // wie LOG_TS_FORMAT: yyyy-MM-dd
+        int hash = dateiname == null ? 0 : dateiname.hashCode();
+
+        Path archiv = ordner.resolve(ORDNER);
+        List<Treffer> treffer = new ArrayList<>();
+        int imIndex = 0;
+        int entpackt = 0;
+        int ungepackt = 0;
+
+        Index index = leseIndex(archiv.resolve(INDEX_DATEI));
+        Map<Integer, Path> offen = Files.isDirectory(archiv) ? offeneSegmente(archiv) : Map.of();
+        for (Map.Entry<Integer, List<IndexLauf>> segment : index.segmente.entrySet()) {
+            imIndex += segment.getValue().size();
+            if (offen.containsKey(segment.getKey())) {
+                continue; // wird unten vollständig gelesen
+            }
+            String name = segmentName(segment.getKey(), true);
+            FileChannel kanal = null;
+            try {
+                for (IndexLauf lauf : segment.getValue()) {
+                    if (dateiname != null && Arrays.binarySearch(lauf.hashes, hash) < 0) {
+                        continue;
+                    }
+                    if (tag != null && (lauf.endeMs < tagStart || lauf.startMs >= tagEnde)) {
+                        continue;
+                    }
+                    if (kanal == null) {
+                        kanal = FileChannel.open(archiv.resolve(name), StandardOpenOption.READ);
+                    }
+                    ByteBuffer daten = ByteBuffer.allocate(lauf.laenge);
+                    while (daten.hasRemaining() && kanal.read(daten, lauf.position + daten.position()) >= 0) {
+                        // weiterlesen
+                    }
+                    entpackt++;
+                    try (BufferedReader r = leser(new GZIPInputStream(
+                            new ByteArrayInputStream(daten.array(), 0, daten.position()), PUFFER))) {
+                        durchsuche(r, name, lauf.id, dateiname, tagText, treffer);
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // Segment wurde von Hand gelöscht: überspringen
+            } finally {
+                if (kanal != null) {
+                    kanal.close();
+                }
+            }
+        }
+
+        List<Path> roh = new ArrayList<>(offen.values());
+        roh.add(ordner.resolve("log.txt"));
+        for (Path datei : roh) {
+            try (BufferedReader r = leser(Files.newInputStream(datei))) {
+                ungepackt++;
+                durchsuche(r, datei.getFileName().toString(), 0, dateiname, tagText, treffer);
+            } catch (NoSuchFileException e) {
+                // noch kein log.txt
+            }
+        }
+        return new Suchergebnis(treffer, imIndex, entpackt, ungepackt);
+    }
+
+    /**
+     * Liest Log-Zeilen und sammelt passende Bewegungen. Die Lauf-Nummer wird aus den
+     * Startzeilen übernommen, sonst gilt laufId.
+     */
+    private static void durchsuche(BufferedReader r, String segment, long laufId, String dateiname,
+                                   String tagText, List<Treffer> treffer) throws IOException {
+        long lauf = laufId;
+        String zeile;
+        while ((zeile = r.readLine()) != null) {
+            if (zeile.startsWith(START)) {
+                lauf = laufNummer(zeile);
+                continue;
+            }
+            if (tagText != null && !zeile.startsWith(tagText)) {
+                continue;
+            }
+            String[] b = bewegung(zeile);
+            if (b == null) {
+                continue;
+            }
+            if (dateiname != null && !dateiname.equals(UndoJournal.dateiname(b[0]))
+                    && !dateiname.equals(UndoJournal.dateiname(b[1]))) {
+                continue;
+            }
+            treffer.add(new Treffer(zeile.substring(0, ZEITSTEMPEL_LAENGE), b[0], b[1], lauf, segment));
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Index
+    // ------------------------------------------------------------------
+
+    /**
+     * Liest alle gültigen Blöcke. Gibt es für ein Segment mehrere Blöcke (Nummer nach
+     * Löschen wiederverwendet), gilt der letzte.
+     */
+    private static Index leseIndex(Path datei) throws IOException {
+        Index index = new Index();
+        byte[] alles;
+        try {
+            alles = Files.readAllBytes(datei);
+        } catch (NoSuchFileException e) {
+            return index;
+        }
+        ByteBuffer b = ByteBuffer.wrap(alles);
+        while (b.remaining() >= 12) {
+            int start = b.position();
+            int laenge = b.getInt(start + 4);
+            if (b.getInt(start) != BLOCK_MAGIC || laenge < 8 || laenge > b.remaining() - 12) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(alles, start + 8, laenge);
+            if ((int) crc.getValue() != b.getInt(start + 8 + laenge)) {
+                break;
+            }
+            b.position(start + 8);
+            int segment = b.getInt();
+            int anzahl = b.getInt();
+            List<IndexLauf> laeufe = new ArrayList<>(anzahl);
+            for (int i = 0; i < anzahl; i++) {
+                long id = b.getLong();
+                long startMs = b.getLong();
+                long endeMs = b.getLong();
+                long position = b.getLong();
+                int gzLaenge = b.getInt();
+                int[] hashes = new int[b.getInt()];
+                b.asIntBuffer().get(hashes);
+                b.position(b.position() + 4 * hashes.length);
+                laeufe.add(new IndexLauf(id, startMs, endeMs, position, gzLaenge, hashes));
+            }
+            b.position(start + 12 + laenge);
+            index.segmente.put(segment, Collections.unmodifiableList(laeufe));
+            index.gueltigBis = b.position();
+        }
+        return index;
+    }
+
+    /**
+     * Hängt den Block eines Segments an; Reste eines abgebrochenen Blocks werden vorher
+     * abgeschnitten.
+     */
+    private static void haengeAn(Path datei, Index index, int segment, List<IndexLauf> laeufe) throws IOException {
+        int laenge = 8;
+        for (IndexLauf l : laeufe) {
+            laenge += 8 * 4 + 4 * 2 + 4 * l.hashes.length;
+        }
+        ByteBuffer b = ByteBuffer.allocate(12 + laenge);
+        b.putInt(BLOCK_MAGIC).putInt(laenge);
+        b.putInt(segment).putInt(laeufe.size());
+        for (IndexLauf l : laeufe) {
+            b.putLong(l.id).putLong(l.startMs).putLong(l.endeMs).putLong(l.position);
+            b.putInt(l.laenge).putInt(l.hashes.length);
+            for (int h : l.hashes) {
+                b.putInt(h);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(b.array(), 8, laenge);
+        b.putInt((int) crc.getValue());
+        b.flip();
+
+        try (FileChannel kanal = FileChannel.open(datei,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            kanal.truncate(index.gueltigBis);
+            long pos = index.gueltigBis;
+            while (b.hasRemaining()) {
+                pos += kanal.write(b, pos);
+            }
+            kanal.force(false);
+            index.gueltigBis = pos;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Hilfsmethoden
+    // ------------------------------------------------------------------
+
+    private static String segmentName(int nummer, boolean komprimiert) {
+        return String.format("log-%06d.txt", nummer) + (komprimiert ? ".gz" : "");
+    }
+
+    /**
+     * Nummer aus "log-000012.txt" bzw. "log-000012.txt.gz", sonst -1.
+     */
+    private static int segmentNummer(String name) {
+        if (!name.startsWith("log-") || !(name.endsWith(".txt") || name.endsWith(".txt.gz"))) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(4, name.indexOf(".txt")));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int hoechsteSegmentNummer(Path archiv) throws IOException {
+        int hoechste = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(archiv)) {
+            for (Path p : stream) {
+                hoechste = Math.max(hoechste, segmentNummer(p.getFileName().toString()));
+            }
+        }
+        return hoechste;
+    }
+
+    /**
+     * Rotierte, noch nicht komprimierte Segmente nach Nummer.
+     */
+    private static Map<Integer, Path> offeneSegmente(Path archiv) throws IOException {
+        Map<Integer, Path> offen = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(archiv, "log-*.txt")) {
+            for (Path p : stream) {
+                int nummer = segmentNummer(p.getFileName().toString());
+                if (nummer >= 0) {
+                    offen.put(nummer, p);
+                }
+            }
+        }
+        return offen;
+    }
+
+    private static int zaehleLaeufe(Path logFile) throws IOException {
+        int anzahl = 0;
+        try (BufferedReader r = leser(Files.newInputStream(logFile))) {
+            String zeile;
+            while ((zeile = r.readLine()) != null) {
+                if (zeile.startsWith(START)) {
+                    anzahl++;
+                }
+            }
+        }
+        return anzahl;
+    }
+
+    /**
+     * Liest eine Grenze aus einer System-Property; ungültige Werte werden gemeldet.
+     */
+    private static long grenze(String property, long standard, Path ordner, SortierBeobachter beobachter) {
+        String wert = System.getProperty(property);
+        if (wert == null || wert.isBlank()) {
+            return standard;
+        }
+        try {
+            return property.equals(GROESSE_PROPERTY) ? Regelwerk.leseGroesse(wert) : Long.parseLong(wert.trim());
+        } catch (IllegalArgumentException e) {
+            beobachter.meldung(ordner, "Ungültiger Wert für " + property + ": '" + wert + "', verwende "
+                    + standard + ".");
+            return standard;
+        }
+    }
+
+    /**
+     * Lauf-Nummer aus "=== Sortierung gestartet: ... (Undo-Lauf #12) ===", sonst 0.
+     */
+    private static long laufNummer(String zeile) {
+        int i = zeile.indexOf(LAUF_NR);
+        int j = i < 0 ? -1 : zeile.indexOf(')', i);
+        if (j < 0) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(zeile.substring(i + LAUF_NR.length(), j));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Zerlegt "2025-11-21 02:30:45 MOVE a.png -> Bilder/a.png" in {Quelle, Ziel}.
+     *
+     * @return null, wenn die Zeile keine Bewegung ist.
+     */
+    private static String[] bewegung(String zeile) {
+        if (zeile.length() <= ZEITSTEMPEL_LAENGE + MOVE.length()
+                || !zeile.startsWith(MOVE, ZEITSTEMPEL_LAENGE)) {
+            return null;
+        }
+        String rest = zeile.substring(ZEITSTEMPEL_LAENGE + MOVE.length());
+        int pfeil = rest.indexOf(PFEIL);
+        if (pfeil < 0) {
+            return null;
+        }
+        return new String[]{rest.substring(0, pfeil), rest.substring(pfeil + PFEIL.length())};
+    }
+
+    /**
+     * Wandelt Log-Zeitstempel in Millisekunden; aufeinanderfolgende Zeilen haben fast
+     * immer denselben Zeitstempel, der dann nicht erneut geparst wird.
+     */
+    private static final class ZeitCache {
+        private final ZoneId zone;
+        private String letzterText = "";
+        private long letzteMs = Long.MIN_VALUE;
+
+        ZeitCache(ZoneId zone) {
+            this.zone = zone;
+        }
+
+        /**
+         * @return Millisekunden des Zeitstempels am Anfang von text, sonst Long.MIN_VALUE.
+         */
+        long zeitVon(String text) {
+            if (text.length() < ZEITSTEMPEL_LAENGE || !Character.isDigit(text.charAt(0))) {
+                return Long.MIN_VALUE;
+            }
+            if (text.startsWith(letzterText) && letzterText.length() == ZEITSTEMPEL_LAENGE) {
+                return letzteMs;
+            }
+            letzterText = text.substring(0, ZEITSTEMPEL_LAENGE);
+            try {
+                letzteMs = LocalDateTime.parse(letzterText, DownloadCleaner.LOG_TS_FORMAT)
+                        .atZone(zone).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                letzteMs = Long.MIN_VALUE;
+            }
+            return letzteMs;
+        }
+    }
+
+    /**
+     * Zeilenleser; ungültiges UTF-8 wird ersetzt statt abzubrechen.
+     */
+    private static BufferedReader leser(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), PUFFER);
+    }
+
+    /**
+     * Liest Zeilen als Bytes (inklusive Zeilenende), damit sie unverändert in den
+     * gzip-Abschnitt kommen. Die Zeile steht danach in zeile[0..laenge).
+     */
+    private static final class ZeilenLeser {
+        private final InputStream in;
+        private final byte[] puffer = new byte[PUFFER];
+        private int pos;
+        private int ende;
+        byte[] zeile = new byte[256];
+        int laenge;
+
+        ZeilenLeser(InputStream in) {
+            this.in = in;
+        }
+
+        boolean naechste() throws IOException {
+            laenge = 0;
+            while (true) {
+                if (pos == ende) {
+                    ende = in.read(puffer, 0, puffer.length);
+                    pos = 0;
+                    if (ende <= 0) {
+                        ende = 0;
+                        return laenge > 0;
+                    }
+                }
+                int i = pos;
+                while (i < ende && puffer[i] != '\n') {
+                    i++;
+                }
+                boolean gefunden = i < ende;
+                int n = (gefunden ? i + 1 : i) - pos;
+                if (laenge + n > zeile.length) {
+                    zeile = Arrays.copyOf(zeile, Math.max(zeile.length * 2, laenge + n));
+                }
+                System.arraycopy(puffer, pos, zeile, laenge, n);
+                laenge += n;
+                pos += n;
+                if (gefunden) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ausgabestrom, der die geschriebenen Bytes zählt (Position im .gz).
+     */
+    private static final class ZaehlenderStrom extends FilterOutputStream {
+        long position;
+
+        ZaehlenderStrom(OutputStream out) {
+            super(new BufferedOutputStream(out, PUFFER));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            position += len;
+        }
+    }
+
+    /**
+     * Verhindert, dass GZIPOutputStream beim Abschluss eines Laufs die Datei schließt.
+     */
+    private static final class NichtSchliessend extends FilterOutputStream {
+        NichtSchliessend(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Misst, wofür ein Sortierlauf seine Zeit braucht.
+ *
+ * Eingeschaltet mit -Ddownloadcleaner.messung=an. Dann gilt pro Lauf:
+ * - Für jede Phase (siehe Phase) wird jede einzelne Dauer in ein Histogramm
+ *   eingetragen; am Ende stehen Anzahl, Summe, p50, p99 und Maximum fest.
+ * - Zähler für verschobene Dateien und Bytes, Fehler und übersprungene Einträge.
+ * - Jede gemessene Phase ist zugleich ein JFR-Ereignis (Kategorie "DownloadCleaner").
+ *   Aufgezeichnet werden sie, wenn Java Flight Recorder läuft, z. B. mit
+ *   -XX:StartFlightRecording=filename=lauf.jfr; auswerten lässt sich das mit
+ *   "jfr print --events downloadcleaner.Verschieben lauf.jfr" oder JDK Mission Control.
+ * - Am Ende wird messung.json neben log.txt geschrieben und eine Tabelle ausgegeben.
+ *
+ * Ausgeschaltet kostet die Messung fast nichts: start() liefert null, ohne die Uhr zu
+ * lesen oder ein Objekt anzulegen, und ende(null) kehrt sofort zurück. Ein Messpunkt
+ * ist das JFR-Ereignis selbst, es gibt also nur ein Objekt pro Messung.
+ *
+ * Histogramm: Die Klassen sind logarithmisch mit 8 Unterteilungen pro Zweierpotenz
+ * (wie bei HdrHistogram mit geringer Genauigkeit). Ein Perzentil ist damit auf etwa
+ * 12 % genau, der Speicher ist fest (512 Zähler pro Phase), und parallele Verschieber
+ * können ohne Sperre eintragen.
+ */
+final class Messung {
+
+    /**
+     * Name der System-Property zum Einschalten.
+     */
+    static final String PROPERTY = "downloadcleaner.messung";
+
+    /**
+     * Ergebnisdatei im Arbeitsordner.
+     */
+    static final String DATEINAME = "messung.json";
+
+    /**
+     * Gemessene Abschnitte eines Sortierlaufs.
+     */
+    enum Phase {
+        /** Nächsten Eintrag samt Attributen aus dem Ordnerlisting holen. */
+        AUFLISTEN("auflisten"),
+        /** Kategorie bestimmen (Endung, ggf. Inhalt). */
+        KLASSIFIZIEREN("klassifizieren"),
+        /** Zielordner nachschlagen bzw. beim ersten Mal anlegen (createDirectories). */
+        ORDNER("ordner"),
+        /** Files.move bzw. Kopie auf ein anderes Dateisystem (große Dateien: nur Einreihen). */
+        VERSCHIEBEN("verschieben"),
+        /** Block in Undo-Journal und log.txt schreiben, ggf. mit force(). */
+        PROTOKOLL("protokoll");
+
+        final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Gemeinsame Messung für Programmteile, die ohne eigene Messung aufgerufen werden.
+     */
+    static final Messung AUS = new Messung(false);
+
+    private final boolean aktiv;
+    private final long startNs = System.nanoTime();
+    private final Histogramm[] histogramme = new Histogramm[Phase.values().length];
+
+    private final LongAdder dateien = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder fehler = new LongAdder();
+    private final LongAdder uebersprungen = new LongAdder();
+
+    private Messung(boolean aktiv) {
+        this.aktiv = aktiv;
+        if (aktiv) {
+            for (int i = 0; i < histogramme.length; i++) {
+                histogramme[i] = new Histogramm();
+            }
+        }
+    }
+
+    /**
+     * @return neue Messung, wenn -Ddownloadcleaner.messung=an gesetzt ist, sonst AUS.
+     */
+    static Messung ausSystemProperty() {
+        String wert = System.getProperty(PROPERTY, "aus").trim().toLowerCase();
+        return wert.equals("an") ? new Messung(true) : AUS;
+    }
+
+    /**
+     * @return true, wenn gemessen wird.
+     */
+    boolean aktiv() {
+        return aktiv;
+    }
+
+    /**
+     * Beginnt die Messung einer Phase.
+     *
+     * @param phase gemessene Phase.
+     * @return Messpunkt für ende() oder null, wenn die Messung ausgeschaltet ist.
+     */
+    Messpunkt start(Phase phase) {
+        if (!aktiv) {
+            return null;
+        }
+        Messpunkt p;
+        if (phase == Phase.AUFLISTEN) {
+            p = new AuflistenEreignis();
+        } else if (phase == Phase.KLASSIFIZIEREN) {
+            p = new KlassifizierenEreignis();
+        } else if (phase == Phase.ORDNER) {
+            p = new OrdnerEreignis();
+        } else if (phase == Phase.VERSCHIEBEN) {
+            p = new VerschiebenEreignis();
+        } else {
+            p = new ProtokollEreignis();
+        }
+        p.phase = phase;
+        p.begin();
+        p.startNs = System.nanoTime();
+        return p;
+    }
+
+    /**
+     * Beendet eine Messung ohne Bezug zu einer Datei.
+     *
+     * @param p Messpunkt aus start() (null = nichts zu tun).
+     */
+    void ende(Messpunkt p) {
+        ende(p, null, 0);
+    }
+
+    /**
+     * Beendet eine Messung, trägt die Dauer ein und gibt das JFR-Ereignis ab.
+     *
+     * @param p     Messpunkt aus start() (null = nichts zu tun).
+     * @param datei betroffene Datei für das JFR-Ereignis oder null.
+     * @param menge Bytes bzw. (Protokoll) Einträge für das JFR-Ereignis.
+     */
+    void ende(Messpunkt p, Path datei, long menge) {
+        if (p == null) {
+            return;
+        }
+        histogramme[p.phase.ordinal()].erfasse(System.nanoTime() - p.startNs);
+        p.end();
+        if (p.shouldCommit()) {
+            p.datei = datei == null ? null : datei.toString();
+            p.menge = menge;
+            p.commit();
+        }
+    }
+
+    /**
+     * Zählt eine verschobene Datei.
+     *
+     * @param groesse Größe in Bytes.
+     */
+    void verschoben(long groesse) {
+        if (aktiv) {
+            dateien.increment();
+            bytes.add(groesse);
+        }
+    }
+
+    /**
+     * Zählt Dateien, die nicht verschoben werden konnten.
+     *
+     * @param anzahl Anzahl der Fehler.
+     */
+    void fehler(int anzahl) {
+        if (aktiv) {
+            fehler.add(anzahl);
+        }
+    }
+
+    /**
+     * Zählt einen Eintrag, der nicht sortiert wird (Ordner, eigene Programmdatei).
+     */
+    void uebersprungen() {
+        if (aktiv) {
+            uebersprungen.increment();
+        }
+    }
+
+    /**
+     * Schreibt messung.json in den Ordner und meldet die Tabelle zeilenweise an den
+     * Beobachter. Ohne Messung passiert nichts.
+     *
+     * @param ordner     Arbeitsordner (dort liegt auch log.txt).
+     * @param laufId     Nummer des Laufs im Undo-Journal.
+     * @param beobachter erhält die Tabelle (meldung()).
+     */
+    void abschliessen(Path ordner, long laufId, SortierBeobachter beobachter) {
+        if (!aktiv) {
+            return;
+        }
+        long dauerNs = System.nanoTime() - startNs;
+
+        beobachter.meldung(ordner, "Messung (" + TimeUnit.NANOSECONDS.toMillis(dauerNs) + " ms, "
+                + dateien.sum() + " Dateien, " + DuplikatSuche.formatiereGroesse(bytes.sum()) + ", "
+                + fehler.sum() + " Fehler, " + uebersprungen.sum() + " übersprungen):");
+        beobachter.meldung(ordner, String.format("  %-15s %9s %10s %10s %10s %10s", "Phase", "Anzahl", "p50", "p99", "Max", "Summe"));
+        for (Phase phase : Phase.values()) {
+            Histogramm h = histogramme[phase.ordinal()];
+            if (h.anzahl.sum() == 0) {
+                continue;
+            }
+            beobachter.meldung(ordner, String.format("  %-15s %9d %10s %10s %10s %10s", phase.name,
+                    h.anzahl.sum(), dauer(h.perzentil(0.50)), dauer(h.perzentil(0.99)), dauer(h.max.get()),
+                    dauer(h.summe.sum())));
+        }
+
+        StringBuilder json = new StringBuilder(2048);
+        json.append("{\n");
+        json.append("  \"ordner\": \"").append(jsonText(ordner.toAbsolutePath().toString())).append("\",\n");
+        json.append("  \"laufId\": ").append(laufId).append(",\n");
+        json.append("  \"dauerNs\": ").append(dauerNs).append(",\n");
+        json.append("  \"zaehler\": {\"dateien\": ").append(dateien.sum())
+                .append(", \"bytes\": ").append(bytes.sum())
+                .append(", \"fehler\": ").append(fehler.sum())
+                .append(", \"uebersprungen\": ").append(uebersprungen.sum()).append("},\n");
+        json.append("  \"phasen\": {");
+        Phase[] phasen = Phase.values();
+        for (int i = 0; i < phasen.length; i++) {
+            Histogramm h = histogramme[i];
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    \"").append(phasen[i].name).append("\": {\"anzahl\": ").append(h.anzahl.sum())
+                    .append(", \"summeNs\": ").append(h.summe.sum())
+                    .append(", \"p50Ns\": ").append(h.perzentil(0.50))
+                    .append(", \"p99Ns\": ").append(h.perzentil(0.99))
+                    .append(", \"maxNs\": ").append(h.max.get()).append('}');
+        }
+        json.append("\n  }\n}\n");
+
+        Path datei = ordner.resolve(DATEINAME);
+        try {
+            Files.writeString(datei, json, StandardCharsets.UTF_8);
+            beobachter.meldung(ordner, "Messwerte: " + datei.toAbsolutePath());
+        } catch (IOException e) {
+            beobachter.meldung(ordner, "Messwerte konnten nicht geschrieben werden: " + e.getMessage());
+        }
+    }
+
+    private static String dauer(long ns) {
+        if (ns < 10_000) {
+            return ns + " ns";
+        }
+        if (ns < 10_000_000) {
+            return ns / 1000 + " µs";
+        }
+        return ns / 1_000_000 + " ms";
+    }
+
+    private static String jsonText(String s) {
+        StringBuilder b = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < 0x20) {
+                b.append(String.format("\\u%04x", (int) c));
+            } else {
+                b.append(c);
+            }
+        }
+        return b.toString();
+    }
+
+    /**
+     * Latenz-Histogramm einer Phase (thread-sicher, ohne Sperre).
+     */
+    static final class Histogramm {
+        /** Unterteilungen pro Zweierpotenz als Bits (2^3 = 8). */
+        private static final int UNTER_BITS = 3;
+        private static final int UNTER = 1 << UNTER_BITS;
+
+        private final AtomicLongArray klassen = new AtomicLongArray(64 * UNTER);
+        final LongAdder anzahl = new LongAdder();
+        final LongAdder summe = new LongAdder();
+        final AtomicLong max = new AtomicLong();
+
+        void erfasse(long ns) {
+            if (ns < 0) {
+                ns = 0;
+            }
+            klassen.incrementAndGet(klasse(ns));
+            anzahl.increment();
+            summe.add(ns);
+            long alt;
+            while (ns > (alt = max.get()) && !max.compareAndSet(alt, ns)) {
+                // erneut versuchen
+            }
+        }
+
+        /**
+         * Klasse eines Werts: Werte unter 8 haben eine eigene Klasse, darüber
+         * bestimmen die höchste gesetzte Stelle und die 3 Bits danach die Klasse.
+         */
+        static int klasse(long wert) {
+            if (wert < UNTER) {
+                return (int) wert;
+            }
+            int stelle = 63 - Long.numberOfLeadingZeros(wert);
+            int unter = (int) (wert >>> (stelle - UNTER_BITS)) & (UNTER - 1);
+            return (stelle - UNTER_BITS + 1) * UNTER + unter;
+        }
+
+        /**
+         * Größter Wert, der noch in die Klasse fällt.
+         */
+        static long obergrenze(int klasse) {
+            if (klasse < UNTER) {
+                return klasse;
+            }
+            int stelle = klasse / UNTER + UNTER_BITS - 1;
+            long unter = klasse % UNTER;
+            long breite = 1L << (stelle - UNTER_BITS);
+            return ((UNTER + unter) << (stelle - UNTER_BITS)) + breite - 1;
+        }
+
+        /**
+         * Perzentil als Obergrenze der Klasse, in die es fällt (nie über dem Maximum).
+         *
+         * @param anteil z. B. 0.99 für p99.
+         * @return Dauer in Nanosekunden (0, wenn nichts gemessen wurde).
+         */
+        long perzentil(double anteil) {
+            long n = anzahl.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rang = Math.max(1, (long) Math.ceil(anteil * n));
+            long bisher = 0;
+            for (int i = 0; i < klassen.length(); i++) {
+                bisher += klassen.get(i);
+                if (bisher >= rang) {
+                    return Math.min(obergrenze(i), max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+
+    /**
+     * Eine laufende Messung. Zugleich das JFR-Ereignis der Phase; Startzeit und Phase
+     * sind transient und erscheinen daher nicht in der Aufzeichnung.
+     */
+    @Category("DownloadCleaner")
+    abstract static class Messpunkt extends Event {
+        transient Phase phase;
+        transient long startNs;
+
+        @Label("Datei")
+        String datei;
+
+        @Label("Menge")
+        @Description("Bytes der Datei bzw. Anzahl geschriebener Protokolleinträge")
+        long menge;
+    }
+
+    @Name("downloadcleaner.Auflisten")
+    @Label("Eintrag auflisten")
+    static final class AuflistenEreignis extends Messpunkt {
+    }
+
+    @Name("downloadcleaner.Klassifizieren")
+    @Label("Datei klassifizieren")
+    static final class KlassifizierenEreignis extends Messpunkt {
+    }
+
+    @Name("downloadcleaner.Ordner")
+    @Label("Zielordner anlegen")
+    static final class OrdnerEreignis extends Messpunkt {
+    }
+
+    @Name("downloadcleaner.Verschieben")
+    @Label("Datei verschieben")
+    static final class VerschiebenEreignis extends Messpunkt {
+    }
+
+    @Name("downloadcleaner.Protokoll")
+    @Label("Protokoll schreiben")
+    static final class ProtokollEreignis extends Messpunkt {
+    }
+}
@@ -0,0 +1,828 @@
+package downloadcleaner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Ein endlicher Automat für alle Namensmuster eines Regelwerks zusammen.
+ *
+ * Statt jedes Muster einzeln mit java.util.regex zu prüfen (eine Suche pro Muster und
+ * Datei, mit Backtracking), werden alle Muster beim Laden der Konfiguration in einen
+ * gemeinsamen deterministischen Automaten (DFA) übersetzt:
+ * 1. Jedes Muster wird geparst und nach Thompson in einen nichtdeterministischen
+ *    Automaten (NFA) übersetzt. Jedes Muster hat seinen eigenen Startzustand.
+ * 2. Die Zeichen werden in Klassen eingeteilt: Zwei Zeichen gehören in dieselbe
+ *    Klasse, wenn kein Muster sie unterscheidet. Meist sind das nur einige Dutzend.
+ * 3. Aus dem NFA wird per Teilmengenkonstruktion die Übergangstabelle des DFA
+ *    gebaut. Jeder DFA-Zustand weiß, welche Muster in ihm erfüllt sind (Bitmaske).
+ *
+ * Beim Prüfen wird der Name einmal Zeichen für Zeichen durchlaufen: pro Zeichen ein
+ * Tabellenzugriff, unabhängig von der Anzahl der Muster. Das Ergebnis ist die Maske
+ * aller passenden Muster.
+ *
+ * Groß-/Kleinschreibung spielt keine Rolle (Muster und Namen werden klein gelesen).
+ *
+ * Mehrere Muster ohne feste Position ("irgendwo im Namen") können zusammen sehr viele
+ * DFA-Zustände ergeben, weil der Automat alle angefangenen Treffer gleichzeitig
+ * verfolgen muss. Deshalb werden die Muster der Reihe nach in Teilautomaten mit
+ * höchstens MAX_ZUSTAENDE Zuständen gepackt; im üblichen Fall (einige Globs) ist das
+ * genau einer. Ist schon ein einzelnes Muster zu groß, wird für dieses der NFA direkt
+ * simuliert – auch das ist ein einziger Durchlauf ohne Backtracking.
+ *
+ * Unterstützte Regex-Syntax: Zeichen, ., [abc], [^a-z], \d \w \s \D \W \S, \t \n,
+ * \\uXXXX, Gruppen ( ) und (?: ), |, *, +, ?, {n}, {n,}, {n,m}, sowie ^ am Anfang und
+ * $ am Ende. Nicht unterstützt sind Rückverweise, Lookaround und \b.
+ */
+final class NamensAutomat {
+
+    /**
+     * Höchstzahl der Zustände eines Teilautomaten.
+     */
+    private static final int MAX_ZUSTAENDE = 2048;
+
+    /**
+     * Obergrenze für {n,m}, damit ein Muster nicht beliebig viele Zustände erzeugt.
+     */
+    private static final int MAX_WIEDERHOLUNG = 100;
+
+    private static final int ZEICHEN = 0x10000;
+
+    /** Zustand 0 jedes DFA: kein Muster kann mehr passen. */
+    private static final int TOT = 0;
+
+    private final List<NfaZustand> nfa;
+
+    /** Je NFA-Zustand mit Zeichenübergang: ε-Hülle seines Ziels (sonst null). */
+    private final BitSet[] folge;
+
+    /** Zeichen -> Zeichenklasse; gemeinsam für alle Teilautomaten. */
+    private final char[] klasseVon;
+    private final int anzahlKlassen;
+
+    private final Teil[] teile;
+
+    /**
+     * Ein Teilautomat für eine Gruppe von Mustern.
+     */
+    private static final class Teil {
+        /** Übergänge [Zustand * anzahlKlassen + Klasse]; null = NFA simulieren. */
+        final int[] tabelle;
+        /** Treffermaske je DFA-Zustand. */
+        final long[] treffer;
+        /** Startmenge im NFA (für die Simulation). */
+        final BitSet start;
+
+        Teil(int[] tabelle, long[] treffer, BitSet start) {
+            this.tabelle = tabelle;
+            this.treffer = treffer;
+            this.start = start;
+        }
+    }
+
+    private NamensAutomat(List<NfaZustand> nfa, int[] starts) {
+        this.nfa = nfa;
+
+        // Zeichenklassen aus allen Intervallgrenzen
+        TreeSet<Integer> grenzen = new TreeSet<>();
+        grenzen.add(0);
+        grenzen.add(ZEICHEN);
+        for (NfaZustand z : nfa) {
+            if (z.menge != null) {
+                for (int i = 0; i < z.menge.length; i += 2) {
+                    grenzen.add(z.menge[i]);
+                    grenzen.add(z.menge[i + 1] + 1);
+                }
+            }
+        }
+        int[] g = grenzen.stream().mapToInt(Integer::intValue).toArray();
+        anzahlKlassen = g.length - 1;
+        klasseVon = new char[ZEICHEN];
+        for (int k = 0; k < anzahlKlassen; k++) {
+            Arrays.fill(klasseVon, g[k], g[k + 1], (char) k);
+        }
+        folge = new BitSet[nfa.size()];
+        for (int s = 0; s < nfa.size(); s++) {
+            NfaZustand z = nfa.get(s);
+            if (z.menge != null) {
+                z.klassen = new BitSet(anzahlKlassen);
+                for (int k = 0; k < anzahlKlassen; k++) {
+                    if (enthaelt(z.menge, g[k])) {
+                        z.klassen.set(k);
+                    }
+                }
+                folge[s] = huelle(einzeln(z.ziel));
+            }
+        }
+
+        // Muster der Reihe nach zu Teilautomaten zusammenfassen
+        List<Teil> fertig = new ArrayList<>();
+        BitSet gruppe = new BitSet();
+        Teil aktuell = null;
+        for (int start : starts) {
+            BitSet mitNeuem = (BitSet) gruppe.clone();
+            mitNeuem.set(start);
+            Teil t = baueTeil(huelle(mitNeuem));
+            if (t != null) {
+                gruppe = mitNeuem;
+                aktuell = t;
+                continue;
+            }
+            if (aktuell != null) {
+                fertig.add(aktuell);
+            }
+            gruppe = einzeln(start);
+            aktuell = baueTeil(huelle(einzeln(start)));
+            if (aktuell == null) {
+                fertig.add(new Teil(null, null, huelle(einzeln(start))));
+                gruppe = new BitSet();
+            }
+        }
+        if (aktuell != null) {
+            fertig.add(aktuell);
+        }
+        teile = fertig.toArray(new Teil[0]);
+    }
+
+    /**
+     * Teilmengenkonstruktion ab einer Startmenge.
+     *
+     * @return Teilautomat oder null, wenn er mehr als MAX_ZUSTAENDE Zustände bräuchte.
+     */
+    private Teil baueTeil(BitSet startMenge) {
+        int k = anzahlKlassen;
+        List<BitSet> zustaende = new ArrayList<>();
+        Map<BitSet, Integer> nummern = new HashMap<>();
+        zustaende.add(new BitSet());
+        nummern.put(new BitSet(), TOT);
+        zustaende.add(startMenge);
+        nummern.put(startMenge, 1);
+
+        int[] tab = new int[Math.min(MAX_ZUSTAENDE, 64) * k];
+        BitSet[] naechste = new BitSet[k];
+        for (int d = 1; d < zustaende.size(); d++) {
+            // alle Klassen auf einmal: jeder NFA-Zustand trägt zu seinen Klassen bei
+            Arrays.fill(naechste, null);
+            BitSet menge = zustaende.get(d);
+            for (int s = menge.nextSetBit(0); s >= 0; s = menge.nextSetBit(s + 1)) {
+                BitSet klassen = nfa.get(s).klassen;
+                if (klassen == null) {
+                    continue;
+                }
+                for (int c = klassen.nextSetBit(0); c >= 0; c = klassen.nextSetBit(c + 1)) {
+                    if (naechste[c] == null) {
+                        naechste[c] = new BitSet();
+                    }
+                    naechste[c].or(folge[s]);
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (naechste[c] == null) {
+                    continue; // TOT
+                }
+                Integer n = nummern.get(naechste[c]);
+                if (n == null) {
+                    n = zustaende.size();
+                    if (n >= MAX_ZUSTAENDE) {
+                        return null;
+                    }
+                    zustaende.add(naechste[c]);
+                    nummern.put(naechste[c], n);
+                    if (tab.length < (n + 1) * k) {
+                        tab = Arrays.copyOf(tab, Math.max(tab.length * 2, (n + 1) * k));
+                    }
+                }
+                tab[d * k + c] = n;
+            }
+        }
+
+        long[] treffer = new long[zustaende.size()];
+        for (int d = 0; d < zustaende.size(); d++) {
+            treffer[d] = treffer(zustaende.get(d));
+        }
+        return new Teil(Arrays.copyOf(tab, zustaende.size() * k), treffer, startMenge);
+    }
+
+    /**
+     * Baut den Automaten für mehrere Muster.
+     *
+     * @param muster Muster in der unterstützten Regex-Syntax (siehe Klassenkommentar).
+     * @param bits   Bitnummer (0–63) je Muster; sie erscheint in der Treffermaske.
+     * @return fertiger Automat.
+     * @throws IllegalArgumentException wenn ein Muster ungültig ist.
+     */
+    static NamensAutomat kompiliere(List<String> muster, List<Integer> bits) {
+        List<NfaZustand> nfa = new ArrayList<>();
+        int[] starts = new int[muster.size()];
+        for (int i = 0; i < muster.size(); i++) {
+            Fragment f = baue(parse(muster.get(i)), nfa);
+            starts[i] = f.start;
+            nfa.get(f.ende).treffer |= 1L << bits.get(i);
+        }
+        return new NamensAutomat(nfa, starts);
+    }
+
+    /**
+     * Prüft ein Muster, ohne einen Automaten zu bauen.
+     *
+     * @param muster Muster in der unterstützten Regex-Syntax.
+     * @throws IllegalArgumentException mit Beschreibung, wenn das Muster ungültig ist.
+     */
+    static void pruefe(String muster) {
+        parse(muster);
+    }
+
+    /**
+     * Übersetzt ein Glob-Muster (* ? [abc] [!abc]) in ein Muster, das den ganzen
+     * Namen beschreibt.
+     *
+     * @param glob Glob-Muster, z. B. "*invoice*.pdf".
+     * @return gleichwertiges Muster mit ^ und $.
+     */
+    static String ausGlob(String glob) {
+        StringBuilder b = new StringBuilder(glob.length() + 8).append('^');
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                b.append(".*");
+            } else if (c == '?') {
+                b.append('.');
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int ende = glob.indexOf(']', i + 2);
+                String inhalt = glob.substring(i + 1, ende);
+                if (inhalt.startsWith("!")) {
+                    inhalt = "^" + inhalt.substring(1);
+                }
+                b.append('[').append(inhalt.replace("\\", "\\\\")).append(']');
+                i = ende;
+            } else {
+                if ("\\.^$|()[]{}+".indexOf(c) >= 0) {
+                    b.append('\\');
+                }
+                b.append(c);
+            }
+        }
+        return b.append('$').toString();
+    }
+
+    /**
+     * Liefert die Maske aller Muster, die auf den Namen passen.
+     *
+     * @param name Dateiname.
+     * @return Bitmaske (Bits aus kompiliere()).
+     */
+    long treffer(String name) {
+        long t = 0;
+        for (Teil teil : teile) {
+            t |= teil.tabelle != null ? lauf(teil, name) : simuliere(teil, name);
+        }
+        return t;
+    }
+
+    private long lauf(Teil teil, String name) {
+        int[] tab = teil.tabelle;
+        char[] klasse = klasseVon;
+        int k = anzahlKlassen;
+        int z = 1;
+        for (int i = 0; i < name.length(); i++) {
+            z = tab[z * k + klasse[Character.toLowerCase(name.charAt(i))]];
+            if (z == TOT) {
+                return 0;
+            }
+        }
+        return teil.treffer[z];
+    }
+
+    /**
+     * @return Anzahl der Teilautomaten (ein Durchlauf über den Namen je Teil).
+     */
+    int anzahlTeile() {
+        return teile.length;
+    }
+
+    /**
+     * @return Anzahl aller DFA-Zustände (ohne simulierte Teile).
+     */
+    int anzahlZustaende() {
+        int n = 0;
+        for (Teil teil : teile) {
+            n += teil.tabelle == null ? 0 : teil.treffer.length;
+        }
+        return n;
+    }
+
+    // ------------------------------------------------------------------
+    // NFA
+
+    /**
+     * Ein NFA-Zustand: höchstens ein Zeichenübergang, beliebig viele ε-Übergänge.
+     */
+    private static final class NfaZustand {
+        /** Zeichenmenge als sortierte Intervalle [von, bis, von, bis, ...] oder null. */
+        int[] menge;
+        /** Zeichenklassen, die menge abdeckt (nach der Einteilung). */
+        BitSet klassen;
+        int ziel = -1;
+        int[] eps = new int[0];
+        /** Muster, die in diesem Zustand erfüllt sind. */
+        long treffer;
+    }
+
+    private static final class Fragment {
+        final int start;
+        final int ende;
+
+        Fragment(int start, int ende) {
+            this.start = start;
+            this.ende = ende;
+        }
+    }
+
+    private static int[] anhaengen(int[] a, int wert) {
+        int[] n = Arrays.copyOf(a, a.length + 1);
+        n[a.length] = wert;
+        return n;
+    }
+
+    private static int neuerZustand(List<NfaZustand> nfa) {
+        nfa.add(new NfaZustand());
+        return nfa.size() - 1;
+    }
+
+    /**
+     * Thompson-Konstruktion für einen Syntaxbaum.
+     */
+    private static Fragment baue(Knoten k, List<NfaZustand> nfa) {
+        if (k instanceof ZeichenKnoten) {
+            int s = neuerZustand(nfa);
+            int e = neuerZustand(nfa);
+            nfa.get(s).menge = ((ZeichenKnoten) k).menge;
+            nfa.get(s).ziel = e;
+            return new Fragment(s, e);
+        }
+        if (k instanceof FolgeKnoten) {
+            int s = neuerZustand(nfa);
+            int ende = s;
+            for (Knoten teil : ((FolgeKnoten) k).teile) {
+                Fragment f = baue(teil, nfa);
+                nfa.get(ende).eps = anhaengen(nfa.get(ende).eps, f.start);
+                ende = f.ende;
+            }
+            return new Fragment(s, ende);
+        }
+        if (k instanceof AuswahlKnoten) {
+            int s = neuerZustand(nfa);
+            int e = neuerZustand(nfa);
+            for (Knoten teil : ((AuswahlKnoten) k).teile) {
+                Fragment f = baue(teil, nfa);
+                nfa.get(s).eps = anhaengen(nfa.get(s).eps, f.start);
+                nfa.get(f.ende).eps = anhaengen(nfa.get(f.ende).eps, e);
+            }
+            return new Fragment(s, e);
+        }
+        WiederholungKnoten w = (WiederholungKnoten) k;
+        int s = neuerZustand(nfa);
+        int ende = s;
+        for (int i = 0; i < w.min; i++) {
+            Fragment f = baue(w.inhalt, nfa);
+            nfa.get(ende).eps = anhaengen(nfa.get(ende).eps, f.start);
+            ende = f.ende;
+        }
+        if (w.max < 0) {
+            // beliebig oft: Schleife über eine weitere Kopie
+            int schleife = neuerZustand(nfa);
+            nfa.get(ende).eps = anhaengen(nfa.get(ende).eps, schleife);
+            Fragment f = baue(w.inhalt, nfa);
+            nfa.get(schleife).eps = anhaengen(nfa.get(schleife).eps, f.start);
+            nfa.get(f.ende).eps = anhaengen(nfa.get(f.ende).eps, schleife);
+            return new Fragment(s, schleife);
+        }
+        int e = neuerZustand(nfa);
+        nfa.get(ende).eps = anhaengen(nfa.get(ende).eps, e);
+        for (int i = w.min; i < w.max; i++) {
+            Fragment f = baue(w.inhalt, nfa);
+            nfa.get(ende).eps = anhaengen(nfa.get(ende).eps, f.start);
+            nfa.get(f.ende).eps = anhaengen(nfa.get(f.ende).eps, e);
+            ende = f.ende;
+        }
+        return new Fragment(s, e);
+    }
+
+    private static BitSet einzeln(int zustand) {
+        BitSet b = new BitSet();
+        b.set(zustand);
+        return b;
+    }
+
+    /**
+     * Ergänzt alle über ε-Übergänge erreichbaren Zustände.
+     */
+    private BitSet huelle(BitSet menge) {
+        ArrayDeque<Integer> offen = new ArrayDeque<>();
+        for (int s = menge.nextSetBit(0); s >= 0; s = menge.nextSetBit(s + 1)) {
+            offen.add(s);
+        }
+        while (!offen.isEmpty()) {
+            for (int n : nfa.get(offen.poll()).eps) {
+                if (!menge.get(n)) {
+                    menge.set(n);
+                    offen.add(n);
+                }
+            }
+        }
+        return menge;
+    }
+
+    private long treffer(BitSet menge) {
+        long t = 0;
+        for (int s = menge.nextSetBit(0); s >= 0; s = menge.nextSetBit(s + 1)) {
+            t |= nfa.get(s).treffer;
+        }
+        return t;
+    }
+
+    /**
+     * Simuliert den NFA eines Teils direkt (wenn sein DFA zu groß wäre).
+     */
+    private long simuliere(Teil teil, String name) {
+        BitSet menge = teil.start;
+        for (int i = 0; i < name.length() && !menge.isEmpty(); i++) {
+            int k = klasseVon[Character.toLowerCase(name.charAt(i))];
+            BitSet naechste = new BitSet();
+            for (int s = menge.nextSetBit(0); s >= 0; s = menge.nextSetBit(s + 1)) {
+                BitSet klassen = nfa.get(s).klassen;
+                if (klassen != null && klassen.get(k)) {
+                    naechste.or(folge[s]);
+                }
+            }
+            menge = naechste;
+        }
+        return treffer(menge);
+    }
+
+    // ------------------------------------------------------------------
+    // Zeichenmengen: sortierte, disjunkte Intervalle [von, bis, von, bis, ...]
+
+    private static final int[] ALLE = {0, ZEICHEN - 1};
+    private static final int[] ZIFFERN = {'0', '9'};
+    private static final int[] WORTZEICHEN = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+    private static final int[] LEERZEICHEN = {'\t', '\r', ' ', ' '};
+
+    private static boolean enthaelt(int[] menge, int c) {
+        for (int i = 0; i < menge.length; i += 2) {
+            if (c >= menge[i] && c <= menge[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] ausBits(boolean[] bits) {
+        int[] m = new int[16];
+        int n = 0;
+        int c = 0;
+        while (c < ZEICHEN) {
+            if (!bits[c]) {
+                c++;
+                continue;
+            }
+            int von = c;
+            while (c < ZEICHEN && bits[c]) {
+                c++;
+            }
+            if (n + 2 > m.length) {
+                m = Arrays.copyOf(m, m.length * 2);
+            }
+            m[n++] = von;
+            m[n++] = c - 1;
+        }
+        return Arrays.copyOf(m, n);
+    }
+
+    private static void setze(boolean[] bits, int[] menge) {
+        for (int i = 0; i < menge.length; i += 2) {
+            Arrays.fill(bits, menge[i], menge[i + 1] + 1, true);
+        }
+    }
+
+    /**
+     * Ergänzt zu jedem Zeichen seinen Kleinbuchstaben, damit die klein gelesenen
+     * Namen passen; bei negierten Mengen wird das vor dem Umkehren angewendet.
+     */
+    private static int[] klein(boolean[] bits, boolean negiert) {
+        for (int c = 0; c < ZEICHEN; c++) {
+            if (bits[c]) {
+                bits[Character.toLowerCase((char) c)] = true;
+            }
+        }
+        if (negiert) {
+            for (int c = 0; c < ZEICHEN; c++) {
+                bits[c] = !bits[c];
+            }
+        }
+        return ausBits(bits);
+    }
+
+    // ------------------------------------------------------------------
+    // Parser
+
+    private interface Knoten {
+    }
+
+    private static final class ZeichenKnoten implements Knoten {
+        final int[] menge;
+
+        ZeichenKnoten(int[] menge) {
+            this.menge = menge;
+        }
+    }
+
+    private static final class FolgeKnoten implements Knoten {
+        final List<Knoten> teile = new ArrayList<>();
+    }
+
+    private static final class AuswahlKnoten implements Knoten {
+        final List<Knoten> teile = new ArrayList<>();
+    }
+
+    private static final class WiederholungKnoten implements Knoten {
+        final Knoten inhalt;
+        final int min;
+        final int max;
+
+        WiederholungKnoten(Knoten inhalt, int min, int max) {
+            this.inhalt = inhalt;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /**
+     * Parst ein Muster. Ohne ^ bzw. $ darf der Treffer irgendwo im Namen liegen
+     * (wie Matcher.find); dafür wird vorne bzw. hinten ".*" ergänzt.
+     */
+    private static Knoten parse(String muster) {
+        String m = muster;
+        boolean vorneFest = m.startsWith("^");
+        if (vorneFest) {
+            m = m.substring(1);
+        }
+        boolean hintenFest = false;
+        if (m.endsWith("$")) {
+            int striche = 0;
+            for (int i = m.length() - 2; i >= 0 && m.charAt(i) == '\\'; i--) {
+                striche++;
+            }
+            if (striche % 2 == 0) {
+                hintenFest = true;
+                m = m.substring(0, m.length() - 1);
+            }
+        }
+
+        Parser p = new Parser(m);
+        Knoten inhalt = p.auswahl();
+        if (p.pos < m.length()) {
+            throw p.fehler("unerwartetes ')'");
+        }
+
+        FolgeKnoten ganz = new FolgeKnoten();
+        if (!vorneFest) {
+            ganz.teile.add(new WiederholungKnoten(new ZeichenKnoten(ALLE), 0, -1));
+        }
+        ganz.teile.add(inhalt);
+        if (!hintenFest) {
+            ganz.teile.add(new WiederholungKnoten(new ZeichenKnoten(ALLE), 0, -1));
+        }
+        return ganz;
+    }
+
+    /**
+     * Rekursiver Abstieg über die Muster-Syntax.
+     */
+    private static final class Parser {
+        final String s;
+        int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        IllegalArgumentException fehler(String grund) {
+            return new IllegalArgumentException(grund + " an Position " + pos + " in '" + s + "'");
+        }
+
+        boolean ende() {
+            return pos >= s.length();
+        }
+
+        Knoten auswahl() {
+            AuswahlKnoten a = new AuswahlKnoten();
+            a.teile.add(folge());
+            while (!ende() && s.charAt(pos) == '|') {
+                pos++;
+                a.teile.add(folge());
+            }
+            return a.teile.size() == 1 ? a.teile.get(0) : a;
+        }
+
+        Knoten folge() {
+            FolgeKnoten f = new FolgeKnoten();
+            while (!ende() && s.charAt(pos) != '|' && s.charAt(pos) != ')') {
+                f.teile.add(wiederholung());
+            }
+            return f;
+        }
+
+        Knoten wiederholung() {
+            Knoten k = atom();
+            while (!ende()) {
+                char c = s.charAt(pos);
+                int min;
+                int max;
+                if (c == '*') {
+                    min = 0;
+                    max = -1;
+                    pos++;
+                } else if (c == '+') {
+                    min = 1;
+                    max = -1;
+                    pos++;
+                } else if (c == '?') {
+                    min = 0;
+                    max = 1;
+                    pos++;
+                } else if (c == '{' && s.indexOf('}', pos) > pos && s.substring(pos + 1, s.indexOf('}', pos))
+                        .matches("\\d+(,\\d*)?")) {
+                    String inhalt = s.substring(pos + 1, s.indexOf('}', pos));
+                    int komma = inhalt.indexOf(',');
+                    min = Integer.parseInt(komma < 0 ? inhalt : inhalt.substring(0, komma));
+                    max = komma < 0 ? min : komma == inhalt.length() - 1 ? -1
+                            : Integer.parseInt(inhalt.substring(komma + 1));
+                    if (min > MAX_WIEDERHOLUNG || max > MAX_WIEDERHOLUNG || (max >= 0 && max < min)) {
+                        throw fehler("ungültige Wiederholung {" + inhalt + "}");
+                    }
+                    pos = s.indexOf('}', pos) + 1;
+                } else {
+                    break;
+                }
+                // "genügsame" Varianten (*?, +?, ??) beschreiben dieselben Namen
+                if (!ende() && s.charAt(pos) == '?') {
+                    pos++;
+                }
+                if (!ende() && "*+?".indexOf(s.charAt(pos)) >= 0) {
+                    throw fehler("doppelte Wiederholung");
+                }
+                k = new WiederholungKnoten(k, min, max);
+            }
+            return k;
+        }
+
+        Knoten atom() {
+            char c = s.charAt(pos);
+            if (c == '(') {
+                pos++;
+                if (s.startsWith("?:", pos)) {
+                    pos += 2;
+                } else if (!ende() && s.charAt(pos) == '?') {
+                    throw fehler("Gruppenart nicht unterstützt");
+                }
+                Knoten k = auswahl();
+                if (ende() || s.charAt(pos) != ')') {
+                    throw fehler("')' fehlt");
+                }
+                pos++;
+                return k;
+            }
+            if (c == '*' || c == '+' || c == '?') {
+                throw fehler("'" + c + "' ohne Ausdruck davor");
+            }
+            if (c == '^' || c == '$') {
+                throw fehler("'" + c + "' nur am Anfang bzw. Ende erlaubt");
+            }
+            pos++;
+            if (c == '.') {
+                return new ZeichenKnoten(ALLE);
+            }
+            if (c == '[') {
+                return klasse();
+            }
+            boolean[] bits = new boolean[ZEICHEN];
+            if (c == '\\') {
+                boolean negiert = escape(bits);
+                return new ZeichenKnoten(klein(bits, negiert));
+            }
+            bits[c] = true;
+            return new ZeichenKnoten(klein(bits, false));
+        }
+
+        /**
+         * Liest eine Escape-Sequenz nach '\' und trägt die Zeichen in bits ein.
+         *
+         * @return true, wenn die Menge umzukehren ist (\D, \W, \S).
+         */
+        boolean escape(boolean[] bits) {
+            if (ende()) {
+                throw fehler("'\\' am Ende");
+            }
+            char c = s.charAt(pos++);
+            switch (c) {
+                case 'd':
+                case 'D':
+                    setze(bits, ZIFFERN);
+                    return c == 'D';
+                case 'w':
+                case 'W':
+                    setze(bits, WORTZEICHEN);
+                    return c == 'W';
+                case 's':
+                case 'S':
+                    setze(bits, LEERZEICHEN);
+                    return c == 'S';
+                case 't':
+                    bits['\t'] = true;
+                    return false;
+                case 'n':
+                    bits['\n'] = true;
+                    return false;
+                case 'u':
+                    if (pos + 4 > s.length()) {
+                        throw fehler("\\u braucht vier Hex-Ziffern");
+                    }
+                    try {
+                        bits[Integer.parseInt(s.substring(pos, pos + 4), 16)] = true;
+                    } catch (NumberFormatException e) {
+                        throw fehler("\\u braucht vier Hex-Ziffern");
+                    }
+                    pos += 4;
+                    return false;
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw fehler("'\\" + c + "' nicht unterstützt");
+                    }
+                    bits[c] = true;
+                    return false;
+            }
+        }
+
+        Knoten klasse() {
+            boolean[] bits = new boolean[ZEICHEN];
+            boolean negiert = !ende() && s.charAt(pos) == '^';
+            if (negiert) {
+                pos++;
+            }
+            boolean erstes = true;
+            while (true) {
+                if (ende()) {
+                    throw fehler("']' fehlt");
+                }
+                char c = s.charAt(pos);
+                if (c == ']' && !erstes) {
+                    pos++;
+                    break;
+                }
+                erstes = false;
+                pos++;
+                int von;
+                if (c == '\\') {
+                    boolean[] teil = new boolean[ZEICHEN];
+                    boolean teilNegiert = escape(teil);
+                    int[] m = teilNegiert ? klein(teil, true) : ausBits(teil);
+                    if (m.length != 2 || m[0] != m[1]) {
+                        // \d, \w ... sind keine Bereichsgrenzen
+                        setze(bits, m);
+                        continue;
+                    }
+                    von = m[0];
+                } else {
+                    von = c;
+                }
+                int bis = von;
+                if (pos + 1 < s.length() && s.charAt(pos) == '-' && s.charAt(pos + 1) != ']') {
+                    pos++;
+                    char b = s.charAt(pos++);
+                    if (b == '\\') {
+                        boolean[] teil = new boolean[ZEICHEN];
+                        escape(teil);
+                        int[] m = ausBits(teil);
+                        if (m.length != 2 || m[0] != m[1]) {
+                            throw fehler("ungültiger Bereich");
+                        }
+                        bis = m[0];
+                    } else {
+                        bis = b;
+                    }
+                    if (bis < von) {
+                        throw fehler("ungültiger Bereich");
+                    }
+                }
+                Arrays.fill(bits, von, bis + 1, true);
+            }
+            return new ZeichenKnoten(klein(bits, negiert));
+        }
+    }
+}
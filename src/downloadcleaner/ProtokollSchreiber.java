@@ -0,0 +1,380 @@
+package downloadcleaner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schreibt log.txt und das Undo-Journal (undo_journal.bin) in einem eigenen Thread.
+ *
+ * Wer Dateien verschiebt, übergibt nur noch eine kleine Bewegung (Quelle, Ziel,
+ * Zeitpunkt) an eine begrenzte Warteschlange und arbeitet sofort weiter. Der
+ * Schreib-Thread holt jeweils alle wartenden Bewegungen auf einmal ab, schreibt sie
+ * als einen Block in beide Dateien (Group Commit) und sorgt je nach SyncModus dafür,
+ * dass die Daten wirklich auf dem Datenträger landen (FileChannel.force).
+ *
+ * Damit ist festgelegt, wie viele Undo-Einträge bei einem Absturz höchstens verloren
+ * gehen können:
+ * - JE_BATCH:    nur der Block, der gerade geschrieben wird.
+ * - INTERVALL:   höchstens die Bewegungen der letzten intervallMs Millisekunden.
+ * - NUR_AM_ENDE: alles seit dem Start (wie früher mit BufferedWriter).
+ *
+ * Zeitstempel werden sekundengenau gecacht: innerhalb derselben Sekunde wird der
+ * formatierte Text wiederverwendet, statt für jede Zeile neu zu formatieren.
+ *
+ * Nach einem erfolgreichen Lauf wird log.txt bei Bedarf rotiert (siehe LogArchiv).
+ * Hinweise (ungültige Einstellung, fehlgeschlagene Rotation) gehen an den
+ * übergebenen SortierBeobachter.
+ */
+class ProtokollSchreiber implements Closeable {
+
+    /**
+     * Wann die geschriebenen Daten mit force() auf den Datenträger gezwungen werden.
+     */
+    enum SyncModus {
+        /** Nach jedem geschriebenen Block. */
+        JE_BATCH,
+        /** Spätestens alle intervallMs Millisekunden, falls neue Daten vorliegen. */
+        INTERVALL,
+        /** Nur beim Schließen. */
+        NUR_AM_ENDE
+    }
+
+    /**
+     * Name der System-Property für die Sync-Richtlinie, z. B.
+     * -Ddownloadcleaner.sync=batch, =intervall:250 oder =ende.
+     */
+    static final String SYNC_PROPERTY = "downloadcleaner.sync";
+
+    /**
+     * Standard: höchstens eine Sekunde Undo-Verlust bei einem Absturz.
+     */
+    static final long STANDARD_INTERVALL_MS = 1000;
+
+    private static final int WARTESCHLANGE_GROESSE = 8192;
+    private static final int MAX_BATCH = 4096;
+    private static final String ZEILENENDE = System.lineSeparator();
+
+    /**
+     * Markiert das Ende der Warteschlange.
+     */
+    private static final Bewegung ENDE = new Bewegung(0, null, null);
+
+    /**
+     * Eine Verschiebung, wie sie vom Verschieber übergeben wird.
+     * Der Zeitpunkt wird als Millisekunden gespeichert, formatiert wird erst beim Schreiben.
+     */
+    private static final class Bewegung {
+        final long zeitMs;
+        final Path relativeQuelle;
+        final Path relativeZiel;
+
+        Bewegung(long zeitMs, Path relativeQuelle, Path relativeZiel) {
+            this.zeitMs = zeitMs;
+            this.relativeQuelle = relativeQuelle;
+            this.relativeZiel = relativeZiel;
+        }
+    }
+
+    private final Path logFile;
+    private final FileChannel log;
+    private final UndoJournal.Schreiber undo;
+    private final SyncModus modus;
+    private final long intervallMs;
+    private final BlockingQueue<Bewegung> warteschlange = new ArrayBlockingQueue<>(WARTESCHLANGE_GROESSE);
+    private final Thread schreiber;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Messung messung;
+    private final SortierBeobachter beobachter;
+
+    /**
+     * Erster Schreibfehler des Schreib-Threads; wird an Aufrufer weitergereicht.
+     */
+    private volatile IOException fehler;
+
+    // Nur vom Schreib-Thread benutzt
+    private long gecachteSekunde = Long.MIN_VALUE;
+    private String gecachterZeitstempel;
+    private long letzterSyncMs = System.currentTimeMillis();
+    private boolean ungesynct;
+
+    /**
+     * Öffnet beide Dateien, schreibt die Startzeile ins Log und startet den Schreib-Thread.
+     *
+     * @param logFile     log.txt (wird fortgeschrieben).
+     * @param journal     undo_journal.bin (ein neuer Lauf wird angehängt).
+     * @param modus       Sync-Richtlinie.
+     * @param intervallMs Intervall für SyncModus.INTERVALL in Millisekunden.
+     * @param messung     misst jeden geschriebenen Block als Phase PROTOKOLL.
+     * @param beobachter  erhält Hinweise zum Protokoll (meldung()).
+     * @throws IOException wenn eine der Dateien nicht geöffnet werden kann.
+     */
+    ProtokollSchreiber(Path logFile, Path journal, SyncModus modus, long intervallMs, Messung messung,
+                       SortierBeobachter beobachter) throws IOException {
+        this.modus = modus;
+        this.messung = messung;
+        this.beobachter = beobachter;
+        this.intervallMs = Math.max(1, intervallMs);
+        this.logFile = logFile;
+        this.log = FileChannel.open(logFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            this.undo = UndoJournal.Schreiber.neuerLauf(journal, journal.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            log.close();
+            throw e;
+        }
+        if (undo.reparatur() != null) {
+            beobachter.meldung(logFile.getParent(), undo.reparatur().toString());
+        }
+
+        try {
+            schreibe(log, "=== Sortierung gestartet: "
+                    + LocalDateTime.now().format(DownloadCleaner.LOG_TS_FORMAT)
+                    + " (Undo-Lauf #" + undo.laufId() + ") ===" + ZEILENENDE);
+        } catch (IOException e) {
+            // Der Lauf hält die Sperre des Journals; sie muss wieder frei werden
+            try {
+                log.close();
+            } finally {
+                undo.abschliessen();
+            }
+            throw e;
+        }
+
+        this.schreiber = Thread.ofPlatform().name("protokoll").daemon().start(this::arbeite);
+    }
+
+    /**
+     * Erzeugt einen ProtokollSchreiber mit der Richtlinie aus der System-Property
+     * downloadcleaner.sync (Standard: Intervall von einer Sekunde).
+     */
+    static ProtokollSchreiber ausSystemProperty(Path logFile, Path journal, SortierBeobachter beobachter)
+            throws IOException {
+        return ausSystemProperty(logFile, journal, Messung.AUS, beobachter);
+    }
+
+    /**
+     * Wie ausSystemProperty(logFile, journal, beobachter), misst aber das Schreiben jedes Blocks.
+     */
+    static ProtokollSchreiber ausSystemProperty(Path logFile, Path journal, Messung messung,
+                                                SortierBeobachter beobachter) throws IOException {
+        String wert = System.getProperty(SYNC_PROPERTY, "intervall").trim().toLowerCase();
+        if (wert.equals("batch")) {
+            return new ProtokollSchreiber(logFile, journal, SyncModus.JE_BATCH, STANDARD_INTERVALL_MS, messung,
+                    beobachter);
+        }
+        if (wert.equals("ende")) {
+            return new ProtokollSchreiber(logFile, journal, SyncModus.NUR_AM_ENDE, STANDARD_INTERVALL_MS, messung,
+                    beobachter);
+        }
+        long ms = STANDARD_INTERVALL_MS;
+        int doppelpunkt = wert.indexOf(':');
+        if (wert.startsWith("intervall") && doppelpunkt > 0) {
+            try {
+                ms = Long.parseLong(wert.substring(doppelpunkt + 1).trim());
+            } catch (NumberFormatException e) {
+                beobachter.meldung(logFile.getParent(),
+                        "Ungültiges Sync-Intervall '" + wert + "', verwende " + ms + " ms.");
+            }
+        }
+        return new ProtokollSchreiber(logFile, journal, SyncModus.INTERVALL, ms, messung, beobachter);
+    }
+
+    /**
+     * @return Nummer des Laufs, den dieser Schreiber im Undo-Journal anlegt.
+     */
+    long laufId() {
+        return undo.laufId();
+    }
+
+    /**
+     * Übergibt eine erfolgreiche Verschiebung an den Schreib-Thread.
+     * Blockiert nur, wenn die Warteschlange voll ist. Thread-sicher.
+     *
+     * @param relativeQuelle ursprünglicher Pfad relativ zum Arbeitsordner.
+     * @param relativeZiel   neuer Pfad relativ zum Arbeitsordner.
+     * @throws IOException wenn der Schreib-Thread bereits einen Fehler hatte.
+     */
+    void bewegung(Path relativeQuelle, Path relativeZiel) throws IOException {
+        IOException f = fehler;
+        if (f != null) {
+            throw f;
+        }
+        try {
+            warteschlange.put(new Bewegung(System.currentTimeMillis(), relativeQuelle, relativeZiel));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Protokollierung unterbrochen");
+        }
+    }
+
+    /**
+     * Schreibt alle noch wartenden Bewegungen, auf Wunsch die Abschlusszeile, und
+     * schließt beide Dateien mit einem abschließenden force(). Danach wird log.txt
+     * rotiert, falls es eine der Grenzen von LogArchiv erreicht hat.
+     *
+     * @param erfolgreich true = "=== Sortierung beendet ===" ins Log schreiben.
+     * @throws IOException bei einem Schreibfehler (auch aus dem Schreib-Thread).
+     */
+    void beende(boolean erfolgreich) throws IOException {
+        try {
+            warteschlange.put(ENDE);
+            schreiber.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (fehler == null && erfolgreich) {
+                schreibe(log, "=== Sortierung beendet ===" + ZEILENENDE);
+            }
+            log.force(false);
+        } finally {
+            try {
+                log.close();
+            } finally {
+                undo.abschliessen(); // Fuß mit Indizes, force, schließen
+            }
+        }
+        if (fehler != null) {
+            throw fehler;
+        }
+        try {
+            LogArchiv.rotiereBeiBedarf(logFile, beobachter);
+        } catch (IOException e) {
+            // Die Bewegungen sind protokolliert; es wird beim nächsten Lauf erneut versucht
+            beobachter.meldung(logFile.getParent(), "log.txt konnte nicht rotiert werden: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Schließt ohne Abschlusszeile (z. B. nach einem Abbruch).
+     */
+    @Override
+    public void close() throws IOException {
+        if (log.isOpen()) {
+            beende(false);
+        }
+    }
+
+    /**
+     * Hauptschleife des Schreib-Threads.
+     *
+     * Jeder Fehler, auch eine unerwartete RuntimeException, landet in fehler; danach
+     * wird die Warteschlange nur noch geleert. Stirbt der Thread, blockierten sonst
+     * bewegung() bei voller Warteschlange und beende() für immer.
+     */
+    private void arbeite() {
+        List<Bewegung> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder logText = new StringBuilder(64 * 1024);
+        boolean fertig = false;
+
+        while (!fertig) {
+            try {
+                Bewegung erste;
+                if (modus == SyncModus.INTERVALL && ungesynct) {
+                    // nur so lange warten, bis der nächste Sync fällig ist
+                    long rest = intervallMs - (System.currentTimeMillis() - letzterSyncMs);
+                    erste = warteschlange.poll(Math.max(1, rest), TimeUnit.MILLISECONDS);
+                } else {
+                    erste = warteschlange.take();
+                }
+                if (erste != null) {
+                    batch.add(erste);
+                    warteschlange.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (InterruptedException e) {
+                fertig = true;
+            }
+
+            logText.setLength(0);
+            int neueEintraege = 0;
+            for (Bewegung b : batch) {
+                if (b == ENDE) {
+                    fertig = true;
+                    continue;
+                }
+                logText.append(zeitstempel(b.zeitMs)).append(" MOVE ")
+                        .append(b.relativeQuelle).append(" -> ").append(b.relativeZiel).append(ZEILENENDE);
+                if (fehler == null) {
+                    try {
+                        undo.eintrag(b.relativeZiel.toString(), b.relativeQuelle.toString());
+                        neueEintraege++;
+                    } catch (RuntimeException e) {
+                        fehler = new IOException(e.getMessage(), e);
+                    }
+                }
+            }
+            batch.clear();
+
+            if (fehler != null) {
+                continue; // nur noch leeren, damit kein Verschieber blockiert
+            }
+            Messung.Messpunkt block = neueEintraege > 0 || ungesynct ? messung.start(Messung.Phase.PROTOKOLL) : null;
+            try {
+                if (neueEintraege > 0) {
+                    // Undo zuerst: lieber ein Undo-Eintrag ohne Log-Zeile als umgekehrt
+                    undo.schreibePuffer();
+                    schreibe(log, logText);
+                    ungesynct = true;
+                }
+                synchronisiereBeiBedarf();
+                messung.ende(block, null, neueEintraege);
+            } catch (IOException e) {
+                fehler = e;
+            } catch (RuntimeException e) {
+                fehler = new IOException("Protokollierung fehlgeschlagen: " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Führt force() aus, wenn die Richtlinie es verlangt.
+     */
+    private void synchronisiereBeiBedarf() throws IOException {
+        if (!ungesynct || modus == SyncModus.NUR_AM_ENDE) {
+            return;
+        }
+        long jetzt = System.currentTimeMillis();
+        if (modus == SyncModus.JE_BATCH || jetzt - letzterSyncMs >= intervallMs) {
+            undo.force();
+            log.force(false);
+            letzterSyncMs = jetzt;
+            ungesynct = false;
+        }
+    }
+
+    /**
+     * Liefert den formatierten Zeitstempel; innerhalb derselben Sekunde aus dem Cache.
+     */
+    private String zeitstempel(long zeitMs) {
+        long sekunde = Math.floorDiv(zeitMs, 1000);
+        if (sekunde != gecachteSekunde) {
+            gecachteSekunde = sekunde;
+            gecachterZeitstempel = LocalDateTime.ofInstant(Instant.ofEpochSecond(sekunde), zone)
+                    .format(DownloadCleaner.LOG_TS_FORMAT);
+        }
+        return gecachterZeitstempel;
+    }
+
+    private static void schreibe(FileChannel kanal, CharSequence text) throws IOException {
+        ByteBuffer puffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+        while (puffer.hasRemaining()) {
+            kanal.write(puffer);
+        }
+    }
+}
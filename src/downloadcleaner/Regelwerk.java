@@ -0,0 +1,550 @@
+package downloadcleaner;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Zusätzliche Sortierregeln aus config.txt, die über die reine Dateiendung hinausgehen.
+ *
+ * Format (eine Regel pro Zeile, Bedingungen durch Leerzeichen getrennt, alle müssen
+ * erfüllt sein; Werte mit Leerzeichen in "..." setzen):
+ *
+ *   regel: name=*invoice*.pdf -> Rechnungen
+ *   regel: groesse>1GB -> Archive/Large
+ *   regel: alter>90d -> Alt
+ *   regel: regex="^scan_\d{4}" endung=.jpg,.png -> Scans
+ *
+ * Bedingungen:
+ * - name=GLOB      ganzer Dateiname, * ? [abc] [!abc]
+ * - regex=MUSTER   Teil des Namens (mit ^ bzw. $ verankert), siehe NamensAutomat
+ * - endung=.a,.b   eine der Endungen
+ * - groesse>N / groesse<N   mit B, KB, MB, GB, TB (Basis 1024)
+ * - alter>N / alter<N       mit h, d (Standard) oder w; Alter = seit letzter Änderung
+ *
+ * Die Regeln werden der Reihe nach geprüft, die erste passende gewinnt. Passt keine,
+ * gilt wie bisher die Endungs-Zuordnung der Kategorien. Groß-/Kleinschreibung spielt
+ * bei Namen und Endungen keine Rolle.
+ *
+ * Ausgewertet wird nicht Regel für Regel, sondern über eine Bitmaske (ein Bit pro
+ * Regel, daher höchstens 64 Regeln):
+ * 1. Endungen: ein umgedrehter Präfixbaum liefert die Regeln, deren Endung passt.
+ * 2. Größe und Alter: nur für die noch möglichen Regeln, als einfache Vergleiche.
+ * 3. Namen: steht danach eine Regel ohne Namensmuster vorne, ist die Entscheidung
+ *    gefallen. Sonst wird der Name einmal durch einen gemeinsamen Automaten für alle
+ *    Muster geführt (NamensAutomat) – egal, wie viele Regeln Muster haben.
+ * Die niedrigste verbleibende Bitnummer ist die gesuchte Regel.
+ */
+final class Regelwerk {
+
+    /**
+     * Zeilen, die damit beginnen, sind Regeln (statt "Kategorie=Endungen").
+     */
+    static final String PRAEFIX = "regel:";
+
+    /**
+     * Höchstzahl der Regeln (eine Bitmaske vom Typ long).
+     */
+    static final int MAX_REGELN = 64;
+
+    /**
+     * Regelwerk ohne Regeln.
+     */
+    static final Regelwerk LEER = new Regelwerk(new ArrayList<>());
+
+    private static final long STUNDE_MS = 3_600_000L;
+
+    /** Ziel (Kategorie bzw. relativer Ordner) je Regel. */
+    private final String[] ziele;
+    /** Originaltext je Regel, für Fingerabdruck und Meldungen. */
+    private final String[] texte;
+
+    private final long alle;
+    private final long ohneEndung;
+    private final long mitGroesse;
+    private final long mitAlter;
+    private final long mitName;
+
+    // Grenzen je Regel; "keine Grenze" = 0 bzw. Long.MAX_VALUE
+    private final long[] minGroesse;
+    private final long[] maxGroesse;
+    private final long[] minAlterMs;
+    private final long[] maxAlterMs;
+
+    private final EndungsMasken endungen;
+    private final NamensAutomat namen;
+
+    private Regelwerk(List<Regel> regeln) {
+        int n = regeln.size();
+        ziele = new String[n];
+        texte = new String[n];
+        minGroesse = new long[n];
+        maxGroesse = new long[n];
+        minAlterMs = new long[n];
+        maxAlterMs = new long[n];
+        endungen = new EndungsMasken();
+
+        long alleBits = 0;
+        long ohneEndungBits = 0;
+        long groesseBits = 0;
+        long alterBits = 0;
+        long nameBits = 0;
+        List<String> muster = new ArrayList<>();
+        List<Integer> bits = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            Regel r = regeln.get(i);
+            long bit = 1L << i;
+            alleBits |= bit;
+            ziele[i] = r.ziel;
+            texte[i] = r.text;
+            minGroesse[i] = r.minGroesse;
+            maxGroesse[i] = r.maxGroesse;
+            minAlterMs[i] = r.minAlterMs;
+            maxAlterMs[i] = r.maxAlterMs;
+            if (r.endungen == null) {
+                ohneEndungBits |= bit;
+            } else {
+                for (String ext : r.endungen) {
+                    endungen.fuegeHinzu(ext, bit);
+                }
+            }
+            if (r.minGroesse > 0 || r.maxGroesse < Long.MAX_VALUE) {
+                groesseBits |= bit;
+            }
+            if (r.minAlterMs > 0 || r.maxAlterMs < Long.MAX_VALUE) {
+                alterBits |= bit;
+            }
+            if (r.muster != null) {
+                nameBits |= bit;
+                muster.add(r.muster);
+                bits.add(i);
+            }
+        }
+        alle = alleBits;
+        ohneEndung = ohneEndungBits;
+        mitGroesse = groesseBits;
+        mitAlter = alterBits;
+        mitName = nameBits;
+        namen = muster.isEmpty() ? null : NamensAutomat.kompiliere(muster, bits);
+    }
+
+    /**
+     * Übersetzt die Regelzeilen einer config.txt.
+     *
+     * Ungültige Regeln werden übersprungen; für jede wird eine Meldung in fehler
+     * abgelegt. Ab der 65. Regel wird ebenfalls abgelehnt.
+     *
+     * @param zeilen Regelzeilen (mit oder ohne "regel:").
+     * @param fehler nimmt Meldungen zu ungültigen Regeln auf.
+     * @return übersetztes Regelwerk (LEER, wenn keine Regel gültig ist).
+     */
+    static Regelwerk kompiliere(List<String> zeilen, List<String> fehler) {
+        List<Regel> regeln = new ArrayList<>();
+        for (String zeile : zeilen) {
+            if (regeln.size() == MAX_REGELN) {
+                fehler.add("Mehr als " + MAX_REGELN + " Regeln, ignoriert: " + zeile);
+                continue;
+            }
+            try {
+                regeln.add(Regel.parse(zeile));
+            } catch (IllegalArgumentException e) {
+                fehler.add(e.getMessage() + ": " + zeile);
+            }
+        }
+        return regeln.isEmpty() ? LEER : new Regelwerk(regeln);
+    }
+
+    /**
+     * @return Anzahl der Regeln.
+     */
+    int anzahl() {
+        return ziele.length;
+    }
+
+    /**
+     * @return true, wenn eine Regel vom Alter abhängt. Dann kann sich die Zuordnung
+     *         einer Datei ändern, ohne dass sich die Datei ändert.
+     */
+    boolean zeitabhaengig() {
+        return mitAlter != 0;
+    }
+
+    /**
+     * @return true, wenn eine Regel Größe oder Alter prüft (dafür werden die
+     *         Dateiattribute gebraucht).
+     */
+    boolean brauchtAttribute() {
+        return (mitGroesse | mitAlter) != 0;
+    }
+
+    /**
+     * Fließt in den Fingerabdruck der Konfiguration ein.
+     *
+     * @param h bisheriger FNV-1a-Wert.
+     * @return fortgeschriebener Wert.
+     */
+    long fingerabdruck(long h) {
+        for (String text : texte) {
+            h = (h ^ text.hashCode()) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * @param regel Nummer der Regel (0 bis anzahl() - 1).
+     * @return Ziel der Regel.
+     */
+    String ziel(int regel) {
+        return ziele[regel];
+    }
+
+    /**
+     * Sucht die erste passende Regel.
+     *
+     * @param name    Dateiname.
+     * @param attrs   Attribute der Datei oder null (Regeln mit Größe/Alter passen dann nicht).
+     * @param jetztMs Bezugszeitpunkt für das Alter.
+     * @return Nummer der Regel (siehe ziel()) oder -1, wenn keine passt.
+     */
+    int suche(String name, BasicFileAttributes attrs, long jetztMs) {
+        long kandidaten = alle;
+        if (kandidaten == 0) {
+            return -1;
+        }
+        kandidaten &= ohneEndung | endungen.suche(name);
+
+        long pruefen = kandidaten & (mitGroesse | mitAlter);
+        if (pruefen != 0) {
+            if (attrs == null) {
+                kandidaten &= ~pruefen;
+            } else {
+                long groesse = attrs.size();
+                long alterMs = jetztMs - attrs.lastModifiedTime().toMillis();
+                while (pruefen != 0) {
+                    int i = Long.numberOfTrailingZeros(pruefen);
+                    pruefen &= pruefen - 1;
+                    // Alter nur bei Regeln mit Alter: ohne sie ist jetztMs 0
+                    if (groesse < minGroesse[i] || groesse > maxGroesse[i]
+                            || (mitAlter & (1L << i)) != 0
+                            && (alterMs < minAlterMs[i] || alterMs > maxAlterMs[i])) {
+                        kandidaten &= ~(1L << i);
+                    }
+                }
+            }
+        }
+
+        if (kandidaten == 0) {
+            return -1;
+        }
+        // Die vorderste Regel braucht keinen Namen: fertig, ohne den Automaten
+        if ((Long.lowestOneBit(kandidaten) & mitName) != 0) {
+            kandidaten &= ~mitName | namen.treffer(name);
+        }
+        return kandidaten == 0 ? -1 : Long.numberOfTrailingZeros(kandidaten);
+    }
+
+    /**
+     * Wie suche(), aber nur mit Regeln, die weder Größe noch Alter prüfen (wenn nur der
+     * Name bekannt ist).
+     *
+     * @param name Dateiname.
+     * @return Nummer der Regel oder -1.
+     */
+    int sucheNachName(String name) {
+        long kandidaten = alle & ~(mitGroesse | mitAlter);
+        if (kandidaten == 0) {
+            return -1;
+        }
+        kandidaten &= ohneEndung | endungen.suche(name);
+        if (kandidaten != 0 && (Long.lowestOneBit(kandidaten) & mitName) != 0) {
+            kandidaten &= ~mitName | namen.treffer(name);
+        }
+        return kandidaten == 0 ? -1 : Long.numberOfTrailingZeros(kandidaten);
+    }
+
+    /**
+     * Prüft ein Ziel (Kategorie oder relativer Unterordner wie "Archive/Large").
+     *
+     * @param ziel Ziel aus einer Regel oder einem Sortierplan.
+     * @return Ziel mit '/' als Trenner und ohne '/' am Ende.
+     * @throws IllegalArgumentException wenn das Ziel leer ist oder aus dem
+     *                                  Download-Ordner herausführen würde.
+     */
+    static String pruefeZiel(String ziel) {
+        String z = ziel.replace('\\', '/');
+        while (z.endsWith("/")) {
+            z = z.substring(0, z.length() - 1);
+        }
+        if (z.isEmpty()) {
+            throw new IllegalArgumentException("Ziel fehlt");
+        }
+        if (z.startsWith("/") || z.contains(":") || Arrays.asList(z.split("/")).contains("..")
+                || z.contains("//")) {
+            throw new IllegalArgumentException("Ziel muss ein Ordner unterhalb des Download-Ordners sein");
+        }
+        return z;
+    }
+
+    /**
+     * Zerlegt an Leerzeichen; "..." hält zusammen (die Anführungszeichen fallen weg).
+     *
+     * @param s Text einer Zeile aus config.txt (ohne Präfix).
+     * @return Teile in ihrer Reihenfolge.
+     * @throws IllegalArgumentException wenn ein Anführungszeichen nicht geschlossen ist.
+     */
+    static List<String> zerlege(String s) {
+        List<String> teile = new ArrayList<>();
+        StringBuilder aktuell = new StringBuilder();
+        boolean inAnfuehrung = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                inAnfuehrung = !inAnfuehrung;
+            } else if (Character.isWhitespace(c) && !inAnfuehrung) {
+                if (aktuell.length() > 0) {
+                    teile.add(aktuell.toString());
+                    aktuell.setLength(0);
+                }
+            } else {
+                aktuell.append(c);
+            }
+        }
+        if (inAnfuehrung) {
+            throw new IllegalArgumentException("Anführungszeichen nicht geschlossen");
+        }
+        if (aktuell.length() > 0) {
+            teile.add(aktuell.toString());
+        }
+        return teile;
+    }
+
+    /**
+     * Liest eine Größenangabe wie "500", "1.5 MB" oder "2g" (Einheiten B, KB, MB, GB,
+     * TB bzw. K, M, G, T; Faktor 1024).
+     *
+     * @param wert Text aus config.txt oder einer System-Property.
+     * @return Anzahl Bytes.
+     * @throws IllegalArgumentException bei unbekannter Einheit oder ungültiger Zahl.
+     */
+    static long leseGroesse(String wert) {
+        String w = wert.trim().toUpperCase(Locale.ROOT);
+        int ende = 0;
+        while (ende < w.length() && (Character.isDigit(w.charAt(ende)) || w.charAt(ende) == '.')) {
+            ende++;
+        }
+        String einheit = w.substring(ende).trim();
+        int faktor;
+        switch (einheit) {
+            case "":
+            case "B":
+                faktor = 0;
+                break;
+            case "KB":
+            case "K":
+                faktor = 10;
+                break;
+            case "MB":
+            case "M":
+                faktor = 20;
+                break;
+            case "GB":
+            case "G":
+                faktor = 30;
+                break;
+            case "TB":
+            case "T":
+                faktor = 40;
+                break;
+            default:
+                throw new IllegalArgumentException("Unbekannte Einheit '" + einheit + "'");
+        }
+        try {
+            return (long) (Double.parseDouble(w.substring(0, ende)) * (1L << faktor));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Ungültige Größe '" + wert + "'");
+        }
+    }
+
+    /**
+     * Eine geparste Regelzeile.
+     */
+    private static final class Regel {
+        String text;
+        String ziel;
+        String[] endungen;
+        String muster;
+        long minGroesse = 0;
+        long maxGroesse = Long.MAX_VALUE;
+        long minAlterMs = 0;
+        long maxAlterMs = Long.MAX_VALUE;
+
+        static Regel parse(String zeile) {
+            Regel r = new Regel();
+            String text = zeile.trim();
+            if (text.regionMatches(true, 0, PRAEFIX, 0, PRAEFIX.length())) {
+                text = text.substring(PRAEFIX.length()).trim();
+            }
+            r.text = text;
+
+            int pfeil = text.lastIndexOf("->");
+            if (pfeil < 0) {
+                throw new IllegalArgumentException("'->' und Ziel fehlen");
+            }
+            r.ziel = pruefeZiel(text.substring(pfeil + 2).trim());
+
+            List<String> bedingungen = zerlege(text.substring(0, pfeil));
+            if (bedingungen.isEmpty()) {
+                throw new IllegalArgumentException("Keine Bedingung");
+            }
+            for (String b : bedingungen) {
+                int op = 0;
+                while (op < b.length() && "=<>".indexOf(b.charAt(op)) < 0) {
+                    op++;
+                }
+                if (op == 0 || op >= b.length() - 1) {
+                    throw new IllegalArgumentException("Ungültige Bedingung '" + b + "'");
+                }
+                String schluessel = b.substring(0, op).toLowerCase(Locale.ROOT);
+                char vergleich = b.charAt(op);
+                String wert = b.substring(op + 1);
+                r.setze(schluessel, vergleich, wert, b);
+            }
+            return r;
+        }
+
+        private void setze(String schluessel, char vergleich, String wert, String bedingung) {
+            if ((vergleich == '=') != ("name".equals(schluessel) || "regex".equals(schluessel)
+                    || "endung".equals(schluessel))) {
+                throw new IllegalArgumentException("Ungültiger Vergleich in '" + bedingung + "'");
+            }
+            switch (schluessel) {
+                case "name":
+                case "regex":
+                    if (muster != null) {
+                        throw new IllegalArgumentException("Nur ein Namensmuster pro Regel");
+                    }
+                    muster = "name".equals(schluessel) ? NamensAutomat.ausGlob(wert) : wert;
+                    NamensAutomat.pruefe(muster);
+                    break;
+                case "endung":
+                    String[] teile = wert.split(",");
+                    for (int i = 0; i < teile.length; i++) {
+                        String ext = teile[i].trim().toLowerCase(Locale.ROOT);
+                        if (ext.isEmpty()) {
+                            throw new IllegalArgumentException("Leere Endung in '" + bedingung + "'");
+                        }
+                        teile[i] = ext.startsWith(".") ? ext : "." + ext;
+                    }
+                    endungen = teile;
+                    break;
+                case "groesse":
+                case "größe":
+                    long bytes = leseGroesse(wert);
+                    if (vergleich == '>') {
+                        minGroesse = Math.max(minGroesse, bytes + 1);
+                    } else {
+                        maxGroesse = Math.min(maxGroesse, bytes - 1);
+                    }
+                    break;
+                case "alter":
+                    long ms = leseAlter(wert);
+                    if (vergleich == '>') {
+                        minAlterMs = Math.max(minAlterMs, ms + 1);
+                    } else {
+                        maxAlterMs = Math.min(maxAlterMs, ms - 1);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unbekannte Bedingung '" + schluessel + "'");
+            }
+        }
+
+        private static long leseAlter(String wert) {
+            String w = wert.trim().toLowerCase(Locale.ROOT);
+            long stunden;
+            char einheit = w.isEmpty() ? 'd' : w.charAt(w.length() - 1);
+            if (Character.isDigit(einheit)) {
+                einheit = 'd';
+            } else {
+                w = w.substring(0, w.length() - 1);
+            }
+            if (einheit == 'h') {
+                stunden = 1;
+            } else if (einheit == 'd') {
+                stunden = 24;
+            } else if (einheit == 'w') {
+                stunden = 24 * 7;
+            } else {
+                throw new IllegalArgumentException("Unbekannte Einheit '" + einheit + "' (h, d oder w)");
+            }
+            try {
+                return Long.parseLong(w) * stunden * STUNDE_MS;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Ungültiges Alter '" + wert + "'");
+            }
+        }
+    }
+
+    /**
+     * Umgedrehter Präfixbaum über die Endungen der Regeln, ähnlich dem EndungsIndex der
+     * Kategorien; statt einer Kategorie hält jeder Knoten die Maske der Regeln, deren
+     * Endung genau hier endet.
+     */
+    private static final class EndungsMasken {
+        private final Knoten wurzel = new Knoten();
+
+        private static final class Knoten {
+            private char[] zeichen = new char[0];
+            private Knoten[] kinder = new Knoten[0];
+            private long regeln;
+
+            Knoten kind(char c) {
+                char[] z = zeichen;
+                for (int i = 0; i < z.length; i++) {
+                    if (z[i] == c) {
+                        return kinder[i];
+                    }
+                }
+                return null;
+            }
+
+            Knoten kindAnlegen(char c) {
+                Knoten k = kind(c);
+                if (k != null) {
+                    return k;
+                }
+                k = new Knoten();
+                int n = zeichen.length;
+                zeichen = Arrays.copyOf(zeichen, n + 1);
+                kinder = Arrays.copyOf(kinder, n + 1);
+                zeichen[n] = c;
+                kinder[n] = k;
+                return k;
+            }
+        }
+
+        void fuegeHinzu(String ext, long bit) {
+            Knoten k = wurzel;
+            for (int i = ext.length() - 1; i >= 0; i--) {
+                k = k.kindAnlegen(Character.toLowerCase(ext.charAt(i)));
+            }
+            k.regeln |= bit;
+        }
+
+        long suche(String name) {
+            Knoten k = wurzel;
+            long treffer = 0;
+            for (int i = name.length() - 1; i >= 0; i--) {
+                k = k.kind(Character.toLowerCase(name.charAt(i)));
+                if (k == null) {
+                    break;
+                }
+                treffer |= k.regeln;
+            }
+            return treffer;
+        }
+    }
+}
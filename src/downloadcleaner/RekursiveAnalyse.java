@@ -0,0 +1,160 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rekursive Analyse eines ganzen Verzeichnisbaums mit einem ForkJoinPool.
+ *
+ * Jeder Ordner wird von einer eigenen Aufgabe (RecursiveTask) über den OrdnerScanner
+ * gelesen, der die Dateiattribute gleich mitliefert. Dateien zählt die Aufgabe in
+ * einen eigenen KategorieZaehler, für jeden Unterordner startet sie eine neue
+ * Teilaufgabe. Am Ende werden die Zähler der Teilaufgaben zusammengeführt,
+ * sodass während des Zählens keine gemeinsame Sperre nötig ist.
+ *
+ * Schutz vor Endlosschleifen:
+ * - Standardmäßig wird symbolischen Links nicht gefolgt.
+ * - Werden Links verfolgt, merkt sich die Analyse jeden besuchten Ordner
+ *   (über seinen fileKey bzw. echten Pfad) und betritt ihn kein zweites Mal.
+ */
+class RekursiveAnalyse {
+
+    private final DownloadCleaner.KategorieKonfiguration kategorien;
+    private final int maxTiefe;
+    private final boolean linksFolgen;
+
+    /**
+     * Bereits betretene Ordner (nur bei verfolgten Links benötigt).
+     */
+    private final Set<Object> besucht = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder verzeichnisse = new LongAdder();
+    private final LongAdder uebersprungen = new LongAdder();
+
+    /**
+     * @param kategorien  Kategorie-Konfiguration für die Zuordnung.
+     * @param maxTiefe    maximale Tiefe; 0 = nur der Startordner selbst.
+     * @param linksFolgen true = symbolischen Links auf Ordner folgen.
+     */
+    RekursiveAnalyse(DownloadCleaner.KategorieKonfiguration kategorien, int maxTiefe, boolean linksFolgen) {
+        this.kategorien = kategorien;
+        this.maxTiefe = Math.max(0, maxTiefe);
+        this.linksFolgen = linksFolgen;
+    }
+
+    /**
+     * Analysiert den Baum unterhalb von wurzel.
+     *
+     * @param wurzel      Startordner.
+     * @param parallelitaet Anzahl der Threads im ForkJoinPool.
+     * @return zusammengeführte Zählerstände aller Ordner.
+     */
+    DownloadCleaner.KategorieZaehler analysiere(Path wurzel, int parallelitaet) {
+        Path start = wurzel;
+        try {
+            // Ist der Startordner selbst ein Link, wird er immer aufgelöst
+            start = wurzel.toRealPath();
+            if (linksFolgen) {
+                besucht.add(ordnerSchluessel(start, Files.readAttributes(start, BasicFileAttributes.class)));
+            }
+        } catch (IOException e) {
+            // Fehler meldet später die Aufgabe für den Startordner
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelitaet));
+        try {
+            return pool.invoke(new OrdnerAufgabe(start, 0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return Anzahl gelesener Ordner.
+     */
+    long anzahlVerzeichnisse() {
+        return verzeichnisse.sum();
+    }
+
+    /**
+     * @return Anzahl Ordner, die nicht gelesen werden konnten oder wegen einer
+     *         Link-Schleife übersprungen wurden.
+     */
+    long anzahlUebersprungen() {
+        return uebersprungen.sum();
+    }
+
+    /**
+     * Liefert einen Schlüssel, der einen Ordner eindeutig kennzeichnet.
+     * fileKey() ist auf manchen Systemen (z. B. Windows) null, dann dient der
+     * echte Pfad als Ersatz.
+     */
+    private Object ordnerSchluessel(Path ordner, BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        if (key != null) {
+            return key;
+        }
+        try {
+            return ordner.toRealPath();
+        } catch (IOException e) {
+            return ordner.toAbsolutePath().normalize();
+        }
+    }
+
+    /**
+     * Aufgabe für genau einen Ordner.
+     */
+    private class OrdnerAufgabe extends RecursiveTask<DownloadCleaner.KategorieZaehler> {
+        // RecursiveTask ist Serializable, die Aufgabe wird aber nie serialisiert.
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path ordner;
+        private final int tiefe;
+
+        OrdnerAufgabe(Path ordner, int tiefe) {
+            this.ordner = ordner;
+            this.tiefe = tiefe;
+        }
+
+        @Override
+        protected DownloadCleaner.KategorieZaehler compute() {
+            DownloadCleaner.KategorieZaehler zaehler = new DownloadCleaner.KategorieZaehler(kategorien);
+            List<OrdnerAufgabe> teilaufgaben = new ArrayList<>();
+
+            try {
+                OrdnerScanner.scanne(ordner, linksFolgen, (entry, attrs) -> {
+                    if (attrs.isRegularFile()) {
+                        zaehler.erfasse(kategorien.bestimmeKategorieId(entry, attrs), entry,
+                                attrs.size(), attrs.lastModifiedTime().toMillis());
+                    } else if (attrs.isDirectory() && tiefe < maxTiefe) {
+                        if (linksFolgen && !besucht.add(ordnerSchluessel(entry, attrs))) {
+                            uebersprungen.increment(); // Link-Schleife oder doppelt verlinkter Ordner
+                            return;
+                        }
+                        OrdnerAufgabe t = new OrdnerAufgabe(entry, tiefe + 1);
+                        t.fork();
+                        teilaufgaben.add(t);
+                    }
+                });
+                verzeichnisse.increment();
+            } catch (IOException e) {
+                uebersprungen.increment();
+                System.out.println("Übersprungen (nicht lesbar): " + ordner + " (" + e.getMessage() + ")");
+            }
+
+            for (OrdnerAufgabe t : teilaufgaben) {
+                zaehler.uebernehme(t.join());
+            }
+            return zaehler;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package downloadcleaner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Persistenter Scan-Index eines Ordners (.downloadcleaner.idx).
+ *
+ * Gespeichert werden je regulärer Datei Name, Größe, Änderungszeit und Kategorie,
+ * dazu die Änderungszeit des Ordners selbst und ein Fingerabdruck der
+ * Kategorie-Konfiguration.
+ *
+ * Ablauf in lese():
+ * - Hat sich der Ordner seit dem letzten Lauf nicht geändert (gleiche Änderungszeit,
+ *   gleiche Konfiguration, Kategorie nur nach Name), kommen Dateiliste und
+ *   Kategorien aus dem Index. Der Ordner wird dann gar nicht gelistet; nur Größe und
+ *   Änderungszeit der bekannten Dateien werden neu gelesen.
+ * - Sonst wird der Ordner gelesen. Dateien mit unveränderter Größe und Änderungszeit
+ *   übernehmen ihre Kategorie aus dem Index, nur neue oder geänderte werden neu
+ *   klassifiziert. Danach wird der Index neu geschrieben.
+ *
+ * Die Änderungszeit eines Ordners ändert sich nur, wenn Einträge angelegt, gelöscht
+ * oder umbenannt werden. Deshalb:
+ * - Der Index wird an Ort und Stelle überschrieben (kein Umbenennen einer
+ *   temporären Datei), sonst würde er selbst die Änderungszeit verändern.
+ * - Eine Prüfsumme am Ende erkennt halb geschriebene Dateien.
+ * - Liegt die Änderungszeit des Ordners sehr nah am Schreibzeitpunkt des Index,
+ *   wird ihr nicht vertraut (eine Änderung im selben Zeitraster wäre unsichtbar).
+ *
+ * Inhaltliche Änderungen an bestehenden Dateien ändern die Ordnerzeit nicht, wohl
+ * aber Größe und Änderungszeit der Datei. Die Abkürzung über die Ordnerzeit gilt
+ * deshalb nur, wenn die Kategorie allein vom Dateinamen abhängt
+ * (KategorieKonfiguration.nurNachName()). Mit Regeln auf Größe oder Alter oder mit
+ * InhaltsErkennung wird der Ordner immer gelesen; eine gespeicherte Kategorie wird
+ * dann nur bei gleicher Größe und Änderungszeit übernommen.
+ */
+final class ScanIndex {
+
+    /**
+     * Dateiname des Index im Arbeitsordner.
+     */
+    static final String DATEINAME = ".downloadcleaner.idx";
+
+    private static final int MAGIC = 0x44434958; // "DCIX"
+    private static final short VERSION = 2; // 2: bei mehreren Endungen gewinnt die längste
+
+    /**
+     * Sicherheitsabstand zwischen Ordnerzeit und Schreibzeitpunkt des Index.
+     */
+    private static final long UNSICHER_MS = 2000;
+
+    private ScanIndex() {
+    }
+
+    /**
+     * Eine reguläre Datei im Index.
+     */
+    static final class Datei {
+        final String name;
+        final long groesse;
+        final long geaendertMs;
+        final String kategorie;
+
+        Datei(String name, long groesse, long geaendertMs, String kategorie) {
+            this.name = name;
+            this.groesse = groesse;
+            this.geaendertMs = geaendertMs;
+            this.kategorie = kategorie;
+        }
+    }
+
+    /**
+     * Ergebnis von lese().
+     */
+    static final class Ergebnis {
+        /** Alle regulären Dateien des Ordners (ohne den Index selbst). */
+        final List<Datei> dateien;
+        /** true = Ordner unverändert, Dateiliste und Kategorien stammen aus dem Index. */
+        final boolean ausIndex;
+        /** Anzahl neu klassifizierter Dateien (0 bei ausIndex). */
+        final int neuKlassifiziert;
+        final long dauerNs;
+
+        Ergebnis(List<Datei> dateien, boolean ausIndex, int neuKlassifiziert, long dauerNs) {
+            this.dateien = dateien;
+            this.ausIndex = ausIndex;
+            this.neuKlassifiziert = neuKlassifiziert;
+            this.dauerNs = dauerNs;
+        }
+
+        /**
+         * @return kurze Zeile zur Herkunft und Dauer (für die Konsole).
+         */
+        String herkunft() {
+            long ms = dauerNs / 1_000_000;
+            if (ausIndex) {
+                return "Scan-Index: Ordner unverändert, Ergebnis aus dem Index (" + ms + " ms).";
+            }
+            return "Scan-Index: Ordner gelesen, " + neuKlassifiziert + " von " + dateien.size()
+                    + " Dateien neu klassifiziert (" + ms + " ms).";
+        }
+    }
+
+    /**
+     * Liest Größe und Änderungszeit der bekannten Dateien neu, ohne den Ordner zu
+     * listen; die Kategorie wird übernommen (sie hängt nur vom Namen ab).
+     *
+     * @return aktuelle Dateien (dieselbe Liste, wenn sich nichts geändert hat) oder
+     *         null, wenn eine Datei fehlt; dann muss der Ordner gelesen werden.
+     */
+    private static List<Datei> aktualisiere(Path ordner, List<Datei> dateien) {
+        List<Datei> aktuell = new ArrayList<>(dateien.size());
+        boolean geaendert = false;
+        for (Datei d : dateien) {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(ordner.resolve(d.name), BasicFileAttributes.class);
+            } catch (IOException e) {
+                return null;
+            }
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            long groesse = attrs.size();
+            long geaendertMs = attrs.lastModifiedTime().toMillis();
+            if (groesse != d.groesse || geaendertMs != d.geaendertMs) {
+                d = new Datei(d.name, groesse, geaendertMs, d.kategorie);
+                geaendert = true;
+            }
+            aktuell.add(d);
+        }
+        return geaendert ? aktuell : dateien;
+    }
+
+    /**
+     * Gespeicherter Stand aus der Indexdatei.
+     */
+    private static final class Stand {
+        long konfiguration;
+        long ordnerGeaendertMs;
+        long geschriebenMs;
+        List<Datei> dateien;
+    }
+
+    /**
+     * Liefert alle regulären Dateien des Ordners samt Kategorie, aus dem Index oder
+     * durch (teilweises) Neulesen.
+     *
+     * Kann der Index nicht geschrieben werden (z. B. schreibgeschützter Ordner), wird
+     * das dem Beobachter gemeldet; das Ergebnis ist trotzdem vollständig.
+     *
+     * @param ordner     zu lesender Ordner.
+     * @param kategorien Kategorie-Konfiguration.
+     * @param beobachter erhält den Hinweis, wenn der Index nicht geschrieben werden kann.
+     * @return Dateien mit Kategorie und Angaben zur Herkunft.
+     * @throws IOException wenn der Ordner nicht gelesen werden kann.
+     */
+    static Ergebnis lese(Path ordner, DownloadCleaner.KategorieKonfiguration kategorien,
+                         SortierBeobachter beobachter) throws IOException {
+        long start = System.nanoTime();
+        Path indexDatei = ordner.resolve(DATEINAME);
+
+        // Index zuerst anlegen: das Anlegen selbst ändert die Ordnerzeit
+        boolean schreibbar = true;
+        try {
+            Files.createFile(indexDatei);
+        } catch (FileAlreadyExistsException e) {
+            // schon vorhanden
+        } catch (IOException e) {
+            schreibbar = false;
+        }
+
+        long ordnerMs = Files.readAttributes(ordner, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        // Mit Altersregeln (siehe Regelwerk) veralten gespeicherte Kategorien von selbst
+        Stand alt = kategorien.zeitabhaengig() ? null : ladeStand(indexDatei);
+
+        // Größe und Inhalt ändern sich, ohne dass sich die Ordnerzeit ändert
+        if (alt != null && kategorien.nurNachName()
+                && alt.konfiguration == kategorien.fingerabdruck()
+                && alt.ordnerGeaendertMs == ordnerMs
+                && alt.geschriebenMs - ordnerMs > UNSICHER_MS) {
+            List<Datei> aktuell = aktualisiere(ordner, alt.dateien);
+            if (aktuell != null) {
+                if (aktuell != alt.dateien && schreibbar) {
+                    try {
+                        schreibeStand(indexDatei, kategorien.fingerabdruck(), ordnerMs, aktuell);
+                    } catch (IOException e) {
+                        beobachter.meldung(ordner, "Scan-Index konnte nicht geschrieben werden: " + e.getMessage());
+                    }
+                }
+                return new Ergebnis(aktuell, true, 0, System.nanoTime() - start);
+            }
+        }
+
+        Map<String, Datei> bekannt = new HashMap<>();
+        if (alt != null && alt.konfiguration == kategorien.fingerabdruck()) {
+            for (Datei d : alt.dateien) {
+                bekannt.put(d.name, d);
+            }
+        }
+
+        List<Datei> dateien = new ArrayList<>();
+        int[] neu = new int[1];
+        OrdnerScanner.scanne(ordner, true, (entry, attrs) -> {
+            if (!attrs.isRegularFile()) {
+                return;
+            }
+            String name = entry.getFileName().toString();
+            if (name.equals(DATEINAME)) {
+                return;
+            }
+            long groesse = attrs.size();
+            long geaendert = attrs.lastModifiedTime().toMillis();
+            Datei d = bekannt.get(name);
+            if (d == null || d.groesse != groesse || d.geaendertMs != geaendert) {
+                d = new Datei(name, groesse, geaendert, kategorien.bestimmeKategorie(entry, attrs));
+                neu[0]++;
+            }
+            dateien.add(d);
+        });
+
+        if (schreibbar) {
+            try {
+                schreibeStand(indexDatei, kategorien.fingerabdruck(), ordnerMs, dateien);
+            } catch (IOException e) {
+                beobachter.meldung(ordner, "Scan-Index konnte nicht geschrieben werden: " + e.getMessage());
+            }
+        }
+        return new Ergebnis(dateien, false, neu[0], System.nanoTime() - start);
+    }
+
+    /**
+     * Liest den gespeicherten Stand; null, wenn die Datei leer, veraltet oder beschädigt ist.
+     */
+    private static Stand ladeStand(Path indexDatei) {
+        byte[] daten;
+        try {
+            daten = Files.readAllBytes(indexDatei);
+        } catch (IOException e) {
+            return null;
+        }
+        if (daten.length < 8) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(daten, 0, daten.length - 8);
+        if (crc.getValue() != ByteBuffer.wrap(daten, daten.length - 8, 8).getLong()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(daten, 0, daten.length - 8))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return null;
+            }
+            Stand s = new Stand();
+            s.konfiguration = in.readLong();
+            s.ordnerGeaendertMs = in.readLong();
+            s.geschriebenMs = in.readLong();
+
+            String[] katNamen = new String[in.readInt()];
+            for (int i = 0; i < katNamen.length; i++) {
+                katNamen[i] = in.readUTF();
+            }
+            int anzahl = in.readInt();
+            s.dateien = new ArrayList<>(anzahl);
+            for (int i = 0; i < anzahl; i++) {
+                String name = in.readUTF();
+                long groesse = in.readLong();
+                long geaendert = in.readLong();
+                String kategorie = katNamen[in.readUnsignedShort()];
+                s.dateien.add(new Datei(name, groesse, geaendert, kategorie));
+            }
+            return s;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Überschreibt die vorhandene Indexdatei mit dem neuen Stand (ohne sie neu anzulegen).
+     */
+    private static void schreibeStand(Path indexDatei, long konfiguration, long ordnerMs, List<Datei> dateien)
+            throws IOException {
+        Map<String, Integer> katIndex = new LinkedHashMap<>();
+        for (Datei d : dateien) {
+            katIndex.putIfAbsent(d.kategorie, katIndex.size());
+        }
+
+        ByteArrayOutputStream puffer = new ByteArrayOutputStream(64 + dateien.size() * 48);
+        try (DataOutputStream out = new DataOutputStream(puffer)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(konfiguration);
+            out.writeLong(ordnerMs);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(katIndex.size());
+            for (String k : katIndex.keySet()) {
+                out.writeUTF(k);
+            }
+            out.writeInt(dateien.size());
+            for (Datei d : dateien) {
+                out.writeUTF(d.name);
+                out.writeLong(d.groesse);
+                out.writeLong(d.geaendertMs);
+                out.writeShort(katIndex.get(d.kategorie));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(puffer.toByteArray());
+            out.writeLong(crc.getValue());
+        }
+
+        ByteBuffer inhalt = ByteBuffer.wrap(puffer.toByteArray());
+        try (FileChannel kanal = FileChannel.open(indexDatei,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (inhalt.hasRemaining()) {
+                kanal.write(inhalt);
+            }
+        }
+    }
+}
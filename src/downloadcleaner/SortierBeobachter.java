@@ -0,0 +1,84 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Empfänger für Fortschrittsmeldungen der SortierEngine.
+ *
+ * Alle Methoden haben eine leere Standard-Implementierung; ein Beobachter
+ * überschreibt nur, was ihn interessiert. Ohne Beobachter entsteht pro Datei
+ * weder eine Ausgabe noch ein Text.
+ *
+ * Die Meldungen kommen aus den Threads, die gerade arbeiten (auch aus dem
+ * Kopier-Thread für andere Dateisysteme), und können gleichzeitig eintreffen.
+ * Ein Beobachter muss daher thread-sicher sein und sollte schnell zurückkehren.
+ * Wirft er eine RuntimeException, wird sie ignoriert; log.txt und das
+ * Undo-Journal sind zu diesem Zeitpunkt bereits geschrieben.
+ */
+public interface SortierBeobachter {
+
+    /**
+     * Beobachter, der nichts tut.
+     */
+    SortierBeobachter KEINER = new SortierBeobachter() {
+    };
+
+    /**
+     * Ein Vorgang beginnt (nachdem er die Sperre für den Ordner bekommen hat).
+     *
+     * @param ordner  Arbeitsordner.
+     * @param vorgang Art des Vorgangs.
+     */
+    default void gestartet(Path ordner, SortierEngine.Vorgang vorgang) {
+    }
+
+    /**
+     * Eine Datei liegt an ihrem Ziel.
+     *
+     * @param quelle  ursprünglicher Pfad.
+     * @param ziel    tatsächliches Ziel (bei Namensgleichheit evtl. mit " (2)").
+     * @param groesse Größe in Bytes.
+     */
+    default void verschoben(Path quelle, Path ziel, long groesse) {
+    }
+
+    /**
+     * Eine Datei aus dem Sortierplan wurde übersprungen.
+     *
+     * @param datei Pfad der Datei.
+     * @param grund z. B. "fehlt" oder "geändert".
+     */
+    default void uebersprungen(Path datei, String grund) {
+    }
+
+    /**
+     * Eine Datei konnte nicht verschoben werden; der Lauf geht weiter.
+     *
+     * @param datei  Pfad der Datei.
+     * @param fehler Ursache.
+     */
+    default void fehler(Path datei, IOException fehler) {
+    }
+
+    /**
+     * Ein Hinweis zum Lauf, der keine einzelne Bewegung betrifft: Fortschritt und
+     * Zusammenfassung von Kopien auf ein anderes Dateisystem, eine ungültige
+     * Einstellung, ein repariertes Undo-Journal usw.
+     *
+     * @param ordner Arbeitsordner.
+     * @param text   einzeiliger Text, ohne Zeilenumbruch am Ende.
+     */
+    default void meldung(Path ordner, String text) {
+    }
+
+    /**
+     * Ein Vorgang ist beendet (erfolgreich oder nicht). Wird vor dem Abschluss des
+     * zugehörigen CompletableFuture aufgerufen.
+     *
+     * @param ordner  Arbeitsordner.
+     * @param vorgang Art des Vorgangs.
+     */
+    default void beendet(Path ordner, SortierEngine.Vorgang vorgang) {
+    }
+}
@@ -0,0 +1,691 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schnittstelle zum Einbetten: Analyse, Sortierplan, Sortierung und Undo ohne
+ * Konsole und ohne globalen Zustand.
+ *
+ *   try (SortierEngine engine = new SortierEngine()) {
+ *       engine.beobachte(meinBeobachter);
+ *       SortierKonfiguration k = SortierKonfiguration.laden(ordner);
+ *       SortierEngine.Sortierlauf lauf = engine.sortiere(ordner, k).join();
+ *   }
+ *
+ * - Jeder Vorgang läuft auf dem Executor der Engine und liefert ein
+ *   CompletableFuture mit dem Ergebnis. Schlägt er fehl (z. B. Ordner nicht
+ *   lesbar), wird das Future mit der IOException abgeschlossen.
+ * - Die Konfiguration wird pro Aufruf übergeben; mehrere Konfigurationen und
+ *   Ordner können gleichzeitig bearbeitet werden.
+ * - Vorgänge auf demselben Ordner laufen nacheinander (eine Sperre pro Ordner),
+ *   damit sich zwei Sortierungen oder eine Sortierung und ein Undo nicht in die
+ *   Quere kommen. Verschiedene Ordner laufen parallel. Die parallele Sortierung
+ *   des Menüs und die Stapel der Überwachung nehmen über fuehreAus() dieselbe Sperre.
+ * - Fortschritt gibt es über SortierBeobachter statt über System.out, auch für
+ *   Kopien im Hintergrund und Hinweise wie ungültige Einstellungen (meldung()).
+ *   Ohne Beobachter entsteht pro Datei weder ein Text noch eine Ausgabe (eine
+ *   langsame Konsole bremst den Lauf dann nicht mehr).
+ * - Drossel, Duplikatprüfung, Namensvergabe und Messung werden wie bisher über
+ *   System-Properties eingestellt (siehe Drossel, DuplikatSuche, ZielNamen, Messung).
+ *
+ * Menü (DownloadCleaner) und Kommandozeile (Kommandozeile) sind selbst nur Nutzer
+ * dieser Klasse; sie geben die Ergebnisse auf der Konsole aus (KonsolenBeobachter).
+ */
+public final class SortierEngine implements AutoCloseable {
+
+    /**
+     * Art eines Vorgangs (für SortierBeobachter).
+     */
+    public enum Vorgang {
+        ANALYSE, PLAN, SORTIERUNG, PLAN_AUSFUEHREN, UNDO
+    }
+
+    /**
+     * Standardanzahl gleichzeitiger Verschiebungen beim Undo.
+     */
+    static final int STANDARD_UNDO_VERSCHIEBER = 16;
+
+    private final Executor executor;
+    /** Eigener Pool (wird in close() beendet) oder null, wenn der Executor übergeben wurde. */
+    private final ExecutorService eigenerPool;
+    private final List<SortierBeobachter> beobachter = new CopyOnWriteArrayList<>();
+    private final SortierBeobachter verteiler = new Verteiler();
+    private final Map<Path, ReentrantLock> sperren = new ConcurrentHashMap<>();
+
+    /**
+     * Engine mit eigenem Thread-Pool (Daemon-Threads, wächst nach Bedarf).
+     */
+    public SortierEngine() {
+        this.eigenerPool = Executors.newCachedThreadPool(Thread.ofPlatform().name("sortier-engine-", 1)
+                .daemon().factory());
+        this.executor = eigenerPool;
+    }
+
+    /**
+     * Engine, die ihre Vorgänge auf dem übergebenen Executor ausführt. Mit
+     * Runnable::run laufen sie im aufrufenden Thread; das Future ist dann bei
+     * Rückkehr schon abgeschlossen.
+     *
+     * @param executor führt die Vorgänge aus; wird von close() nicht beendet.
+     */
+    public SortierEngine(Executor executor) {
+        this.executor = executor;
+        this.eigenerPool = null;
+    }
+
+    /**
+     * Meldet einen Beobachter für alle folgenden Vorgänge an.
+     *
+     * @param b Beobachter (thread-sicher, siehe SortierBeobachter).
+     */
+    public void beobachte(SortierBeobachter b) {
+        beobachter.add(b);
+    }
+
+    /**
+     * Meldet einen Beobachter wieder ab.
+     *
+     * @param b zuvor angemeldeter Beobachter.
+     */
+    public void entferne(SortierBeobachter b) {
+        beobachter.remove(b);
+    }
+
+    /**
+     * Beendet den eigenen Pool, nachdem alle laufenden Vorgänge fertig sind.
+     * Ein übergebener Executor bleibt unberührt.
+     */
+    @Override
+    public void close() {
+        if (eigenerPool != null) {
+            eigenerPool.close();
+        }
+    }
+
+    // ------------------------------------------------------------------ Ergebnisse
+
+    /**
+     * Anzahl und Bytes einer Kategorie bzw. eines Zielordners.
+     */
+    public static final class Kategorie {
+        public final String name;
+        public final long dateien;
+        public final long bytes;
+
+        Kategorie(String name, long dateien, long bytes) {
+            this.name = name;
+            this.dateien = dateien;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + dateien + " (" + DuplikatSuche.formatiereGroesse(bytes) + ")";
+        }
+    }
+
+    /**
+     * Ergebnis von analysiere().
+     */
+    public static final class Analyse {
+        public final Path ordner;
+        public final long dateien;
+        public final long bytes;
+        /** Nicht leere Kategorien in Konfigurationsreihenfolge. */
+        public final List<Kategorie> kategorien;
+        /** true = Ordner unverändert, Ergebnis stammt aus dem Scan-Index. */
+        public final boolean ausIndex;
+        public final long dauerMs;
+        /** Für die ausführliche Konsolenausgabe (AnalyseBericht). */
+        final DownloadCleaner.KategorieZaehler zaehler;
+        final ScanIndex.Ergebnis scan;
+
+        Analyse(Path ordner, DownloadCleaner.KategorieZaehler zaehler, ScanIndex.Ergebnis scan, long dauerMs) {
+            this.ordner = ordner;
+            this.zaehler = zaehler;
+            this.scan = scan;
+            this.dauerMs = dauerMs;
+            this.ausIndex = scan.ausIndex;
+            List<Kategorie> liste = new ArrayList<>();
+            long n = 0;
+            long b = 0;
+            for (Map.Entry<String, KategorieStatistik> e : zaehler.statistiken().entrySet()) {
+                liste.add(new Kategorie(e.getKey(), e.getValue().anzahl, e.getValue().bytes));
+                n += e.getValue().anzahl;
+                b += e.getValue().bytes;
+            }
+            this.kategorien = Collections.unmodifiableList(liste);
+            this.dateien = n;
+            this.bytes = b;
+        }
+    }
+
+    /**
+     * Ergebnis von plane(): der geschriebene Sortierplan.
+     */
+    public static final class Plan {
+        public final Path ordner;
+        /** Geschriebene Plandatei. */
+        public final Path datei;
+        /** Dateien, die verschoben würden. */
+        public final long dateien;
+        public final long bytes;
+        /** Anzahl und Bytes je Ziel, in der Reihenfolge des ersten Auftretens. */
+        public final List<Kategorie> ziele;
+        public final long dauerMs;
+        final SortierPlan plan;
+        final ScanIndex.Ergebnis scan;
+
+        Plan(Path ordner, Path datei, SortierPlan plan, ScanIndex.Ergebnis scan, long dauerMs) {
+            this.ordner = ordner;
+            this.datei = datei;
+            this.plan = plan;
+            this.scan = scan;
+            this.dauerMs = dauerMs;
+            List<Kategorie> liste = new ArrayList<>();
+            long b = 0;
+            for (Map.Entry<String, long[]> e : plan.jeZiel().entrySet()) {
+                liste.add(new Kategorie(e.getKey(), e.getValue()[0], e.getValue()[1]));
+                b += e.getValue()[1];
+            }
+            this.ziele = Collections.unmodifiableList(liste);
+            this.dateien = plan.eintraege.size();
+            this.bytes = b;
+        }
+    }
+
+    /**
+     * Ergebnis von sortiere() und wendePlanAn(), einschließlich der anschließend
+     * durchgesetzten Kontingente.
+     */
+    public static final class Sortierlauf {
+        public final Path ordner;
+        public final int verschoben;
+        /** Dateien, die nicht verschoben werden konnten (auch beim Kontingent). */
+        public final int fehler;
+        /** Nur beim Plan: Dateien, die fehlen oder sich seit dem Plan geändert haben. */
+        public final int uebersprungen;
+        /** Nummer des Laufs im Undo-Journal. */
+        public final long laufId;
+        /** Verschobene Dateien je Zielordner (Kategorie). */
+        public final List<Kategorie> kategorien;
+        /** Durch Kontingente verdrängte Dateien (0 = alle Kontingente eingehalten). */
+        public final int kontingentVerschoben;
+        public final long kontingentBytes;
+        /** Lauf der Kontingente im Undo-Journal, -1 = keiner. */
+        public final long kontingentLaufId;
+        public final long dauerMs;
+        /** Eine Zeile je Kategorie über ihrem Kontingent (für die Konsole). */
+        final List<String> kontingentZeilen;
+        /**
+         * Erreichte Werte der Drossel (-Ddownloadcleaner.drossel.*), leer ohne Drossel.
+         * Teilen sich mehrere Läufe eine Drossel, gilt der Stand bis zum Ende dieses Laufs.
+         */
+        public final List<String> drosselBericht;
+
+        Sortierlauf(Path ordner, Sortierung.Ergebnis s, List<Kategorie> kategorien, Kontingent.Ergebnis k,
+                    List<String> drosselBericht, long dauerMs) {
+            this.ordner = ordner;
+            this.verschoben = s.verschoben;
+            this.fehler = s.fehler + k.fehler;
+            this.uebersprungen = s.veraendert;
+            this.laufId = s.laufId;
+            this.kategorien = kategorien;
+            this.kontingentVerschoben = k.verschoben;
+            this.kontingentBytes = k.bytes;
+            this.kontingentLaufId = k.laufId;
+            this.kontingentZeilen = List.copyOf(k.zeilen);
+            this.drosselBericht = List.copyOf(drosselBericht);
+            this.dauerMs = dauerMs;
+        }
+    }
+
+    /**
+     * Ergebnis von macheRueckgaengig().
+     */
+    public static final class Rueckgaengig {
+        public final Path ordner;
+        public final long laufId;
+        /** Passende Einträge im Journal (0 = nichts zu tun). */
+        public final int eintraege;
+        public final int zurueck;
+        /** Übersprungen, weil die Datei nicht mehr am Ziel lag. */
+        public final int fehlend;
+        public final int fehler;
+        /** Die ersten Fehlermeldungen. */
+        public final List<String> fehlermeldungen;
+        public final long dauerMs;
+        final int verschieber;
+        final int ketten;
+
+        Rueckgaengig(Path ordner, long laufId, int eintraege, UndoWiedergabe w, int[] verschieberUndKetten,
+                     long dauerMs) {
+            this.ordner = ordner;
+            this.laufId = laufId;
+            this.eintraege = eintraege;
+            this.zurueck = w.zurueck();
+            this.fehlend = w.fehlend();
+            this.fehler = w.fehler();
+            this.fehlermeldungen = w.fehlermeldungen();
+            this.verschieber = verschieberUndKetten[0];
+            this.ketten = verschieberUndKetten[1];
+            this.dauerMs = dauerMs;
+        }
+    }
+
+    // ------------------------------------------------------------------ Vorgänge
+
+    /**
+     * Zählt die Dateien der obersten Ebene je Kategorie (über den ScanIndex).
+     *
+     * @param ordner        zu analysierender Ordner.
+     * @param konfiguration Kategorien.
+     * @return Future mit Anzahl und Bytes je Kategorie.
+     */
+    public CompletableFuture<Analyse> analysiere(Path ordner, SortierKonfiguration konfiguration) {
+        return starte(ordner, Vorgang.ANALYSE, () -> {
+            long start = System.nanoTime();
+            DownloadCleaner.KategorieKonfiguration kategorien = konfiguration.kategorieKonfiguration();
+            ScanIndex.Ergebnis scan = ScanIndex.lese(ordner, kategorien, verteiler);
+            DownloadCleaner.KategorieZaehler zaehler = new DownloadCleaner.KategorieZaehler(kategorien);
+            for (ScanIndex.Datei datei : scan.dateien) {
+                zaehler.erfasse(datei.kategorie, ordner.resolve(datei.name), datei.groesse, datei.geaendertMs);
+            }
+            return new Analyse(ordner, zaehler, scan, millis(start));
+        });
+    }
+
+    /**
+     * Schreibt einen Sortierplan nach ordner/sortierplan.txt, ohne etwas zu verschieben.
+     *
+     * @param ordner        Arbeitsordner.
+     * @param konfiguration Kategorien.
+     * @return Future mit der Zusammenfassung des Plans.
+     */
+    public CompletableFuture<Plan> plane(Path ordner, SortierKonfiguration konfiguration) {
+        return plane(ordner, konfiguration, null);
+    }
+
+    /**
+     * Wie plane(ordner, konfiguration), schreibt aber nach planDatei (null = Standard).
+     */
+    CompletableFuture<Plan> plane(Path ordner, SortierKonfiguration konfiguration, Path planDatei) {
+        return starte(ordner, Vorgang.PLAN, () -> {
+            long start = System.nanoTime();
+            DownloadCleaner.KategorieKonfiguration kategorien = konfiguration.kategorieKonfiguration();
+            ScanIndex.Ergebnis scan = ScanIndex.lese(ordner, kategorien, verteiler);
+            SortierPlan plan = SortierPlan.aus(ordner, scan, kategorien);
+            Path datei = planDatei != null ? planDatei : ordner.resolve(SortierPlan.DATEINAME);
+            plan.schreibe(datei);
+            return new Plan(ordner, datei, plan, scan, millis(start));
+        });
+    }
+
+    /**
+     * Sortiert den Ordner mit log.txt und Undo-Journal und setzt danach die
+     * Kontingente der Konfiguration durch (eigener Undo-Lauf).
+     *
+     * @param ordner        zu sortierender Ordner.
+     * @param konfiguration Kategorien, Regeln und Kontingente.
+     * @return Future mit Zählern und Lauf-Nummer.
+     */
+    public CompletableFuture<Sortierlauf> sortiere(Path ordner, SortierKonfiguration konfiguration) {
+        return sortiere(ordner, konfiguration, Drossel.ausSystemProperty(ordner, verteiler));
+    }
+
+    /**
+     * Wie sortiere(ordner, konfiguration) mit einer eigenen Drossel (null = ungebremst);
+     * die Kommandozeile teilt eine Drossel über alle Ordner.
+     */
+    CompletableFuture<Sortierlauf> sortiere(Path ordner, SortierKonfiguration konfiguration, Drossel drossel) {
+        return starte(ordner, Vorgang.SORTIERUNG, () -> {
+            long start = System.nanoTime();
+            Zaehlung zaehlung = new Zaehlung(ordner, konfiguration);
+            Sortierung.Ergebnis s = Sortierung.sortiere(ordner, konfiguration.kategorieKonfiguration(), zaehlung,
+                    drossel);
+            return beende(ordner, konfiguration, s, zaehlung, drossel, start);
+        });
+    }
+
+    /**
+     * Führt ordner/sortierplan.txt aus (siehe SortierPlan) und setzt danach die
+     * Kontingente der Konfiguration durch.
+     *
+     * @param ordner        Ordner, zu dem der Plan gehört.
+     * @param konfiguration liefert die Kontingente (der Plan selbst legt die Ziele fest).
+     * @return Future mit Zählern und Lauf-Nummer; ohne Plan mit NoSuchFileException.
+     */
+    public CompletableFuture<Sortierlauf> wendePlanAn(Path ordner, SortierKonfiguration konfiguration) {
+        return wendePlanAn(ordner, konfiguration, ordner.resolve(SortierPlan.DATEINAME),
+                Drossel.ausSystemProperty(ordner, verteiler));
+    }
+
+    /**
+     * Wie wendePlanAn(ordner, konfiguration), mit eigener Plandatei und Drossel.
+     */
+    CompletableFuture<Sortierlauf> wendePlanAn(Path ordner, SortierKonfiguration konfiguration, Path planDatei,
+                                               Drossel drossel) {
+        return starte(ordner, Vorgang.PLAN_AUSFUEHREN, () -> {
+            if (!Files.exists(planDatei)) {
+                throw new NoSuchFileException(planDatei.toString(), null, "kein Sortierplan");
+            }
+            return fuehrePlanAus(ordner, konfiguration, SortierPlan.lese(planDatei), drossel);
+        });
+    }
+
+    /**
+     * Wie wendePlanAn(), mit einem bereits gelesenen Plan (das Menü zeigt ihn vorher an).
+     */
+    CompletableFuture<Sortierlauf> wendePlanAn(Path ordner, SortierKonfiguration konfiguration, SortierPlan plan,
+                                               Drossel drossel) {
+        return starte(ordner, Vorgang.PLAN_AUSFUEHREN, () -> fuehrePlanAus(ordner, konfiguration, plan, drossel));
+    }
+
+    private Sortierlauf fuehrePlanAus(Path ordner, SortierKonfiguration konfiguration, SortierPlan plan,
+                                      Drossel drossel) throws IOException {
+        long start = System.nanoTime();
+        Zaehlung zaehlung = new Zaehlung(ordner, konfiguration);
+        Sortierung.Ergebnis s = Sortierung.wendeAn(ordner, plan, zaehlung, drossel);
+        return beende(ordner, konfiguration, s, zaehlung, drossel, start);
+    }
+
+    private Sortierlauf beende(Path ordner, SortierKonfiguration konfiguration, Sortierung.Ergebnis s,
+                               Zaehlung zaehlung, Drossel drossel, long start) throws IOException {
+        Kontingent.Ergebnis k = new Kontingent.Ergebnis();
+        List<Kontingent> kontingente = konfiguration.kategorieKonfiguration().kontingente();
+        if (!kontingente.isEmpty()) {
+            k = Kontingent.setzeDurch(ordner, kontingente, verteiler, drossel);
+        }
+        return new Sortierlauf(ordner, s, zaehlung.kategorien(), k,
+                drossel != null ? drossel.bericht() : List.of(), millis(start));
+    }
+
+    /**
+     * Macht einen ganzen Lauf aus dem Undo-Journal rückgängig.
+     *
+     * @param ordner Arbeitsordner mit undo_journal.bin.
+     * @param laufId Nummer des Laufs, -1 = neuester.
+     * @return Future mit den Zählern; ohne Journal oder Lauf mit NoSuchFileException.
+     */
+    public CompletableFuture<Rueckgaengig> macheRueckgaengig(Path ordner, long laufId) {
+        return macheRueckgaengig(ordner, laufId, null, null, STANDARD_UNDO_VERSCHIEBER);
+    }
+
+    /**
+     * Wie macheRueckgaengig(ordner, laufId), auf Wunsch nur für eine Kategorie oder
+     * eine Datei und mit einer bestimmten Anzahl gleichzeitiger Verschiebungen.
+     *
+     * @param kategorie   nur diese Kategorie oder null.
+     * @param dateiname   nur diese Datei (ursprünglicher Name) oder null.
+     * @param verschieber gleichzeitige Verschiebungen (mindestens 1).
+     */
+    CompletableFuture<Rueckgaengig> macheRueckgaengig(Path ordner, long laufId, String kategorie, String dateiname,
+                                                      int verschieber) {
+        return starte(ordner, Vorgang.UNDO, () -> {
+            long start = System.nanoTime();
+            Path journal = ordner.resolve(UndoJournal.DATEINAME);
+            if (!Files.exists(journal)) {
+                throw new NoSuchFileException(journal.toString(), null, "kein Undo-Journal");
+            }
+            UndoJournal.Lauf gewaehlt = null;
+            for (UndoJournal.Lauf lauf : UndoJournal.laeufe(journal)) {
+                // laeufe() liefert die neuesten zuerst
+                if (laufId < 0 ? gewaehlt == null : lauf.id == laufId) {
+                    gewaehlt = lauf;
+                }
+            }
+            if (gewaehlt == null) {
+                throw new NoSuchFileException(journal.toString(), null,
+                        laufId < 0 ? "Undo-Journal enthält keine Läufe" : "Lauf #" + laufId + " nicht gefunden");
+            }
+            List<UndoJournal.Eintrag> eintraege = UndoJournal.eintraege(journal, gewaehlt, kategorie, dateiname);
+            UndoWiedergabe wiedergabe = new UndoWiedergabe(ordner, verschieber);
+            int[] verschieberUndKetten = eintraege.isEmpty() ? new int[2] : wiedergabe.fuehreAus(eintraege);
+            return new Rueckgaengig(ordner, gewaehlt.id, eintraege.size(), wiedergabe, verschieberUndKetten,
+                    millis(start));
+        });
+    }
+
+    /**
+     * Führt eine eigene Aufgabe unter der Sperre des Ordners aus, wie einen Vorgang der
+     * Engine. So laufen die parallele Sortierung des Menüs (VerschiebePipeline) und
+     * jeder Stapel der Überwachung nie gleichzeitig mit einer Sortierung oder einem
+     * Undo desselben Ordners.
+     *
+     * @param ordner  Arbeitsordner.
+     * @param vorgang Art des Vorgangs (für SortierBeobachter).
+     * @param aufgabe läuft auf dem Executor der Engine.
+     * @return Future mit dem Ergebnis der Aufgabe.
+     */
+    <T> CompletableFuture<T> fuehreAus(Path ordner, Vorgang vorgang, Aufgabe<T> aufgabe) {
+        return starte(ordner, vorgang, aufgabe);
+    }
+
+    // ------------------------------------------------------------------ Hilfen
+
+    /**
+     * Wartet auf ein Future und gibt eine IOException des Vorgangs unverändert
+     * weiter (statt eingepackt in eine CompletionException).
+     *
+     * @param future Future eines Vorgangs.
+     * @return Ergebnis.
+     * @throws IOException wenn der Vorgang mit einer IOException fehlgeschlagen ist.
+     */
+    static <T> T ergebnis(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Warten auf den Vorgang unterbrochen");
+        } catch (ExecutionException e) {
+            Throwable ursache = e.getCause();
+            if (ursache instanceof IOException io) {
+                throw io;
+            }
+            if (ursache instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (ursache instanceof RuntimeException r) {
+                throw r;
+            }
+            if (ursache instanceof Error f) {
+                throw f;
+            }
+            throw new CompletionException(ursache);
+        }
+    }
+
+    /**
+     * Arbeit eines Vorgangs; läuft unter der Sperre des Ordners.
+     */
+    @FunctionalInterface
+    interface Aufgabe<T> {
+        T ausfuehren() throws IOException;
+    }
+
+    /**
+     * Führt eine Aufgabe auf dem Executor aus, unter der Sperre des Ordners.
+     */
+    private <T> CompletableFuture<T> starte(Path ordner, Vorgang vorgang, Aufgabe<T> aufgabe) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ReentrantLock sperre = sperren.computeIfAbsent(ordner.toAbsolutePath().normalize(),
+                k -> new ReentrantLock());
+        try {
+            executor.execute(() -> {
+                sperre.lock();
+                T ergebnis = null;
+                Throwable fehler = null;
+                try {
+                    verteiler.gestartet(ordner, vorgang);
+                    ergebnis = aufgabe.ausfuehren();
+                } catch (Throwable t) {
+                    fehler = t;
+                } finally {
+                    verteiler.beendet(ordner, vorgang);
+                    sperre.unlock();
+                }
+                if (fehler != null) {
+                    future.completeExceptionally(fehler);
+                } else {
+                    future.complete(ergebnis);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static long millis(long startNs) {
+        return (System.nanoTime() - startNs) / 1_000_000;
+    }
+
+    /**
+     * Gibt jede Meldung an alle angemeldeten Beobachter weiter. Ausnahmen eines
+     * Beobachters werden ignoriert, damit ein Lauf nie an einer Ausgabe scheitert.
+     */
+    private final class Verteiler implements SortierBeobachter {
+        @Override
+        public void gestartet(Path ordner, Vorgang vorgang) {
+            for (SortierBeobachter b : beobachter) {
+                try {
+                    b.gestartet(ordner, vorgang);
+                } catch (RuntimeException e) {
+                    // siehe Klassenkommentar
+                }
+            }
+        }
+
+        @Override
+        public void verschoben(Path quelle, Path ziel, long groesse) {
+            for (SortierBeobachter b : beobachter) {
+                try {
+                    b.verschoben(quelle, ziel, groesse);
+                } catch (RuntimeException e) {
+                    // siehe Klassenkommentar
+                }
+            }
+        }
+
+        @Override
+        public void uebersprungen(Path datei, String grund) {
+            for (SortierBeobachter b : beobachter) {
+                try {
+                    b.uebersprungen(datei, grund);
+                } catch (RuntimeException e) {
+                    // siehe Klassenkommentar
+                }
+            }
+        }
+
+        @Override
+        public void fehler(Path datei, IOException fehler) {
+            for (SortierBeobachter b : beobachter) {
+                try {
+                    b.fehler(datei, fehler);
+                } catch (RuntimeException e) {
+                    // siehe Klassenkommentar
+                }
+            }
+        }
+
+        @Override
+        public void meldung(Path ordner, String text) {
+            for (SortierBeobachter b : beobachter) {
+                try {
+                    b.meldung(ordner, text);
+                } catch (RuntimeException e) {
+                    // siehe Klassenkommentar
+                }
+            }
+        }
+
+        @Override
+        public void beendet(Path ordner, Vorgang vorgang) {
+            for (SortierBeobachter b : beobachter) {
+                try {
+                    b.beendet(ordner, vorgang);
+                } catch (RuntimeException e) {
+                    // siehe Klassenkommentar
+                }
+            }
+        }
+    }
+
+    /**
+     * Zählt die Verschiebungen eines Laufs je Zielordner und reicht alle Meldungen
+     * an den Verteiler weiter.
+     */
+    private final class Zaehlung implements SortierBeobachter {
+        private final Path ordner;
+        private final SortierKonfiguration konfiguration;
+        private final Map<String, long[]> jeZiel = new LinkedHashMap<>();
+
+        Zaehlung(Path ordner, SortierKonfiguration konfiguration) {
+            this.ordner = ordner;
+            this.konfiguration = konfiguration;
+        }
+
+        @Override
+        public void verschoben(Path quelle, Path ziel, long groesse) {
+            String name = ordner.relativize(ziel.getParent()).toString().replace('\\', '/');
+            synchronized (jeZiel) {
+                long[] s = jeZiel.computeIfAbsent(name, k -> new long[2]);
+                s[0]++;
+                s[1] += groesse;
+            }
+            verteiler.verschoben(quelle, ziel, groesse);
+        }
+
+        @Override
+        public void uebersprungen(Path datei, String grund) {
+            verteiler.uebersprungen(datei, grund);
+        }
+
+        @Override
+        public void fehler(Path datei, IOException fehler) {
+            verteiler.fehler(datei, fehler);
+        }
+
+        @Override
+        public void meldung(Path ordner, String text) {
+            verteiler.meldung(ordner, text);
+        }
+
+        /**
+         * @return Zielordner in Konfigurationsreihenfolge, andere (z. B. Duplikate) dahinter.
+         */
+        List<Kategorie> kategorien() {
+            DownloadCleaner.KategorieKonfiguration k = konfiguration.kategorieKonfiguration();
+            List<Kategorie> liste = new ArrayList<>();
+            synchronized (jeZiel) {
+                for (Map.Entry<String, long[]> e : jeZiel.entrySet()) {
+                    liste.add(new Kategorie(e.getKey(), e.getValue()[0], e.getValue()[1]));
+                }
+            }
+            // unbekannte Ziele haben Id -1, vorzeichenlos verglichen also die größte
+            liste.sort((a, b) -> Integer.compareUnsigned(k.kategorieId(a.name), k.kategorieId(b.name)));
+            return Collections.unmodifiableList(liste);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package downloadcleaner;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unveränderliche Kategorie-Konfiguration für die SortierEngine.
+ *
+ * Hält eine eigene KategorieKonfiguration, auf die sonst niemand Zugriff hat und
+ * die nach dem Laden nicht mehr verändert wird. Eine SortierKonfiguration kann
+ * daher von beliebig vielen Threads und Vorgängen gleichzeitig benutzt werden;
+ * mehrere Konfigurationen (z. B. je Ordner eine) bestehen unabhängig nebeneinander.
+ */
+public final class SortierKonfiguration {
+
+    private final DownloadCleaner.KategorieKonfiguration kategorien;
+    private final List<String> namen;
+
+    private SortierKonfiguration(DownloadCleaner.KategorieKonfiguration kategorien) {
+        this.kategorien = kategorien;
+        List<String> n = new ArrayList<>(kategorien.anzahlKategorien());
+        for (int id = 0; id < kategorien.anzahlKategorien(); id++) {
+            n.add(kategorien.kategorieName(id));
+        }
+        this.namen = Collections.unmodifiableList(n);
+    }
+
+    /**
+     * @return die im Code hinterlegten Standardkategorien.
+     */
+    public static SortierKonfiguration standard() {
+        return new SortierKonfiguration(DownloadCleaner.KategorieKonfiguration.ladeStandardNur());
+    }
+
+    /**
+     * Lädt die config.txt des Ordners (ohne sie gibt es die Standardkategorien).
+     * Ungültige Regeln und Kontingente werden übersprungen (siehe warnungen());
+     * auf die Konsole wird nichts ausgegeben.
+     *
+     * @param ordner Ordner, in dem nach config.txt gesucht wird.
+     * @return neue Konfiguration.
+     */
+    public static SortierKonfiguration laden(Path ordner) {
+        return laden(ordner, false);
+    }
+
+    /**
+     * Wie laden(ordner), gibt auf Wunsch aber aus, woher die Kategorien stammen.
+     */
+    static SortierKonfiguration laden(Path ordner, boolean melden) {
+        return new SortierKonfiguration(DownloadCleaner.KategorieKonfiguration.laden(ordner, melden));
+    }
+
+    /**
+     * Übernimmt eine vorhandene KategorieKonfiguration. Sie wird kopiert; spätere
+     * Änderungen am Original wirken sich nicht aus.
+     *
+     * @param kategorien Quelle.
+     * @return neue Konfiguration.
+     */
+    static SortierKonfiguration von(DownloadCleaner.KategorieKonfiguration kategorien) {
+        return new SortierKonfiguration(kategorien.kopie());
+    }
+
+    /**
+     * @return Namen aller Kategorien in Konfigurationsreihenfolge, danach Ziele von
+     *         Regeln, die keine eigene Kategorie sind.
+     */
+    public List<String> kategorien() {
+        return namen;
+    }
+
+    /**
+     * Ordnet einen Dateinamen zu (Regeln mit Größe oder Alter bleiben unberücksichtigt).
+     *
+     * @param dateiname Dateiname inkl. Endung.
+     * @return Kategorie, Ziel einer Regel oder "Sonstiges".
+     */
+    public String kategorie(String dateiname) {
+        return kategorien.bestimmeKategorie(dateiname);
+    }
+
+    /**
+     * @return Anzahl gültiger Kontingente (siehe Kontingent).
+     */
+    public int anzahlKontingente() {
+        return kategorien.kontingente().size();
+    }
+
+    /**
+     * @return Hinweise aus dem Laden, z. B. ungültige Regeln oder Kontingente oder
+     *         eine nicht lesbare config.txt (leer, wenn alles gültig ist).
+     */
+    public List<String> warnungen() {
+        return kategorien.warnungen();
+    }
+
+    /**
+     * @return Fingerabdruck über Kategorien, Endungen und Regeln (ändert sich mit config.txt).
+     */
+    public long fingerabdruck() {
+        return kategorien.fingerabdruck();
+    }
+
+    /**
+     * @return die zugrunde liegende Konfiguration; nur lesen.
+     */
+    DownloadCleaner.KategorieKonfiguration kategorieKonfiguration() {
+        return kategorien;
+    }
+}
@@ -0,0 +1,314 @@
+package downloadcleaner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ein gespeicherter Trockenlauf (sortierplan.txt): welche Datei wohin soll.
+ *
+ * Der Trockenlauf gibt nicht mehr jede Datei auf der Konsole aus, sondern schreibt
+ * diesen Plan und zeigt nur eine Zusammenfassung. Der Plan ist eine Textdatei mit
+ * einer Zeile pro Datei und lässt sich in Ruhe durchsehen (auch auf einem anderen
+ * Rechner) und von Hand kürzen:
+ *
+ *   # DownloadCleaner-Sortierplan 1
+ *   # ordner	/home/anna/Downloads
+ *   # erstellt	2025-11-21 02:30:45	1763688645000
+ *   # konfiguration	9c1f0e4a7b2d3c11
+ *   # groesse	geaendert_ms	ziel	name
+ *   48213	1763601234000	Bilder	foto.png
+ *   # ende
+ *
+ * Felder sind durch Tabulatoren getrennt. Tabulator, Zeilenumbruch und '\' im Namen
+ * werden als \t, \n, \r und \\ geschrieben. Fehlt die Zeile "# ende", ist der Plan
+ * unvollständig geschrieben und wird nicht ausgeführt.
+ *
+ * Beim Ausführen (Sortierung.wendeAn) wird nichts neu gelesen oder klassifiziert:
+ * Jede Datei wird nur noch mit Größe und Änderungszeit aus dem Plan verglichen und
+ * übersprungen, wenn sie fehlt oder sich geändert hat.
+ */
+final class SortierPlan {
+
+    /**
+     * Dateiname des Plans im Arbeitsordner.
+     */
+    static final String DATEINAME = "sortierplan.txt";
+
+    private static final String KOPF = "# DownloadCleaner-Sortierplan 1";
+    private static final String ENDE = "# ende";
+
+    /**
+     * Puffer beim Schreiben und Lesen; der Plan wird in großen Blöcken übertragen.
+     */
+    private static final int PUFFER = 1 << 20;
+
+    /**
+     * Eine geplante Verschiebung.
+     */
+    static final class Eintrag {
+        /** Dateiname im Arbeitsordner. */
+        final String name;
+        /** Zielordner relativ zum Arbeitsordner (Kategorie oder z. B. "Archive/Large"). */
+        final String ziel;
+        final long groesse;
+        final long geaendertMs;
+
+        Eintrag(String name, String ziel, long groesse, long geaendertMs) {
+            this.name = name;
+            this.ziel = ziel;
+            this.groesse = groesse;
+            this.geaendertMs = geaendertMs;
+        }
+    }
+
+    /** Ordner, für den der Plan erstellt wurde (wie beim Erstellen aufgelöst). */
+    final String ordner;
+    final long erstelltMs;
+    /** Fingerabdruck der Kategorie-Konfiguration beim Erstellen. */
+    final long konfiguration;
+    final List<Eintrag> eintraege;
+
+    private SortierPlan(String ordner, long erstelltMs, long konfiguration, List<Eintrag> eintraege) {
+        this.ordner = ordner;
+        this.erstelltMs = erstelltMs;
+        this.konfiguration = konfiguration;
+        this.eintraege = eintraege;
+    }
+
+    /**
+     * Erstellt den Plan aus einem Scan; die eigenen Programmdateien werden ausgelassen.
+     *
+     * @param ordner     Arbeitsordner.
+     * @param scan       Ergebnis von ScanIndex.lese().
+     * @param kategorien verwendete Konfiguration (für den Fingerabdruck).
+     * @return neuer Plan.
+     */
+    static SortierPlan aus(Path ordner, ScanIndex.Ergebnis scan, DownloadCleaner.KategorieKonfiguration kategorien) {
+        List<Eintrag> eintraege = new ArrayList<>(scan.dateien.size());
+        for (ScanIndex.Datei d : scan.dateien) {
+            if (!DownloadCleaner.istEigeneDatei(ordner.resolve(d.name))) {
+                eintraege.add(new Eintrag(d.name, d.kategorie, d.groesse, d.geaendertMs));
+            }
+        }
+        return new SortierPlan(kennung(ordner), System.currentTimeMillis(), kategorien.fingerabdruck(),
+                Collections.unmodifiableList(eintraege));
+    }
+
+    /**
+     * Liefert den Pfad, unter dem der Ordner im Plan steht (aufgelöst, falls möglich).
+     *
+     * @param ordner Arbeitsordner.
+     * @return Pfad als Text.
+     */
+    static String kennung(Path ordner) {
+        try {
+            return ordner.toRealPath().toString();
+        } catch (IOException e) {
+            return ordner.toAbsolutePath().normalize().toString();
+        }
+    }
+
+    /**
+     * Anzahl und Bytes je Ziel, in der Reihenfolge des ersten Auftretens.
+     *
+     * @return Map Ziel -> {Anzahl, Bytes}.
+     */
+    Map<String, long[]> jeZiel() {
+        Map<String, long[]> summe = new LinkedHashMap<>();
+        for (Eintrag e : eintraege) {
+            long[] s = summe.computeIfAbsent(e.ziel, k -> new long[2]);
+            s[0]++;
+            s[1] += e.groesse;
+        }
+        return summe;
+    }
+
+    /**
+     * Schreibt den Plan. Eine vorhandene Datei wird überschrieben.
+     *
+     * @param datei Zieldatei, meist ordner/sortierplan.txt.
+     * @throws IOException bei Schreibfehlern.
+     */
+    void schreibe(Path datei) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(datei), StandardCharsets.UTF_8), PUFFER)) {
+            String zeit = LocalDateTime.ofInstant(Instant.ofEpochMilli(erstelltMs), ZoneId.systemDefault())
+                    .format(DownloadCleaner.LOG_TS_FORMAT);
+            out.write(KOPF);
+            out.write('\n');
+            out.write("# ordner\t" + maskiere(ordner) + "\n");
+            out.write("# erstellt\t" + zeit + "\t" + erstelltMs + "\n");
+            out.write("# konfiguration\t" + Long.toHexString(konfiguration) + "\n");
+            out.write("# groesse\tgeaendert_ms\tziel\tname\n");
+            for (Eintrag e : eintraege) {
+                out.write(Long.toString(e.groesse));
+                out.write('\t');
+                out.write(Long.toString(e.geaendertMs));
+                out.write('\t');
+                out.write(maskiere(e.ziel));
+                out.write('\t');
+                out.write(maskiere(e.name));
+                out.write('\n');
+            }
+            out.write(ENDE);
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Liest einen Plan.
+     *
+     * Leere Zeilen und unbekannte Kommentarzeilen werden übersprungen; so dürfen beim
+     * Durchsehen Zeilen gelöscht oder auskommentiert werden. Eine von Hand ergänzte
+     * Zeile für eine Programmdatei (DownloadCleaner.istEigeneDatei) ist ein Fehler.
+     *
+     * @param datei Plandatei.
+     * @return gelesener Plan.
+     * @throws IOException wenn die Datei fehlt, unvollständig oder fehlerhaft ist
+     *                     (mit Zeilennummer in der Meldung).
+     */
+    static SortierPlan lese(Path datei) throws IOException {
+        String ordner = null;
+        long erstelltMs = 0;
+        long konfiguration = 0;
+        List<Eintrag> eintraege = new ArrayList<>();
+        boolean ende = false;
+
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(datei), StandardCharsets.UTF_8), PUFFER)) {
+            String zeile = in.readLine();
+            if (!KOPF.equals(zeile)) {
+                throw new IOException("Kein Sortierplan: " + datei);
+            }
+            int nummer = 1;
+            while ((zeile = in.readLine()) != null) {
+                nummer++;
+                if (ende && !zeile.isBlank()) {
+                    throw new IOException("Zeile " + nummer + ": Text nach \"" + ENDE + "\"");
+                }
+                if (zeile.isBlank()) {
+                    continue;
+                }
+                String[] f = zeile.split("\t", -1);
+                if (zeile.startsWith("#")) {
+                    if (zeile.equals(ENDE)) {
+                        ende = true;
+                    } else if (f[0].equals("# ordner") && f.length == 2) {
+                        ordner = demaskiere(f[1]);
+                    } else if (f[0].equals("# erstellt") && f.length == 3) {
+                        erstelltMs = zahl(f[2], nummer);
+                    } else if (f[0].equals("# konfiguration") && f.length == 2) {
+                        try {
+                            konfiguration = Long.parseUnsignedLong(f[1], 16);
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Zeile " + nummer + ": ungültiger Fingerabdruck " + f[1]);
+                        }
+                    }
+                    continue;
+                }
+                if (f.length != 4) {
+                    throw new IOException("Zeile " + nummer + ": 4 Felder erwartet, " + f.length + " gefunden");
+                }
+                String name = demaskiere(f[3]);
+                if (!istDateiname(name)) {
+                    throw new IOException("Zeile " + nummer + ": ungültiger Dateiname '" + name + "'");
+                }
+                // wie bei sortiere(): log.txt, Undo-Journal, config.txt usw. bleiben liegen
+                if (DownloadCleaner.istEigeneDatei(Path.of(name))) {
+                    throw new IOException("Zeile " + nummer + ": '" + name + "' ist eine Datei des Programms");
+                }
+                String ziel;
+                try {
+                    ziel = Regelwerk.pruefeZiel(demaskiere(f[2]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Zeile " + nummer + ": " + e.getMessage());
+                }
+                eintraege.add(new Eintrag(name, ziel, zahl(f[0], nummer), zahl(f[1], nummer)));
+            }
+        }
+        if (!ende) {
+            throw new IOException("Sortierplan unvollständig (\"" + ENDE + "\" fehlt): " + datei);
+        }
+        if (ordner == null) {
+            throw new IOException("Sortierplan ohne Ordnerangabe: " + datei);
+        }
+        return new SortierPlan(ordner, erstelltMs, konfiguration, Collections.unmodifiableList(eintraege));
+    }
+
+    /**
+     * Ein Name aus dem Plan muss eine Datei direkt im Arbeitsordner bezeichnen.
+     */
+    private static boolean istDateiname(String name) {
+        if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+            return false;
+        }
+        try {
+            Path p = Path.of(name);
+            return !p.isAbsolute() && p.getNameCount() == 1;
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static long zahl(String text, int nummer) throws IOException {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Zeile " + nummer + ": keine Zahl: " + text);
+        }
+    }
+
+    private static String maskiere(String s) {
+        if (s.indexOf('\\') < 0 && s.indexOf('\t') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return s;
+        }
+        StringBuilder b = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                b.append("\\\\");
+            } else if (c == '\t') {
+                b.append("\\t");
+            } else if (c == '\n') {
+                b.append("\\n");
+            } else if (c == '\r') {
+                b.append("\\r");
+            } else {
+                b.append(c);
+            }
+        }
+        return b.toString();
+    }
+
+    private static String demaskiere(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        StringBuilder b = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                b.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+            } else {
+                b.append(c);
+            }
+        }
+        return b.toString();
+    }
+}
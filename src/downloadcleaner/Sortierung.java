@@ -0,0 +1,243 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sortiert die Dateien der obersten Ebene eines Ordners nacheinander in ihre
+ * Kategorie-Unterordner, mit log.txt und Undo-Journal.
+ *
+ * Wird von der SortierEngine benutzt (und darüber von Menü und Kommandozeile).
+ * Alles, was zum Ordner gehört, wird übergeben – insbesondere die Kategorie-
+ * Konfiguration. So können mehrere Ordner mit je eigener config.txt gleichzeitig
+ * sortiert werden.
+ *
+ * Statt den Ordner zu lesen, kann auch ein gespeicherter Sortierplan ausgeführt
+ * werden (wendeAn, siehe SortierPlan). Das eigentliche Verschieben ist in beiden
+ * Fällen dasselbe (Lauf).
+ */
+final class Sortierung {
+
+    private Sortierung() {
+    }
+
+    /**
+     * Ergebnis eines Sortierlaufs.
+     */
+    static final class Ergebnis {
+        /** Anzahl der Dateien, die an ihrem Ziel liegen. */
+        final int verschoben;
+        /** Anzahl der Dateien, die nicht verschoben werden konnten. */
+        final int fehler;
+        /** Nur beim Plan: Dateien, die fehlen oder sich seit dem Plan geändert haben. */
+        final int veraendert;
+        /** Nummer des Laufs im Undo-Journal. */
+        final long laufId;
+
+        Ergebnis(int verschoben, int fehler, int veraendert, long laufId) {
+            this.verschoben = verschoben;
+            this.fehler = fehler;
+            this.veraendert = veraendert;
+            this.laufId = laufId;
+        }
+    }
+
+    /**
+     * Sortiert den Ordner.
+     *
+     * - Mit -Ddownloadcleaner.duplikate=an wird eine Datei, deren Ziel schon mit
+     *   gleichem Inhalt existiert, nach Duplikate/ verschoben statt es zu überschreiben.
+     * - Mit -Ddownloadcleaner.kollision=umbenennen werden vorhandene Dateien nie
+     *   überschrieben, die neue Datei bekommt einen freien Namen (siehe ZielNamen).
+     * - Mit -Ddownloadcleaner.messung=an wird jede Phase gemessen und am Ende
+     *   messung.json geschrieben (siehe Messung).
+     * - Mit einer Drossel werden die Verschiebungen gebremst (siehe Drossel); den
+     *   Bericht gibt der Aufrufer aus, weil eine Drossel für mehrere Ordner gelten kann.
+     *
+     * Fehler bei einzelnen Dateien werden dem Beobachter gemeldet und gezählt, der
+     * Lauf geht weiter.
+     * Kann ein Zielordner nicht angelegt werden, wird der Lauf abgebrochen.
+     *
+     * @param downloadDir  zu sortierender Ordner.
+     * @param kategorien   Kategorie-Konfiguration dieses Ordners.
+     * @param beobachter   erhält jede Verschiebung und jeden Fehler.
+     * @param drossel      Grenzen für das Verschieben oder null.
+     * @return Zähler und Lauf-Nummer.
+     * @throws IOException wenn der Ordner, log.txt oder das Undo-Journal nicht
+     *                     gelesen bzw. geschrieben werden können.
+     */
+    static Ergebnis sortiere(Path downloadDir, DownloadCleaner.KategorieKonfiguration kategorien,
+                             SortierBeobachter beobachter, Drossel drossel) throws IOException {
+        Messung messung = Messung.ausSystemProperty();
+
+        // log.txt und das Undo-Journal schreibt ein eigener Thread (siehe ProtokollSchreiber)
+        try (ProtokollSchreiber protokoll = ProtokollSchreiber.ausSystemProperty(
+                downloadDir.resolve("log.txt"), downloadDir.resolve(UndoJournal.DATEINAME), messung, beobachter);
+             DateiUmzug umzug = new DateiUmzug(downloadDir, ZielNamen.ausSystemProperty(), drossel, beobachter)) {
+
+            Lauf lauf = new Lauf(downloadDir, protokoll, umzug, messung, beobachter);
+
+            OrdnerScanner.scanne(downloadDir, true, messung, (entry, attrs) -> {
+                if (!attrs.isRegularFile() || DownloadCleaner.istEigeneDatei(entry)) {
+                    messung.uebersprungen();
+                    return;
+                }
+
+                Messung.Messpunkt m = messung.start(Messung.Phase.KLASSIFIZIEREN);
+                String kategorie = kategorien.bestimmeKategorie(entry, attrs);
+                messung.ende(m, entry, attrs.size());
+
+                lauf.bewege(entry, kategorie, attrs.size());
+            });
+
+            return lauf.beende(0);
+        }
+    }
+
+    /**
+     * Führt einen gespeicherten Sortierplan aus, ohne den Ordner neu zu lesen oder
+     * die Dateien neu zu klassifizieren.
+     *
+     * Vor jeder Verschiebung wird geprüft, ob die Datei noch dieselbe Größe und
+     * Änderungszeit hat wie im Plan. Fehlt sie oder hat sie sich geändert, wird sie
+     * übersprungen und als "verändert" gezählt (kein Fehler). Ansonsten gilt alles
+     * wie bei sortiere() (Duplikate, Namensgleichheit, Messung, Undo-Journal).
+     *
+     * @param downloadDir  Ordner, zu dem der Plan gehört.
+     * @param plan         gelesener Plan.
+     * @param beobachter   erhält jede Verschiebung, übersprungene Datei und jeden Fehler.
+     * @param drossel      Grenzen für das Verschieben oder null.
+     * @return Zähler und Lauf-Nummer.
+     * @throws IOException wenn der Plan zu einem anderen Ordner gehört oder log.txt
+     *                     bzw. das Undo-Journal nicht geschrieben werden können.
+     */
+    static Ergebnis wendeAn(Path downloadDir, SortierPlan plan, SortierBeobachter beobachter, Drossel drossel)
+            throws IOException {
+        if (!plan.ordner.equals(SortierPlan.kennung(downloadDir))) {
+            throw new IOException("Der Plan gehört zu " + plan.ordner + ", nicht zu "
+                    + SortierPlan.kennung(downloadDir));
+        }
+        Messung messung = Messung.ausSystemProperty();
+
+        try (ProtokollSchreiber protokoll = ProtokollSchreiber.ausSystemProperty(
+                downloadDir.resolve("log.txt"), downloadDir.resolve(UndoJournal.DATEINAME), messung, beobachter);
+             DateiUmzug umzug = new DateiUmzug(downloadDir, ZielNamen.ausSystemProperty(), drossel, beobachter)) {
+
+            Lauf lauf = new Lauf(downloadDir, protokoll, umzug, messung, beobachter);
+            int veraendert = 0;
+
+            for (SortierPlan.Eintrag e : plan.eintraege) {
+                Path entry = downloadDir.resolve(e.name);
+
+                // Nur Attribute lesen: Ist die Datei noch die aus dem Plan?
+                Messung.Messpunkt m = messung.start(Messung.Phase.AUFLISTEN);
+                String grund = null;
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                    if (!attrs.isRegularFile() || attrs.size() != e.groesse
+                            || attrs.lastModifiedTime().toMillis() != e.geaendertMs) {
+                        grund = "geändert";
+                    }
+                } catch (NoSuchFileException ex) {
+                    grund = "fehlt";
+                } catch (IOException ex) {
+                    grund = "nicht lesbar: " + ex.getMessage();
+                }
+                messung.ende(m, entry, 0);
+
+                if (grund != null) {
+                    veraendert++;
+                    messung.uebersprungen();
+                    beobachter.uebersprungen(entry, grund);
+                    continue;
+                }
+                lauf.bewege(entry, e.ziel, e.groesse);
+            }
+
+            return lauf.beende(veraendert);
+        }
+    }
+
+    /**
+     * Das Verschieben innerhalb eines Laufs, gemeinsam für sortiere() und wendeAn().
+     */
+    private static final class Lauf {
+        private final Path downloadDir;
+        private final ProtokollSchreiber protokoll;
+        private final DateiUmzug umzug;
+        private final Messung messung;
+        private final SortierBeobachter beobachter;
+        private final DownloadCleaner.KategorieOrdner kategorieOrdner;
+        private final boolean duplikatePruefen = DuplikatSuche.beimSortieren();
+        private final AtomicInteger verschoben = new AtomicInteger();
+        private final AtomicInteger fehler = new AtomicInteger();
+
+        Lauf(Path downloadDir, ProtokollSchreiber protokoll, DateiUmzug umzug, Messung messung,
+             SortierBeobachter beobachter) {
+            this.downloadDir = downloadDir;
+            this.protokoll = protokoll;
+            this.umzug = umzug;
+            this.messung = messung;
+            this.beobachter = beobachter;
+            this.kategorieOrdner = new DownloadCleaner.KategorieOrdner(downloadDir);
+        }
+
+        /**
+         * Verschiebt eine Datei in ihren Zielordner.
+         *
+         * @param entry     Datei im Arbeitsordner.
+         * @param kategorie Zielordner relativ zum Arbeitsordner.
+         * @param groesse   Dateigröße (für Messung).
+         * @throws IOException wenn der Zielordner nicht angelegt werden kann.
+         */
+        void bewege(Path entry, String kategorie, long groesse) throws IOException {
+            String fileName = entry.getFileName().toString();
+
+            // Zielordner anlegen (nur beim ersten Mal pro Kategorie)
+            Messung.Messpunkt m = messung.start(Messung.Phase.ORDNER);
+            Path zielOrdner = kategorieOrdner.zielOrdner(kategorie);
+            messung.ende(m, zielOrdner, 0);
+
+            Path zielDatei = zielOrdner.resolve(fileName);
+
+            // Relative Pfade zur Dokumentation (robuster, falls Root verschoben wird)
+            Path relativeQuelle = downloadDir.relativize(entry);
+
+            try {
+                if (duplikatePruefen) {
+                    zielDatei = DuplikatSuche.zielBeimSortieren(entry, zielDatei, kategorieOrdner);
+                }
+                Messung.Messpunkt bewegen = messung.start(Messung.Phase.VERSCHIEBEN);
+                umzug.verschiebe(entry, zielDatei, ziel -> {
+                    protokoll.bewegung(relativeQuelle, downloadDir.relativize(ziel));
+                    verschoben.incrementAndGet();
+                    messung.verschoben(groesse);
+                    beobachter.verschoben(entry, ziel, groesse);
+                });
+                messung.ende(bewegen, entry, groesse);
+
+            } catch (IOException e) {
+                fehler.incrementAndGet();
+                beobachter.fehler(entry, e);
+            }
+        }
+
+        /**
+         * Wartet auf laufende Kopien, schließt das Protokoll ab und schreibt die Messung.
+         */
+        Ergebnis beende(int veraendert) throws IOException {
+            umzug.abschliessen();
+            protokoll.beende(true);
+
+            Ergebnis ergebnis = new Ergebnis(verschoben.get(), fehler.get() + umzug.fehlgeschlagen(),
+                    veraendert, protokoll.laufId());
+            messung.fehler(ergebnis.fehler);
+            messung.abschliessen(downloadDir, ergebnis.laufId, beobachter);
+            return ergebnis;
+        }
+    }
+}
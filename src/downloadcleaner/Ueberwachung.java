@@ -0,0 +1,387 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dauerbetrieb: überwacht den Download-Ordner und sortiert neue Dateien automatisch.
+ *
+ * Statt den Ordner regelmäßig komplett zu lesen, meldet der WatchService des
+ * Betriebssystems neue (ENTRY_CREATE) und geänderte (ENTRY_MODIFY) Einträge.
+ *
+ * Ablauf:
+ * - Jede gemeldete Datei wird mit Größe und Änderungszeit vorgemerkt.
+ * - Erst wenn sie eine Ruhezeit lang unverändert geblieben ist, wird sie verschoben.
+ *   Jede neue Meldung für dieselbe Datei startet die Ruhezeit neu.
+ * - Teil-Downloads (.crdownload, .part, ...) werden nie verschoben; ebenso eine Datei,
+ *   neben der noch ihr Teil-Download liegt (Firefox legt z. B. vorab eine leere
+ *   Zieldatei an).
+ * - Wird die erste Datei bereit, öffnet sich ein kurzes Zeitfenster (STAPEL_FENSTER_MS).
+ *   Alle Dateien, die bis zu seinem Ende bereit sind, bilden einen Stapel. Ein Stapel
+ *   ist genau ein Protokoll-Vorgang: ein Abschnitt in log.txt und ein Lauf im
+ *   Undo-Journal.
+ * - Meldet der WatchService OVERFLOW (Ereignisse verloren), wird der Ordner einmal
+ *   komplett gelesen. Dasselbe passiert beim Start, damit bereits vorhandene Dateien
+ *   ebenfalls einsortiert werden.
+ *
+ * Mit -Ddownloadcleaner.drossel.* (siehe Drossel) wird auch hier gebremst; die
+ * Grenzen gelten für die ganze Überwachung, nicht je Stapel.
+ *
+ * Solange nichts vorgemerkt ist, wartet der Thread blockierend auf das nächste
+ * Ereignis und verbraucht keine Rechenzeit.
+ */
+class Ueberwachung {
+
+    /**
+     * Standard-Ruhezeit in Millisekunden.
+     */
+    static final long STANDARD_RUHEZEIT_MS = 2000;
+
+    /**
+     * Endungen unvollständiger Downloads gängiger Browser und Download-Manager.
+     */
+    private static final String[] TEILDOWNLOAD_ENDUNGEN = {
+            ".crdownload", ".part", ".partial", ".download", ".tmp"
+    };
+
+    /**
+     * Länge des Zeitfensters, in dem bereite Dateien zu einem Stapel gesammelt werden.
+     */
+    static final long STAPEL_FENSTER_MS = 250;
+
+    private static final DateTimeFormatter UHRZEIT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    /**
+     * Eine vorgemerkte Datei.
+     */
+    private static final class Kandidat {
+        long groesse;
+        long geaendertMs;
+        long letzteAenderungNs;
+        /** Ruhezeit abgelaufen und erneut geprüft; wartet auf das Ende des Zeitfensters. */
+        boolean bereit;
+    }
+
+    private final DownloadCleaner.KategorieKonfiguration kategorien;
+    private final long ruhezeitNs;
+    private final boolean duplikatePruefen = DuplikatSuche.beimSortieren();
+
+    /**
+     * Erhält Fehler und Hinweise aus DateiUmzug, ProtokollSchreiber und Drossel.
+     */
+    private final SortierBeobachter beobachter;
+
+    /**
+     * Grenzen aus -Ddownloadcleaner.drossel.* (oder null); gilt über alle Stapel hinweg.
+     */
+    private final Drossel drossel;
+
+    /**
+     * Jeder Stapel läuft unter der Ordner-Sperre dieser Engine.
+     */
+    private final SortierEngine engine;
+
+    /**
+     * Vorgemerkte Dateien; wird nur vom Überwachungs-Thread benutzt.
+     */
+    private final Map<Path, Kandidat> vorgemerkt = new HashMap<>();
+
+    /**
+     * Ende des aktuellen Stapel-Zeitfensters (System.nanoTime) oder -1, wenn keins offen ist.
+     */
+    private long fensterEndeNs = -1;
+
+    private volatile WatchService dienst;
+    private volatile boolean gestoppt;
+
+    private int stapel;
+    private int verschoben;
+
+    /**
+     * @param kategorien Kategorie-Konfiguration für die Zuordnung.
+     * @param ruhezeitMs so lange muss eine Datei unverändert sein, bevor sie verschoben wird.
+     * @param beobachter erhält Fehler beim Kopieren im Hintergrund und Hinweise.
+     * @param engine     nimmt für jeden Stapel die Sperre des Ordners.
+     */
+    Ueberwachung(DownloadCleaner.KategorieKonfiguration kategorien, long ruhezeitMs, SortierBeobachter beobachter,
+                 SortierEngine engine) {
+        this.kategorien = kategorien;
+        this.engine = engine;
+        this.ruhezeitNs = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ruhezeitMs));
+        this.beobachter = beobachter;
+        this.drossel = Drossel.ausSystemProperty(null, beobachter);
+    }
+
+    /**
+     * Überwacht den Ordner, bis stoppe() aufgerufen wird oder der Ordner nicht mehr
+     * erreichbar ist. Blockiert den aufrufenden Thread.
+     *
+     * @param downloadDir zu überwachender Ordner.
+     */
+    void ueberwache(Path downloadDir) {
+        try (WatchService ws = downloadDir.getFileSystem().newWatchService()) {
+            dienst = ws;
+            if (gestoppt) {
+                return;
+            }
+            downloadDir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            liesAlles(downloadDir);
+
+            while (true) {
+                WatchKey key = vorgemerkt.isEmpty()
+                        ? ws.take()
+                        : ws.poll(msBisFaellig(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    verarbeiteEreignisse(downloadDir, key);
+                    if (!key.reset()) {
+                        System.out.println("Ordner ist nicht mehr erreichbar, Überwachung beendet.");
+                        return;
+                    }
+                }
+                sortiereFaellige(downloadDir);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stoppe() wurde aufgerufen
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Fehler bei der Überwachung: " + e.getMessage());
+        } finally {
+            System.out.println("Überwachung beendet. Stapel: " + stapel + ", Dateien verschoben: " + verschoben);
+            if (drossel != null) {
+                drossel.bericht().forEach(zeile -> beobachter.meldung(downloadDir, zeile));
+            }
+        }
+    }
+
+    /**
+     * Beendet die Überwachung (thread-sicher). Noch nicht fällige Dateien bleiben liegen.
+     */
+    void stoppe() {
+        gestoppt = true;
+        WatchService ws = dienst;
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException e) {
+                // beim Beenden ohne Bedeutung
+            }
+        }
+    }
+
+    /**
+     * Merkt alle regulären Dateien des Ordners vor (Start und OVERFLOW).
+     */
+    private void liesAlles(Path downloadDir) throws IOException {
+        OrdnerScanner.scanne(downloadDir, true, (entry, attrs) -> {
+            if (attrs.isRegularFile() && !ignorieren(entry)) {
+                merke(entry, attrs);
+            }
+        });
+    }
+
+    private void verarbeiteEreignisse(Path downloadDir, WatchKey key) throws IOException {
+        for (WatchEvent<?> ereignis : key.pollEvents()) {
+            if (ereignis.kind() == StandardWatchEventKinds.OVERFLOW) {
+                System.out.println("Zu viele Ereignisse (OVERFLOW), lese den Ordner neu.");
+                liesAlles(downloadDir);
+                continue;
+            }
+            Path eintrag = downloadDir.resolve((Path) ereignis.context());
+            if (ignorieren(eintrag)) {
+                continue;
+            }
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(eintrag, BasicFileAttributes.class);
+                if (attrs.isRegularFile()) {
+                    merke(eintrag, attrs);
+                } else {
+                    vorgemerkt.remove(eintrag); // z. B. neu angelegter Kategorie-Ordner
+                }
+            } catch (IOException e) {
+                vorgemerkt.remove(eintrag); // schon wieder verschwunden
+            }
+        }
+    }
+
+    private void merke(Path eintrag, BasicFileAttributes attrs) {
+        Kandidat k = vorgemerkt.computeIfAbsent(eintrag, p -> new Kandidat());
+        k.groesse = attrs.size();
+        k.geaendertMs = attrs.lastModifiedTime().toMillis();
+        k.letzteAenderungNs = System.nanoTime();
+        k.bereit = false;
+    }
+
+    /**
+     * @return Millisekunden bis zur nächsten fälligen Prüfung bzw. bis zum Ende des
+     *         Zeitfensters (mindestens 1).
+     */
+    private long msBisFaellig() {
+        long jetzt = System.nanoTime();
+        long minimum = fensterEndeNs >= 0 ? fensterEndeNs - jetzt : Long.MAX_VALUE;
+        for (Kandidat k : vorgemerkt.values()) {
+            if (!k.bereit) {
+                minimum = Math.min(minimum, k.letzteAenderungNs + ruhezeitNs - jetzt);
+            }
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(minimum) + 1);
+    }
+
+    /**
+     * Prüft alle Dateien, deren Ruhezeit abgelaufen ist, erneut. Stabile Dateien werden
+     * bereit; ist das Zeitfenster abgelaufen, werden alle bereiten als ein Stapel verschoben.
+     */
+    private void sortiereFaellige(Path downloadDir) {
+        long jetzt = System.nanoTime();
+
+        Iterator<Map.Entry<Path, Kandidat>> it = vorgemerkt.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Kandidat> e = it.next();
+            Kandidat k = e.getValue();
+            if (k.bereit || jetzt - k.letzteAenderungNs < ruhezeitNs) {
+                continue;
+            }
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(e.getKey(), BasicFileAttributes.class);
+            } catch (IOException ex) {
+                it.remove(); // nicht mehr vorhanden
+                continue;
+            }
+            if (!attrs.isRegularFile()) {
+                it.remove();
+            } else if (attrs.size() != k.groesse || attrs.lastModifiedTime().toMillis() != k.geaendertMs
+                    || laeuftNochDownload(e.getKey())) {
+                // hat sich ohne Ereignis verändert oder wird noch heruntergeladen: weiter warten
+                k.groesse = attrs.size();
+                k.geaendertMs = attrs.lastModifiedTime().toMillis();
+                k.letzteAenderungNs = jetzt;
+            } else {
+                k.bereit = true;
+                if (fensterEndeNs < 0) {
+                    fensterEndeNs = jetzt + TimeUnit.MILLISECONDS.toNanos(STAPEL_FENSTER_MS);
+                }
+            }
+        }
+
+        if (fensterEndeNs < 0 || jetzt < fensterEndeNs) {
+            return;
+        }
+        fensterEndeNs = -1;
+        List<Path> stapelDateien = new ArrayList<>();
+        vorgemerkt.entrySet().removeIf(e -> {
+            if (e.getValue().bereit) {
+                stapelDateien.add(e.getKey());
+                return true;
+            }
+            return false;
+        });
+        if (!stapelDateien.isEmpty()) {
+            verschiebeStapel(downloadDir, stapelDateien);
+        }
+    }
+
+    /**
+     * Verschiebt einen Stapel in einem Protokoll-Vorgang (ein Undo-Lauf pro Stapel).
+     * Der Stapel läuft über die Engine unter der Sperre des Ordners; der
+     * Überwachungs-Thread wartet, bis er fertig ist. Die Sperre gilt nur je Stapel,
+     * zwischen den Stapeln kann z. B. ein Undo laufen.
+     */
+    private void verschiebeStapel(Path downloadDir, List<Path> dateien) {
+        AtomicInteger imStapel = new AtomicInteger();
+        long laufId = 0;
+        try {
+            laufId = SortierEngine.ergebnis(engine.fuehreAus(downloadDir, SortierEngine.Vorgang.SORTIERUNG,
+                    () -> bewegeStapel(downloadDir, dateien, imStapel)));
+        } catch (IOException e) {
+            System.out.println("Fehler beim Sortieren des Stapels: " + e.getMessage());
+        }
+
+        stapel++;
+        verschoben += imStapel.get();
+        System.out.println("[" + LocalTime.now().format(UHRZEIT) + "] Stapel: " + imStapel.get() + " von "
+                + dateien.size() + " Dateien sortiert (Undo-Lauf #" + laufId + ").");
+    }
+
+    /**
+     * Arbeit eines Stapels; läuft unter der Ordner-Sperre.
+     *
+     * @return Undo-Lauf des Stapels.
+     */
+    private long bewegeStapel(Path downloadDir, List<Path> dateien, AtomicInteger imStapel) throws IOException {
+        Path logFile = downloadDir.resolve("log.txt");
+        Path journal = downloadDir.resolve(UndoJournal.DATEINAME);
+
+        try (ProtokollSchreiber protokoll = ProtokollSchreiber.ausSystemProperty(logFile, journal, beobachter);
+             DateiUmzug umzug = new DateiUmzug(downloadDir, ZielNamen.ausSystemProperty(), drossel, beobachter)) {
+            DownloadCleaner.KategorieOrdner kategorieOrdner = new DownloadCleaner.KategorieOrdner(downloadDir);
+
+            for (Path datei : dateien) {
+                if (!Files.isRegularFile(datei)) {
+                    continue; // während des Wartens auf die Sperre schon einsortiert
+                }
+                String fileName = datei.getFileName().toString();
+                Path zielDatei = kategorieOrdner.zielOrdner(kategorien.bestimmeKategorie(datei, null)).resolve(fileName);
+                try {
+                    if (duplikatePruefen) {
+                        zielDatei = DuplikatSuche.zielBeimSortieren(datei, zielDatei, kategorieOrdner);
+                    }
+                    umzug.verschiebe(datei, zielDatei, ziel -> {
+                        protokoll.bewegung(downloadDir.relativize(datei), downloadDir.relativize(ziel));
+                        imStapel.incrementAndGet();
+                    });
+                } catch (IOException e) {
+                    System.out.println("Konnte Datei nicht verschieben: " + fileName + " (" + e.getMessage() + ")");
+                }
+            }
+            umzug.abschliessen();
+            protokoll.beende(true);
+            return protokoll.laufId();
+        }
+    }
+
+    /**
+     * Eigene Programmdateien und Teil-Downloads werden nie vorgemerkt.
+     */
+    private static boolean ignorieren(Path eintrag) {
+        if (DownloadCleaner.istEigeneDatei(eintrag)) {
+            return true;
+        }
+        String name = eintrag.getFileName().toString().toLowerCase();
+        for (String endung : TEILDOWNLOAD_ENDUNGEN) {
+            if (name.endsWith(endung)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Liegt neben der Datei noch ihr Teil-Download (z. B. "x.pdf.part")?
+     */
+    private static boolean laeuftNochDownload(Path datei) {
+        String name = datei.getFileName().toString();
+        for (String endung : TEILDOWNLOAD_ENDUNGEN) {
+            if (Files.exists(datei.resolveSibling(name + endung))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,868 @@
+package downloadcleaner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Binäres Undo-Journal mit mehreren Sortierläufen (Generationen).
+ *
+ * Ersetzt undo_last_sort.txt: Statt die Datei bei jedem Lauf zu überschreiben, wird
+ * jeder Lauf hinten an undo_journal.bin angehängt. Aufbau eines Laufs:
+ *
+ *   Kopf     LAUF_MAGIC, Version, Lauf-Id, Startzeit, Arbeitsordner
+ *   Einträge je Datei: TYP_EINTRAG, Ziel (relativ), Quelle (relativ)
+ *   Fuß      TYP_FUSS, Anzahl, Endzeit, Kategorie-Tabelle, Offsets nach Kategorie,
+ *            Hash-Index über den ursprünglichen Dateinamen
+ *   Abschluss Offset des Fußes, Länge des Laufs, ENDE_MAGIC (feste 16 Byte)
+ *
+ * Alle Offsets innerhalb eines Laufs sind relativ zum Laufbeginn. Dadurch lässt sich
+ * ein Lauf unverändert an eine andere Stelle kopieren (wichtig fürs Kompaktieren).
+ *
+ * Lesen:
+ * - Die Liste der Läufe entsteht rückwärts über die festen Abschlussblöcke; die
+ *   Einträge selbst werden dabei nicht gelesen.
+ * - Ein Lauf wird per FileChannel.map eingeblendet; es werden nur die Seiten geladen,
+ *   die wirklich gebraucht werden (z. B. Fuß und die Einträge einer Kategorie).
+ *
+ * Lesen ändert die Datei nie. Ein Lauf ohne Fuß am Ende wird dabei übersprungen: Er
+ * wird gerade geschrieben (evtl. von einem anderen Prozess, z. B. der Überwachung)
+ * oder ist abgebrochen.
+ *
+ * Schreiben (neuer Lauf, Kompaktieren) geschieht nur unter einer exklusiven Sperre
+ * (FileChannel.lock), die ein Schreiber bis zum Abschluss seines Laufs hält. Da diese
+ * Sperre für die ganze JVM gilt, warten Schreiber derselben JVM vorher zusätzlich auf
+ * ein Schreibrecht je Journal. Erst mit der Sperre ist sicher, dass ein Lauf ohne Fuß
+ * abgebrochen ist (Absturz): Dann wird er ab dem letzten vollständigen Eintrag
+ * abgeschnitten und mit einem Fuß versehen, sodass auch die bis dahin protokollierten
+ * Bewegungen rückgängig gemacht werden können (siehe Schreiber.reparatur()).
+ *
+ * Einschränkung: Ein einzelner Lauf darf höchstens 2 GB groß sein (int-Offsets).
+ */
+final class UndoJournal {
+
+    /**
+     * Dateiname des Journals im Arbeitsordner.
+     */
+    static final String DATEINAME = "undo_journal.bin";
+
+    private static final int LAUF_MAGIC = 0x44434A52; // "DCJR"
+    private static final int ENDE_MAGIC = 0x44434A45; // "DCJE"
+    private static final short VERSION = 1;
+    private static final byte TYP_EINTRAG = 1;
+    private static final byte TYP_FUSS = 2;
+    private static final int ABSCHLUSS_LAENGE = 16;
+
+    /**
+     * Inhalt einer Journal-Datei, die kompaktiere() durch eine neue ersetzt hat. Wer
+     * auf die Sperre der alten Datei gewartet hat, öffnet daraufhin die neue.
+     */
+    private static final int ERSETZT_MAGIC = 0x44434A58; // "DCJX"
+
+    /**
+     * Schreibrecht je Journal (absoluter Pfad) innerhalb dieser JVM.
+     */
+    private static final Map<Path, Semaphore> SCHREIBRECHTE = new ConcurrentHashMap<>();
+
+    private UndoJournal() {
+    }
+
+    /**
+     * Ein abgebrochener Lauf, den Schreiber.neuerLauf() abgeschlossen hat.
+     */
+    static final class Reparatur {
+        final long laufId;
+        /** Einträge, die erhalten geblieben sind. */
+        final int eintraege;
+
+        Reparatur(long laufId, int eintraege) {
+            this.laufId = laufId;
+            this.eintraege = eintraege;
+        }
+
+        @Override
+        public String toString() {
+            return "Undo-Journal: unvollständiger Lauf #" + laufId + " mit " + eintraege
+                    + " Einträgen wurde abgeschlossen.";
+        }
+    }
+
+    /**
+     * Beschreibung eines gespeicherten Laufs (ohne seine Einträge).
+     */
+    static final class Lauf {
+        final long id;
+        final long startMs;
+        final long endeMs;
+        final String wurzel;
+        final int anzahl;
+        /** Kategorie -> Anzahl Einträge, in der Reihenfolge des ersten Auftretens. */
+        final Map<String, Integer> kategorien;
+        /** Position des Laufs in der Datei und seine Länge in Byte. */
+        final long position;
+        final long laenge;
+
+        Lauf(long id, long startMs, long endeMs, String wurzel, int anzahl,
+             Map<String, Integer> kategorien, long position, long laenge) {
+            this.id = id;
+            this.startMs = startMs;
+            this.endeMs = endeMs;
+            this.wurzel = wurzel;
+            this.anzahl = anzahl;
+            this.kategorien = kategorien;
+            this.position = position;
+            this.laenge = laenge;
+        }
+    }
+
+    /**
+     * Eine protokollierte Bewegung (Pfade relativ zum Arbeitsordner).
+     */
+    static final class Eintrag {
+        final String ziel;
+        final String quelle;
+
+        Eintrag(String ziel, String quelle) {
+            this.ziel = ziel;
+            this.quelle = quelle;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Schreiben
+    // ------------------------------------------------------------------
+
+    /**
+     * Hängt einen neuen Lauf an das Journal an.
+     *
+     * Einträge werden zunächst in einem Puffer gesammelt und mit schreibePuffer()
+     * blockweise geschrieben. abschliessen() bzw. close() schreibt den Fuß mit den
+     * Indizes. Nicht thread-sicher; gedacht für genau einen Schreib-Thread.
+     *
+     * Vom Öffnen bis abschliessen() hält der Schreiber die Sperre des Journals; andere
+     * Schreiber (auch in anderen Prozessen) warten so lange.
+     */
+    static final class Schreiber implements Closeable {
+        private final FileChannel kanal;
+        /** Schreibrecht dieser JVM; null beim Reparieren (das Recht hält der Aufrufer). */
+        private final Semaphore schreibrecht;
+        private Reparatur reparatur;
+        private final long laufStart;
+        private final long laufId;
+        /** Bereits geschriebene Bytes dieses Laufs. */
+        private long geschrieben;
+        private ByteBuffer puffer = ByteBuffer.allocate(64 * 1024);
+
+        private int anzahl;
+        private int[] offsets = new int[1024];
+        private int[] hashes = new int[1024];
+        private int[] katIds = new int[1024];
+        private final Map<String, Integer> katIndex = new LinkedHashMap<>();
+        private boolean abgeschlossen;
+
+        /**
+         * Öffnet (oder erzeugt) das Journal, wartet auf dessen Sperre, repariert einen
+         * abgebrochenen letzten Lauf und beginnt einen neuen Lauf.
+         *
+         * @param journal Pfad zu undo_journal.bin.
+         * @param wurzel  Arbeitsordner des Laufs (nur zur Information gespeichert).
+         * @return Schreiber für den neuen Lauf; die Sperre gibt erst abschliessen() frei.
+         * @throws IOException bei Lese- oder Schreibfehlern.
+         */
+        static Schreiber neuerLauf(Path journal, Path wurzel) throws IOException {
+            Semaphore recht = schreibrecht(journal);
+            try {
+                FileChannel kanal = oeffneGesperrt(journal,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                try {
+                    Reparatur reparatur = repariere(kanal);
+                    long id = letzteLaufId(kanal) + 1;
+                    Schreiber s = new Schreiber(kanal, recht, kanal.size(), 0, id);
+                    s.reparatur = reparatur;
+                    s.schreibeKopf(System.currentTimeMillis(), wurzel.toAbsolutePath().toString());
+                    s.schreibePuffer();
+                    return s;
+                } catch (IOException | RuntimeException e) {
+                    kanal.close();
+                    throw e;
+                }
+            } catch (IOException | RuntimeException e) {
+                recht.release();
+                throw e;
+            }
+        }
+
+        private Schreiber(FileChannel kanal, Semaphore schreibrecht, long laufStart, long geschrieben,
+                          long laufId) {
+            this.kanal = kanal;
+            this.schreibrecht = schreibrecht;
+            this.laufStart = laufStart;
+            this.geschrieben = geschrieben;
+            this.laufId = laufId;
+        }
+
+        /**
+         * @return Id des Laufs, der gerade geschrieben wird.
+         */
+        long laufId() {
+            return laufId;
+        }
+
+        /**
+         * @return der beim Öffnen abgeschlossene, abgebrochene Lauf oder null.
+         */
+        Reparatur reparatur() {
+            return reparatur;
+        }
+
+        private void schreibeKopf(long startMs, String wurzel) {
+            byte[] w = begrenzt(wurzel);
+            platz(4 + 2 + 8 + 8 + 2 + w.length);
+            puffer.putInt(LAUF_MAGIC).putShort(VERSION).putLong(laufId).putLong(startMs);
+            puffer.putShort((short) w.length).put(w);
+        }
+
+        /**
+         * Nimmt eine Bewegung in den Puffer auf.
+         *
+         * @param ziel   Ziel relativ zum Arbeitsordner (z. B. "Bilder/a.png").
+         * @param quelle ursprünglicher Pfad relativ zum Arbeitsordner.
+         */
+        void eintrag(String ziel, String quelle) {
+            byte[] z = begrenzt(ziel);
+            byte[] q = begrenzt(quelle);
+            platz(1 + 2 + z.length + 2 + q.length);
+            int offset = Math.toIntExact(geschrieben + puffer.position());
+            puffer.put(TYP_EINTRAG);
+            puffer.putShort((short) z.length).put(z);
+            puffer.putShort((short) q.length).put(q);
+            merke(offset, ziel, quelle);
+        }
+
+        /**
+         * Registriert einen Eintrag für die Indizes (ohne ihn zu schreiben).
+         */
+        private void merke(int offset, String ziel, String quelle) {
+            if (anzahl == offsets.length) {
+                int n = anzahl * 2;
+                offsets = Arrays.copyOf(offsets, n);
+                hashes = Arrays.copyOf(hashes, n);
+                katIds = Arrays.copyOf(katIds, n);
+            }
+            Integer katId = katIndex.get(kategorieVon(ziel));
+            if (katId == null) {
+                katId = katIndex.size();
+                katIndex.put(kategorieVon(ziel), katId);
+            }
+            offsets[anzahl] = offset;
+            hashes[anzahl] = dateiname(quelle).hashCode();
+            katIds[anzahl] = katId;
+            anzahl++;
+        }
+
+        /**
+         * Schreibt den Pufferinhalt ans Ende des Laufs.
+         *
+         * @throws IOException bei Schreibfehlern.
+         */
+        void schreibePuffer() throws IOException {
+            puffer.flip();
+            while (puffer.hasRemaining()) {
+                geschrieben += kanal.write(puffer, laufStart + geschrieben);
+            }
+            puffer.clear();
+        }
+
+        /**
+         * Erzwingt das Schreiben auf den Datenträger.
+         *
+         * @throws IOException bei Schreibfehlern.
+         */
+        void force() throws IOException {
+            kanal.force(false);
+        }
+
+        /**
+         * Schreibt Fuß und Abschluss, erzwingt das Schreiben, schließt die Datei und gibt
+         * damit die Sperre frei.
+         *
+         * @throws IOException bei Schreibfehlern.
+         */
+        void abschliessen() throws IOException {
+            if (abgeschlossen) {
+                return;
+            }
+            abgeschlossen = true;
+            try {
+                schreibeFussUndAbschluss();
+            } finally {
+                try {
+                    kanal.close();
+                } finally {
+                    schreibrecht.release();
+                }
+            }
+        }
+
+        private void schreibeFussUndAbschluss() throws IOException {
+            schreibePuffer();
+            int fussOffset = Math.toIntExact(geschrieben);
+            schreibeFuss(System.currentTimeMillis());
+            long laenge = geschrieben + puffer.position() + ABSCHLUSS_LAENGE;
+            platz(ABSCHLUSS_LAENGE);
+            puffer.putInt(fussOffset).putLong(laenge).putInt(ENDE_MAGIC);
+            schreibePuffer();
+            kanal.force(false);
+        }
+
+        private void schreibeFuss(long endeMs) {
+            String[] namen = katIndex.keySet().toArray(new String[0]);
+
+            // Offsets nach Kategorie gruppieren (Reihenfolge innerhalb der Kategorie bleibt)
+            int[] start = new int[namen.length + 1];
+            for (int i = 0; i < anzahl; i++) {
+                start[katIds[i] + 1]++;
+            }
+            for (int k = 0; k < namen.length; k++) {
+                start[k + 1] += start[k];
+            }
+            int[] gruppiert = new int[anzahl];
+            int[] fuell = Arrays.copyOf(start, namen.length);
+            for (int i = 0; i < anzahl; i++) {
+                gruppiert[fuell[katIds[i]]++] = offsets[i];
+            }
+
+            // Hash-Index: (Hash << 32 | Offset), sortiert nach Hash
+            long[] hashIndex = new long[anzahl];
+            for (int i = 0; i < anzahl; i++) {
+                hashIndex[i] = ((long) hashes[i] << 32) | (offsets[i] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(hashIndex);
+
+            platz(1 + 4 + 8 + 4);
+            puffer.put(TYP_FUSS).putInt(anzahl).putLong(endeMs).putInt(namen.length);
+            for (int k = 0; k < namen.length; k++) {
+                byte[] b = begrenzt(namen[k]);
+                platz(2 + b.length + 8);
+                puffer.putShort((short) b.length).put(b).putInt(start[k]).putInt(start[k + 1] - start[k]);
+            }
+            platz(4 * anzahl + 8 * anzahl);
+            for (int o : gruppiert) {
+                puffer.putInt(o);
+            }
+            for (long h : hashIndex) {
+                puffer.putLong(h);
+            }
+        }
+
+        /**
+         * Sorgt für genügend freien Platz im Puffer (vergrößert ihn bei Bedarf).
+         */
+        private void platz(int bytes) {
+            if (puffer.remaining() < bytes) {
+                ByteBuffer neu = ByteBuffer.allocate(Math.max(puffer.capacity() * 2, puffer.position() + bytes));
+                puffer.flip();
+                neu.put(puffer);
+                puffer = neu;
+            }
+        }
+
+        /**
+         * Schließt den Lauf ordentlich ab, auch wenn die Sortierung abgebrochen wurde.
+         */
+        @Override
+        public void close() throws IOException {
+            abschliessen();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Lesen
+    // ------------------------------------------------------------------
+
+    /**
+     * Liefert alle vollständigen Läufe, den neuesten zuerst. Ein Lauf, der gerade
+     * geschrieben wird oder abgebrochen ist, fehlt in der Liste; die Datei wird nur
+     * gelesen.
+     *
+     * @param journal Pfad zu undo_journal.bin.
+     * @return Liste der Läufe (leer, wenn die Datei leer ist).
+     * @throws IOException bei Lesefehlern oder beschädigter Datei.
+     */
+    static List<Lauf> laeufe(Path journal) throws IOException {
+        try (FileChannel kanal = FileChannel.open(journal, StandardOpenOption.READ)) {
+            return laeufe(kanal);
+        }
+    }
+
+    private static List<Lauf> laeufe(FileChannel kanal) throws IOException {
+        List<Lauf> laeufe = new ArrayList<>();
+        long ende = vollstaendigesEnde(kanal);
+        while (ende > 0) {
+            long[] abschluss = leseAbschluss(kanal, ende);
+            long position = ende - abschluss[1];
+            MappedByteBuffer lauf = kanal.map(FileChannel.MapMode.READ_ONLY, position, abschluss[1]);
+            laeufe.add(leseLauf(lauf, (int) abschluss[0], position));
+            ende = position;
+        }
+        return laeufe;
+    }
+
+    /**
+     * Liefert Einträge eines Laufs in umgekehrter Journal-Reihenfolge (neueste zuerst),
+     * wie sie für das Rückgängigmachen gebraucht werden.
+     *
+     * Ist kategorie gesetzt, werden nur die Einträge dieser Kategorie über die
+     * Kategorie-Tabelle gelesen. Ist dateiname gesetzt, wird über den Hash-Index gesucht.
+     * Sind beide null, wird der ganze Lauf geliefert.
+     *
+     * @param journal   Pfad zu undo_journal.bin.
+     * @param lauf      Lauf aus laeufe().
+     * @param kategorie Kategoriename oder null.
+     * @param dateiname ursprünglicher Dateiname (ohne Ordner) oder null.
+     * @return passende Einträge, neueste zuerst.
+     * @throws IOException bei Lesefehlern.
+     */
+    static List<Eintrag> eintraege(Path journal, Lauf lauf, String kategorie, String dateiname) throws IOException {
+        try (FileChannel kanal = FileChannel.open(journal, StandardOpenOption.READ)) {
+            MappedByteBuffer m = kanal.map(FileChannel.MapMode.READ_ONLY, lauf.position, lauf.laenge);
+            int fussOffset = m.getInt((int) lauf.laenge - ABSCHLUSS_LAENGE);
+            List<Eintrag> ergebnis = new ArrayList<>();
+
+            if (kategorie == null && dateiname == null) {
+                m.position(kopfLaenge(m));
+                while (m.position() < fussOffset) {
+                    ergebnis.add(leseEintrag(m));
+                }
+            } else {
+                // Fuß überspringen bis zu den Indizes
+                m.position(fussOffset + 1);
+                int anzahl = m.getInt();
+                m.getLong();
+                int katAnzahl = m.getInt();
+                int katStart = -1;
+                int katN = 0;
+                for (int k = 0; k < katAnzahl; k++) {
+                    String name = leseText(m);
+                    int s = m.getInt();
+                    int n = m.getInt();
+                    if (name.equals(kategorie)) {
+                        katStart = s;
+                        katN = n;
+                    }
+                }
+                int gruppiertPos = m.position();
+                int hashPos = gruppiertPos + 4 * anzahl;
+
+                if (kategorie != null) {
+                    for (int i = 0; i < katN; i++) {
+                        m.position(m.getInt(gruppiertPos + 4 * (katStart + i)));
+                        ergebnis.add(leseEintrag(m));
+                    }
+                }
+                if (dateiname != null) {
+                    List<Eintrag> treffer = new ArrayList<>();
+                    int hash = dateiname.hashCode();
+                    int i = ersterHash(m, hashPos, anzahl, hash);
+                    for (; i < anzahl && (int) (m.getLong(hashPos + 8 * i) >> 32) == hash; i++) {
+                        int offset = (int) m.getLong(hashPos + 8 * i);
+                        m.position(offset);
+                        Eintrag e = leseEintrag(m);
+                        if (dateiname.equals(dateiname(e.quelle))
+                                && (kategorie == null || kategorie.equals(kategorieVon(e.ziel)))) {
+                            treffer.add(e);
+                        }
+                    }
+                    ergebnis = treffer; // Hash-Index ist je Hash nach Offset sortiert
+                }
+            }
+            Collections.reverse(ergebnis);
+            return ergebnis;
+        }
+    }
+
+    /**
+     * Entfernt alle bis auf die neuesten behalten Läufe.
+     *
+     * Da Läufe positionsunabhängig sind, werden die behaltenen Läufe unverändert in
+     * eine temporäre Datei kopiert, die anschließend das Journal ersetzt. Das geschieht
+     * unter der Sperre des Journals; ein laufender Schreiber wird abgewartet. Ein
+     * abgebrochener Lauf am Ende wird mitkopiert und beim nächsten neuen Lauf repariert.
+     *
+     * @param journal  Pfad zu undo_journal.bin.
+     * @param behalten Anzahl der neuesten Läufe, die erhalten bleiben (mindestens 1).
+     * @return Anzahl entfernter Läufe.
+     * @throws IOException bei Lese- oder Schreibfehlern.
+     */
+    static int kompaktiere(Path journal, int behalten) throws IOException {
+        Semaphore recht = schreibrecht(journal);
+        try (FileChannel quelle = oeffneGesperrt(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            List<Lauf> laeufe = laeufe(quelle);
+            behalten = Math.max(1, behalten);
+            if (laeufe.size() <= behalten) {
+                return 0;
+            }
+            long ab = laeufe.get(behalten - 1).position;
+            Path tmp = journal.resolveSibling(journal.getFileName() + ".tmp");
+            try (FileChannel ziel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long groesse = quelle.size();
+                long pos = ab;
+                while (pos < groesse) {
+                    pos += quelle.transferTo(pos, groesse - pos, ziel);
+                }
+                ziel.force(false);
+            }
+            Files.move(tmp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // Die alte Datei ist nur noch für Wartende auf ihre Sperre erreichbar
+            quelle.truncate(0);
+            quelle.write(ByteBuffer.allocate(4).putInt(0, ERSETZT_MAGIC), 0);
+            return laeufe.size() - behalten;
+        } finally {
+            recht.release();
+        }
+    }
+
+    /**
+     * Wartet auf das Schreibrecht für das Journal innerhalb dieser JVM.
+     */
+    private static Semaphore schreibrecht(Path journal) throws InterruptedIOException {
+        Semaphore recht = SCHREIBRECHTE.computeIfAbsent(journal.toAbsolutePath().normalize(),
+                k -> new Semaphore(1));
+        try {
+            recht.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Warten auf das Undo-Journal unterbrochen");
+        }
+        return recht;
+    }
+
+    /**
+     * Öffnet das Journal und wartet auf die exklusive Sperre; sie wird mit dem Kanal
+     * freigegeben. Wurde die Datei inzwischen von kompaktiere() ersetzt, wird die neue
+     * Datei geöffnet.
+     */
+    private static FileChannel oeffneGesperrt(Path journal, OpenOption... optionen) throws IOException {
+        while (true) {
+            FileChannel kanal = FileChannel.open(journal, optionen);
+            try {
+                kanal.lock();
+                if (kanal.size() != 4 || leseInt(kanal, 0) != ERSETZT_MAGIC) {
+                    return kanal;
+                }
+            } catch (IOException | RuntimeException e) {
+                kanal.close();
+                throw e;
+            }
+            kanal.close();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Hilfsmethoden
+    // ------------------------------------------------------------------
+
+    /**
+     * Kategorie eines Eintrags = erster Ordner des Zielpfads ("Bilder/a.png" -> "Bilder").
+     */
+    static String kategorieVon(String ziel) {
+        int i = trennerIndex(ziel, false);
+        return i < 0 ? "" : ziel.substring(0, i);
+    }
+
+    /**
+     * Dateiname ohne Ordner ("Bilder/a.png" -> "a.png").
+     */
+    static String dateiname(String pfad) {
+        int i = trennerIndex(pfad, true);
+        return i < 0 ? pfad : pfad.substring(i + 1);
+    }
+
+    private static int trennerIndex(String pfad, boolean letzter) {
+        int a = letzter ? pfad.lastIndexOf('/') : pfad.indexOf('/');
+        int b = letzter ? pfad.lastIndexOf('\\') : pfad.indexOf('\\');
+        if (a < 0 || b < 0) {
+            return Math.max(a, b);
+        }
+        return letzter ? Math.max(a, b) : Math.min(a, b);
+    }
+
+    private static byte[] begrenzt(String text) {
+        byte[] b = text.getBytes(StandardCharsets.UTF_8);
+        if (b.length > 0xFFFF) {
+            throw new IllegalArgumentException("Pfad zu lang für das Undo-Journal: " + text);
+        }
+        return b;
+    }
+
+    private static String leseText(ByteBuffer b) {
+        int len = Short.toUnsignedInt(b.getShort());
+        byte[] bytes = new byte[len];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Eintrag leseEintrag(ByteBuffer b) throws IOException {
+        if (b.get() != TYP_EINTRAG) {
+            throw new IOException("Undo-Journal beschädigt (Eintrag erwartet)");
+        }
+        String ziel = leseText(b);
+        String quelle = leseText(b);
+        return new Eintrag(ziel, quelle);
+    }
+
+    private static int kopfLaenge(ByteBuffer b) {
+        return 4 + 2 + 8 + 8 + 2 + Short.toUnsignedInt(b.getShort(4 + 2 + 8 + 8));
+    }
+
+    /**
+     * Binäre Suche nach dem ersten Index-Eintrag mit dem angegebenen Hash.
+     */
+    private static int ersterHash(ByteBuffer m, int hashPos, int anzahl, int hash) {
+        int lo = 0;
+        int hi = anzahl;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int h = (int) (m.getLong(hashPos + 8 * mid) >> 32);
+            if (h < hash) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Liest Kopf und Fuß eines eingeblendeten Laufs.
+     */
+    private static Lauf leseLauf(ByteBuffer m, int fussOffset, long position) throws IOException {
+        if (m.getInt(0) != LAUF_MAGIC) {
+            throw new IOException("Undo-Journal beschädigt (Laufkopf fehlt bei Position " + position + ")");
+        }
+        long id = m.getLong(6);
+        long startMs = m.getLong(14);
+        m.position(22);
+        String wurzel = leseText(m);
+
+        m.position(fussOffset);
+        if (m.get() != TYP_FUSS) {
+            throw new IOException("Undo-Journal beschädigt (Fuß fehlt in Lauf " + id + ")");
+        }
+        int anzahl = m.getInt();
+        long endeMs = m.getLong();
+        int katAnzahl = m.getInt();
+        Map<String, Integer> kategorien = new LinkedHashMap<>();
+        for (int k = 0; k < katAnzahl; k++) {
+            String name = leseText(m);
+            m.getInt();
+            kategorien.put(name, m.getInt());
+        }
+        return new Lauf(id, startMs, endeMs, wurzel, anzahl, kategorien, position, m.capacity());
+    }
+
+    /**
+     * Liest den Abschlussblock, der bei ende endet.
+     *
+     * @return {fussOffset, laufLaenge}
+     */
+    private static long[] leseAbschluss(FileChannel kanal, long ende) throws IOException {
+        long[] a = versucheAbschluss(kanal, ende);
+        if (a == null) {
+            throw new IOException("Undo-Journal beschädigt (Abschluss fehlt bei Position " + ende + ")");
+        }
+        return a;
+    }
+
+    private static long[] versucheAbschluss(FileChannel kanal, long ende) throws IOException {
+        if (ende < ABSCHLUSS_LAENGE) {
+            return null;
+        }
+        ByteBuffer b = ByteBuffer.allocate(ABSCHLUSS_LAENGE);
+        while (b.hasRemaining()) {
+            if (kanal.read(b, ende - ABSCHLUSS_LAENGE + b.position()) < 0) {
+                return null;
+            }
+        }
+        int fussOffset = b.getInt(0);
+        long laenge = b.getLong(4);
+        if (b.getInt(12) != ENDE_MAGIC || laenge <= ABSCHLUSS_LAENGE || laenge > ende
+                || fussOffset <= 0 || fussOffset >= laenge) {
+            return null;
+        }
+        return new long[]{fussOffset, laenge};
+    }
+
+    private static long letzteLaufId(FileChannel kanal) throws IOException {
+        long ende = kanal.size();
+        if (ende == 0) {
+            return 0;
+        }
+        long[] a = leseAbschluss(kanal, ende);
+        ByteBuffer kopf = ByteBuffer.allocate(8);
+        kanal.read(kopf, ende - a[1] + 6);
+        return kopf.getLong(0);
+    }
+
+    /**
+     * Ende des letzten vollständigen Laufs; ändert nichts.
+     *
+     * Ist der letzte Abschlussblock gültig, ist das das Dateiende. Andernfalls wird die
+     * Datei von vorne Lauf für Lauf gelesen bis zum ersten unvollständigen Lauf.
+     */
+    private static long vollstaendigesEnde(FileChannel kanal) throws IOException {
+        long groesse = kanal.size();
+        if (groesse == 0) {
+            return 0;
+        }
+        long[] a = versucheAbschluss(kanal, groesse);
+        if (a != null && leseInt(kanal, groesse - a[1]) == LAUF_MAGIC) {
+            return groesse;
+        }
+
+        long pos = 0;
+        while (pos < groesse) {
+            long rest = Math.min(groesse - pos, Integer.MAX_VALUE);
+            MappedByteBuffer m = kanal.map(FileChannel.MapMode.READ_ONLY, pos, rest);
+            if (rest < 24 || m.getInt(0) != LAUF_MAGIC) {
+                return pos;
+            }
+            long laenge = vollstaendigeLaenge(m, (int) rest);
+            if (laenge < 0) {
+                return pos;
+            }
+            pos += laenge;
+        }
+        return pos;
+    }
+
+    /**
+     * Schließt einen abgebrochenen Lauf am Ende des Journals ab. Nur unter der Sperre
+     * aufrufen: Ohne sie könnte der Lauf noch geschrieben werden.
+     *
+     * Der erste unvollständige Lauf wird hinter dem letzten vollständigen Eintrag
+     * abgeschnitten und mit Fuß und Abschluss versehen; ein Rest, der kein lesbarer
+     * Lauf ist, wird entfernt.
+     *
+     * @return der abgeschlossene Lauf oder null, wenn keiner zu retten war.
+     */
+    private static Reparatur repariere(FileChannel kanal) throws IOException {
+        long pos = vollstaendigesEnde(kanal);
+        long groesse = kanal.size();
+        if (pos == groesse) {
+            return null;
+        }
+        long rest = Math.min(groesse - pos, Integer.MAX_VALUE);
+        MappedByteBuffer m = kanal.map(FileChannel.MapMode.READ_ONLY, pos, rest);
+        if (rest < 24 || m.getInt(0) != LAUF_MAGIC) {
+            kanal.truncate(pos); // Rest ist kein lesbarer Lauf
+            return null;
+        }
+        return schliesseAb(kanal, m, pos, (int) rest);
+    }
+
+    /**
+     * Liest einen Lauf von vorne bis zu seinem Abschluss.
+     *
+     * @return Länge des Laufs oder -1, wenn er unvollständig ist.
+     */
+    private static long vollstaendigeLaenge(ByteBuffer m, int rest) {
+        try {
+            m.position(kopfLaenge(m));
+            while (m.position() < rest) {
+                byte typ = m.get(m.position());
+                if (typ == TYP_EINTRAG) {
+                    leseEintrag(m);
+                } else if (typ == TYP_FUSS) {
+                    return ueberspringeFuss(m, m.position())[1];
+                } else {
+                    return -1;
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | IOException e) {
+            // abgeschnitten
+        }
+        return -1;
+    }
+
+    /**
+     * Schneidet einen abgebrochenen Lauf hinter dem letzten vollständigen Eintrag ab
+     * und schreibt Fuß und Abschluss nach.
+     */
+    private static Reparatur schliesseAb(FileChannel kanal, ByteBuffer m, long pos, int rest) throws IOException {
+        int kopf = kopfLaenge(m);
+        if (kopf > rest) {
+            kanal.truncate(pos);
+            return null;
+        }
+        Schreiber s = new Schreiber(kanal, null, pos, kopf, m.getLong(6));
+        m.position(kopf);
+        try {
+            while (m.position() < rest && m.get(m.position()) == TYP_EINTRAG) {
+                int p = m.position();
+                Eintrag e = leseEintrag(m);
+                s.merke(p, e.ziel, e.quelle);
+                s.geschrieben = m.position();
+            }
+        } catch (BufferUnderflowException ignoriert) {
+            // abgeschnittener letzter Eintrag
+        }
+        kanal.truncate(pos + s.geschrieben);
+        s.schreibeFussUndAbschluss();
+        return new Reparatur(s.laufId, s.anzahl);
+    }
+
+    /**
+     * Springt über einen Fuß samt Abschluss.
+     *
+     * @return {fussOffset, laufLaenge}
+     */
+    private static long[] ueberspringeFuss(ByteBuffer m, int fussOffset) throws IOException {
+        m.position(fussOffset + 1);
+        int anzahl = m.getInt();
+        m.getLong();
+        int katAnzahl = m.getInt();
+        for (int k = 0; k < katAnzahl; k++) {
+            leseText(m);
+            m.getInt();
+            m.getInt();
+        }
+        m.position(m.position() + 12 * anzahl);
+        int gespeicherterFuss = m.getInt();
+        long laenge = m.getLong();
+        if (m.getInt() != ENDE_MAGIC || gespeicherterFuss != fussOffset || laenge != m.position()) {
+            throw new IOException("Abschluss passt nicht zum Fuß");
+        }
+        return new long[]{fussOffset, laenge};
+    }
+
+    private static int leseInt(FileChannel kanal, long position) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(4);
+        while (b.hasRemaining()) {
+            if (kanal.read(b, position + b.position()) < 0) {
+                return 0;
+            }
+        }
+        return b.getInt(0);
+    }
+}
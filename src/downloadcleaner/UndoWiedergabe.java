@@ -0,0 +1,221 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spielt Undo-Einträge parallel zurück.
+ *
+ * Früher wurde jede Zeile einzeln bearbeitet: Elternordner anlegen, Files.exists
+ * prüfen, verschieben. Hier gilt stattdessen:
+ * - Elternordner werden pro Lauf nur einmal angelegt (Cache der angelegten Ordner).
+ * - Es gibt nur einen Verschiebe-Versuch; NoSuchFileException bedeutet "Datei
+ *   nicht mehr da" und zählt als übersprungen. Das vermeidet auch die Lücke
+ *   zwischen exists() und move().
+ * - Mehrere Verschieber (virtuelle Threads) arbeiten gleichzeitig.
+ *
+ * Abhängigkeiten: Taucht ein Pfad in mehreren Einträgen auf (z. B. ist das Ziel
+ * des einen Eintrags die Quelle eines anderen), müssen diese Einträge in
+ * umgekehrter Journal-Reihenfolge nacheinander laufen. Solche Einträge werden zu
+ * einer Kette zusammengefasst (Union-Find über die Pfade); eine Kette bearbeitet
+ * immer genau ein Verschieber, unabhängige Ketten laufen parallel.
+ *
+ * Ausgegeben wird keine Zeile pro Datei, sondern eine Zusammenfassung mit Zeit
+ * und Zählern (plus die ersten Fehlermeldungen).
+ */
+class UndoWiedergabe {
+
+    /**
+     * Höchstens so viele Fehlermeldungen werden einzeln angezeigt.
+     */
+    private static final int MAX_FEHLERMELDUNGEN = 10;
+
+    private final Path downloadDir;
+    private final int anzahlVerschieber;
+
+    private final Set<Path> angelegteOrdner = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger zurueck = new AtomicInteger();
+    private final AtomicInteger fehlend = new AtomicInteger();
+    private final AtomicInteger fehler = new AtomicInteger();
+    private final ConcurrentLinkedQueue<String> fehlermeldungen = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param downloadDir       Arbeitsordner, auf den sich die relativen Pfade beziehen.
+     * @param anzahlVerschieber Anzahl gleichzeitiger Verschiebungen (mindestens 1).
+     */
+    UndoWiedergabe(Path downloadDir, int anzahlVerschieber) {
+        this.downloadDir = downloadDir;
+        this.anzahlVerschieber = Math.max(1, anzahlVerschieber);
+        angelegteOrdner.add(downloadDir);
+    }
+
+    /**
+     * Spielt die Einträge zurück und gibt die Zusammenfassung aus.
+     *
+     * @param eintraege Einträge in umgekehrter Journal-Reihenfolge (neueste zuerst).
+     */
+    void spieleZurueck(List<UndoJournal.Eintrag> eintraege) {
+        long start = System.nanoTime();
+        int[] verschieberUndKetten = fuehreAus(eintraege);
+
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        druckeFehler();
+        System.out.println("Undo abgeschlossen in " + ms + " ms (" + verschieberUndKetten[0] + " Verschieber, "
+                + verschieberUndKetten[1] + " unabhängige Ketten).");
+        System.out.printf("  %-31s %d%n", "Zurückverschoben:", zurueck.get());
+        System.out.printf("  %-31s %d%n", "Übersprungen (nicht gefunden):", fehlend.get());
+        System.out.printf("  %-31s %d%n", "Fehler:", fehler.get());
+    }
+
+    /**
+     * Spielt die Einträge zurück, ohne etwas auszugeben (außer über druckeFehler()).
+     * Die Zähler sind danach über zurueck(), fehlend() und fehler() abrufbar.
+     *
+     * @param eintraege Einträge in umgekehrter Journal-Reihenfolge (neueste zuerst).
+     * @return {Anzahl Verschieber, Anzahl unabhängiger Ketten}.
+     */
+    int[] fuehreAus(List<UndoJournal.Eintrag> eintraege) {
+        List<int[]> ketten = bildeKetten(eintraege);
+
+        AtomicInteger naechsteKette = new AtomicInteger();
+        int verschieber = Math.min(anzahlVerschieber, Math.max(1, ketten.size()));
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < verschieber; i++) {
+                pool.submit(() -> {
+                    int k;
+                    while ((k = naechsteKette.getAndIncrement()) < ketten.size()) {
+                        for (int index : ketten.get(k)) {
+                            verschiebeZurueck(eintraege.get(index));
+                        }
+                    }
+                });
+            }
+        } // close() wartet, bis alle Verschieber fertig sind
+        return new int[]{verschieber, ketten.size()};
+    }
+
+    /**
+     * Gibt die gesammelten Fehlermeldungen aus (höchstens MAX_FEHLERMELDUNGEN einzeln).
+     */
+    void druckeFehler() {
+        for (String meldung : fehlermeldungen) {
+            System.out.println(meldung);
+        }
+        if (fehler.get() > fehlermeldungen.size()) {
+            System.out.println("... und " + (fehler.get() - fehlermeldungen.size()) + " weitere Fehler.");
+        }
+    }
+
+    /**
+     * @return Anzahl zurückverschobener Dateien.
+     */
+    int zurueck() {
+        return zurueck.get();
+    }
+
+    /**
+     * @return Anzahl übersprungener Einträge (Datei nicht mehr vorhanden).
+     */
+    int fehlend() {
+        return fehlend.get();
+    }
+
+    /**
+     * @return Anzahl fehlgeschlagener Verschiebungen.
+     */
+    int fehler() {
+        return fehler.get();
+    }
+
+    /**
+     * @return die ersten Fehlermeldungen (höchstens MAX_FEHLERMELDUNGEN).
+     */
+    List<String> fehlermeldungen() {
+        return List.copyOf(fehlermeldungen);
+    }
+
+    /**
+     * Fasst Einträge, die sich einen Pfad teilen, zu Ketten zusammen.
+     * Innerhalb einer Kette bleibt die Reihenfolge der Eingabeliste erhalten.
+     *
+     * @return Ketten als Listen von Indizes in eintraege.
+     */
+    private List<int[]> bildeKetten(List<UndoJournal.Eintrag> eintraege) {
+        int n = eintraege.size();
+        int[] eltern = new int[n];
+        Map<Path, Integer> ersterNutzer = new HashMap<>(n * 4);
+        for (int i = 0; i < n; i++) {
+            eltern[i] = i;
+            UndoJournal.Eintrag e = eintraege.get(i);
+            for (String pfad : new String[]{e.ziel, e.quelle}) {
+                Integer j = ersterNutzer.putIfAbsent(downloadDir.resolve(pfad).normalize(), i);
+                if (j != null) {
+                    vereinige(eltern, i, j);
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> gruppen = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            gruppen.computeIfAbsent(wurzel(eltern, i), k -> new ArrayList<>()).add(i);
+        }
+        List<int[]> ketten = new ArrayList<>(gruppen.size());
+        for (List<Integer> g : gruppen.values()) {
+            ketten.add(g.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return ketten;
+    }
+
+    private static int wurzel(int[] eltern, int i) {
+        while (eltern[i] != i) {
+            eltern[i] = eltern[eltern[i]]; // Pfad halbieren
+            i = eltern[i];
+        }
+        return i;
+    }
+
+    private static void vereinige(int[] eltern, int a, int b) {
+        int ra = wurzel(eltern, a);
+        int rb = wurzel(eltern, b);
+        if (ra != rb) {
+            eltern[Math.max(ra, rb)] = Math.min(ra, rb);
+        }
+    }
+
+    /**
+     * Verschiebt eine Datei vom Ziel zurück an ihren ursprünglichen Ort.
+     */
+    private void verschiebeZurueck(UndoJournal.Eintrag eintrag) {
+        Path zielPfad = downloadDir.resolve(eintrag.ziel);
+        Path quellPfad = downloadDir.resolve(eintrag.quelle);
+        try {
+            Path eltern = quellPfad.getParent();
+            if (eltern != null && !angelegteOrdner.contains(eltern)) {
+                Files.createDirectories(eltern);
+                angelegteOrdner.add(eltern);
+            }
+            Files.move(zielPfad, quellPfad, StandardCopyOption.REPLACE_EXISTING);
+            zurueck.incrementAndGet();
+        } catch (NoSuchFileException e) {
+            fehlend.incrementAndGet();
+        } catch (IOException e) {
+            if (fehler.incrementAndGet() <= MAX_FEHLERMELDUNGEN) {
+                fehlermeldungen.add("Fehler beim Rückgängig-Machen für " + zielPfad + ": " + e.getMessage());
+            }
+        }
+    }
+}
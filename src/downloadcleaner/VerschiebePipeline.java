@@ -0,0 +1,245 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parallele Sortierung eines Ordners.
+ *
+ * Aufbau der Pipeline:
+ * 1. Der aufrufende Thread liest den Ordner über den OrdnerScanner und legt jede
+ *    reguläre Datei in eine begrenzte Warteschlange (bremst, wenn die Verschieber
+ *    nicht hinterherkommen).
+ * 2. Mehrere Verschieber (virtuelle Threads) holen Dateien ab, bestimmen die
+ *    Kategorie und verschieben die Datei.
+ * 3. Ein einzelner ProtokollSchreiber schreibt log.txt und das Undo-Journal.
+ *    Dadurch stehen Log- und Undo-Einträge immer in derselben Reihenfolge.
+ *
+ * Anzahl und Bytes je Kategorie zählen die Verschieber gemeinsam in einem
+ * GestreifterZaehler; am Ende wird die Summe in Konfigurationsreihenfolge ausgegeben.
+ *
+ * Mit -Ddownloadcleaner.drossel.* (siehe Drossel) teilen sich alle Verschieber
+ * dieselben Grenzen.
+ *
+ * Mit -Ddownloadcleaner.messung=an werden die Phasen wie beim normalen Sortieren
+ * gemessen (siehe Messung); die Dauern aller Verschieber landen in denselben Histogrammen.
+ *
+ * Sinnvoll vor allem auf Netzlaufwerken, wo jede einzelne Verschiebung vor allem
+ * Wartezeit auf das Dateisystem ist.
+ */
+class VerschiebePipeline {
+
+    /**
+     * Größe der Warteschlange zwischen Ordner-Leser und Verschiebern.
+     */
+    private static final int WARTESCHLANGE_GROESSE = 1024;
+
+    /**
+     * Eine Datei in der Warteschlange, mit den Attributen aus dem Ordnerlisting.
+     */
+    private static final class Auftrag {
+        final Path datei;
+        final BasicFileAttributes attrs;
+
+        Auftrag(Path datei, BasicFileAttributes attrs) {
+            this.datei = datei;
+            this.attrs = attrs;
+        }
+    }
+
+    /**
+     * Markiert das Ende der Arbeit in der Warteschlange (ein Eintrag pro Verschieber).
+     */
+    private static final Auftrag ENDE = new Auftrag(null, null);
+
+    private final DownloadCleaner.KategorieKonfiguration kategorien;
+    private final int anzahlVerschieber;
+    private final SortierBeobachter beobachter;
+    private final boolean duplikatePruefen = DuplikatSuche.beimSortieren();
+
+    /**
+     * @param kategorien        Kategorie-Konfiguration für die Zuordnung.
+     * @param anzahlVerschieber Anzahl gleichzeitiger Verschiebungen (mindestens 1).
+     * @param beobachter        erhält Fehler beim Kopieren im Hintergrund und Hinweise.
+     */
+    VerschiebePipeline(DownloadCleaner.KategorieKonfiguration kategorien, int anzahlVerschieber,
+                       SortierBeobachter beobachter) {
+        this.kategorien = kategorien;
+        this.anzahlVerschieber = Math.max(1, anzahlVerschieber);
+        this.beobachter = beobachter;
+    }
+
+    /**
+     * Sortiert alle Dateien im Ordner parallel in Kategorie-Unterordner.
+     *
+     * Verhalten wie beim normalen Sortieren:
+     * - Jede Bewegung landet mit Zeitstempel in log.txt.
+     * - Die Bewegungen dieses Laufs werden als neuer Lauf an undo_journal.bin angehängt.
+     * - Kann eine Datei nicht verschoben werden, wird das gemeldet und mit der
+     *   nächsten Datei weitergemacht.
+     * - Kann ein Zielordner nicht angelegt werden, wird der Lauf abgebrochen.
+     *
+     * @param downloadDir zu sortierender Ordner.
+     */
+    void sortiere(Path downloadDir) {
+        System.out.println();
+        System.out.println("Sortiere Dateien parallel (" + anzahlVerschieber + " Verschieber) in: "
+                + downloadDir.toAbsolutePath());
+
+        Path logFile = downloadDir.resolve("log.txt");
+        Path undoFile = downloadDir.resolve(UndoJournal.DATEINAME);
+
+        BlockingQueue<Auftrag> arbeit = new ArrayBlockingQueue<>(WARTESCHLANGE_GROESSE);
+        AtomicReference<IOException> abbruch = new AtomicReference<>();
+        AtomicInteger verschoben = new AtomicInteger();
+        AtomicInteger fehler = new AtomicInteger();
+        GestreifterZaehler proKategorie = new GestreifterZaehler(kategorien);
+        Messung messung = Messung.ausSystemProperty();
+        Drossel drossel = Drossel.ausSystemProperty(downloadDir, beobachter);
+        long laufId = -1;
+
+        try (ProtokollSchreiber protokoll = ProtokollSchreiber.ausSystemProperty(logFile, undoFile, messung,
+                beobachter);
+             DateiUmzug umzug = new DateiUmzug(downloadDir, ZielNamen.ausSystemProperty(), drossel, beobachter)) {
+
+            DownloadCleaner.KategorieOrdner kategorieOrdner = new DownloadCleaner.KategorieOrdner(downloadDir);
+
+            try (ExecutorService verschieber = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < anzahlVerschieber; i++) {
+                    verschieber.submit(() -> verschiebe(downloadDir, kategorieOrdner, umzug, arbeit,
+                            protokoll, messung, abbruch, verschoben, fehler, proKategorie));
+                }
+
+                try {
+                    OrdnerScanner.scanne(downloadDir, true, messung, (entry, attrs) -> {
+                        if (abbruch.get() != null) {
+                            throw abbruch.get();
+                        }
+                        if (attrs.isRegularFile() && !DownloadCleaner.istEigeneDatei(entry)) {
+                            stelleEin(arbeit, new Auftrag(entry, attrs));
+                        } else {
+                            messung.uebersprungen();
+                        }
+                    });
+                } catch (IOException e) {
+                    // erst alle Threads sauber beenden, danach wird der Fehler gemeldet
+                    abbruch.compareAndSet(null, e);
+                } finally {
+                    for (int i = 0; i < anzahlVerschieber; i++) {
+                        arbeit.put(ENDE);
+                    }
+                }
+            } // close() wartet, bis alle Verschieber fertig sind
+
+            umzug.abschliessen();
+            fehler.addAndGet(umzug.fehlgeschlagen());
+            if (abbruch.get() != null) {
+                throw abbruch.get();
+            }
+            protokoll.beende(true);
+            laufId = protokoll.laufId();
+
+        } catch (IOException e) {
+            System.out.println("Fehler beim Sortieren: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Sortierung unterbrochen.");
+        }
+
+        System.out.println("Sortierung abgeschlossen. Dateien verschoben: " + verschoben.get());
+        if (verschoben.get() > 0) {
+            DownloadCleaner.KategorieZaehler summe = new DownloadCleaner.KategorieZaehler(kategorien);
+            proKategorie.uebertrageIn(summe);
+            summe.druckeErgebnis();
+        }
+        if (drossel != null) {
+            drossel.bericht().forEach(zeile -> beobachter.meldung(downloadDir, zeile));
+        }
+        if (laufId >= 0) {
+            messung.fehler(fehler.get());
+            messung.abschliessen(downloadDir, laufId, beobachter);
+        }
+        System.out.println("Log-Datei:   " + logFile.toAbsolutePath());
+        System.out.println("Undo-Datei:  " + undoFile.toAbsolutePath());
+    }
+
+    /**
+     * Legt eine Datei in die Warteschlange. Eine Unterbrechung beim Warten wird als
+     * InterruptedIOException gemeldet, damit der OrdnerScanner den Lauf beendet.
+     */
+    private static void stelleEin(BlockingQueue<Auftrag> arbeit, Auftrag auftrag) throws InterruptedIOException {
+        try {
+            arbeit.put(auftrag);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Sortierung unterbrochen");
+        }
+    }
+
+    /**
+     * Arbeitsschleife eines Verschiebers: holt Einträge aus der Warteschlange,
+     * bis die Ende-Markierung kommt.
+     */
+    private void verschiebe(Path downloadDir, DownloadCleaner.KategorieOrdner kategorieOrdner,
+                            DateiUmzug umzug, BlockingQueue<Auftrag> arbeit, ProtokollSchreiber protokoll,
+                            Messung messung, AtomicReference<IOException> abbruch,
+                            AtomicInteger verschoben, AtomicInteger fehler, GestreifterZaehler proKategorie) {
+        try {
+            Auftrag auftrag;
+            while ((auftrag = arbeit.take()) != ENDE) {
+                if (abbruch.get() != null) {
+                    continue;
+                }
+
+                Path entry = auftrag.datei;
+                long groesse = auftrag.attrs.size();
+                String fileName = entry.getFileName().toString();
+                Messung.Messpunkt m = messung.start(Messung.Phase.KLASSIFIZIEREN);
+                int id = kategorien.bestimmeKategorieId(entry, auftrag.attrs);
+                String kategorie = kategorien.kategorieName(id);
+                messung.ende(m, entry, groesse);
+
+                Path zielOrdner;
+                try {
+                    m = messung.start(Messung.Phase.ORDNER);
+                    zielOrdner = kategorieOrdner.zielOrdner(kategorie);
+                    messung.ende(m, zielOrdner, 0);
+                } catch (IOException e) {
+                    // wie im sequentiellen Modus: fehlender Zielordner beendet den Lauf
+                    abbruch.compareAndSet(null, e);
+                    continue;
+                }
+
+                Path zielDatei = zielOrdner.resolve(fileName);
+                try {
+                    if (duplikatePruefen) {
+                        zielDatei = DuplikatSuche.zielBeimSortieren(entry, zielDatei, kategorieOrdner);
+                    }
+                    m = messung.start(Messung.Phase.VERSCHIEBEN);
+                    umzug.verschiebe(entry, zielDatei, ziel -> {
+                        System.out.println("Verschoben: " + fileName + " -> " + ziel.getParent().getFileName());
+                        verschoben.incrementAndGet();
+                        proKategorie.zaehle(id, groesse);
+                        messung.verschoben(groesse);
+                        protokoll.bewegung(downloadDir.relativize(entry), downloadDir.relativize(ziel));
+                    });
+                    messung.ende(m, entry, groesse);
+                } catch (IOException e) {
+                    fehler.incrementAndGet();
+                    System.out.println("Konnte Datei nicht verschieben: "
+                            + fileName + " (" + e.getMessage() + ")");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
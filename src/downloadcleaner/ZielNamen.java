@@ -0,0 +1,142 @@
+package downloadcleaner;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vergibt beim Sortieren eindeutige Zielnamen, statt vorhandene Dateien zu überschreiben.
+ *
+ * Liegt im Zielordner schon eine Datei gleichen Namens, wird die neue Datei als
+ * "name (2).ext", "name (3).ext" … abgelegt. Der gewählte Name steht wie jede andere
+ * Bewegung im Undo-Journal.
+ *
+ * Damit dafür nicht vor jeder Verschiebung das Dateisystem gefragt werden muss
+ * (ein exists() pro Datei und pro Versuch), wird jeder Zielordner beim ersten Zugriff
+ * einmal gelistet. Die Namen kommen in eine Menge im Speicher, gegen die alle weiteren
+ * Namen geprüft werden:
+ * - Gelistet wird mit einem DirectoryStream (nur Namen, keine Attribute).
+ * - Ein Name wird vor dem Verschieben in der Menge reserviert (add() ist atomar).
+ *   So bekommen auch parallele Verschieber nie denselben Namen.
+ * - Verschoben wird ohne REPLACE_EXISTING. Hat ein anderes Programm den Namen
+ *   inzwischen belegt, meldet das Dateisystem FileAlreadyExistsException; dann wird
+ *   einfach der nächste freie Name versucht.
+ *
+ * Eingeschaltet wird der Modus mit -Ddownloadcleaner.kollision=umbenennen.
+ */
+final class ZielNamen {
+
+    /**
+     * Name der System-Property für das Verhalten bei Namensgleichheit.
+     */
+    static final String PROPERTY = "downloadcleaner.kollision";
+
+    private final Map<Path, Set<String>> belegt = new ConcurrentHashMap<>();
+
+    /**
+     * Liefert die Namensvergabe, wenn der Modus "umbenennen" eingestellt ist.
+     *
+     * @return neue ZielNamen oder null (Standard: vorhandene Dateien werden ersetzt).
+     */
+    static ZielNamen ausSystemProperty() {
+        String wert = System.getProperty(PROPERTY, "ersetzen").trim().toLowerCase();
+        return wert.equals("umbenennen") ? new ZielNamen() : null;
+    }
+
+    /**
+     * Bildet den n-ten Ausweichnamen, z. B. ("bild.jpg", 2) → "bild (2).jpg".
+     *
+     * @param name ursprünglicher Dateiname.
+     * @param n    laufende Nummer (ab 2).
+     * @return Dateiname mit Nummer vor der Endung.
+     */
+    static String nummerierterName(String name, int n) {
+        int punkt = name.lastIndexOf('.');
+        if (punkt <= 0) {
+            return name + " (" + n + ")";
+        }
+        return name.substring(0, punkt) + " (" + n + ")" + name.substring(punkt);
+    }
+
+    /**
+     * Verschiebt eine Datei in den Ordner von wunschZiel, unter dem Wunschnamen oder
+     * dem ersten freien nummerierten Namen.
+     *
+     * @param quelle     zu verschiebende Datei.
+     * @param wunschZiel gewünschtes Ziel (Ordner + ursprünglicher Name).
+     * @return tatsächliches Ziel.
+     * @throws IOException wenn der Zielordner nicht gelistet oder die Datei nicht
+     *                     verschoben werden kann.
+     */
+    Path verschiebe(Path quelle, Path wunschZiel) throws IOException {
+        return vergebe(wunschZiel, ziel -> Files.move(quelle, ziel));
+    }
+
+    /**
+     * Letzter Schritt einer Verschiebung: legt die Datei unter genau diesem Namen ab,
+     * ohne Vorhandenes zu ersetzen (sonst FileAlreadyExistsException).
+     */
+    @FunctionalInterface
+    interface Ablage {
+        void nach(Path ziel) throws IOException;
+    }
+
+    /**
+     * Sucht den ersten freien Namen im Ordner von wunschZiel und führt dafür die
+     * Ablage aus. Wird von DateiUmzug auch für das Umbenennen einer fertigen Kopie benutzt.
+     *
+     * @param wunschZiel gewünschtes Ziel (Ordner + ursprünglicher Name).
+     * @param ablage     legt die Datei unter dem gewählten Namen ab.
+     * @return tatsächliches Ziel.
+     * @throws IOException wenn der Zielordner nicht gelistet werden kann oder die
+     *                     Ablage fehlschlägt.
+     */
+    Path vergebe(Path wunschZiel, Ablage ablage) throws IOException {
+        Path ordner = wunschZiel.getParent();
+        Set<String> namen = namenIn(ordner);
+        String wunsch = wunschZiel.getFileName().toString();
+
+        int n = 1;
+        String name = wunsch;
+        while (true) {
+            if (namen.add(name)) {
+                Path ziel = ordner.resolve(name);
+                try {
+                    ablage.nach(ziel);
+                    return ziel;
+                } catch (FileAlreadyExistsException e) {
+                    // von außen belegt: Name bleibt in der Menge, nächsten versuchen
+                } catch (IOException e) {
+                    namen.remove(name);
+                    throw e;
+                }
+            }
+            name = nummerierterName(wunsch, ++n);
+        }
+    }
+
+    /**
+     * Liefert die Namensmenge eines Ordners; beim ersten Zugriff wird er gelistet.
+     */
+    private Set<String> namenIn(Path ordner) throws IOException {
+        Set<String> namen = belegt.get(ordner);
+        if (namen == null) {
+            Set<String> neu = ConcurrentHashMap.newKeySet();
+            try (DirectoryStream<Path> eintraege = Files.newDirectoryStream(ordner)) {
+                for (Path eintrag : eintraege) {
+                    neu.add(eintrag.getFileName().toString());
+                }
+            }
+            namen = belegt.putIfAbsent(ordner, neu);
+            if (namen == null) {
+                namen = neu;
+            }
+        }
+        return namen;
+    }
+}